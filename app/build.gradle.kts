@@ -98,6 +98,7 @@ dependencies {
     implementation(libs.androidx.material.icons.extended)
     implementation(libs.androidx.media3.common.ktx)
     implementation(libs.androidx.localbroadcastmanager)
+    implementation(project(":dspcore"))
     implementation(project(":nativedsp"))
     implementation(project(":libairspy"))
     implementation(project(":libhydrasdr"))
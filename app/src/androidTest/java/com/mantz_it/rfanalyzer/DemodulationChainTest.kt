@@ -0,0 +1,217 @@
+package com.mantz_it.rfanalyzer
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.mantz_it.rfanalyzer.analyzer.AudioSink
+import com.mantz_it.rfanalyzer.analyzer.Demodulator
+import com.mantz_it.rfanalyzer.analyzer.Resampler
+import com.mantz_it.rfanalyzer.analyzer.Scheduler
+import com.mantz_it.rfanalyzer.dsp.ResamplerInterface
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import com.mantz_it.rfanalyzer.source.SignalGenerator
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Format
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Signal
+import com.mantz_it.rfanalyzer.ui.composable.DemodulationMode
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.util.concurrent.ArrayBlockingQueue
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.log10
+import kotlin.math.sin
+import kotlin.math.sqrt
+
+/**
+ * Golden vector regression test of the demodulation chain as it runs in the live pipeline:
+ * IQConverter.mixAndDecimatePacketIntoSamplePacket (Scheduler) -> Resampler -> Demodulator.demodulate
+ * -> AudioSink.applyAudioFilter. Each test vector is a synthetic RTL-SDR (8 bit unsigned) signal
+ * whose expected audio output is a known tone. Interferers are placed next to the channel (or in
+ * the opposite side band) and must be suppressed by the filters.
+ * The audio is checked against the reference tone (SNR after a least squares fit of the tone,
+ * so delay and gain of the filters do not matter), its level and its length. The minimum SNRs
+ * were measured with the current implementation minus a margin of ~6 dB: A faster but less
+ * accurate kernel (atan2, FIR, resampler) is fine as long as it stays above them.
+ * Additionally every stage must process the signal faster than real time.
+ */
+@RunWith(AndroidJUnit4::class)
+class DemodulationChainTest {
+
+    private val sampleRate = 2400000
+    private val centerFrequency = 100000000L
+    private val packetSamples = 16384
+    private val numPackets = 300                // ~2 s of signal
+    private val settleSamples = 12000           // 250 ms of audio are skipped (filters and AGC settle)
+
+    private class GoldenVector(
+        val mode: DemodulationMode,
+        val channelOffset: Int,                 // channel frequency relative to the center frequency
+        val signals: List<Signal>,
+        val expectedTone: Float,                // frequency of the audio tone in Hz
+        val minSnr: Float                       // in dB
+    )
+
+    private val vectors = listOf(
+        // AM: the demodulator outputs the squared envelope, its 2nd harmonic limits the SNR to ~18 dB at m=0.5
+        GoldenVector(DemodulationMode.AM, 300000, listOf(
+            Signal.Am(300000f, 0.3f, 1000f, 0.5f),
+            Signal.Tone(320000f, 0.3f),         // adjacent channel
+            Signal.Noise(0.01f)), 1000f, 12f),
+        GoldenVector(DemodulationMode.NFM, -200000, listOf(
+            Signal.Fm(-200000f, 0.3f, 1000f, 3000f),
+            Signal.Fm(-180000f, 0.3f, 700f, 3000f),
+            Signal.Noise(0.01f)), 1000f, 29f),
+        GoldenVector(DemodulationMode.WFM, 400000, listOf(
+            Signal.Fm(400000f, 0.3f, 1000f, 50000f),
+            Signal.Fm(-400000f, 0.3f, 700f, 50000f),
+            Signal.Noise(0.01f)), 1000f, 46f),
+        GoldenVector(DemodulationMode.USB, 100000, listOf(
+            Signal.Tone(101200f, 0.3f),
+            Signal.Tone(99300f, 0.3f),          // lower side band (would be a 700 Hz tone)
+            Signal.Noise(0.01f)), 1200f, 24f),
+        GoldenVector(DemodulationMode.LSB, 100000, listOf(
+            Signal.Tone(98800f, 0.3f),
+            Signal.Tone(100700f, 0.3f),         // upper side band (would be a 700 Hz tone)
+            Signal.Noise(0.01f)), 1200f, 24f),
+        GoldenVector(DemodulationMode.CW, -50000, listOf(
+            Signal.Tone(-50000f, 0.3f),         // carrier at the channel frequency -> CW_OFFSET_FREQUENCY tone
+            Signal.Tone(-48000f, 0.3f),
+            Signal.Noise(0.01f)), Demodulator.CW_OFFSET_FREQUENCY.toFloat(), 50f),
+    )
+
+    private class StageTimes {
+        var scheduler = 0L      // ns spent in each stage
+        var resampler = 0L
+        var demodulator = 0L
+        var audioFilter = 0L
+    }
+
+    /**
+     * Runs the vector through the chain (like Scheduler, Resampler, Demodulator and AudioSink do)
+     *
+     * @return audio samples at Demodulator.AUDIO_RATE
+     */
+    private fun runChain(vector: GoldenVector, times: StageTimes): FloatArray {
+        val format = Format.UNSIGNED_8BIT
+        val generator = SignalGenerator(sampleRate, vector.signals, seed = 1)
+        val converter = format.createConverter()
+        converter.setSampleRate(sampleRate)
+        converter.setFrequency(centerFrequency)
+        // the queues are not used (the thread of the demodulator is never started):
+        val demodulator = Demodulator(ArrayBlockingQueue(1), ArrayBlockingQueue(1), packetSamples)
+        demodulator.demodulationMode = vector.mode
+        val audioSink = AudioSink(packetSamples, Demodulator.AUDIO_RATE)
+        val quadratureRate = demodulator.quadratureRate
+        val decimationFilter = Scheduler.createDemodDecimationFilter(sampleRate, quadratureRate)
+        val channelFrequency = centerFrequency + vector.channelOffset
+        val mixFrequency = if (vector.mode == DemodulationMode.CW) channelFrequency - Demodulator.CW_OFFSET_FREQUENCY else channelFrequency
+        var resampler: ResamplerInterface? = null
+
+        val packet = ByteArray(packetSamples * format.bytesPerSample)
+        val mixedSamples = SamplePacket(packetSamples)
+        val channelSamples = SamplePacket(packetSamples)
+        val quadratureAudio = SamplePacket(packetSamples)
+        val audioSamples = SamplePacket(packetSamples)
+        val audio = FloatArray(numPackets * packetSamples / (sampleRate / Demodulator.AUDIO_RATE) + packetSamples)
+        var audioLength = 0
+
+        repeat(numPackets) {
+            generator.generate(packet, format)
+
+            var startTime = System.nanoTime()
+            mixedSamples.setSize(0)
+            if (decimationFilter != null)
+                converter.mixAndDecimatePacketIntoSamplePacket(packet, mixedSamples, mixFrequency, decimationFilter)
+            else
+                converter.mixPacketIntoSamplePacket(packet, mixedSamples, mixFrequency)
+            times.scheduler += System.nanoTime() - startTime
+
+            val currentResampler = resampler ?: Resampler.createResampler(mixedSamples.sampleRate, quadratureRate).also { resampler = it }
+            var offset = 0
+            while (offset < mixedSamples.size()) {
+                startTime = System.nanoTime()
+                channelSamples.setSize(0)
+                val consumed = currentResampler.resample(mixedSamples, channelSamples, offset, mixedSamples.size() - offset)
+                channelSamples.sampleRate = quadratureRate
+                times.resampler += System.nanoTime() - startTime
+                assertTrue("${vector.mode}: Resampler did not consume any samples", consumed > 0)
+                offset += consumed
+
+                startTime = System.nanoTime()
+                demodulator.demodulate(channelSamples, quadratureAudio)
+                times.demodulator += System.nanoTime() - startTime
+
+                startTime = System.nanoTime()
+                val output = if (quadratureAudio.sampleRate > Demodulator.AUDIO_RATE) {
+                    audioSink.applyAudioFilter(quadratureAudio, audioSamples)
+                    audioSamples
+                } else quadratureAudio
+                times.audioFilter += System.nanoTime() - startTime
+
+                System.arraycopy(output.re(), 0, audio, audioLength, output.size())
+                audioLength += output.size()
+            }
+        }
+        return audio.copyOf(audioLength)
+    }
+
+    /**
+     * @return SNR (in dB) of the tone in the audio: power of the least squares fit of the tone
+     *         relative to the power of the residual (noise, distortion, interferers)
+     */
+    private fun toneSnr(audio: FloatArray, frequency: Float): Double {
+        val n = audio.size
+        // fit a * cos + b * sin + c (over many periods the basis is nearly orthogonal):
+        var sumCos = 0.0
+        var sumSin = 0.0
+        val mean = audio.average()
+        for (i in 0 until n) {
+            val phase = 2 * PI * frequency * i / Demodulator.AUDIO_RATE
+            sumCos += (audio[i] - mean) * cos(phase)
+            sumSin += (audio[i] - mean) * sin(phase)
+        }
+        val a = 2 * sumCos / n
+        val b = 2 * sumSin / n
+        var residualPower = 0.0
+        for (i in 0 until n) {
+            val phase = 2 * PI * frequency * i / Demodulator.AUDIO_RATE
+            val residual = audio[i] - mean - a * cos(phase) - b * sin(phase)
+            residualPower += residual * residual
+        }
+        val tonePower = (a * a + b * b) / 2
+        return 10 * log10(tonePower / (residualPower / n))
+    }
+
+    @Test
+    fun testGoldenVectors() {
+        val signalTime = numPackets * packetSamples * 1_000_000_000.0 / sampleRate
+        for (vector in vectors) {
+            val times = StageTimes()
+            val audio = runChain(vector, times)
+
+            // length: all samples are converted to the audio rate
+            val expectedLength = numPackets.toLong() * packetSamples * Demodulator.AUDIO_RATE / sampleRate
+            assertTrue("${vector.mode}: ${audio.size} audio samples (expected $expectedLength)",
+                abs(audio.size - expectedLength) < expectedLength / 100)
+
+            // content: the reference tone with a minimum SNR at a sensible level
+            val settled = audio.copyOfRange(settleSamples, audio.size)
+            val snr = toneSnr(settled, vector.expectedTone)
+            val rms = sqrt(settled.sumOf { it.toDouble() * it } / settled.size)
+            val peak = settled.maxOf { abs(it) }
+            println("DemodulationChainTest: ${vector.mode}: SNR=${"%.1f".format(snr)} dB rms=${"%.3f".format(rms)} peak=${"%.3f".format(peak)} " +
+                    "real time factors: scheduler=${"%.1f".format(signalTime / times.scheduler)} " +
+                    "resampler=${"%.1f".format(signalTime / times.resampler)} " +
+                    "demodulator=${"%.1f".format(signalTime / times.demodulator)} " +
+                    "audioFilter=${"%.1f".format(signalTime / times.audioFilter)}")
+            assertTrue("${vector.mode}: SNR of the ${vector.expectedTone} Hz tone is $snr dB (min. ${vector.minSnr} dB)", snr >= vector.minSnr)
+            assertTrue("${vector.mode}: audio level too low (rms=$rms)", rms > 0.05)
+            assertTrue("${vector.mode}: audio is clipping (peak=$peak)", peak <= 1.0f)
+
+            // throughput: every stage must be faster than real time
+            for ((stage, time) in listOf("scheduler" to times.scheduler, "resampler" to times.resampler,
+                    "demodulator" to times.demodulator, "audioFilter" to times.audioFilter))
+                assertTrue("${vector.mode}: $stage is slower than real time (${time / 1e6} ms for ${signalTime / 1e6} ms of signal)", time < signalTime)
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.mantz_it.rfanalyzer
+
+import android.net.Uri
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.platform.app.InstrumentationRegistry
+import com.mantz_it.rfanalyzer.analyzer.OfflineProcessor
+import com.mantz_it.rfanalyzer.source.FileIQSource
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import com.mantz_it.rfanalyzer.ui.composable.DemodulationMode
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+import java.io.File
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+@RunWith(AndroidJUnit4::class)
+class OfflineProcessorTest {
+
+    private val sampleRate = 2000000
+    private val carrierOffset = 200000      // offset of the FM signal from the center frequency
+    private val toneFrequency = 1000.0
+
+    /**
+     * Writes 2 seconds of a WFM signal (1 kHz tone, 50 kHz deviation) as 8-bit signed IQ file.
+     * The file is 30.5 packets long (the last packet is shorter).
+     */
+    private fun createTestFile(): File {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        val file = File(context.cacheDir, "offline_processor_test.iq")
+        val numSamples = 2 * sampleRate
+        val bytes = ByteArray(2 * numSamples)
+        var phase = 0.0
+        for (i in 0 until numSamples) {
+            phase += 2 * PI * (carrierOffset + 50000 * sin(2 * PI * toneFrequency * i / sampleRate)) / sampleRate
+            bytes[2 * i] = (100 * cos(phase)).roundToInt().toByte()
+            bytes[2 * i + 1] = (100 * sin(phase)).roundToInt().toByte()
+        }
+        file.writeBytes(bytes)
+        return file
+    }
+
+    private class Result(val finished: Boolean, val processedSamples: Long, val spectrogramPeaks: List<Int>, val audio: FloatArray)
+
+    private fun process(file: File): Result {
+        val context = InstrumentationRegistry.getInstrumentation().targetContext
+        val source = FileIQSource()
+        source.init(Uri.fromFile(file), context.contentResolver, sampleRate, 100000000L, 1024 * 256, false, FileIQSource.FILE_FORMAT_8BIT_SIGNED)
+        val peaks = ArrayList<Int>()
+        val audio = ArrayList<Float>()
+        val config = OfflineProcessor.Config(
+            fftSize = 4096,
+            demodulationMode = DemodulationMode.WFM,
+            channelFrequency = 100000000L + carrierOffset
+        )
+        val processor = OfflineProcessor(source, config, object : OfflineProcessor.Listener {
+            override fun onSpectrogramRow(sampleIndex: Long, frequency: Long, sampleRate: Int, magnitudes: FloatArray) {
+                peaks.add(magnitudes.indices.maxBy { magnitudes[it] })
+            }
+            override fun onAudioSamples(sampleIndex: Long, samples: SamplePacket) {
+                for (i in 0 until samples.size()) audio.add(samples.re()[i])
+            }
+        })
+        val finished = processor.run(context)
+        return Result(finished, processor.processedSamples, peaks, audio.toFloatArray())
+    }
+
+    @Test
+    fun testOfflineWfmProcessing() {
+        val file = createTestFile()
+        val startTime = System.nanoTime()
+        val result = process(file)
+        val seconds = (System.nanoTime() - startTime) / 1e9
+        println("Processed 2 s of samples in $seconds s")
+        assertTrue("End of file not reached", result.finished)
+        assertEquals("Not all samples of the file were processed", 2L * sampleRate, result.processedSamples)
+
+        // one spectrogram row per packet (also for the shorter last one), the peak is within the deviation around the carrier:
+        assertTrue("Wrong number of spectrogram rows: ${result.spectrogramPeaks.size}", result.spectrogramPeaks.size == 31)
+        val carrierBin = 2048 + carrierOffset * 4096 / sampleRate
+        val deviationBins = 50000 * 4096 / sampleRate + 2
+        for (peak in result.spectrogramPeaks)
+            assertTrue("Spectrogram peak at wrong bin: $peak", abs(peak - carrierBin) <= deviationBins)
+
+        // audio at 48 kHz which contains the 1 kHz tone (count zero crossings after the filters settled):
+        assertTrue("Wrong number of audio samples: ${result.audio.size}", abs(result.audio.size - 2 * 48000) < 2000)
+        var zeroCrossings = 0
+        for (i in 24001 until result.audio.size)
+            if (result.audio[i - 1] < 0 && result.audio[i] >= 0) zeroCrossings++
+        val measuredTone = zeroCrossings * 48000.0 / (result.audio.size - 24000)
+        assertTrue("Wrong audio tone: $measuredTone Hz", abs(measuredTone - toneFrequency) < 10)
+
+        // nothing is dropped: a second run delivers exactly the same audio
+        val result2 = process(file)
+        assertTrue("Output differs between runs", result.audio.contentEquals(result2.audio))
+        file.delete()
+    }
+}
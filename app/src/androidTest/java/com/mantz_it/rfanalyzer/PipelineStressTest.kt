@@ -0,0 +1,120 @@
+package com.mantz_it.rfanalyzer
+
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import com.mantz_it.rfanalyzer.analyzer.Demodulator
+import com.mantz_it.rfanalyzer.analyzer.FftProcessor
+import com.mantz_it.rfanalyzer.analyzer.FftProcessorData
+import com.mantz_it.rfanalyzer.analyzer.Scheduler
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Format
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Signal
+import com.mantz_it.rfanalyzer.source.SyntheticIQSource
+import com.mantz_it.rfanalyzer.ui.composable.DemodulationMode
+import com.mantz_it.rfanalyzer.ui.composable.FftWaterfallSpeed
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * End-to-end stress test of the processing pipeline (Scheduler, FftProcessor, Demodulator) with
+ * the SyntheticIQSource in real time mode. For each combination of FFT size and demodulation
+ * mode the sample rate is raised until a stage load (PipelineMetrics) exceeds 1.0, the source
+ * drops packets or the demodulation chain discards samples. The highest sustainable sample rate of each combination is printed as
+ * table (see logcat / test output). Run with:
+ *   ./gradlew :app:connectedAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=com.mantz_it.rfanalyzer.PipelineStressTest
+ */
+@RunWith(AndroidJUnit4::class)
+class PipelineStressTest {
+
+    private val fftSizes = listOf(4096, 16384, 65536)
+    private val modes = listOf(DemodulationMode.OFF, DemodulationMode.AM, DemodulationMode.WFM, DemodulationMode.USB)
+    private val sampleRates = SyntheticIQSource.SUPPORTED_SAMPLE_RATES.filter { it >= 2000000 }
+    private val measurementTimeMs = 3000L
+    private val settleTimeMs = 1000L    // filter design and JIT warm up are not measured
+
+    private val signals = listOf(
+        Signal.Noise(0.02f),
+        Signal.Fm(200000f, 0.3f, 1000f, 50000f),
+        Signal.Am(-300000f, 0.2f, 800f, 0.8f),
+        Signal.Burst(Signal.Tone(500000f, 0.2f), 0.5f, 0.1f)
+    )
+
+    private class Measurement(val sustainable: Boolean, val loads: Map<String, Float>, val droppedPackets: Long, val chainDrops: Long)
+
+    /**
+     * Runs the pipeline for settleTimeMs + measurementTimeMs at the given configuration
+     */
+    private fun measure(fftSize: Int, mode: DemodulationMode, sampleRate: Int): Measurement {
+        val source = SyntheticIQSource(signals, Format.UNSIGNED_8BIT, sampleRate, realTime = true)
+        source.open(null, null)
+        val scheduler = Scheduler(fftSize, source)
+        val demodulator = Demodulator(scheduler.demodOutputQueue, scheduler.demodInputQueue, source.packetSize / source.bytesPerSample)
+        demodulator.audioVolumeLevel = 0f
+        demodulator.start()
+        if (mode != DemodulationMode.OFF) {
+            demodulator.demodulationMode = mode
+            scheduler.demodulationSampleRate = demodulator.quadratureRate
+            scheduler.isDemodulationActivated = true
+            scheduler.squelchSatisfied = true
+            scheduler.channelFrequency = source.frequency + if (mode == DemodulationMode.AM) -300000 else 200000
+        }
+        scheduler.start()
+        val fftProcessor = FftProcessor(
+            initialFftSize = fftSize,
+            inputQueue = scheduler.fftOutputQueue,
+            returnQueue = scheduler.fftInputQueue,
+            fftProcessorData = FftProcessorData(),
+            waterfallSpeed = FftWaterfallSpeed.FAST,
+            fftPeakHold = false,
+            getChannelFrequencyRange = { null },
+            onAverageSignalStrengthChanged = { }
+        )
+        fftProcessor.start()
+
+        Thread.sleep(settleTimeMs)
+        PipelineMetrics.reset()
+        val droppedBefore = source.droppedPackets
+        Thread.sleep(measurementTimeMs)
+        val loads = PipelineMetrics.stages.filter { it.processingTime.getCount() > 0 }.associate { it.name to it.getLoad() }
+        val dropped = source.droppedPackets - droppedBefore
+        // the FFT drop is expected (the FFT rate is limited), every other drop is not:
+        val chainDrops = PipelineMetrics.drops.filter { it !== PipelineMetrics.fftDrop }.sumOf { it.getPackets() }
+
+        fftProcessor.stopLoop()
+        scheduler.stopScheduler()
+        demodulator.stopDemodulator()
+        fftProcessor.join(2000)
+        scheduler.join(2000)
+        demodulator.join(2000)
+        source.close()
+        return Measurement(dropped == 0L && chainDrops == 0L && loads.values.all { it <= 1.0f }, loads, dropped, chainDrops)
+    }
+
+    @Test
+    fun testMaxSustainableSampleRate() {
+        val results = LinkedHashMap<Pair<Int, DemodulationMode>, Int>()
+        for (fftSize in fftSizes) {
+            for (mode in modes) {
+                var maxRate = 0
+                for (sampleRate in sampleRates) {
+                    val measurement = measure(fftSize, mode, sampleRate)
+                    println("PipelineStressTest: fftSize=$fftSize mode=$mode sampleRate=$sampleRate " +
+                            "dropped=${measurement.droppedPackets} chainDrops=${measurement.chainDrops} loads=${measurement.loads}")
+                    if (!measurement.sustainable)
+                        break
+                    maxRate = sampleRate
+                }
+                results[Pair(fftSize, mode)] = maxRate
+            }
+        }
+
+        println("PipelineStressTest: max. sustainable sample rate (Msps)")
+        println("PipelineStressTest: fftSize " + modes.joinToString("") { it.name.padStart(8) })
+        for (fftSize in fftSizes)
+            println("PipelineStressTest: " + fftSize.toString().padStart(7) + " " +
+                    modes.joinToString("") { "%8.1f".format(results[Pair(fftSize, it)]!! / 1e6) })
+
+        // every device must at least handle the lowest rate with the smallest FFT:
+        assertTrue("Pipeline can not sustain ${sampleRates.first()} Sps", results[Pair(fftSizes.first(), DemodulationMode.OFF)]!! > 0)
+    }
+}
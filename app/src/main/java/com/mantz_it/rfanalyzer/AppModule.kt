@@ -58,7 +58,7 @@ object AppModule {
             context,
             AppDatabase::class.java,
             "recordings_db"
-        ).build()
+        ).addMigrations(AppDatabase.MIGRATION_1_2).build()
     }
 
     @Provides
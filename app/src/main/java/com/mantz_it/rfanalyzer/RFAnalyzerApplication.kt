@@ -3,6 +3,8 @@ package com.mantz_it.rfanalyzer
 import android.app.Application
 import android.app.NotificationChannel
 import android.app.NotificationManager
+import android.util.Log
+import com.mantz_it.rfanalyzer.dsp.Log as DspLog
 import dagger.hilt.android.HiltAndroidApp
 
 /**
@@ -36,6 +38,8 @@ import dagger.hilt.android.HiltAndroidApp
 class RFAnalyzerApplication : Application() {
     override fun onCreate() {
         super.onCreate()
+        // The DSP core module (dspcore) is plain JVM code and logs through its own facade:
+        DspLog.logger = DspLog.Logger { priority, tag, message -> Log.println(priority, tag, message) }
         createNotificationChannel()
     }
 
@@ -19,6 +19,7 @@ import com.mantz_it.rfanalyzer.R
 import com.mantz_it.rfanalyzer.source.RtlsdrSource
 import com.mantz_it.rfanalyzer.ui.RECORDINGS_DIRECTORY
 import com.mantz_it.rfanalyzer.ui.composable.DemodulationMode
+import com.mantz_it.rfanalyzer.ui.composable.RecordingTarget
 import com.mantz_it.rfanalyzer.ui.composable.SourceType
 import com.mantz_it.rfanalyzer.ui.composable.StopAfterUnit
 import kotlinx.coroutines.CoroutineScope
@@ -27,12 +28,14 @@ import kotlinx.coroutines.Job
 import kotlinx.coroutines.cancel
 import kotlinx.coroutines.launch
 import kotlinx.coroutines.delay
-import java.io.BufferedOutputStream
 import java.io.File
 import java.io.FileOutputStream
 import androidx.core.net.toUri
 import com.mantz_it.rfanalyzer.database.AppStateRepository
 import com.mantz_it.rfanalyzer.database.GlobalPerformanceData
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.database.PipelineTracer
+import com.mantz_it.rfanalyzer.dsp.Squelch
 import com.mantz_it.rfanalyzer.database.collectAppState
 import com.mantz_it.rfanalyzer.source.AirspySource
 import com.mantz_it.rfanalyzer.source.HydraSdrSource
@@ -40,6 +43,7 @@ import com.mantz_it.rfanalyzer.ui.MainActivity
 import com.mantz_it.rfanalyzer.ui.composable.FilesourceFileFormat
 import dagger.hilt.android.AndroidEntryPoint
 import javax.inject.Inject
+import kotlin.concurrent.thread
 import kotlin.math.abs
 
 /**
@@ -74,6 +78,7 @@ class AnalyzerService : Service() {
     private val serviceScope = CoroutineScope(Dispatchers.Main + Job()) // Coroutine scope for observing the App State
     private val binder = LocalBinder()
     private var isBound = false
+    private val loadGovernor = LoadGovernor()
 
     var source: IQSourceInterface? = null
         private set
@@ -83,6 +88,8 @@ class AnalyzerService : Service() {
         private set
     var fftProcessor: FftProcessor? = null
         private set
+    private var recordingSession: RecordingSession? = null  // current (or last) recording. Fed by the scheduler, the demodulator or the audio recorder
+    private var audioRecorder: AudioRecorder? = null        // current (or last) audio recording
 
     inner class LocalBinder : Binder() {
         fun getService(): AnalyzerService = this@AnalyzerService
@@ -113,16 +120,19 @@ class AnalyzerService : Service() {
     override fun onBind(intent: Intent?): IBinder {
         Log.d(TAG, "onBind: Service is bound.")
         isBound = true
+        updateBackgroundMode()
         return binder
     }
 
     override fun onRebind(intent: Intent?) {
         Log.d(TAG, "onRebind: Service is bound.")
         isBound = true
+        updateBackgroundMode()
     }
 
     override fun onUnbind(intent: Intent?): Boolean {
         isBound = false
+        updateBackgroundMode()
         if(appStateRepository.analyzerRunning.value) {
             Log.d(TAG, "onUnbind: Service is unbound. Keep running in the background")
             return true // don't terminate the service if the analyzer is still running
@@ -249,6 +259,14 @@ class AnalyzerService : Service() {
         appStateRepository.analyzerRunning.set(false)
         appStateRepository.analyzerStartPending.set(false)
         GlobalPerformanceData.reset()
+        PipelineMetrics.reset()
+        loadGovernor.reset()
+        appStateRepository.loadGovernorLevel.set(LoadGovernor.Level.FULL)
+        if (PipelineTracer.isEnabled) {
+            PipelineTracer.stop()
+            val traceDirectory = File(filesDir, PipelineTracer.TRACE_DIRECTORY)
+            thread(name = "Thread-TraceWriter") { PipelineTracer.writeChromeTraceFile(traceDirectory) }
+        }
 
         stopForegroundService()
     }
@@ -312,16 +330,23 @@ class AnalyzerService : Service() {
             appStateRepository.rtlsdrIFGainIndex.set(currentIFGainIndex.coerceAtMost(ifGainIndexList.size - 1))
         }
 
+        if (appStateRepository.pipelineTracing.value)
+            PipelineTracer.start()
+
         // Create a new instance of Scheduler
-        scheduler = Scheduler(appStateRepository.fftSize.value, source!!)
+        scheduler = Scheduler(appStateRepository.effectiveFftSize.value, source!!)
+        scheduler!!.lowLatency = appStateRepository.lowLatencyAudio.value
 
         // Start the demodulator thread:
         demodulator = Demodulator(
             scheduler!!.demodOutputQueue,
             scheduler!!.demodInputQueue,
-            source!!.packetSize / source!!.bytesPerSample
+            source!!.packetSize / source!!.bytesPerSample,
+            appStateRepository.lowLatencyAudio.value
         )
         demodulator!!.audioVolumeLevel = appStateRepository.effectiveAudioVolumeLevel.value
+        demodulator!!.onChannelPowerMeasured = { appStateRepository.averageSignalStrength.set(channelPowerToSignalStrength(it)) }
+        demodulator!!.onSquelchStateChanged = appStateRepository.channelSquelchOpen::set
         demodulator!!.start()
 
         applyNewDemodulationMode(appStateRepository.demodulationMode.value)
@@ -330,7 +355,7 @@ class AnalyzerService : Service() {
         scheduler!!.start()
 
         fftProcessor = FftProcessor(
-            initialFftSize = appStateRepository.fftSize.value,
+            initialFftSize = appStateRepository.effectiveFftSize.value,
             inputQueue = scheduler!!.fftOutputQueue,  // Reference to the input queue for the processing loop
             returnQueue = scheduler!!.fftInputQueue,  // Reference to the buffer-pool-return queue
             fftProcessorData = appStateRepository.fftProcessorData,
@@ -382,15 +407,98 @@ class AnalyzerService : Service() {
                     stopAnalyzer()
                 }
 
+                updateLoadGovernor()
+                updateBackgroundMode()
+
                 appStateRepository.appUsageTimeInSeconds.set(appStateRepository.appUsageTimeInSeconds.value + 1)  // increase app usage timer
+
+                // update the playback position of the file source:
+                (source as? FileIQSource)?.let {
+                    appStateRepository.filesourcePlaybackPosition.set(it.playbackPosition)
+                    appStateRepository.filesourceLength.set(it.length)
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds the current loads and drops of the audio path into the load governor and applies the
+     * new quality level if it changed. The FFT stage is not part of the evaluation: its load is
+     * allowed to exceed 1 (the Scheduler simply skips FFT frames), only the audio path must keep up.
+     */
+    private fun updateLoadGovernor() {
+        if (!appStateRepository.loadGovernorEnabled.value) {
+            if (loadGovernor.level != LoadGovernor.Level.FULL) {
+                loadGovernor.reset()
+                applyLoadGovernorLevel(LoadGovernor.Level.FULL)
             }
+            return
         }
+        val maxLoad = maxOf(PipelineMetrics.scheduler.getLoad(), PipelineMetrics.resampler.getLoad(),
+            PipelineMetrics.demodulator.getLoad(), PipelineMetrics.audio.getLoad())
+        val drops = PipelineMetrics.drops.filter { it !== PipelineMetrics.fftDrop && it !== PipelineMetrics.recordingDrop }.sumOf { it.getPackets() }
+        if (loadGovernor.update(maxLoad, drops))
+            applyLoadGovernorLevel(loadGovernor.level)
+    }
+
+    private fun applyLoadGovernorLevel(level: LoadGovernor.Level) {
+        Log.i(TAG, "applyLoadGovernorLevel: ${level.displayName}")
+        // FFT size and averaging follow through the effective* states of the repository:
+        appStateRepository.loadGovernorLevel.set(level)
+        scheduler?.maxFftRate = if (level >= LoadGovernor.Level.FFT_RATE) LoadGovernor.REDUCED_FFT_RATE else 0
+        fftProcessor?.waterfallResolutionDivider =
+            if (level >= LoadGovernor.Level.WATERFALL_RESOLUTION) LoadGovernor.WATERFALL_RESOLUTION_DIVIDER else 1
+        scheduler?.reducedFilterQuality = level >= LoadGovernor.Level.FILTER_QUALITY
+        demodulator?.reducedFilterQuality = level >= LoadGovernor.Level.FILTER_QUALITY
+    }
+
+    /**
+     * Switches the Scheduler and the Demodulator into background mode if no activity is bound:
+     * The FFT is suspended and the Demodulator reports the channel power instead.
+     * The FFT keeps running if it is needed for squelch gated recording without demodulation.
+     */
+    private fun updateBackgroundMode() {
+        val scheduler = scheduler ?: return
+        val demodulator = demodulator ?: return
+        val fftNeededForSquelch = appStateRepository.demodulationMode.value == DemodulationMode.OFF &&
+                appStateRepository.recordingRunning.value && appStateRepository.recordOnlyWhenSquelchIsSatisfied.value
+        val backgroundMode = !isBound && !fftNeededForSquelch
+        if (scheduler.backgroundMode == backgroundMode)
+            return
+        Log.i(TAG, "updateBackgroundMode: ${if (backgroundMode) "Suspend" else "Resume"} FFT processing")
+        scheduler.backgroundMode = backgroundMode
+        demodulator.backgroundMode = backgroundMode
+    }
+
+    /**
+     * Converts the power of the channel samples (measured by the Demodulator in background mode)
+     * to the scale of averageSignalStrength (mean of the FFT bins within the channel, see FftProcessor)
+     */
+    private fun channelPowerToSignalStrength(power: Float): Float =
+        Squelch.powerToSignalStrength(power, source?.sampleRate ?: 0, appStateRepository.effectiveFftSize.value, 2 * (demodulator?.channelWidth ?: 0))
+
+    /**
+     * Converts the squelch level (scale of the FFT plot) into the threshold of the time domain
+     * squelch in the Demodulator. Must be called whenever the squelch, the channel width, the FFT
+     * size or the sample rate changes.
+     */
+    private fun updateSquelchThreshold() {
+        val demodulator = demodulator ?: return
+        demodulator.squelchThreshold = if (appStateRepository.squelchEnabled.value)
+            Squelch.signalStrengthToPower(appStateRepository.squelch.value, source?.sampleRate ?: 0,
+                appStateRepository.effectiveFftSize.value, 2 * demodulator.channelWidth)
+        else
+            0f
     }
 
     private fun applyNewDemodulationMode(newDemodulationMode: DemodulationMode): Boolean {
         if(demodulator == null || source == null || scheduler == null)
             return false
 
+        // a channel recording can't continue with another quadrature rate (the demodulator closes it):
+        if (recordingSession != null && demodulator!!.recordingSession === recordingSession && newDemodulationMode != demodulator!!.demodulationMode)
+            stopRecording()
+
         // (de-)activate demodulation in the scheduler and set the sample rate accordingly:
         if (newDemodulationMode == DemodulationMode.OFF) {
             Log.d(TAG, "applyNewDemodulationMode: De-activating demodulation")
@@ -401,9 +509,11 @@ class AnalyzerService : Service() {
 
         Log.d(TAG, "applyNewDemodulationMode: Switching to demodulation mode ${newDemodulationMode.displayName}")
         demodulator!!.demodulationMode = newDemodulationMode
+        scheduler!!.demodulationSampleRate = demodulator!!.quadratureRate
         scheduler!!.isDemodulationActivated = true
         demodulator!!.channelWidth = appStateRepository.channelWidth.value
         scheduler!!.squelchSatisfied = appStateRepository.squelchSatisfied.value
+        updateSquelchThreshold()
         scheduler!!.channelFrequency = if(newDemodulationMode == DemodulationMode.CW)
                 Demodulator.CW_OFFSET_FREQUENCY - appStateRepository.channelFrequency.value
             else
@@ -434,15 +544,18 @@ class AnalyzerService : Service() {
             }
             SourceType.RTLSDR -> {
                 // Create RtlsdrSource
+                val packetSize = if (appStateRepository.lowLatencyAudio.value) RtlsdrSource.LOW_LATENCY_PACKET_SIZE else RtlsdrSource.PACKET_SIZE
                 val rtlsdrSource = if(appStateRepository.rtlsdrExternalServerEnabled.value) {
                     RtlsdrSource(
                         appStateRepository.rtlsdrExternalServerIP.value,
-                        appStateRepository.rtlsdrExternalServerPort.value
+                        appStateRepository.rtlsdrExternalServerPort.value,
+                        packetSize
                     )
                 } else
                     RtlsdrSource(
                         "127.0.0.1",
-                        1234
+                        1234,
+                        packetSize
                     )
                 rtlsdrSource.setAllowOutOfBoundFrequency(appStateRepository.rtlsdrAllowOutOfBoundFrequency.value || appStateRepository.rtlsdrBlogV4connected.value)
                 rtlsdrSource.setFrequency(appStateRepository.sourceFrequency.value)
@@ -510,7 +623,7 @@ class AnalyzerService : Service() {
                     this.contentResolver,
                     appStateRepository.sourceSampleRate.value.toInt(),
                     appStateRepository.sourceFrequency.value,
-                    1024*256,
+                    if (appStateRepository.lowLatencyAudio.value) 1024*16 else 1024*256,
                     appStateRepository.filesourceRepeatEnabled.value,
                     when(appStateRepository.filesourceFileFormat.value) {
                         FilesourceFileFormat.HACKRF -> FileIQSource.FILE_FORMAT_8BIT_SIGNED
@@ -519,6 +632,10 @@ class AnalyzerService : Service() {
                         FilesourceFileFormat.HYDRASDR -> FileIQSource.FILE_FORMAT_16BIT_SIGNED
                     }
                 )
+                (source as FileIQSource).playbackSpeed = appStateRepository.filesourcePlaybackSpeed.value.factor
+                appStateRepository.filesourcePaused.set(false)
+                appStateRepository.filesourcePlaybackPosition.set(0L)
+                appStateRepository.filesourceLength.set(-1L)
                 return source?.open(this, iqSourceActions) == true
             } else {
                 Log.e(TAG,"openSource: sourceType is FILE_SOURCE, but source is null or of other type.")
@@ -563,9 +680,20 @@ class AnalyzerService : Service() {
         val recordingStartedTimestamp = System.currentTimeMillis()
         val filename = "ongoing_recording.iq"
         val filepath = "$RECORDINGS_DIRECTORY/$filename"
-        Log.i(TAG, "startRecording: Opening file $filepath")
+        val source = source
+        val scheduler = scheduler
+        val demodulator = demodulator
+        if (source == null || scheduler == null || demodulator == null) {
+            Log.w(TAG, "startRecording: source, scheduler or demodulator is null. do nothing..")
+            return
+        }
+        val recordingTarget = appStateRepository.recordingTarget.value
+        if (recordingTarget != RecordingTarget.RAW && demodulator.demodulationMode == DemodulationMode.OFF) {
+            Log.w(TAG, "startRecording: Channel and audio recording need an active demodulation. do nothing..")
+            return
+        }
+        Log.i(TAG, "startRecording: Opening file $filepath (target: ${recordingTarget.displayName})")
         val file = File(this.filesDir, filepath)
-        val bufferedOutputStream = BufferedOutputStream(FileOutputStream(file))
         var maxRecordingTimeMilliseconds: Long? = null
         var maxRecordingFileSizeBytes: Long? = null
         when(appStateRepository.recordingstopAfterUnit.value) {
@@ -575,21 +703,94 @@ class AnalyzerService : Service() {
             StopAfterUnit.SEC -> maxRecordingTimeMilliseconds = appStateRepository.recordingStopAfterThreshold.value*1000L
             StopAfterUnit.MIN -> maxRecordingTimeMilliseconds = appStateRepository.recordingStopAfterThreshold.value*1000L*60L
         }
-        scheduler?.startRecording(
-            bufferedOutputStream = bufferedOutputStream,
-            onlyWhenSquelchIsSatisfied = appStateRepository.recordOnlyWhenSquelchIsSatisfied.value,
+        // Raw recordings store the samples of the source. Channel recordings store the output of the
+        // channel filter at the quadrature rate as 16-bit signed IQ (same format as Airspy/HydraSDR).
+        // Audio recordings store the demodulated audio (WAV or AAC, the fileFormat is the one of the source):
+        val sourceFileFormat = when(appStateRepository.sourceType.value) {
+            SourceType.HACKRF -> FilesourceFileFormat.HACKRF
+            SourceType.RTLSDR -> FilesourceFileFormat.RTLSDR
+            SourceType.AIRSPY -> FilesourceFileFormat.AIRSPY
+            SourceType.HYDRASDR -> FilesourceFileFormat.HYDRASDR
+            SourceType.FILESOURCE -> appStateRepository.filesourceFileFormat.value
+        }
+        // (the CW channel is shifted by CW_OFFSET_FREQUENCY, see applyNewDemodulationMode)
+        val channelFrequency = appStateRepository.channelFrequency.value -
+                (if (demodulator.demodulationMode == DemodulationMode.CW) Demodulator.CW_OFFSET_FREQUENCY else 0)
+        val audioFormat = if (recordingTarget == RecordingTarget.AUDIO) appStateRepository.recordingAudioFormat.value else null
+        val frequency: Long
+        val sampleRate: Int
+        val fileFormat: FilesourceFileFormat
+        when (recordingTarget) {
+            RecordingTarget.RAW -> {
+                frequency = source.frequency
+                sampleRate = source.sampleRate
+                fileFormat = sourceFileFormat
+            }
+            RecordingTarget.CHANNEL -> {
+                frequency = channelFrequency
+                sampleRate = demodulator.quadratureRate
+                fileFormat = FilesourceFileFormat.AIRSPY
+            }
+            RecordingTarget.AUDIO -> {
+                frequency = channelFrequency
+                sampleRate = Demodulator.AUDIO_RATE
+                fileFormat = sourceFileFormat
+            }
+        }
+        val fileChannel = FileOutputStream(file).channel
+        val recordingWriter = if (audioFormat != null) {
+            AudioRecorder.createRecordingWriter(fileChannel, audioFormat, sampleRate)
+        } else {
+            // (the ring of the writer must hold the whole pre-roll, it is written in one burst when the squelch opens)
+            val preRoll = if (appStateRepository.recordOnlyWhenSquelchIsSatisfied.value) appStateRepository.recordingPreRoll.value else 0f
+            RecordingWriter(fileChannel, sampleRate, fileFormat.bytesPerSample, preRoll)
+        }
+        val recordingSession = RecordingSession(
+            recordingWriter = recordingWriter,
+            // (the demodulator doesn't output audio while the squelch is closed)
+            onlyWhenSquelchIsSatisfied = audioFormat == null && appStateRepository.recordOnlyWhenSquelchIsSatisfied.value,
+            preRoll = appStateRepository.recordingPreRoll.value,
+            postRoll = appStateRepository.recordingPostRoll.value,
             maxRecordingTime = maxRecordingTimeMilliseconds,
             maxRecordingFileSize = maxRecordingFileSizeBytes,
-            onRecordingStopped = { finalSize -> appStateRepository.emitAnalyzerEvent(AppStateRepository.AnalyzerEvent.RecordingFinished(finalSize, file)) },
+            onRecordingStopped = { finalSize -> appStateRepository.emitAnalyzerEvent(
+                AppStateRepository.AnalyzerEvent.RecordingFinished(finalSize, file, frequency, sampleRate.toLong(), fileFormat, audioFormat)) },
             onFileSizeUpdate = appStateRepository.recordingCurrentFileSize::set
         )
+        this.recordingSession = recordingSession
+        this.audioRecorder = null
+        when (recordingTarget) {
+            RecordingTarget.RAW -> scheduler.recordingSession = recordingSession
+            RecordingTarget.CHANNEL -> demodulator.recordingSession = recordingSession
+            RecordingTarget.AUDIO -> {
+                val audioRecorder = AudioRecorder(recordingSession, audioFormat!!, sampleRate, demodulator.audioPacketSize)
+                audioRecorder.start()
+                this.audioRecorder = audioRecorder
+                demodulator.audioRecorder = audioRecorder
+            }
+        }
         // update ui
         appStateRepository.recordingStartedTimestamp.set(recordingStartedTimestamp)
         appStateRepository.recordingRunning.set(true)
     }
 
     fun stopRecording() {
-        scheduler?.stopRecording()
+        // the audio recorder flushes the encoder before it closes the session:
+        val audioRecorder = audioRecorder
+        if (audioRecorder != null)
+            audioRecorder.stopRecorder()
+        else
+            recordingSession?.stop()
+    }
+
+    /**
+     * Continues the playback of the file source at the given sample (no effect for other sources)
+     */
+    fun seekFileSource(sampleIndex: Long) {
+        (source as? FileIQSource)?.let {
+            it.seek(sampleIndex)
+            appStateRepository.filesourcePlaybackPosition.set(it.playbackPosition)
+        }
     }
 
     private fun handleAppStateChanges() {
@@ -598,7 +799,10 @@ class AnalyzerService : Service() {
 
         // source tab
         s.collectAppState(asr.sourceFrequency) { source?.frequency = it }
-        s.collectAppState(asr.sourceSampleRate) { source?.sampleRate = it.toInt() }
+        s.collectAppState(asr.sourceSampleRate) {
+            source?.sampleRate = it.toInt()
+            updateSquelchThreshold()
+        }
         s.collectAppState(asr.hackrfVgaGainIndex) { (source as? HackrfSource)?.vgaRxGain = asr.hackrfVgaGainSteps[it] }
         s.collectAppState(asr.hackrfLnaGainIndex) { (source as? HackrfSource)?.lnaGain = asr.hackrfLnaGainSteps[it] }
         s.collectAppState(asr.hackrfAmplifierEnabled) { (source as? HackrfSource)?.setAmplifier(it) }
@@ -637,17 +841,27 @@ class AnalyzerService : Service() {
         s.collectAppState(asr.hydraSdrConverterOffset) { (source as? HydraSdrSource)?.frequencyOffset = it.toInt() }
         s.collectAppState(asr.filesourceFileFormat) { (source as? FileIQSource)?.fileFormat = it.ordinal }
         s.collectAppState(asr.filesourceRepeatEnabled) { (source as? FileIQSource)?.isRepeat = it }
+        s.collectAppState(asr.filesourcePlaybackSpeed) { (source as? FileIQSource)?.playbackSpeed = it.factor }
+        s.collectAppState(asr.filesourcePaused) { (source as? FileIQSource)?.isPaused = it }
 
         // view tab
-        s.collectAppState(asr.fftSize) { scheduler?.fftSize = it }
+        s.collectAppState(asr.effectiveFftSize) {
+            scheduler?.fftSize = it
+            updateSquelchThreshold()
+        }
         s.collectAppState(asr.waterfallSpeed) { fftProcessor?.waterfallSpeed = it }
         s.collectAppState(asr.fftPeakHold) { fftProcessor?.fftPeakHold = it }
 
         // demodulation tab
         s.collectAppState(asr.demodulationMode) { applyNewDemodulationMode(it) }
         s.collectAppState(asr.channelFrequency) { scheduler?.channelFrequency = if(asr.demodulationMode.value == DemodulationMode.CW) it - Demodulator.CW_OFFSET_FREQUENCY else it }
-        s.collectAppState(asr.channelWidth) { demodulator?.channelWidth = it }
+        s.collectAppState(asr.channelWidth) {
+            demodulator?.channelWidth = it
+            updateSquelchThreshold()
+        }
         s.collectAppState(asr.squelchSatisfied) { scheduler?.squelchSatisfied = it }
+        s.collectAppState(asr.squelch) { updateSquelchThreshold() }
+        s.collectAppState(asr.squelchEnabled) { updateSquelchThreshold() }
         s.collectAppState(asr.effectiveAudioVolumeLevel) { demodulator?.audioVolumeLevel = it }
 
         // settings tab
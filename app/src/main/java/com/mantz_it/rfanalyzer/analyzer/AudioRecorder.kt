@@ -0,0 +1,283 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import android.media.MediaCodec
+import android.media.MediaCodecInfo
+import android.media.MediaFormat
+import android.util.Log
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.ui.composable.AudioRecordingFormat
+import java.nio.channels.FileChannel
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * <h1>RF Analyzer - Audio Recorder</h1>
+ *
+ * Module:      AudioRecorder.kt
+ * Description: Records the demodulated audio (mono, float samples at the audio rate) which the
+ * AudioSink taps after its audio filter. The AudioSink copies the samples into a ring of
+ * preallocated buffers (free queue -> full queue -> recorder thread -> free queue). write()
+ * never blocks the audio path: if the recorder falls behind, the samples are dropped and
+ * counted in PipelineMetrics.recordingDrop.
+ * The recorder thread converts the samples to 16-bit PCM and either writes them into the
+ * RecordingSession directly (WAV, the RecordingWriter adds the header) or feeds them to the
+ * AAC encoder of the platform (MediaCodec) and writes the encoded frames with an ADTS header
+ * (.aac stream). The recorder thread is the producer of the RecordingSession.
+ * stopRecorder() lets the thread record the remaining buffers, flush the encoder and close
+ * the session.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class AudioRecorder(
+    private val recordingSession: RecordingSession,
+    private val format: AudioRecordingFormat,
+    private val sampleRate: Int,                    // audio rate
+    packetSize: Int                                 // maximum number of samples per write()
+) : Thread() {
+    companion object {
+        const val MAX_BACKLOG_TIME = 2f             // seconds of audio which can wait for the recorder thread
+        private const val BYTES_PER_SAMPLE = AudioRecordingFormat.BYTES_PER_SAMPLE
+        private const val MIN_BUFFER_COUNT = 4
+        private const val MAX_BUFFER_COUNT = 64
+        private const val CODEC_TIMEOUT_US = 10_000L        // timeout of a single dequeue from the encoder
+        private const val CODEC_INPUT_TIMEOUT = 200_000_000L    // ns to wait for free input buffers of the encoder (then the chunk is dropped)
+        private const val CODEC_FLUSH_TIMEOUT = 1_000_000_000L  // ns to wait for the end of stream of the encoder
+        private const val LOGTAG = "AudioRecorder"
+
+        /**
+         * Creates the RecordingWriter for the format (WAV: with header, AAC: ADTS stream)
+         */
+        fun createRecordingWriter(channel: FileChannel, format: AudioRecordingFormat, sampleRate: Int): RecordingWriter {
+            return when (format) {
+                AudioRecordingFormat.WAV -> RecordingWriter(channel, sampleRate, BYTES_PER_SAMPLE, fileHeader = WavFileHeader(sampleRate, 1, BYTES_PER_SAMPLE * 8))
+                AudioRecordingFormat.AAC -> RecordingWriter(channel, format.bitRate / 8, 1)   // (byte rate of the encoded stream)
+            }
+        }
+    }
+
+    private class Chunk(size: Int) {
+        val samples = FloatArray(size)
+        var size = 0
+    }
+
+    private val bufferCount = (sampleRate * MAX_BACKLOG_TIME / packetSize).toInt().coerceIn(MIN_BUFFER_COUNT, MAX_BUFFER_COUNT)
+    private val freeQueue = ArrayBlockingQueue<Chunk>(bufferCount)
+    private val fullQueue = ArrayBlockingQueue<Chunk>(bufferCount)
+    private val pcmBytes = ByteArray(packetSize * BYTES_PER_SAMPLE)
+
+    // AAC encoder (only used for AudioRecordingFormat.AAC):
+    private var codec: MediaCodec? = null
+    private val bufferInfo = MediaCodec.BufferInfo()
+    private var encodedSamples = 0L                 // number of samples queued into the encoder (presentation time)
+    private var adtsFrame = ByteArray(AdtsHeader.SIZE + 2048)
+
+    @Volatile
+    private var stopRequested = false
+
+    init {
+        for (i in 0 until bufferCount)
+            freeQueue.offer(Chunk(packetSize))
+        Log.i(LOGTAG, "init: format=$format sampleRate=$sampleRate ($bufferCount buffers of $packetSize samples)")
+    }
+
+    /**
+     * Stops recording. The thread records the samples which are already queued, flushes the
+     * encoder and closes the recording session.
+     */
+    fun stopRecorder() {
+        stopRequested = true
+    }
+
+    /**
+     * Copies the audio samples into the queue of the recorder thread. Does not block. If no
+     * buffer is free, the samples are dropped. Called by the AudioSink.
+     *
+     * @param samples   audio samples (mono, -1..1)
+     * @param count     number of samples (at most packetSize)
+     */
+    fun write(samples: FloatArray, count: Int) {
+        if (stopRequested)
+            return
+        val chunk = freeQueue.poll()
+        if (chunk == null) {
+            PipelineMetrics.recordingDrop.record(count)
+            return
+        }
+        chunk.size = minOf(count, chunk.samples.size)
+        System.arraycopy(samples, 0, chunk.samples, 0, chunk.size)
+        fullQueue.offer(chunk)  // never full: it has room for all chunks
+    }
+
+    override fun run() {
+        this.name = "Thread-AudioRecorder-" + System.currentTimeMillis()
+        Log.i(LOGTAG, "AudioRecorder started. (Thread: " + this.name + ")")
+        if (format == AudioRecordingFormat.AAC && !startEncoder()) {
+            stopRequested = true
+            recordingSession.close()
+            return
+        }
+
+        while (!recordingSession.isFinished) {
+            val chunk = fullQueue.poll(100, TimeUnit.MILLISECONDS)
+            if (chunk == null) {
+                if (stopRequested)
+                    break
+                recordingSession.update()   // (stop conditions while no audio arrives, e.g. squelch is closed)
+                continue
+            }
+            val length = convertToPcm16(chunk.samples, chunk.size)
+            freeQueue.offer(chunk)
+            when (format) {
+                AudioRecordingFormat.WAV -> recordingSession.write(pcmBytes, 0, length, true, System.nanoTime())
+                AudioRecordingFormat.AAC -> encode(length)
+            }
+        }
+
+        stopRequested = true    // (also if a stop condition of the session was met: write() ignores further samples)
+        if (format == AudioRecordingFormat.AAC)
+            stopEncoder(flush = !recordingSession.isFinished)
+        recordingSession.close()
+        Log.i(LOGTAG, "AudioRecorder stopped. (Thread: " + this.name + ")")
+    }
+
+    /**
+     * Converts the float samples into 16-bit signed little endian PCM (pcmBytes)
+     *
+     * @return number of bytes
+     */
+    private fun convertToPcm16(samples: FloatArray, count: Int): Int {
+        for (i in 0 until count) {
+            val value = (samples[i] * 32767f).toInt().coerceIn(-32768, 32767)
+            pcmBytes[2 * i] = value.toByte()
+            pcmBytes[2 * i + 1] = (value shr 8).toByte()
+        }
+        return count * BYTES_PER_SAMPLE
+    }
+
+    private fun startEncoder(): Boolean {
+        return try {
+            val mediaFormat = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, 1)
+            mediaFormat.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC)
+            mediaFormat.setInteger(MediaFormat.KEY_BIT_RATE, format.bitRate)
+            mediaFormat.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, pcmBytes.size)
+            AdtsHeader.samplingFrequencyIndex(sampleRate)   // (throws if AAC doesn't support the rate)
+            codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC).apply {
+                configure(mediaFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE)
+                start()
+            }
+            true
+        } catch (e: Exception) {
+            Log.e(LOGTAG, "startEncoder: Can't create AAC encoder: ${e.message}")
+            false
+        }
+    }
+
+    /**
+     * Queues the PCM samples (pcmBytes) into the encoder and writes all available output frames.
+     * If the encoder doesn't provide input buffers within CODEC_INPUT_TIMEOUT (or the recorder
+     * is stopped meanwhile), the rest of the samples is dropped and counted in
+     * PipelineMetrics.recordingDrop.
+     */
+    private fun encode(length: Int) {
+        val codec = codec ?: return
+        val deadline = System.nanoTime() + CODEC_INPUT_TIMEOUT
+        var position = 0
+        while (position < length) {
+            val index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US)
+            if (index < 0 && (stopRequested || System.nanoTime() > deadline)) {
+                PipelineMetrics.recordingDrop.record((length - position) / BYTES_PER_SAMPLE)
+                return
+            }
+            if (index >= 0) {
+                val inputBuffer = codec.getInputBuffer(index)!!
+                inputBuffer.clear()
+                val count = minOf(length - position, inputBuffer.remaining()) / BYTES_PER_SAMPLE * BYTES_PER_SAMPLE
+                inputBuffer.put(pcmBytes, position, count)
+                codec.queueInputBuffer(index, 0, count, encodedSamples * 1_000_000L / sampleRate, 0)
+                encodedSamples += count / BYTES_PER_SAMPLE
+                position += count
+            }
+            drainEncoder(waitForEndOfStream = false)
+        }
+    }
+
+    /**
+     * Writes the encoded frames (with ADTS header) into the recording session
+     *
+     * @param waitForEndOfStream   true: wait until the encoder outputs the end of stream
+     *                             false: only take the frames which are available right now
+     */
+    private fun drainEncoder(waitForEndOfStream: Boolean) {
+        val codec = codec ?: return
+        val deadline = System.nanoTime() + CODEC_FLUSH_TIMEOUT
+        while (true) {
+            val index = codec.dequeueOutputBuffer(bufferInfo, if (waitForEndOfStream) CODEC_TIMEOUT_US else 0)
+            if (index < 0) {
+                // INFO_TRY_AGAIN_LATER or INFO_OUTPUT_FORMAT_CHANGED (ADTS doesn't need the codec specific data)
+                if (index == MediaCodec.INFO_TRY_AGAIN_LATER && (!waitForEndOfStream || System.nanoTime() > deadline))
+                    return
+                continue
+            }
+            if (bufferInfo.flags and MediaCodec.BUFFER_FLAG_CODEC_CONFIG == 0 && bufferInfo.size > 0) {
+                val frameLength = AdtsHeader.SIZE + bufferInfo.size
+                if (adtsFrame.size < frameLength)
+                    adtsFrame = ByteArray(frameLength)
+                AdtsHeader.write(adtsFrame, sampleRate, 1, bufferInfo.size)
+                val outputBuffer = codec.getOutputBuffer(index)!!
+                outputBuffer.position(bufferInfo.offset)
+                outputBuffer.get(adtsFrame, AdtsHeader.SIZE, bufferInfo.size)
+                recordingSession.write(adtsFrame, 0, frameLength, true, System.nanoTime())
+            }
+            codec.releaseOutputBuffer(index, false)
+            if (bufferInfo.flags and MediaCodec.BUFFER_FLAG_END_OF_STREAM != 0)
+                return
+        }
+    }
+
+    /**
+     * Releases the encoder
+     *
+     * @param flush     true: signal the end of stream and write the remaining frames first
+     */
+    private fun stopEncoder(flush: Boolean) {
+        val codec = codec ?: return
+        try {
+            if (flush) {
+                val deadline = System.nanoTime() + CODEC_FLUSH_TIMEOUT
+                var index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US)
+                while (index < 0 && System.nanoTime() < deadline) {
+                    drainEncoder(waitForEndOfStream = false)    // (frees input buffers of the encoder)
+                    index = codec.dequeueInputBuffer(CODEC_TIMEOUT_US)
+                }
+                if (index >= 0) {
+                    codec.queueInputBuffer(index, 0, 0, encodedSamples * 1_000_000L / sampleRate, MediaCodec.BUFFER_FLAG_END_OF_STREAM)
+                    drainEncoder(waitForEndOfStream = true)
+                } else {
+                    Log.w(LOGTAG, "stopEncoder: No input buffer for the end of stream. The last frames are lost.")
+                }
+            }
+            codec.stop()
+        } catch (e: IllegalStateException) {
+            Log.e(LOGTAG, "stopEncoder: Error while stopping the encoder: ${e.message}")
+        }
+        codec.release()
+        this.codec = null
+    }
+}
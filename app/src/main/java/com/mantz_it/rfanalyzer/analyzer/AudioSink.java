@@ -3,10 +3,14 @@ package com.mantz_it.rfanalyzer.analyzer;
 import android.media.AudioAttributes;
 import android.media.AudioFormat;
 import android.media.AudioManager;
+import android.media.AudioTimestamp;
 import android.media.AudioTrack;
 import android.util.Log;
 
-import com.mantz_it.rfanalyzer.dsp.FirFilter;
+import com.mantz_it.rfanalyzer.database.GlobalPerformanceData;
+import com.mantz_it.rfanalyzer.database.PipelineMetrics;
+import com.mantz_it.rfanalyzer.database.PipelineTracer;
+import com.mantz_it.rfanalyzer.dsp.AdaptiveAudioResampler;
 import com.mantz_it.rfanalyzer.source.SamplePacket;
 
 import java.util.concurrent.ArrayBlockingQueue;
@@ -21,6 +25,18 @@ import java.util.concurrent.TimeUnit;
  *              in a blocking queue. Input packets are demodulated (real) signals.
  *              This class will decimate the incoming sample rate according to the
  *              audio rate.
+ *              The samples are written to the AudioTrack with blocking writes. The drift
+ *              between the SDR clock and the audio clock is compensated by an
+ *              AdaptiveAudioResampler which keeps the number of buffered frames in the
+ *              AudioTrack at TARGET_LATENCY_MS (or LOW_LATENCY_TARGET_LATENCY_MS in low
+ *              latency mode, which also requests the low latency audio path of the system).
+ *              The glass-to-ear latency (from the reception of the samples until they are
+ *              presented by the audio hardware) is measured and reported to the
+ *              GlobalPerformanceData. The time in the input queue, the processing time,
+ *              the time in the AudioTrack and the dropped packets are recorded in the
+ *              PipelineMetrics.
+ *              If an AudioRecorder is set, the filtered samples (audio rate, before the
+ *              drift compensation) are copied to it.
  *
  * @author Dennis Mantz
  *
@@ -50,9 +66,19 @@ public class AudioSink extends Thread {
 	private int sampleRate;		// audio sample rate of the AudioSink
 	private static final int QUEUE_SIZE = 2;	// This results in a double buffer. see Scheduler...
 	private static final String LOGTAG = "AudioSink";
-	private FirFilter audioFilter1 = null;		// Filter used to decimate the incoming signal rate
-	private FirFilter audioFilter2 = null;		// Cascaded filter for high incoming signal rates
-	private SamplePacket tmpAudioSamples;		// tmp buffer for audio filters.
+	private AudioDecimator audioDecimator;		// decimates the incoming signal rate to the audio rate
+	private AdaptiveAudioResampler adaptiveResampler;	// compensates the clock drift between SDR and audio hardware
+	private int framesWritten = 0;				// number of frames written to the audio track (wraps like the playback head position)
+	private final AudioTimestamp audioTimestamp = new AudioTimestamp();	// used to measure the output latency
+	private final boolean lowLatency;			// true if the low latency mode is active
+	private static final int TARGET_LATENCY_MS = 50;	// target number of buffered frames (right before a write) in ms
+	private static final int MAX_LATENCY_MS = 250;		// packets are dropped if more than this is buffered (e.g. after a stall)
+	private static final int BUFFER_SIZE_MS = 500;		// size of the audio track buffer in ms
+	private static final int LOW_LATENCY_TARGET_LATENCY_MS = 20;	// same values for the low latency mode
+	private static final int LOW_LATENCY_MAX_LATENCY_MS = 100;
+	private static final int LOW_LATENCY_BUFFER_SIZE_MS = 200;
+	public static final String LATENCY_ID = "Audio";	// id of the glass-to-ear latency in GlobalPerformanceData
+	private volatile AudioRecorder audioRecorder = null;	// records the filtered audio (null -> no audio recording)
 
 	/**
 	 * Constructor. Will create a new AudioSink.
@@ -61,8 +87,20 @@ public class AudioSink extends Thread {
 	 * @param sampleRate	sample rate of the audio signal
 	 */
 	public AudioSink (int packetSize, int sampleRate) {
+		this(packetSize, sampleRate, false);
+	}
+
+	/**
+	 * Constructor. Will create a new AudioSink.
+	 *
+	 * @param packetSize	size of the incoming packets
+	 * @param sampleRate	sample rate of the audio signal
+	 * @param lowLatency	if true, the audio track uses the low latency performance mode and a smaller buffer
+	 */
+	public AudioSink (int packetSize, int sampleRate, boolean lowLatency) {
 		this.packetSize = packetSize;
 		this.sampleRate = sampleRate;
+		this.lowLatency = lowLatency;
 
 		// Create the queues and fill them with
 		this.inputQueue = new ArrayBlockingQueue<SamplePacket>(QUEUE_SIZE);
@@ -71,7 +109,10 @@ public class AudioSink extends Thread {
 			this.outputQueue.offer(new SamplePacket(packetSize));
 
 		// Create an instance of the AudioTrack class:
-		int bufferSize = AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_FLOAT);
+		// The buffer must hold the target latency plus at least one packet. Writes are blocking,
+		// so a large buffer does not add latency (the fill level is controlled, see run()).
+		int bufferSize = Math.max(AudioTrack.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_OUT_MONO, AudioFormat.ENCODING_PCM_FLOAT),
+				sampleRate / 1000 * (lowLatency ? LOW_LATENCY_BUFFER_SIZE_MS : BUFFER_SIZE_MS) * 4);	// 4 bytes per float frame
 		AudioAttributes audioAttributes = new AudioAttributes.Builder()
 				.setUsage(AudioAttributes.USAGE_MEDIA)
 				.setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
@@ -88,14 +129,14 @@ public class AudioSink extends Thread {
 				.setAudioFormat(format)
 				.setBufferSizeInBytes(bufferSize)
 				.setTransferMode(AudioTrack.MODE_STREAM)
+				.setPerformanceMode(lowLatency ? AudioTrack.PERFORMANCE_MODE_LOW_LATENCY : AudioTrack.PERFORMANCE_MODE_NONE)
 				.build();
 
 		// Create the audio filters:
-		this.audioFilter1 = FirFilter.createLowPass(2, 1, 1, 0.1f, 0.15f, 30);
-		Log.d(LOGTAG,"constructor: created audio filter 1 with " + audioFilter1.getNumberOfTaps() + " Taps.");
-		this.audioFilter2 = FirFilter.createLowPass(4, 1, 1, 0.1f, 0.1f, 30);
-		Log.d(LOGTAG,"constructor: created audio filter 2 with " + audioFilter2.getNumberOfTaps() + " Taps.");
-		this.tmpAudioSamples = new SamplePacket(packetSize);
+		this.audioDecimator = new AudioDecimator(packetSize, sampleRate);
+		this.adaptiveResampler = new AdaptiveAudioResampler(sampleRate, sampleRate / 1000 * (lowLatency ? LOW_LATENCY_TARGET_LATENCY_MS : TARGET_LATENCY_MS));
+		Log.i(LOGTAG, "constructor: lowLatency=" + lowLatency + " bufferSize=" + bufferSize + " bytes"
+				+ " performanceMode=" + audioTrack.getPerformanceMode());
 	}
 
 	/**
@@ -114,6 +155,15 @@ public class AudioSink extends Thread {
 		stopRequested = true;
 	}
 
+	/**
+	 * Sets the recorder which gets a copy of the filtered audio samples
+	 *
+	 * @param audioRecorder	recorder (running) or null to stop tapping the audio
+	 */
+	public void setAudioRecorder(AudioRecorder audioRecorder) {
+		this.audioRecorder = audioRecorder;
+	}
+
 	/**
 	 * @return size of the packets that are offered by getPacketBuffer()
 	 */
@@ -150,6 +200,7 @@ public class AudioSink extends Thread {
 		}
 		if(!inputQueue.offer(packet)) {
 			Log.e(LOGTAG, "enqueuePacket: Queue is full.");
+			PipelineMetrics.audioQueueFull.record(packet.size());
 			return false;
 		}
 		return true;
@@ -160,12 +211,19 @@ public class AudioSink extends Thread {
 		SamplePacket packet;
 		SamplePacket filteredPacket;
 		SamplePacket tempPacket = new SamplePacket(packetSize);
+		SamplePacket resampledPacket = new SamplePacket(adaptiveResampler.maxOutputSize(packetSize));
+		float[] silence = new float[adaptiveResampler.getTargetFill()];
+		int maxFill = sampleRate / 1000 * (lowLatency ? LOW_LATENCY_MAX_LATENCY_MS : MAX_LATENCY_MS);
+		// no packet for longer than the track buffer: the stream was idle (e.g. squelch closed), not too slow
+		long idleTimeout = (lowLatency ? LOW_LATENCY_BUFFER_SIZE_MS : BUFFER_SIZE_MS) * 1_000_000L;
+		long lastPacketTimestamp = 0;	// System.nanoTime() of the last packet (0: no packet yet)
 
 		this.setName("Thread-AudioSink-" + System.currentTimeMillis());
 		Log.i(LOGTAG,"AudioSink started. (Thread: " + this.getName() + ")");
 
 		// start audio playback:
 		audioTrack.play();
+		framesWritten = 0;
 
 		// Continuously write the data from the queue to the audio track:
 		while (!stopRequested) {
@@ -177,6 +235,10 @@ public class AudioSink extends Thread {
 					//Log.d(LOGTAG, "run: Queue is empty. skip this round");
 					continue;
 				}
+				long processingStart = System.nanoTime();
+				PipelineMetrics.audio.recordQueue(packet.getEnqueueTimestamp(), inputQueue.size());
+				boolean streamIdle = lastPacketTimestamp == 0 || processingStart - lastPacketTimestamp > idleTimeout;
+				lastPacketTimestamp = processingStart;
 
 				// apply audio filter (decimation)
 				if(packet.getSampleRate() > this.sampleRate) {
@@ -185,13 +247,48 @@ public class AudioSink extends Thread {
 				}
 				else
 					filteredPacket = packet;
+				long processingEnd = System.nanoTime();
+				long processingTime = processingEnd - processingStart;
+				PipelineTracer.record(PipelineTracer.Stage.AUDIO_FILTER, processingStart, processingEnd);
 
-				// Write it to the audioTrack:
-				int samplesWritten = 0;
-				while(samplesWritten < filteredPacket.size() && !stopRequested) {
-					samplesWritten += audioTrack.write(filteredPacket.re(), samplesWritten, filteredPacket.size() - samplesWritten, AudioTrack.WRITE_NON_BLOCKING);
+				// record the audio (never blocks. Also if the packet is dropped below):
+				AudioRecorder recorder = audioRecorder;
+				if(recorder != null)
+					recorder.write(filteredPacket.re(), filteredPacket.size());
+
+				// Check the fill level of the audio track (int arithmetic handles the wrap around):
+				int fill = framesWritten - audioTrack.getPlaybackHeadPosition();
+				if(fill <= 0) {
+					// First packet (of the stream or after it was idle) or buffer underrun: prefill with
+					// silence to get back to the target latency
+					if(!streamIdle)
+						Log.w(LOGTAG, "run: Audio buffer underrun. Prefill " + silence.length + " frames of silence.");
+					writeBlocking(silence, silence.length);
+					fill = silence.length;
+				} else if(fill > maxFill) {
+					// Too much latency (e.g. the audio output was stalled). Drop the packet instead of adding more:
+					Log.w(LOGTAG, "run: " + fill + " frames buffered (max. " + maxFill + "). Drop packet.");
+					PipelineMetrics.audioOverflow.record(filteredPacket.size());
+					PipelineMetrics.audio.recordProcessing(processingTime, filteredPacket.size() * 1_000_000_000f / sampleRate,
+							packet.size(), 0);
+					outputQueue.offer(packet);
+					continue;
 				}
 
+				// Measure the latency of the first sample of this packet:
+				updateLatency(packet.getTimestamp(), fill);
+
+				// Compensate the clock drift and write the samples to the audioTrack:
+				processingStart = System.nanoTime();
+				adaptiveResampler.update(fill, filteredPacket.size());
+				adaptiveResampler.resample(filteredPacket, resampledPacket);
+				processingTime += System.nanoTime() - processingStart;
+				PipelineMetrics.audio.recordProcessing(processingTime, filteredPacket.size() * 1_000_000_000f / sampleRate,
+						packet.size(), resampledPacket.size());
+				long writeStart = System.nanoTime();
+				writeBlocking(resampledPacket.re(), resampledPacket.size());
+				PipelineTracer.record(PipelineTracer.Stage.AUDIO_WRITE, writeStart, System.nanoTime());
+
 				// Return the buffer to the output queue
 				outputQueue.offer(packet);
 			} catch (InterruptedException e) {
@@ -206,6 +303,52 @@ public class AudioSink extends Thread {
 		Log.i(LOGTAG,"AudioSink stopped. (Thread: " + this.getName() + ")");
 	}
 
+	/**
+	 * Measures the glass-to-ear latency of the next sample which is written to the audio track:
+	 * The time between the reception of the sample and its presentation by the audio hardware.
+	 * The presentation time is derived from the AudioTimestamp of the audio track (which includes
+	 * the output latency of the hardware). If no timestamp is available (yet), only the buffered
+	 * frames are taken into account.
+	 *
+	 * @param receptionTimestamp	System.nanoTime() at which the sample was received (0 if unknown)
+	 * @param fill					number of frames currently buffered in the audio track
+	 */
+	private void updateLatency(long receptionTimestamp, int fill) {
+		if(receptionTimestamp == 0)
+			return;
+		long presentationTimestamp;
+		long now = System.nanoTime();
+		if(audioTrack.getTimestamp(audioTimestamp)) {
+			int framesAhead = framesWritten - (int) audioTimestamp.framePosition;	// int arithmetic handles the wrap around
+			presentationTimestamp = audioTimestamp.nanoTime + framesAhead * 1_000_000_000L / sampleRate;
+		} else {
+			presentationTimestamp = now + fill * 1_000_000_000L / sampleRate;
+		}
+		GlobalPerformanceData.INSTANCE.updateLatency(LATENCY_ID, (presentationTimestamp - receptionTimestamp) / 1_000_000f);
+		PipelineMetrics.audioOutput.record(presentationTimestamp - now);
+		PipelineMetrics.endToEnd.record(presentationTimestamp - receptionTimestamp);
+	}
+
+	/**
+	 * Writes the samples to the audio track. Blocks until all samples are written (i.e. only if
+	 * the audio track buffer is full).
+	 *
+	 * @param samples	audio samples
+	 * @param length	number of samples to write
+	 */
+	private void writeBlocking(float[] samples, int length) {
+		int samplesWritten = 0;
+		while(samplesWritten < length && !stopRequested) {
+			int ret = audioTrack.write(samples, samplesWritten, length - samplesWritten, AudioTrack.WRITE_BLOCKING);
+			if(ret < 0) {
+				Log.e(LOGTAG, "writeBlocking: AudioTrack.write() returned error " + ret);
+				break;
+			}
+			samplesWritten += ret;
+		}
+		framesWritten += samplesWritten;
+	}
+
 	/**
 	 * Will filter the real array contained in input and decimate them to the audio rate.
 	 *
@@ -213,26 +356,6 @@ public class AudioSink extends Thread {
 	 * @param output	outgoing (filtered, decimated) samples at audio rate
 	 */
 	public void applyAudioFilter(SamplePacket input, SamplePacket output) {
-		// if we need a decimation of 8: apply first and second filter (decimate to input_rate/8)
-		if(input.getSampleRate()/sampleRate == 8) {
-			// apply first filter (decimate to input_rate/2)
-			tmpAudioSamples.setSize(0);	// mark buffer as empty
-			if (audioFilter1.filterReal(input, tmpAudioSamples, 0, input.size()) < input.size()) {
-				Log.e(LOGTAG, "applyAudioFilter: [audioFilter1] could not filter all samples from input packet.");
-			}
-
-			// apply second filter (decimate to input_rate/8)
-			output.setSize(0);
-			if (audioFilter2.filterReal(tmpAudioSamples, output, 0, tmpAudioSamples.size()) < tmpAudioSamples.size()) {
-				Log.e(LOGTAG, "applyAudioFilter: [audioFilter2] could not filter all samples from input packet.");
-			}
-		} else if (input.getSampleRate()/sampleRate == 2){
-			// apply first filter (decimate to input_rate/2 )
-			output.setSize(0);
-			if (audioFilter1.filterReal(input, output, 0, input.size()) < input.size()) {
-				Log.e(LOGTAG, "applyAudioFilter: [audioFilter1] could not filter all samples from input packet.");
-			}
-		} else
-			Log.e(LOGTAG,"applyAudioFilter: incoming sample rate is not supported: " + input.getSampleRate());
+		audioDecimator.decimate(input, output);
 	}
 }
@@ -1,13 +1,18 @@
 package com.mantz_it.rfanalyzer.analyzer
 
 import android.util.Log
-import com.mantz_it.rfanalyzer.database.GlobalPerformanceData
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.database.PipelineTracer
+import com.mantz_it.rfanalyzer.dsp.AnalogDemodulator
+import com.mantz_it.rfanalyzer.dsp.AsyncFilterDesigner
 import com.mantz_it.rfanalyzer.dsp.ComplexFirFilter
 import com.mantz_it.rfanalyzer.dsp.FirFilter
+import com.mantz_it.rfanalyzer.dsp.FmDiscriminator
+import com.mantz_it.rfanalyzer.dsp.Squelch
 import com.mantz_it.rfanalyzer.source.SamplePacket
 import com.mantz_it.rfanalyzer.ui.composable.DemodulationMode
 import java.util.concurrent.ArrayBlockingQueue
-import kotlin.math.atan2
+import kotlin.math.roundToInt
 
 /**
  * <h1>RF Analyzer - Demodulator</h1>
@@ -40,12 +45,13 @@ import kotlin.math.atan2
 class Demodulator(
     inputQueue: ArrayBlockingQueue<SamplePacket>,   // Queue that delivers received baseband signals
     inputReturnQueue: ArrayBlockingQueue<SamplePacket>,  // Queue to return used buffers from the inputQueue
-    packetSize: Int                                 // Size of the packets in the input queue
+    packetSize: Int,                                // Size of the packets in the input queue
+    lowLatency: Boolean = false                     // Use the low latency audio output (see AudioSink)
 ) : Thread() {
 
     companion object {
         private const val LOGTAG = "Demodulator"
-        private const val AUDIO_RATE = 48000
+        const val AUDIO_RATE = 48000
         private const val BAND_PASS_ATTENUATION = 40
 
         // The quadrature rate is the sample rate that is used for the demodulation and dependend on the mode:
@@ -63,16 +69,39 @@ class Demodulator(
 
         // FILTERING (This is the channel filter controlled by the user)
         private const val USER_FILTER_ATTENUATION = 60
+        private const val REDUCED_USER_FILTER_ATTENUATION = 40     // if reducedFilterQuality is set (~1/3 less taps)
 
         const val CW_OFFSET_FREQUENCY = 750  // Offset for the CW signal. 750Hz will be the audio tone the user hears if the signal is exactly at the channel frequency
+
+        // BACKGROUND MODE (channel power measurement, see backgroundMode)
+        private const val CHANNEL_POWER_REPORT_INTERVAL = 0.02f     // seconds of samples which are averaged for one channel power report
+
+        // CHANNEL RECORDING (16-bit signed IQ, little endian)
+        const val CHANNEL_RECORDING_BYTES_PER_SAMPLE = 4
     }
 
     private var stopRequested = true
 
-    // Channel Filter
-    private var userFilter: FirFilter? = null
+    // Channel Filter (keyed by sample rate, channel width and quality). Changes of the channel width
+    // or quality are designed in the background while the old filter stays in use.
+    private val userFilterDesigner = AsyncFilterDesigner<Triple<Int, Int, Boolean>, FirFilter>("UserFilter") { (sampleRate, width, reducedQuality) ->
+        FirFilter.createLowPass(
+            1,
+            1f,
+            sampleRate.toFloat(),
+            width.toFloat(),
+            sampleRate * 0.10f,
+            (if (reducedQuality) REDUCED_USER_FILTER_ATTENUATION else USER_FILTER_ATTENUATION).toFloat()
+        )?.also {
+            Log.d(LOGTAG, ("userFilterDesigner: created new user filter with " + it.numberOfTaps
+                        + " taps. Decimation=" + it.decimation + " Cut-Off=" + it.cutOffFrequency
+                        + " transition=" + it.transitionWidth)
+            )
+        }
+    }
     var channelWidth: Int = 0
         set(value) { field = value.coerceIn(demodulationMode.minChannelWidth, demodulationMode.maxChannelWidth) }
+    var reducedFilterQuality = false    // use less stop band attenuation for the channel filter. Set by the load governor
 
     // Create internal sample buffers:
     // Note that we create the buffers for the case that there is no downsampling necessary
@@ -81,10 +110,14 @@ class Demodulator(
     private val quadratureSamples = SamplePacket(packetSize)
 
     // DEMODULATION
-    private var carryOverSamplesRe: Float = 0f // used for FM demodulation
-    private var carryOverSamplesIm: Float = 0f // used for FM demodulation
-    private var lastMax = 0f // used for gain control in AM / SSB demodulation
-    private var bandPassFilter: ComplexFirFilter? = null // used for SSB demodulation
+    private val analogDemodulator = AnalogDemodulator() // demodulation maths (FM discriminator, AGC)
+    var fmDiscriminatorMode: FmDiscriminator.Mode   // FAST (polynomial atan2) or EXACT (kotlin.math.atan2)
+        get() = analogDemodulator.fmDiscriminatorMode
+        set(value) { analogDemodulator.fmDiscriminatorMode = value }
+    // used for SSB and CW demodulation (keyed by mode, sample rate and channel width)
+    private val bandPassFilterDesigner = AsyncFilterDesigner<Triple<DemodulationMode, Int, Int>, ComplexFirFilter>("BandPassFilter") { (mode, sampleRate, width) ->
+        createBandPassFilter(mode, sampleRate, width)
+    }
     var demodulationMode: DemodulationMode = DemodulationMode.OFF
         /**
          * Sets a new demodulation mode. This can be done while the demodulator is running!
@@ -99,13 +132,52 @@ class Demodulator(
             this.channelWidth = value.defaultChannelWidth
         }
 
+    // Sample rate at which the current demodulation mode operates
+    val quadratureRate: Int
+        get() = demodulationMode.quadratureRate
+
     // RESAMPLING (input sample rate --> QUADRATURE_RATE)
     private val resampler = Resampler(demodulationMode.quadratureRate, packetSize, inputQueue, inputReturnQueue)
 
-    // AUDIO OUTPUT
-    private var audioSink: AudioSink = AudioSink(packetSize, AUDIO_RATE) // Will do QUADRATURE_RATE --> AUDIO_RATE and audio output
+    // AUDIO OUTPUT (created when the thread starts. The OfflineProcessor only uses demodulate() and needs no audio track)
+    private val audioSink: AudioSink by lazy { AudioSink(packetSize, AUDIO_RATE, lowLatency) } // Will do QUADRATURE_RATE --> AUDIO_RATE and audio output
     var audioVolumeLevel = 1f        // Audio Volume (0 is mute and 1 is full volume)
 
+    // SQUELCH: The Scheduler delivers all samples. The squelch works on the output of the channel
+    // filter and mutes the audio sample accurately (see Squelch). Changes of the gate are reported
+    // with onSquelchStateChanged.
+    private val squelch = Squelch()
+    var squelchThreshold: Float     // linear power (see Squelch.signalStrengthToPower). 0 disables the squelch
+        get() = squelch.threshold
+        set(value) { squelch.threshold = value }
+    var onSquelchStateChanged: ((Boolean) -> Unit)? = null
+    private var reportedSquelchState: Boolean? = null
+
+    // BACKGROUND MODE: If no FFT is calculated (nobody looks at the spectrum), the Demodulator
+    // reports the power of the channel with onChannelPowerMeasured (linear, mean of |x|^2) instead.
+    @Volatile
+    var backgroundMode = false
+    var onChannelPowerMeasured: ((Float) -> Unit)? = null
+    private var channelPowerSum = 0.0
+    private var channelPowerCount = 0
+
+    // CHANNEL RECORDING: The channel samples (output of the channel filter at the quadrature rate)
+    // are written into the recording session as 16-bit signed IQ. The session is gated by the
+    // channel squelch. A finished session ignores the samples until it is replaced.
+    @Volatile
+    var recordingSession: RecordingSession? = null
+    private val channelRecordingBytes = ByteArray(packetSize * CHANNEL_RECORDING_BYTES_PER_SAMPLE)
+
+    // AUDIO RECORDING: The AudioSink copies the audio (after its audio filter) to the recorder.
+    // The recorder is stopped when the Demodulator terminates.
+    var audioRecorder: AudioRecorder? = null
+        set(value) {
+            field = value
+            audioSink.setAudioRecorder(value)
+        }
+    val audioPacketSize: Int        // maximum number of samples per write() to the audio recorder
+        get() = audioSink.packetSize
+
     /**
      * Starts the thread. This thread will start 2 more threads for decimation and audio output.
      * These threads are managed by the Demodulator and terminated, when the Demodulator thread
@@ -140,60 +212,78 @@ class Demodulator(
         while (!stopRequested) {
             // Get downsampled packet from the decimator:
             inputSamples = resampler.getResampledPacket(1000)
-            val startTimestamp = System.nanoTime()
 
             // Verify the input sample packet is not null:
             if (inputSamples == null) {
                 //Log.d(LOGTAG, "run: Decimated sample is null. skip this round...");
+                recordingSession?.update()  // (stop conditions of a channel recording while no samples arrive)
                 continue
             }
 
-            // filtering (sample rate is demodulationMode.quadratureRate)
-            applyUserFilter(inputSamples, quadratureSamples) // The result from filtering is stored in quadratureSamples
-
-            // return input samples to the decimator block:
-            resampler.returnResampledPacket(inputSamples)
-
-            val time1 = System.nanoTime() - startTimestamp
-            val nsPerPacket = inputSamples.size() * 1_000_000_000f / inputSamples.sampleRate
+            val startTimestamp = System.nanoTime()
+            PipelineMetrics.demodulator.recordQueue(inputSamples.enqueueTimestamp, resampler.outputQueueSize)
+            val inputSize = inputSamples.size()
+            val nsPerPacket = inputSize * 1_000_000_000f / inputSamples.sampleRate
+
+            // filtering (sample rate is demodulationMode.quadratureRate) and squelch on the channel samples:
+            if (!applyUserFilter(inputSamples, quadratureSamples)) { // The result from filtering is stored in quadratureSamples
+                // no filter for this packet: quadratureSamples still contains the previous packet
+                PipelineMetrics.demodulatorSkip.record(inputSize)
+                resampler.returnResampledPacket(inputSamples)
+                recordingSession?.update()
+                continue
+            }
+            val audible = squelch.process(quadratureSamples)
+            if (squelch.isOpen != reportedSquelchState) {
+                reportedSquelchState = squelch.isOpen
+                onSquelchStateChanged?.invoke(squelch.isOpen)
+            }
+            if (backgroundMode)
+                measureChannelPower(quadratureSamples.size())
+            recordingSession?.let { recordChannelSamples(it, inputSamples.timestamp) }
+            val filterTime = System.nanoTime() - startTimestamp
+
+            // squelch is closed for the whole packet: nothing to play
+            if (!audible) {
+                resampler.returnResampledPacket(inputSamples)
+                PipelineTracer.record(PipelineTracer.Stage.DEMODULATOR, startTimestamp, startTimestamp + filterTime)
+                PipelineMetrics.demodulator.recordProcessing(filterTime, nsPerPacket, inputSize, 0)
+                continue
+            }
 
             // get buffer from audio sink
             audioBuffer = audioSink.getPacketBuffer(1000)
 
-            val startTimestamp2 = System.nanoTime()
-
             if (audioBuffer == null) {
                 Log.d(LOGTAG, "run: Audio buffer is null. skip this round...")
+                PipelineMetrics.demodulatorSkip.record(inputSamples.size())
+                resampler.returnResampledPacket(inputSamples)
                 continue
             }
 
-            audioBuffer.setSize(0) // mark buffer as empty
-
-            // demodulate (sample rate is demodulationMode.quadratureRate)
-            when (demodulationMode) {
-                DemodulationMode.OFF -> { }
-                DemodulationMode.AM  -> demodulateAM(quadratureSamples, audioBuffer)
-                DemodulationMode.NFM -> demodulateFM(quadratureSamples, audioBuffer, maxDeviation = channelWidth * 0.75f)
-                DemodulationMode.WFM -> demodulateFM(quadratureSamples, audioBuffer, maxDeviation = channelWidth * 0.85f)
-                DemodulationMode.LSB -> demodulateSSB(quadratureSamples, audioBuffer, false)
-                DemodulationMode.USB -> demodulateSSB(quadratureSamples, audioBuffer, true)
-                DemodulationMode.CW  -> demodulateCW(quadratureSamples, audioBuffer)
-            }
+            val demodulationTimestamp = System.nanoTime()
+            audioBuffer.timestamp = inputSamples.timestamp
+            audioBuffer.sampleIndex = inputSamples.sampleIndex
+            demodulateFiltered(audioBuffer)
+            squelch.applyGain(audioBuffer)
 
-            // apply audio volume:
-            val audioBufferRe = audioBuffer.re()
-            for (i in 0..<audioBuffer.size()) {
-                audioBufferRe[i] = audioBufferRe[i] * audioVolumeLevel
-            }
+            // return input samples to the decimator block:
+            resampler.returnResampledPacket(inputSamples)
 
-            // Performance Tracking
-            val processingTime = System.nanoTime() - startTimestamp2 + time1
-            GlobalPerformanceData.updateLoad("Demodulator", processingTime / nsPerPacket)
+            // Performance Tracking (without waiting for the audio buffer)
+            val endTimestamp = System.nanoTime()
+            val processingTime = filterTime + endTimestamp - demodulationTimestamp
+            PipelineTracer.record(PipelineTracer.Stage.DEMODULATOR, startTimestamp, endTimestamp)
+            PipelineMetrics.demodulator.recordProcessing(processingTime, nsPerPacket, inputSize, audioBuffer.size())
 
             // play audio (sample rate is demodulationMode.quadratureRate)
+            audioBuffer.enqueueTimestamp = System.nanoTime()
             audioSink.enqueuePacket(audioBuffer)
         }
 
+        recordingSession?.close()
+        audioRecorder?.stopRecorder()
+
         // Stop the audio sink thread:
         audioSink.stopSink()
 
@@ -205,200 +295,176 @@ class Demodulator(
     }
 
     /**
-     * Will filter the samples in input according to the user filter settings.
-     * Filtered samples are stored in output. Note: All samples in output
-     * will always be overwritten!
+     * Converts the channel samples (quadratureSamples) to 16-bit signed IQ (little endian, full
+     * scale is 1.0 like in the Signed16BitIQConverter) and writes them into the recording session.
      *
-     * @param input     incoming (unfiltered) samples
-     * @param output    outgoing (filtered) samples
+     * @param session       channel recording
+     * @param timestamp     reception time of the samples
      */
-    private fun applyUserFilter(input: SamplePacket, output: SamplePacket) {
-        // Verify that the filter is still correct configured:
-        if (userFilter == null || (userFilter!!.cutOffFrequency.toInt()) != channelWidth) {
-            // We have to (re-)create the user filter:
-            this.userFilter = FirFilter.createLowPass(
-                1,
-                1f,
-                input.sampleRate.toFloat(),
-                channelWidth.toFloat(),
-                input.sampleRate * 0.10f,
-                USER_FILTER_ATTENUATION.toFloat()
-            )
-
-            if (userFilter == null)
-                return  // This may happen if input samples changed rate or demodulation was turned off. Just skip the filtering.
-
-            Log.d(LOGTAG, ("applyUserFilter: created new user filter with " + userFilter!!.numberOfTaps
-                        + " taps. Decimation=" + userFilter!!.decimation + " Cut-Off=" + userFilter!!.cutOffFrequency
-                        + " transition=" + userFilter!!.transitionWidth)
-            )
-        }
-        output.setSize(0) // mark buffer as empty
-        if (userFilter!!.filter(input, output, 0, input.size()) < input.size()) {
-            Log.e(LOGTAG, "applyUserFilter: could not filter all samples from input packet.")
+    private fun recordChannelSamples(session: RecordingSession, timestamp: Long) {
+        val size = quadratureSamples.size()
+        val re = quadratureSamples.re()
+        val im = quadratureSamples.im()
+        val bytes = channelRecordingBytes
+        for (i in 0 until size) {
+            val iValue = (re[i] * 32768).roundToInt().coerceIn(-32768, 32767)
+            val qValue = (im[i] * 32768).roundToInt().coerceIn(-32768, 32767)
+            bytes[4 * i] = iValue.toByte()
+            bytes[4 * i + 1] = (iValue shr 8).toByte()
+            bytes[4 * i + 2] = qValue.toByte()
+            bytes[4 * i + 3] = (qValue shr 8).toByte()
         }
+        session.write(bytes, 0, size * CHANNEL_RECORDING_BYTES_PER_SAMPLE, squelch.isOpen, timestamp)
     }
 
     /**
-     * Will FM demodulate the samples in input. Use ~75000 deviation for wide band FM
-     * and ~3000 deviation for narrow band FM.
-     * Demodulated samples are stored in the real array of output. Note: All samples in output
-     * will always be overwritten!
+     * Filters (channel filter) and demodulates one packet of samples at the quadrature rate of
+     * the current demodulation mode and applies the audio volume. This is the processing of a
+     * single loop iteration in run(). It is public so that the OfflineProcessor can use the
+     * demodulator without starting the thread (and without audio output).
      *
-     * @param input        incoming (modulated) samples
-     * @param output    outgoing (demodulated) samples
+     * @param input     incoming samples (sample rate is demodulationMode.quadratureRate)
+     * @param output    outgoing (demodulated) samples at the quadrature rate (real array). Will be overwritten.
      */
-    private fun demodulateFM(input: SamplePacket, output: SamplePacket, maxDeviation: Float) {
-        val reIn = input.re()
-        val imIn = input.im()
-        val reOut = output.re()
-        val imOut = output.im()
-        val inputSize = input.size()
-        val quadratureGain = demodulationMode.quadratureRate / (2 * Math.PI * maxDeviation).toFloat()
-
-        if (inputSize == 0)
+    fun demodulate(input: SamplePacket, output: SamplePacket) {
+        // filtering (sample rate is demodulationMode.quadratureRate)
+        if (!applyUserFilter(input, quadratureSamples)) { // The result from filtering is stored in quadratureSamples
+            output.setSize(0)
             return
-
-        // Quadrature demodulation:
-        reOut[0] = reIn[0] * carryOverSamplesRe + imIn[0] * carryOverSamplesIm
-        imOut[0] = imIn[0] * carryOverSamplesRe - reIn[0] * carryOverSamplesIm
-        reOut[0] = quadratureGain * atan2(imOut[0], reOut[0])
-        for (i in 1..<inputSize) {
-            reOut[i] = reIn[i] * reIn[i - 1] + imIn[i] * imIn[i - 1]
-            imOut[i] = imIn[i] * reIn[i - 1] - reIn[i] * imIn[i - 1]
-            reOut[i] = quadratureGain * atan2(imOut[i], reOut[i])
         }
-        carryOverSamplesRe = reIn[inputSize - 1]
-        carryOverSamplesIm = imIn[inputSize - 1]
-        output.setSize(inputSize)
-        output.sampleRate = demodulationMode.quadratureRate
+        demodulateFiltered(output)
     }
 
     /**
-     * Will AM demodulate the samples in input.
-     * Demodulated samples are stored in the real array of output. Note: All samples in output
-     * will always be overwritten!
+     * Demodulates the samples in quadratureSamples (output of the channel filter) and applies
+     * the audio volume.
      *
-     * @param input        incoming (modulated) samples
-     * @param output    outgoing (demodulated) samples
+     * @param output    outgoing (demodulated) samples at the quadrature rate (real array). Will be overwritten.
      */
-    private fun demodulateAM(input: SamplePacket, output: SamplePacket) {
-        val reIn = input.re()
-        val imIn = input.im()
-        val reOut = output.re()
-        var avg = 0f
-        lastMax *= 0.95.toFloat() // simplest AGC
-
-        // Complex to magnitude
-        for (i in 0..<input.size()) {
-            reOut[i] = (reIn[i] * reIn[i] + imIn[i] * imIn[i])
-            avg += reOut[i]
-            if (reOut[i] > lastMax) lastMax = reOut[i]
-        }
-        avg /= input.size()
+    private fun demodulateFiltered(output: SamplePacket) {
+        output.setSize(0) // mark buffer as empty
 
-        // normalize values:
-        val gain = 0.75f / lastMax
-        for (i in 0..<input.size()) reOut[i] = (reOut[i] - avg) * gain
+        // demodulate (sample rate is demodulationMode.quadratureRate)
+        when (demodulationMode) {
+            DemodulationMode.OFF -> { }
+            DemodulationMode.AM  -> analogDemodulator.demodulateAM(quadratureSamples, output)
+            DemodulationMode.NFM -> analogDemodulator.demodulateFM(quadratureSamples, output, maxDeviation = channelWidth * 0.75f)
+            DemodulationMode.WFM -> analogDemodulator.demodulateFM(quadratureSamples, output, maxDeviation = channelWidth * 0.85f)
+            DemodulationMode.LSB,
+            DemodulationMode.USB,
+            DemodulationMode.CW  -> demodulateBandPass(quadratureSamples, output, demodulationMode)
+        }
 
-        output.setSize(input.size())
-        output.sampleRate = demodulationMode.quadratureRate
+        // apply audio volume:
+        val outputRe = output.re()
+        for (i in 0..<output.size()) {
+            outputRe[i] = outputRe[i] * audioVolumeLevel
+        }
     }
 
     /**
-     * Will SSB demodulate the samples in input.
-     * Demodulated samples are stored in the real array of output. Note: All samples in output
-     * will always be overwritten!
+     * Accumulates the mean power of the last packet processed by the squelch and reports the mean
+     * power with onChannelPowerMeasured every CHANNEL_POWER_REPORT_INTERVAL.
      *
-     * @param input        incoming (modulated) samples
-     * @param output    outgoing (demodulated) samples
-     * @param upperBand    if true: USB; if false: LSB
+     * @param size      number of samples of the last packet processed by the squelch
      */
-    private fun demodulateSSB(input: SamplePacket, output: SamplePacket, upperBand: Boolean) {
-        val reOut = output.re()
-
-        // complex band pass:
-        if (bandPassFilter == null || (upperBand && ((bandPassFilter!!.highCutOffFrequency.toInt()) != channelWidth))
-            || (!upperBand && ((bandPassFilter!!.lowCutOffFrequency.toInt()) != -channelWidth))
-        ) {
-            // We have to (re-)create the band pass filter:
-            this.bandPassFilter = ComplexFirFilter.createBandPass(
-                2,  // Decimate by 2; => AUDIO_RATE
-                1f,
-                input.sampleRate.toFloat(),
-                if (upperBand) 200f else -channelWidth.toFloat(),
-                if (upperBand) channelWidth.toFloat() else -200f,
-                input.sampleRate * 0.01f,
-                BAND_PASS_ATTENUATION.toFloat()
-            )
-            if (bandPassFilter == null) return  // This may happen if input samples changed rate or demodulation was turned off. Just skip the filtering.
-
-            Log.d(
-                LOGTAG,
-                ("demodulateSSB: created new band pass filter with " + bandPassFilter!!.numberOfTaps
-                        + " taps. Decimation=" + bandPassFilter!!.decimation + " Low-Cut-Off=" + bandPassFilter!!.lowCutOffFrequency
-                        + " High-Cut-Off=" + bandPassFilter!!.highCutOffFrequency + " transition=" + bandPassFilter!!.transitionWidth)
-            )
-        }
-        output.setSize(0) // mark buffer as empty
-        if (bandPassFilter!!.filter(input, output, 0, input.size()) < input.size()) {
-            Log.e(LOGTAG, "demodulateSSB: could not filter all samples from input packet.")
+    private fun measureChannelPower(size: Int) {
+        channelPowerSum += squelch.meanPower.toDouble() * size
+        channelPowerCount += size
+        if (channelPowerCount >= quadratureRate * CHANNEL_POWER_REPORT_INTERVAL) {
+            onChannelPowerMeasured?.invoke((channelPowerSum / channelPowerCount).toFloat())
+            channelPowerSum = 0.0
+            channelPowerCount = 0
         }
+    }
 
-        // gain control: searching for max:
-        lastMax *= 0.95.toFloat() // simplest AGC
-        for (i in 0..<output.size()) {
-            if (reOut[i] > lastMax) lastMax = reOut[i]
+    /**
+     * Will filter the samples in input according to the user filter settings.
+     * Filtered samples are stored in output. Note: All samples in output
+     * will be overwritten (if a filter is available)!
+     *
+     * @param input     incoming (unfiltered) samples
+     * @param output    outgoing (filtered) samples
+     * @return false if no filter was available (output is not touched)
+     */
+    private fun applyUserFilter(input: SamplePacket, output: SamplePacket): Boolean {
+        // Get the filter for the current configuration. A change of the sample rate requires a
+        // new filter immediately, a change of the channel width can be designed in the background:
+        val key = Triple(input.sampleRate, channelWidth, reducedFilterQuality)
+        val userFilter = userFilterDesigner.get(key, synchronous = userFilterDesigner.currentKey?.first != input.sampleRate)
+            ?: return false  // This may happen if input samples changed rate or demodulation was turned off. Just skip the filtering.
+        output.setSize(0) // mark buffer as empty
+        if (userFilter.filter(input, output, 0, input.size()) < input.size()) {
+            Log.e(LOGTAG, "applyUserFilter: could not filter all samples from input packet.")
         }
-        // normalize values:
-        val gain = 0.75f / lastMax
-        for (i in 0..<output.size()) reOut[i] *= gain
+        return true
     }
 
     /**
-     * Will CW demodulate the samples in input. Expects the signal to be at CW_FREQUENCY_OFFSET Hz.
+     * Will SSB (USB or LSB) or CW demodulate the samples in input with the
+     * band pass filter of the mode.
      * Demodulated samples are stored in the real array of output. Note: All samples in output
      * will always be overwritten!
      *
-     * @param input        incoming (modulated) samples
-     * @param output       outgoing (demodulated) samples
+     * @param input     incoming (modulated) samples
+     * @param output    outgoing (demodulated) samples
+     * @param mode      USB, LSB or CW
      */
-    private fun demodulateCW(input: SamplePacket, output: SamplePacket) {
-        val reOut = output.re()
-
+    private fun demodulateBandPass(input: SamplePacket, output: SamplePacket, mode: DemodulationMode) {
         // complex band pass:
-        if (bandPassFilter == null || (bandPassFilter!!.highCutOffFrequency.toInt() != CW_OFFSET_FREQUENCY + channelWidth/2)) {
-            // We have to (re-)create the band pass filter:
-            this.bandPassFilter = ComplexFirFilter.createBandPass(
+        val bandPassFilter = getBandPassFilter(mode, input.sampleRate)
+            ?: return  // This may happen if input samples changed rate or demodulation was turned off. Just skip the filtering.
+        if (mode == DemodulationMode.CW)
+            analogDemodulator.demodulateCW(input, output, bandPassFilter)
+        else
+            analogDemodulator.demodulateSSB(input, output, bandPassFilter)
+    }
+
+    /**
+     * Returns the band pass filter for SSB / CW demodulation. Only a change of the channel width
+     * is designed in the background. A change of the mode or sample rate requires a new filter
+     * immediately (the old one would pass the wrong band or decimate by the wrong factor).
+     *
+     * @param mode          USB, LSB or CW
+     * @param sampleRate    sample rate of the input samples
+     * @return band pass filter or null if it could not be created
+     */
+    private fun getBandPassFilter(mode: DemodulationMode, sampleRate: Int): ComplexFirFilter? {
+        val currentKey = bandPassFilterDesigner.currentKey
+        val synchronous = currentKey == null || currentKey.first != mode || currentKey.second != sampleRate
+        return bandPassFilterDesigner.get(Triple(mode, sampleRate, channelWidth), synchronous)
+    }
+
+    private fun createBandPassFilter(mode: DemodulationMode, sampleRate: Int, width: Int): ComplexFirFilter? {
+        val filter = when (mode) {
+            DemodulationMode.USB, DemodulationMode.LSB -> ComplexFirFilter.createBandPass(
+                2,  // Decimate by 2; => AUDIO_RATE
+                1f,
+                sampleRate.toFloat(),
+                if (mode == DemodulationMode.USB) 200f else -width.toFloat(),
+                if (mode == DemodulationMode.USB) width.toFloat() else -200f,
+                sampleRate * 0.01f,
+                BAND_PASS_ATTENUATION.toFloat()
+            )
+            DemodulationMode.CW -> ComplexFirFilter.createBandPass(
                 1,
                 1f,
-                input.sampleRate.toFloat(),
-                CW_OFFSET_FREQUENCY - channelWidth/2.0f,
-                CW_OFFSET_FREQUENCY + channelWidth/2.0f,
-                input.sampleRate * 0.01f,
+                sampleRate.toFloat(),
+                CW_OFFSET_FREQUENCY - width/2.0f,
+                CW_OFFSET_FREQUENCY + width/2.0f,
+                sampleRate * 0.01f,
                 BAND_PASS_ATTENUATION.toFloat()
             )
-            if (bandPassFilter == null) return  // This may happen if input samples changed rate or demodulation was turned off. Just skip the filtering.
-
+            else -> null
+        }
+        if (filter != null) {
             Log.d(
                 LOGTAG,
-                ("demodulateCW: created new band pass filter with " + bandPassFilter!!.numberOfTaps
-                        + " taps. Decimation=" + bandPassFilter!!.decimation + " Low-Cut-Off=" + bandPassFilter!!.lowCutOffFrequency
-                        + " High-Cut-Off=" + bandPassFilter!!.highCutOffFrequency + " transition=" + bandPassFilter!!.transitionWidth)
+                ("createBandPassFilter: created new band pass filter with " + filter.numberOfTaps
+                        + " taps. Decimation=" + filter.decimation + " Low-Cut-Off=" + filter.lowCutOffFrequency
+                        + " High-Cut-Off=" + filter.highCutOffFrequency + " transition=" + filter.transitionWidth)
             )
         }
-        output.setSize(0) // mark buffer as empty
-        if (bandPassFilter!!.filter(input, output, 0, input.size()) < input.size()) {
-            Log.e(LOGTAG, "demodulateCW: could not filter all samples from input packet.")
-        }
-
-        // gain control: searching for max:
-        lastMax *= 0.95.toFloat() // simplest AGC
-        for (i in 0..<output.size()) {
-            if (reOut[i] > lastMax) lastMax = reOut[i]
-        }
-        // normalize values:
-        val gain = 0.75f / lastMax
-        for (i in 0..<output.size()) reOut[i] *= gain
+        return filter
     }
 }
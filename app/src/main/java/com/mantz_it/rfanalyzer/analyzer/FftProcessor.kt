@@ -1,8 +1,9 @@
 package com.mantz_it.rfanalyzer.analyzer
 
 import android.util.Log
-import com.mantz_it.nativedsp.NativeDsp
-import com.mantz_it.rfanalyzer.database.GlobalPerformanceData
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.database.PipelineTracer
+import com.mantz_it.rfanalyzer.dsp.SpectrumFft
 import com.mantz_it.rfanalyzer.source.SamplePacket
 import com.mantz_it.rfanalyzer.ui.composable.FftWaterfallSpeed
 import java.util.concurrent.ArrayBlockingQueue
@@ -68,11 +69,12 @@ class FftProcessor(
     private val fftProcessorData: FftProcessorData,
     var waterfallSpeed: FftWaterfallSpeed,
     var fftPeakHold: Boolean,
+    var waterfallResolutionDivider: Int = 1,   // reduces the number of rows in the waterfall buffer (set by the load governor)
     private val getChannelFrequencyRange: () -> Pair<Long, Long>?,
     private val onAverageSignalStrengthChanged: (Float) -> Unit,
 ) : Thread() {
     private var stopRequested = true // Will stop the thread when set to true
-    private var nativeDsp: NativeDsp = NativeDsp()
+    private var spectrumFft: SpectrumFft = SpectrumFft.create()
 
     companion object {
         private const val LOGTAG = "FftProcessor"
@@ -123,6 +125,7 @@ class FftProcessor(
                 break
 
             val startTime = System.nanoTime()  // start of processing
+            PipelineMetrics.fft.recordQueue(samples.enqueueTimestamp, inputQueue.size)
 
             if(magPacket.size() != samples.size()) {
                 magPacket = SamplePacket(samples.size())
@@ -132,7 +135,7 @@ class FftProcessor(
             magPacket.setSize(samples.size())
 
             // do the signal processing:
-            nativeDsp.performWindowedFftAndReturnMag(samples.re(), samples.im(), magPacket.re())
+            spectrumFft.performWindowedFftAndReturnMag(samples.re(), samples.im(), magPacket.re())
 
             //Log.d(LOGTAG, "After processing: ${System.currentTimeMillis()-startTime}ms")
 
@@ -157,8 +160,10 @@ class FftProcessor(
             }
 
             // Performance Tracking
-            val nsPerPacket = samples.size() * 1_000_000_000f / samples.sampleRate
-            GlobalPerformanceData.updateLoad("FftProcessor", (System.nanoTime() - startTime) / nsPerPacket)
+            val nsPerPacket = magPacket.size() * 1_000_000_000f / magPacket.sampleRate  // samples was already returned to the scheduler
+            val endTime = System.nanoTime()
+            PipelineMetrics.fft.recordProcessing(endTime - startTime, nsPerPacket, magPacket.size(), magPacket.size())
+            PipelineTracer.record(PipelineTracer.Stage.FFT, startTime, endTime)
 
             // Put the results into fftProcessorData
             try {
@@ -175,7 +180,7 @@ class FftProcessor(
                 lastFrequency = magPacket.frequency
                 lastSampleRate = magPacket.sampleRate.toLong()
 
-                val waterfallBufferSize = waterfallSpeedToBufferSizeMap[waterfallSpeed.ordinal]
+                val waterfallBufferSize = waterfallSpeedToBufferSizeMap[waterfallSpeed.ordinal] / waterfallResolutionDivider.coerceAtLeast(1)
                 if(fftProcessorData.waterfallBuffer == null || fftProcessorData.waterfallBuffer!![0].size != magBuffer!!.size) {
                     fftProcessorData.waterfallBuffer = Array(waterfallBufferSize) { FloatArray(magBuffer!!.size) { -9999f } }
                     fftProcessorData.waterfallBufferDirtyMap = Array(waterfallBufferSize) { true }
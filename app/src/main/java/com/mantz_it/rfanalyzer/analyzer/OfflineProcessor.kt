@@ -0,0 +1,242 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import android.content.Context
+import android.util.Log
+import com.mantz_it.rfanalyzer.dsp.FirFilter
+import com.mantz_it.rfanalyzer.dsp.ResamplerInterface
+import com.mantz_it.rfanalyzer.dsp.SpectrumFft
+import com.mantz_it.rfanalyzer.source.FileIQSource
+import com.mantz_it.rfanalyzer.source.IQSourceInterface
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import com.mantz_it.rfanalyzer.ui.composable.DemodulationMode
+import java.util.concurrent.ArrayBlockingQueue
+
+/**
+ * <h1>RF Analyzer - Offline Processor</h1>
+ *
+ * Module:      OfflineProcessor.kt
+ * Description: Headless processing of an IQ file as fast as possible. Uses the same DSP blocks
+ * as the live pipeline (IQConverter, demod decimation filter of the Scheduler, Resampler,
+ * Demodulator, AudioDecimator and the SpectrumFft of the FftProcessor), but calls them directly
+ * on the calling thread: There is no pacing, no queue between the stages, no UI and no audio
+ * track. Nothing is dropped (including the shorter last packet of the file), so the output is
+ * the same on every run.
+ * The results are passed to a Listener:
+ *  - spectrogram rows (magnitudes in dB of the windowed FFT, like the waterfall)
+ *  - the channel (mixed, filtered and decimated IQ samples)
+ *  - demodulated audio at Demodulator.AUDIO_RATE
+ * The listener callbacks are called on the processing thread and the passed arrays / packets
+ * are reused for the next call.
+ * Each instance processes one file. For batch processing, create one instance per file and run
+ * them on a thread pool (the instances share no state).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class OfflineProcessor(
+    private val source: FileIQSource,   // initialized (FileIQSource.init()) but not yet opened
+    private val config: Config,
+    private val listener: Listener
+) {
+
+    companion object {
+        private const val LOGTAG = "OfflineProcessor"
+        private const val PACKET_TIMEOUT = 5000     // ms to wait for the reader thread of the source (slow storage)
+    }
+
+    data class Config(
+        val fftSize: Int = 0,                       // number of bins of the spectrogram rows (power of 2). 0: no spectrogram
+        val spectrogramPacketInterval: Int = 1,     // a spectrogram row starts with every n-th packet of the source
+        val demodulationMode: DemodulationMode = DemodulationMode.OFF,
+        val channelFrequency: Long = 0,             // center frequency of the channel (for demodulation and channel output)
+        val channelWidth: Int = 0,                  // channel filter width in Hz. 0: default of the demodulation mode
+        val channelSampleRate: Int = 0,             // sample rate of the channel output if demodulationMode is OFF. 0: no channel output
+    )
+
+    /**
+     * Receives the results. sampleIndex is the index of the first sample (in the file) of the
+     * source packet from which the result was calculated (the delay of the filters is not
+     * compensated).
+     */
+    interface Listener {
+        fun onSpectrogramRow(sampleIndex: Long, frequency: Long, sampleRate: Int, magnitudes: FloatArray) {}
+        fun onChannelSamples(sampleIndex: Long, samples: SamplePacket) {}
+        fun onAudioSamples(sampleIndex: Long, samples: SamplePacket) {}
+    }
+
+    @Volatile
+    private var cancelRequested = false
+    @Volatile
+    var processedSamples = 0L       // number of samples (of the file) processed so far
+        private set
+    var errorMessage: String? = null // set if run() returned false because of an error
+        private set
+
+    // Spectrogram
+    private val spectrumFft: SpectrumFft? = if (config.fftSize > 0) SpectrumFft.create() else null
+    private val fftBuffer = SamplePacket(config.fftSize)
+    private val magnitudes = FloatArray(config.fftSize)
+    private var fftRowSampleIndex = 0L
+
+    // Channel / Demodulation (created in run() when the packet size is known)
+    private var demodulator: Demodulator? = null
+    private var channelSampleRate = config.channelSampleRate
+    private val mixFrequency = if (config.demodulationMode == DemodulationMode.CW) config.channelFrequency - Demodulator.CW_OFFSET_FREQUENCY else config.channelFrequency
+    private var decimationFilter: FirFilter? = null
+    private var resampler: ResamplerInterface? = null
+    private var mixedSamples = SamplePacket(0)
+    private var channelSamples = SamplePacket(0)
+    private var quadratureAudio = SamplePacket(0)
+    private var audioSamples = SamplePacket(0)
+    private var audioDecimator: AudioDecimator? = null
+
+    private val sourceCallback = object : IQSourceInterface.Callback {
+        override fun onIQSourceReady(source: IQSourceInterface?) { }
+        override fun onIQSourceError(source: IQSourceInterface?, message: String?) {
+            if (!this@OfflineProcessor.source.isEndOfFile) {    // the end of the file is also reported as error
+                Log.e(LOGTAG, "onIQSourceError: $message")
+                errorMessage = message
+            }
+        }
+    }
+
+    /**
+     * Requests run() to return (can be called from any thread)
+     */
+    fun cancel() {
+        cancelRequested = true
+    }
+
+    /**
+     * Processes the whole file on the calling thread. The source is opened, read without
+     * pacing and repeat, and closed afterwards.
+     *
+     * @return true if the end of the file was reached; false on error (see errorMessage) or cancel
+     */
+    fun run(context: Context): Boolean {
+        source.isRepeat = false
+        source.playbackSpeed = 0f
+        if (!source.open(context, sourceCallback)) {
+            if (errorMessage == null) errorMessage = "Could not open file"
+            return false
+        }
+        val samplesPerPacket = source.packetSize / source.bytesPerSample
+        if (config.demodulationMode != DemodulationMode.OFF) {
+            // the queues are not used (the thread of the demodulator is never started):
+            val demodulator = Demodulator(ArrayBlockingQueue(1), ArrayBlockingQueue(1), samplesPerPacket)
+            demodulator.demodulationMode = config.demodulationMode
+            if (config.channelWidth > 0)
+                demodulator.channelWidth = config.channelWidth
+            channelSampleRate = demodulator.quadratureRate
+            this.demodulator = demodulator
+        }
+        if (channelSampleRate > 0) {
+            decimationFilter = Scheduler.createDemodDecimationFilter(source.sampleRate, channelSampleRate)
+            mixedSamples = SamplePacket(samplesPerPacket)
+            channelSamples = SamplePacket(samplesPerPacket)
+        }
+        if (demodulator != null) {
+            quadratureAudio = SamplePacket(samplesPerPacket)
+            audioSamples = SamplePacket(samplesPerPacket)
+            audioDecimator = AudioDecimator(samplesPerPacket, Demodulator.AUDIO_RATE)
+        }
+        Log.i(LOGTAG, "run: Processing ${source.filename} (${source.length} samples). config=$config")
+
+        val startTime = System.nanoTime()
+        var finished = false
+        var packetCounter = 0L
+        source.startSampling()
+        try {
+            while (!cancelRequested && errorMessage == null) {
+                val packet = source.getPacket(PACKET_TIMEOUT)
+                if (packet == null) {
+                    if (source.isEndOfFile) {
+                        finished = true
+                        break
+                    }
+                    continue    // timeout or error (checked by the loop condition)
+                }
+                val sampleIndex = processedSamples
+
+                // Spectrogram (a row may span multiple packets if the fft size is larger than the packet):
+                if (spectrumFft != null && (fftBuffer.size() > 0 || packetCounter % config.spectrogramPacketInterval == 0L)) {
+                    if (fftBuffer.size() == 0)
+                        fftRowSampleIndex = sampleIndex
+                    source.fillPacketIntoSamplePacket(packet, fftBuffer)
+                    if (fftBuffer.size() == fftBuffer.capacity()) {
+                        spectrumFft.performWindowedFftAndReturnMag(fftBuffer.re(), fftBuffer.im(), magnitudes)
+                        listener.onSpectrogramRow(fftRowSampleIndex, source.frequency, source.sampleRate, magnitudes)
+                        fftBuffer.setSize(0)
+                    }
+                }
+
+                // Channel and demodulation:
+                if (channelSampleRate > 0) {
+                    mixedSamples.setSize(0)
+                    val filter = decimationFilter
+                    if (filter != null)
+                        source.mixAndDecimatePacketIntoSamplePacket(packet, mixedSamples, mixFrequency, filter)
+                    else
+                        source.mixPacketIntoSamplePacket(packet, mixedSamples, mixFrequency)
+                    processChannel(sampleIndex)
+                }
+
+                processedSamples += packet.size / source.bytesPerSample   // (the last packet of the file is shorter)
+                source.returnPacket(packet)
+                packetCounter++
+            }
+        } finally {
+            source.close()
+        }
+        val seconds = (System.nanoTime() - startTime) / 1_000_000_000.0
+        Log.i(LOGTAG, "run: ${if (finished) "Finished" else "Aborted"} after $processedSamples samples in " +
+                "${"%.1f".format(seconds)} s (${"%.1f".format(processedSamples / source.sampleRate.toDouble() / seconds)}x real time)")
+        return finished
+    }
+
+    /**
+     * Resamples the mixed samples to the channel rate, passes them to the listener and
+     * demodulates them. Like in the Resampler, one input packet may fill multiple output packets.
+     */
+    private fun processChannel(sampleIndex: Long) {
+        val resampler = resampler ?: Resampler.createResampler(mixedSamples.sampleRate, channelSampleRate).also { resampler = it }
+        var offset = 0
+        while (offset < mixedSamples.size()) {
+            channelSamples.setSize(0)
+            val consumed = resampler.resample(mixedSamples, channelSamples, offset, mixedSamples.size() - offset)
+            if (consumed == 0) {
+                Log.w(LOGTAG, "processChannel: Resampler did not consume any samples. Skipping rest of the packet.")
+                break
+            }
+            offset += consumed
+            channelSamples.sampleRate = channelSampleRate
+            channelSamples.frequency = config.channelFrequency
+            listener.onChannelSamples(sampleIndex, channelSamples)
+
+            demodulator?.let {
+                it.demodulate(channelSamples, quadratureAudio)
+                if (quadratureAudio.sampleRate > Demodulator.AUDIO_RATE) {
+                    audioDecimator!!.decimate(quadratureAudio, audioSamples)
+                    listener.onAudioSamples(sampleIndex, audioSamples)
+                } else
+                    listener.onAudioSamples(sampleIndex, quadratureAudio)
+            }
+        }
+    }
+}
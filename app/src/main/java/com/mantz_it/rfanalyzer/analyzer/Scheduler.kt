@@ -1,11 +1,11 @@
 package com.mantz_it.rfanalyzer.analyzer
 
 import android.util.Log
-import com.mantz_it.rfanalyzer.database.GlobalPerformanceData
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.database.PipelineTracer
+import com.mantz_it.rfanalyzer.dsp.FirFilter
 import com.mantz_it.rfanalyzer.source.IQSourceInterface
 import com.mantz_it.rfanalyzer.source.SamplePacket
-import java.io.BufferedOutputStream
-import java.io.IOException
 import java.util.concurrent.ArrayBlockingQueue
 
 /**
@@ -49,8 +49,44 @@ class Scheduler(var fftSize: Int, private val source: IQSourceInterface) : Threa
         // higher delays when switching frequencies.
         private const val FFT_QUEUE_SIZE = 2
         private const val DEMOD_QUEUE_SIZE = 20
-        private const val SQUELCH_DEBOUNCE_COUNT = 50  // number of loop iterations to wait before squelch goes from true to false
+        private const val LOW_LATENCY_DEMOD_BACKLOG = 2  // max. number of packets waiting for the demodulator in low latency mode
+        private const val DEMOD_DECIMATION_ATTENUATION = 60f  // stop band attenuation of the first decimation stage in the demodulation path
+        private const val REDUCED_DEMOD_DECIMATION_ATTENUATION = 40f  // same, if reducedFilterQuality is set (~1/3 less taps)
         private const val LOGTAG = "Scheduler"
+
+        /**
+         * Creates the low pass filter for the first decimation stage of the demodulation path or
+         * null if the input rate is not high enough for decimation. The decimation is chosen so
+         * that the output rate is an integer and at least twice the demodulationSampleRate. The
+         * final resampling to demodulationSampleRate is done by the Resampler.
+         */
+        fun createDemodDecimationFilter(inputRate: Int, demodulationSampleRate: Int, reducedQuality: Boolean = false): FirFilter? {
+            if (demodulationSampleRate <= 0)
+                return null
+
+            // find the largest decimation which divides the input rate:
+            var decimation = inputRate / (2 * demodulationSampleRate)
+            while (decimation > 1 && inputRate % decimation != 0)
+                decimation--
+            var filter: FirFilter? = null
+            if (decimation > 1) {
+                // Only aliases which fall into the band of the demodulator (0.4 * demodulationSampleRate) must
+                // be suppressed. Everything else is removed later by the Resampler.
+                val decimatedRate = inputRate / decimation
+                val passBand = 0.4f * demodulationSampleRate
+                filter = FirFilter.createLowPass(
+                    decimation,
+                    1f,
+                    inputRate.toFloat(),
+                    decimatedRate / 2f,
+                    decimatedRate - 2 * passBand,
+                    if (reducedQuality) REDUCED_DEMOD_DECIMATION_ATTENUATION else DEMOD_DECIMATION_ATTENUATION
+                )
+            }
+            Log.d(LOGTAG, "createDemodDecimationFilter: inputRate=$inputRate demodulationSampleRate=$demodulationSampleRate " +
+                    "decimation=$decimation (${filter?.numberOfTaps ?: 0} taps)")
+            return filter
+        }
     }
 
     val fftOutputQueue: ArrayBlockingQueue<SamplePacket> = ArrayBlockingQueue(FFT_QUEUE_SIZE)     // Queue that delivers samples to the Processing Loop
@@ -59,21 +95,25 @@ class Scheduler(var fftSize: Int, private val source: IQSourceInterface) : Threa
     val demodInputQueue: ArrayBlockingQueue<SamplePacket> = ArrayBlockingQueue(DEMOD_QUEUE_SIZE)  // Queue that collects used buffers from the Demodulator block
     var channelFrequency: Long = 0 // Shift frequency to this value when passing packets to demodulator
     var isDemodulationActivated: Boolean = false // Indicates if samples should be forwarded to the demodulator queues or not.
-    var squelchSatisfied: Boolean = false // indicates whether the current signal is strong enough to cross the squelch threshold
+    var demodulationSampleRate: Int = 0 // Sample rate needed by the demodulator. Samples are decimated (in the same pass as mixing) to at least 2x this rate. 0 means no decimation
+    var squelchSatisfied: Boolean = false // indicates whether the current signal is strong enough to cross the squelch threshold (gates the recording)
+    var lowLatency: Boolean = false // if true, old packets in the demod queue are dropped instead of building up a backlog
+    var maxFftRate: Int = 0 // max. number of FFT frames per second (0: unlimited). Set by the load governor
+    var reducedFilterQuality: Boolean = false // use less stop band attenuation for the demod decimation filter. Set by the load governor
+    @Volatile
+    var backgroundMode: Boolean = false // no FFT frames (nobody looks at the spectrum, see Demodulator.backgroundMode)
 
     private var stopRequested = true
 
     // Recording
-    private var stopRecording = false
-    private var bufferedOutputStream: BufferedOutputStream? = null          // Used for recording
-    private var recordedFileSize: Long = 0                                  // Number of bytes written to the recording file
-    private var recordedStartTimestamp: Long = 0                            // Timestamp of when recording was started
-    private var maxRecordingTime: Long? = null                              // Maximum time to record (in milliseconds). null -> never stop
-    private var maxRecordingFileSize: Long? = null                          // Maximum file size for the recording (in bytes). null -> never stop
-    private var onlyWhenSquelchIsSatisfied: Boolean = false                 // only write samples to file when squelch is satisfied
-    private var onRecordingStopped: ((finalSize: Long) -> Unit)? = null     // callback when recording stops (with final file size in bytes)
-    private var onFileSizeUpdate: ((currentFileSize: Long) -> Unit)? = null // periodical callback during recording to report file size (in bytes) to ui
-    private var squelchDebounceCounter: Int = 0                             // helper counter to debounce squelch changes
+    @Volatile
+    var recordingSession: RecordingSession? = null  // raw IQ recording (the Scheduler writes every packet of the source into it). null -> no recording
+
+    // Demodulation
+    private var demodDecimationFilter: FirFilter? = null                    // first decimation stage for the demodulator (null if no decimation)
+    private var demodDecimationInputRate: Int = 0                           // input rate for which demodDecimationFilter was created
+    private var demodDecimationOutputRate: Int = 0                          // demodulationSampleRate for which demodDecimationFilter was created
+    private var demodDecimationReducedQuality: Boolean = false              // reducedFilterQuality for which demodDecimationFilter was created
 
     init {
         // allocate the buffer packets.
@@ -98,29 +138,21 @@ class Scheduler(var fftSize: Int, private val source: IQSourceInterface) : Threa
     }
 
     /**
-     * Will stop writing samples to the bufferedOutputStream and close it.
+     * Returns the low pass filter for the first decimation stage of the demodulation path or null
+     * if the source rate is not high enough for decimation (see createDemodDecimationFilter).
+     * The filter is cached until the source rate, demodulationSampleRate or reducedFilterQuality changes.
      */
-    fun stopRecording() {
-        this.stopRecording = true
-        Log.i(LOGTAG, "stopRecording")
-    }
-
-    fun startRecording(bufferedOutputStream: BufferedOutputStream,
-                       onlyWhenSquelchIsSatisfied: Boolean,                     // only write samples to file when squelch is satisfied
-                       maxRecordingTime: Long? = null,                          // Maximum time to record (in milliseconds). null -> never stop
-                       maxRecordingFileSize: Long? = null,                      // Maximum file size for the recording (in bytes). null -> never stop
-                       onRecordingStopped: (finalSize: Long) -> Unit,           // callback when recording stops (with final file size in bytes)
-                       onFileSizeUpdate: (currentFileSize: Long) -> Unit) {     // periodical callback during recording to report file size (in bytes) to ui
-        stopRecording = false
-        recordedFileSize = 0
-        recordedStartTimestamp = System.currentTimeMillis()
-        this.bufferedOutputStream = bufferedOutputStream
-        this.onlyWhenSquelchIsSatisfied = onlyWhenSquelchIsSatisfied
-        this.maxRecordingTime = maxRecordingTime
-        this.maxRecordingFileSize = maxRecordingFileSize
-        this.onRecordingStopped = onRecordingStopped
-        this.onFileSizeUpdate = onFileSizeUpdate
-        Log.i(LOGTAG, "startRecording: Recording started.")
+    private fun getDemodDecimationFilter(): FirFilter? {
+        val inputRate = source.sampleRate
+        val reducedQuality = reducedFilterQuality
+        if (inputRate == demodDecimationInputRate && demodulationSampleRate == demodDecimationOutputRate
+                && reducedQuality == demodDecimationReducedQuality)
+            return demodDecimationFilter
+        demodDecimationInputRate = inputRate
+        demodDecimationOutputRate = demodulationSampleRate
+        demodDecimationReducedQuality = reducedQuality
+        demodDecimationFilter = createDemodDecimationFilter(inputRate, demodulationSampleRate, reducedQuality)
+        return demodDecimationFilter
     }
 
     override fun run() {
@@ -128,8 +160,9 @@ class Scheduler(var fftSize: Int, private val source: IQSourceInterface) : Threa
         Log.i(LOGTAG, "Scheduler started. (Thread: " + this.name + ")")
         Log.i(LOGTAG, "run: FFT Queues: $fftOutputQueue , $fftInputQueue")
         var fftBuffer: SamplePacket? = null         // reference to a buffer we got from the fft input queue to fill
+        var lastFftFrameTimestamp = 0L              // reception time of the first samples of the last fft buffer (for maxFftRate)
         var demodBuffer: SamplePacket? = null       // reference to a buffer we got from the demod input queue to fill
-        var counter: Long = 0
+        var sampleIndex: Long = 0                   // running index of the first sample of the current packet
 
         val nsPerPacket = (source.packetSize / source.bytesPerSample) * 1_000_000_000f / source.sampleRate
 
@@ -142,111 +175,113 @@ class Scheduler(var fftSize: Int, private val source: IQSourceInterface) : Threa
                 this.stopScheduler()
                 break
             }
-            val startTimestamp = System.nanoTime()
-
-            // Squelch debounce: When squelchSatisfied goes from true to false, wait SQUELCH_DEBOUNCE_COUNT loop iterations before actually stop demodulation/recording
-            if (squelchSatisfied)
-                squelchDebounceCounter = 0
-            else if (squelchDebounceCounter < SQUELCH_DEBOUNCE_COUNT)
-                squelchDebounceCounter++
+            val startTimestamp = System.nanoTime()      // reception time of the samples (used for latency measurement)
+            val packetSamples = packet.size / source.bytesPerSample
+            var deliveredSamples = 0
 
             ///// Recording ////////////////////////////////////////////////////////////////////////
-            if (bufferedOutputStream != null) {
-                if(squelchSatisfied || !onlyWhenSquelchIsSatisfied || squelchDebounceCounter < SQUELCH_DEBOUNCE_COUNT) {
-                    try {
-                        bufferedOutputStream!!.write(packet)
-                        recordedFileSize += packet.size.toLong()
-                    } catch (e: IOException) {
-                        Log.e(LOGTAG, "run: Error while writing to output stream (recording): " + e.message)
-                        this.stopRecording()
-                    }
-                }
-                // report file size every 100 packets:
-                if(counter % 100 == 0L) onFileSizeUpdate?.let { it(recordedFileSize) }
-                // check if recording should stop:
-                maxRecordingTime?.let { if(it <= (System.currentTimeMillis()-recordedStartTimestamp)) {
-                        Log.i(LOGTAG, "run: Max Recording Time reached!")
-                        stopRecording()
-                    }
-                }
-                maxRecordingFileSize?.let { if(it <= recordedFileSize) {
-                        Log.i(LOGTAG, "run: Max Recording File Size reached!")
-                        stopRecording()
-                    }
-                }
-                if (stopRecording) {
-                    try {
-                        bufferedOutputStream!!.close()
-                    } catch (e: IOException) {
-                        Log.e(LOGTAG, "run: Error while closing output stream (recording): " + e.message)
-                    }
-                    bufferedOutputStream = null
-                    Log.i(LOGTAG, "run: Recording stopped.")
-                    onRecordingStopped?.let { it(recordedFileSize) }
-                }
-                counter++
-            }
+            // (a finished session ignores the packets until it is replaced by the next recording)
+            recordingSession?.write(packet, 0, packet.size, squelchSatisfied, startTimestamp)
 
             ///// Demodulation /////////////////////////////////////////////////////////////////////
-            if (isDemodulationActivated && (squelchSatisfied || squelchDebounceCounter < SQUELCH_DEBOUNCE_COUNT)) {
+            // (all samples are delivered. The Demodulator applies the squelch on the channel samples)
+            if (isDemodulationActivated) {
+                // In low latency mode the demodulator must never lag behind by more than a few
+                // packets. Drop the oldest packets (they would be played too late anyway):
+                if (lowLatency) {
+                    while (demodOutputQueue.size >= LOW_LATENCY_DEMOD_BACKLOG) {
+                        val oldPacket = demodOutputQueue.poll() ?: break
+                        PipelineMetrics.demodBacklogDrop.record(oldPacket.size())
+                        demodInputQueue.offer(oldPacket)
+                    }
+                }
                 // Get a buffer from the demodulator inputQueue
                 demodBuffer = demodInputQueue.poll()
                 if (demodBuffer != null) {
                     demodBuffer.setSize(0) // mark buffer as empty
-                    // fill the packet into the buffer and shift its spectrum by mixFrequency:
-                    source.mixPacketIntoSamplePacket(packet, demodBuffer, channelFrequency)
+                    // fill the packet into the buffer and shift its spectrum by mixFrequency (and
+                    // decimate it in the same pass if the source rate is much higher than needed):
+                    val decimationFilter = getDemodDecimationFilter()
+                    if (decimationFilter != null)
+                        source.mixAndDecimatePacketIntoSamplePacket(packet, demodBuffer, channelFrequency, decimationFilter)
+                    else
+                        source.mixPacketIntoSamplePacket(packet, demodBuffer, channelFrequency)
+                    demodBuffer.timestamp = startTimestamp
+                    demodBuffer.sampleIndex = sampleIndex
+                    demodBuffer.enqueueTimestamp = System.nanoTime()
+                    deliveredSamples += demodBuffer.size()
                     demodOutputQueue.offer(demodBuffer) // deliver packet
                 } else {
                     Log.d(LOGTAG, "run: Flush the demod queue because demodulator is too slow!")
+                    PipelineMetrics.demodQueueFlush.record(packetSamples)  // the current packet
                     generateSequence { demodOutputQueue.poll() }
-                        .forEach { demodInputQueue.offer(it) }
+                        .forEach {
+                            PipelineMetrics.demodQueueFlush.record(it.size())
+                            demodInputQueue.offer(it)
+                        }
                 }
             }
 
             ///// FFT //////////////////////////////////////////////////////////////////////////////
-            // If buffer is null we request a new buffer from the fft input queue:
-            if (fftBuffer == null) {
-                fftBuffer = fftInputQueue.poll()
-                if (fftBuffer != null) {
-                    if (fftBuffer.capacity() == fftSize) fftBuffer.setSize(0) // mark buffer as empty
-                    else fftBuffer =
-                        SamplePacket(fftSize) // fft size changed. discard the old buffer and create a new!
+            // In background mode nobody looks at the spectrum. Don't produce any FFT frames:
+            if (!backgroundMode) {
+                // If buffer is null we request a new buffer from the fft input queue (unless the fft rate is limited):
+                val maxFftRate = maxFftRate
+                if (fftBuffer == null && (maxFftRate <= 0 || startTimestamp - lastFftFrameTimestamp >= 1_000_000_000L / maxFftRate)) {
+                    fftBuffer = fftInputQueue.poll()
+                    if (fftBuffer != null) {
+                        if (fftBuffer.capacity() == fftSize) fftBuffer.setSize(0) // mark buffer as empty
+                        else fftBuffer =
+                            SamplePacket(fftSize) // fft size changed. discard the old buffer and create a new!
+                    }
                 }
-            }
 
-            // If we got a buffer, fill it!
-            if (fftBuffer != null) {
-                // fill the packet into the buffer:
-                source.fillPacketIntoSamplePacket(packet, fftBuffer)
+                // If we got a buffer, fill it!
+                if (fftBuffer != null) {
+                    // the fft buffer may span multiple packets. It carries the timing of the first one:
+                    if (fftBuffer.size() == 0) {
+                        lastFftFrameTimestamp = startTimestamp
+                        fftBuffer.timestamp = startTimestamp
+                        fftBuffer.sampleIndex = sampleIndex
+                    }
+                    // fill the packet into the buffer:
+                    val sizeBefore = fftBuffer.size()
+                    source.fillPacketIntoSamplePacket(packet, fftBuffer)
+                    deliveredSamples += fftBuffer.size() - sizeBefore
 
-                // check if the buffer is now full and if so: deliver it to the output queue
-                if (fftBuffer.capacity() == fftBuffer.size()) {
-                    fftOutputQueue.offer(fftBuffer)
-                    fftBuffer = null
+                    // check if the buffer is now full and if so: deliver it to the output queue
+                    if (fftBuffer.capacity() == fftBuffer.size()) {
+                        fftBuffer.enqueueTimestamp = System.nanoTime()
+                        fftOutputQueue.offer(fftBuffer)
+                        fftBuffer = null
+                    }
+                    // otherwise we would just go for another round...
                 }
-                // otherwise we would just go for another round...
+                // If buffer was null we currently have no buffer available, which means we
+                // simply throw the samples away (this will happen most of the time).
+                else
+                    PipelineMetrics.fftDrop.record(packetSamples)
+            } else if (fftBuffer != null) {
+                // give back the partially filled buffer (it would contain a gap after the background mode)
+                fftInputQueue.offer(fftBuffer)
+                fftBuffer = null
             }
-            // If buffer was null we currently have no buffer available, which means we
-            // simply throw the samples away (this will happen most of the time).
 
             // In both cases: Return the packet back to the source buffer pool:
             source.returnPacket(packet)
+            sampleIndex += packetSamples
 
             // Performance Tracking:
-            val processingTime = System.nanoTime() - startTimestamp
-            val load = processingTime / nsPerPacket
-            GlobalPerformanceData.updateLoad("Scheduler", load)
+            val endTimestamp = System.nanoTime()
+            val processingTime = endTimestamp - startTimestamp
+            PipelineTracer.record(PipelineTracer.Stage.SCHEDULER, startTimestamp, endTimestamp)
+            PipelineMetrics.scheduler.recordProcessing(processingTime, nsPerPacket, packetSamples, deliveredSamples)
         }
         this.stopRequested = true
-        if (bufferedOutputStream != null) {
-            try {
-                bufferedOutputStream!!.close()
-            } catch (e: IOException) {
-                Log.e(LOGTAG, "run: Error while closing output stream (cleanup)(recording): " + e.message)
-            }
-            bufferedOutputStream = null
-            Log.i(LOGTAG, "run: Recording stopped (Scheduler shutting down).")
-            onRecordingStopped?.let { it(recordedFileSize) }
+        recordingSession?.let {
+            if (!it.isFinished)
+                Log.i(LOGTAG, "run: Recording stopped (Scheduler shutting down).")
+            it.close()
         }
         Log.i(LOGTAG, "Scheduler stopped. (Thread: " + this.name + ")")
     }
@@ -2,6 +2,8 @@ package com.mantz_it.rfanalyzer.database
 
 import androidx.room.Database
 import androidx.room.RoomDatabase
+import androidx.room.migration.Migration
+import androidx.sqlite.db.SupportSQLiteDatabase
 
 /**
  * <h1>RF Analyzer - Database</h1>
@@ -30,8 +32,17 @@ import androidx.room.RoomDatabase
  */
 
 
-@Database(entities = [Recording::class], version = 1, exportSchema = false)
+@Database(entities = [Recording::class], version = 2, exportSchema = false)
 abstract class AppDatabase : RoomDatabase() {
     abstract fun recordingDao(): RecordingDao
+
+    companion object {
+        // Version 2: audio recordings (column audioFormat)
+        val MIGRATION_1_2 = object : Migration(1, 2) {
+            override fun migrate(db: SupportSQLiteDatabase) {
+                db.execSQL("ALTER TABLE recordings ADD COLUMN audioFormat TEXT")
+            }
+        }
+    }
 }
 
@@ -10,14 +10,18 @@ import androidx.datastore.preferences.core.intPreferencesKey
 import androidx.datastore.preferences.core.floatPreferencesKey
 import androidx.datastore.preferences.core.stringPreferencesKey
 import com.mantz_it.rfanalyzer.analyzer.FftProcessorData
+import com.mantz_it.rfanalyzer.analyzer.LoadGovernor
 import com.mantz_it.rfanalyzer.source.HackrfSource
 import com.mantz_it.rfanalyzer.source.HydraSdrRfPort
 import com.mantz_it.rfanalyzer.ui.composable.DemodulationMode
 import com.mantz_it.rfanalyzer.ui.composable.FftColorMap
 import com.mantz_it.rfanalyzer.ui.composable.FftDrawingType
 import com.mantz_it.rfanalyzer.ui.composable.FftWaterfallSpeed
+import com.mantz_it.rfanalyzer.ui.composable.AudioRecordingFormat
 import com.mantz_it.rfanalyzer.ui.composable.FilesourceFileFormat
+import com.mantz_it.rfanalyzer.ui.composable.FilesourcePlaybackSpeed
 import com.mantz_it.rfanalyzer.ui.composable.FontSize
+import com.mantz_it.rfanalyzer.ui.composable.RecordingTarget
 import com.mantz_it.rfanalyzer.ui.composable.ScreenOrientation
 import com.mantz_it.rfanalyzer.ui.composable.SourceType
 import com.mantz_it.rfanalyzer.ui.composable.StopAfterUnit
@@ -190,6 +194,10 @@ class AppStateRepository @Inject constructor(
     val filesourceFilename = MutableState("")
     val filesourceFileFormat = MutableState(FilesourceFileFormat.HACKRF)
     val filesourceRepeatEnabled = Setting("filesourceRepeatEnabled", false, scope, dataStore)
+    val filesourcePlaybackSpeed = Setting("filesourcePlaybackSpeed", FilesourcePlaybackSpeed.X1, scope, dataStore)
+    val filesourcePaused = MutableState(false)
+    val filesourcePlaybackPosition = MutableState(0L)    // in samples (updated by the AnalyzerService)
+    val filesourceLength = MutableState(-1L)             // in samples; -1 if unknown
 
     // View Tab
     val fftSize = Setting("fftSize", 16384, scope, dataStore)
@@ -201,6 +209,12 @@ class AppStateRepository @Inject constructor(
     val fftDrawingType = Setting("fftDrawingType", FftDrawingType.LINE, scope, dataStore)
     val fftRelativeFrequency = Setting("fftRelativeFrequency", false, scope, dataStore)
     val fftWaterfallRatio = Setting("fftWaterfallRatio", 0.4f, scope, dataStore)
+    // Quality reduction under CPU pressure (set by the AnalyzerService, see LoadGovernor):
+    val loadGovernorLevel = MutableState(LoadGovernor.Level.FULL)
+    val effectiveFftSize = DerivedState(fftSize, loadGovernorLevel) { LoadGovernor.reducedFftSize(fftSize.value, loadGovernorLevel.value) }
+    val effectiveFftAverageLength = DerivedState(fftAverageLength, loadGovernorLevel) {
+        if (loadGovernorLevel.value >= LoadGovernor.Level.AVERAGING) 0 else fftAverageLength.value
+    }
 
     // Demodulation Tab
     val demodulationMode = Setting("demodulationMode", DemodulationMode.OFF, scope, dataStore)
@@ -227,12 +241,17 @@ class AppStateRepository @Inject constructor(
     val keepChannelCentered = Setting("keepChannelCentered", false, scope, dataStore)
     val audioVolumeLevel = Setting("audioVolumeLevel", 0.33f, scope, dataStore)
     val audioMuted = Setting("audioMuted", false, scope, dataStore)
+    val lowLatencyAudio = Setting("lowLatencyAudio", false, scope, dataStore)  // takes effect when the analyzer is (re)started
     val effectiveAudioVolumeLevel = DerivedState(audioVolumeLevel, audioMuted) { if(audioMuted.value) 0f else audioVolumeLevel.value }
 
     // Recording Tab
     val recordingRunning = MutableState(false)
     val recordingName = Setting("recordingName", "My Recording", scope, dataStore)
+    val recordingTarget = Setting("recordingTarget", RecordingTarget.RAW, scope, dataStore)
+    val recordingAudioFormat = Setting("recordingAudioFormat", AudioRecordingFormat.WAV, scope, dataStore)
     val recordOnlyWhenSquelchIsSatisfied = Setting("recordOnlyWhenSquelchIsSatisfied", false, scope, dataStore)
+    val recordingPreRoll = Setting("recordingPreRoll", 0.5f, scope, dataStore)     // seconds recorded before the squelch opens
+    val recordingPostRoll = Setting("recordingPostRoll", 0.5f, scope, dataStore)   // seconds recorded after the squelch closed
     val recordingStopAfterThreshold = Setting("recordingStopAfterThreshold", 10, scope, dataStore)
     val recordingstopAfterUnit = Setting("recordingStopAfterUnit", StopAfterUnit.NEVER, scope, dataStore)
     val recordingCurrentFileSize = MutableState(0L)
@@ -242,6 +261,8 @@ class AppStateRepository @Inject constructor(
     val screenOrientation = Setting("screenOrientation", ScreenOrientation.AUTO, scope, dataStore)
     val fontSize = Setting("fontSize", FontSize.NORMAL, scope, dataStore)
     val showDebugInformation = Setting("showDebugInformation", false, scope, dataStore)
+    val pipelineTracing = Setting("pipelineTracing", false, scope, dataStore)  // takes effect when the analyzer is (re)started
+    val loadGovernorEnabled = Setting("loadGovernorEnabled", true, scope, dataStore)
     val loggingEnabled = Setting("loggingEnabled", false, scope, dataStore)
     val colorTheme = Setting("colorTheme", ColorTheme.RFANALYZER_DARK, scope, dataStore)
     val controlDrawerSide = Setting("controlDrawerSide", ControlDrawerSide.RIGHT, scope, dataStore)
@@ -267,11 +288,14 @@ class AppStateRepository @Inject constructor(
     val analyzerRunning = MutableState(false)
     val analyzerStartPending = MutableState(false) // Indicates if the analyzer is currently getting started
     val averageSignalStrength = MutableState(-999f)
-    val squelchSatisfied = DerivedState(averageSignalStrength, squelch, squelchEnabled) {
-        if (squelchEnabled.value)
-            averageSignalStrength.value > squelch.value
-        else
+    val channelSquelchOpen = MutableState(false)  // state of the time domain squelch in the Demodulator
+    val squelchSatisfied = DerivedState(averageSignalStrength, squelch, squelchEnabled, demodulationMode, channelSquelchOpen) {
+        if (!squelchEnabled.value)
             true  // always satisfied when squelch is disabled
+        else if (demodulationMode.value != DemodulationMode.OFF)
+            channelSquelchOpen.value  // measured on the channel samples
+        else
+            averageSignalStrength.value > squelch.value  // no channel path: use the FFT
     }
 
     // Billing State
@@ -293,7 +317,7 @@ class AppStateRepository @Inject constructor(
     private val _analyzerEvents = MutableSharedFlow<AnalyzerEvent?>()
     val analyzerEvents: SharedFlow<AnalyzerEvent?> = _analyzerEvents
     sealed class AnalyzerEvent {
-        data class RecordingFinished(val finalSize: Long, val recordingFile: File): AnalyzerEvent()
+        data class RecordingFinished(val finalSize: Long, val recordingFile: File, val frequency: Long, val sampleRate: Long, val fileFormat: FilesourceFileFormat, val audioFormat: AudioRecordingFormat? = null): AnalyzerEvent()
         data class SourceFailure(val message: String): AnalyzerEvent()
     }
     fun emitAnalyzerEvent(event: AnalyzerEvent){ scope.launch { _analyzerEvents.emit(event) } }
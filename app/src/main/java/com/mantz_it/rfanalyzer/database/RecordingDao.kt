@@ -7,6 +7,7 @@ import androidx.room.Insert
 import androidx.room.OnConflictStrategy
 import androidx.room.PrimaryKey
 import androidx.room.Query
+import com.mantz_it.rfanalyzer.ui.composable.AudioRecordingFormat
 import com.mantz_it.rfanalyzer.ui.composable.FilesourceFileFormat
 import com.mantz_it.rfanalyzer.ui.composable.asStringWithUnit
 import kotlinx.coroutines.flow.Flow
@@ -51,7 +52,8 @@ data class Recording(
     val fileFormat: FilesourceFileFormat,
     val sizeInBytes: Long,
     val filePath: String,
-    val favorite: Boolean
+    val favorite: Boolean,
+    val audioFormat: AudioRecordingFormat? = null   // null -> IQ recording (fileFormat). Otherwise demodulated audio (fileFormat is the format of the source)
 )
 
 @Dao
@@ -86,5 +88,13 @@ interface RecordingDao {
 
 fun Recording.calculateFileName(): String {
     val timestampString = SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US).format(Date(this.date));
-    return "${timestampString}_${this.name}_${this.fileFormat}_${this.frequency.asStringWithUnit("Hz").replace(" ", "")}_${this.sampleRate.asStringWithUnit("Sps").replace(" ", "")}.iq"
+    return "${timestampString}_${this.name}_${this.fileFormat}_${this.frequency.asStringWithUnit("Hz").replace(" ", "")}_${this.sampleRate.asStringWithUnit("Sps").replace(" ", "")}.${this.audioFormat?.fileExtension ?: "iq"}"
+}
+
+fun Recording.calculateDurationInSeconds(): Long {
+    return when (this.audioFormat) {
+        null -> this.sizeInBytes / this.fileFormat.bytesPerSample / this.sampleRate
+        AudioRecordingFormat.WAV -> (this.sizeInBytes - AudioRecordingFormat.WAV.headerSize).coerceAtLeast(0) / AudioRecordingFormat.BYTES_PER_SAMPLE / this.sampleRate
+        AudioRecordingFormat.AAC -> this.sizeInBytes * 8 / AudioRecordingFormat.AAC.bitRate
+    }
 }
\ No newline at end of file
@@ -10,6 +10,7 @@ import android.util.Log
 import android.widget.Toast
 import androidx.core.content.ContextCompat
 import com.mantz_it.libairspy.AirspyDevice
+import com.mantz_it.rfanalyzer.dsp.FirFilter
 
 /**
  * <h1>RF Analyzer - Airspy Source</h1>
@@ -363,6 +364,19 @@ class AirspySource : IQSourceInterface {
         return converter.mixPacketIntoSamplePacket(packet, samplePacket, channelFrequency)
     }
 
+    override fun mixAndDecimatePacketIntoSamplePacket(
+        packet: ByteArray?,
+        samplePacket: SamplePacket?,
+        channelFrequency: Long,
+        decimationFilter: FirFilter?
+    ): Int {
+        if (packet == null || samplePacket == null || decimationFilter == null) {
+            Log.w(TAG, "mixAndDecimatePacketIntoSamplePacket: packet, samplePacket or decimationFilter is null.")
+            return 0
+        }
+        return converter.mixAndDecimatePacketIntoSamplePacket(packet, samplePacket, channelFrequency, decimationFilter)
+    }
+
 }
 
 
@@ -4,13 +4,23 @@ import android.content.ContentResolver;
 import android.content.Context;
 import android.database.Cursor;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.provider.OpenableColumns;
 import android.util.Log;
 
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
+
 import java.io.BufferedInputStream;
+import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * <h1>RF Analyzer - File Source of IQ samples</h1>
@@ -18,6 +28,15 @@ import java.io.InputStream;
  * Module:      FileIQSource.java
  * Description: Simple source of IQ sampling by reading from IQ files generated by the
  *              HackRF. Just for testing.
+ *              The file is read by a separate thread (ReaderThread) into a ring of packet
+ *              buffers, so that getPacket() never blocks the Scheduler on I/O. If possible, the
+ *              file is memory mapped (FileChannel). Content URIs which can not be mapped (e.g.
+ *              pipes of cloud storage providers) are read as stream instead. In repeat mode
+ *              the end of the file wraps to the beginning in the middle of a packet (gapless).
+ *              Playback can be paused, sped up / slowed down (playbackSpeed) and the read position
+ *              can be changed at any time (seek). Each packet buffer is tagged with the file
+ *              position at which it ends and the seek generation in which it was read. Packets
+ *              which were read ahead before a seek are dropped by getPacket().
  *
  * @author Dennis Mantz
  *
@@ -40,17 +59,30 @@ import java.io.InputStream;
  */
 public class FileIQSource implements IQSourceInterface {
 	private Callback callback = null;
-	private boolean repeat = false;
+	private volatile boolean repeat = false;
 	private int sampleRate = 1000000;
 	private long frequency = 1;
 	private int packetSize = 0;
-	private long startTime = 0;				// timestamp (in ns) when the source was started
-	private long bytesRead = 0;             // total bytes read from file since source start
+	private long startTime = 0;				// timestamp (in ns) when the source was started (or speed/position changed)
+	private long bytesRead = 0;             // total bytes delivered since startTime
+	private volatile boolean resetPacing = false;	// set if startTime and bytesRead must be reset (seek, speed change)
+	private volatile float playbackSpeed = 1f;		// multiple of the real time sample rate. 0 = as fast as possible
+	private volatile boolean paused = false;
+	private volatile boolean sampling = false;		// true between startSampling() and stopSampling()
+	private final Object pauseLock = new Object();
+	private volatile long playbackPosition = 0;		// file position (in bytes) after the last delivered packet
+	private volatile long pendingSeekPosition = -1;	// file position (in bytes) requested by seek(); -1 if none
+	private volatile int seekGeneration = 0;		// incremented on every seek
+	private IdentityHashMap<byte[], PacketInfo> packetInfos = null;	// position and seek generation of each buffer
 	private long lastPacketAccessTime = 0;  // only for debugging
-	private byte[] buffer = null;
 	private Uri uri = null;
 	private ContentResolver contentResolver = null;  // Content Resolver which can open the uri
-	private BufferedInputStream bufferedInputStream = null;
+	private SampleFileInput input = null;	// memory mapped file or input stream
+	private ReaderThread readerThread = null;
+	private ArrayBlockingQueue<byte[]> queue = null;		// packets filled by the reader thread
+	private ArrayBlockingQueue<byte[]> returnQueue = null;	// free packet buffers
+	private volatile boolean endOfFile = false;			// set by the reader thread if the end of the file is reached (and repeat is off)
+	private static final int QUEUE_SIZE = 8;			// number of packets which are read ahead
 	private IQConverter iqConverter;
 	private int fileFormat;
 	private static final String LOGTAG = "FileIQSource";
@@ -69,7 +101,14 @@ public class FileIQSource implements IQSourceInterface {
 		this.sampleRate = sampleRate;
 		this.frequency = frequency;
 		this.packetSize = packetSize;
-		this.buffer = new byte[packetSize];
+		this.queue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+		this.returnQueue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
+		this.packetInfos = new IdentityHashMap<>(QUEUE_SIZE);
+		for (int i = 0; i < QUEUE_SIZE; i++) {
+			byte[] buffer = new byte[packetSize];
+			packetInfos.put(buffer, new PacketInfo());
+			returnQueue.offer(buffer);
+		}
 
 		switch (fileFormat) {
 			case FILE_FORMAT_8BIT_SIGNED:
@@ -97,15 +136,20 @@ public class FileIQSource implements IQSourceInterface {
 			Log.e(LOGTAG,"Callback is null when reporting Error (" + msg + ")");
 	}
 
+	/**
+	 * Opens the file. Tries to memory map it and falls back to an input stream.
+	 *
+	 * @return true on success
+	 */
 	private boolean _openFile() {
 		try {
-			InputStream inputStream;
-			if (uri.getScheme() != null && uri.getScheme().equals("content")) {
-				inputStream = contentResolver.openInputStream(uri); // Use ContentResolver for content URIs
-			} else {
-				inputStream = new FileInputStream(uri.getPath()); // Use FileInputStream for file URIs
+			try {
+				input = new MappedSampleFileInput(openFileDescriptor());
+				Log.i(LOGTAG, "_openFile: File is memory mapped (" + input.getSize() + " Bytes)");
+			} catch (IOException | IllegalArgumentException e) {
+				Log.i(LOGTAG, "_openFile: Could not map file (" + e.getMessage() + "). Read as stream.");
+				input = new StreamSampleFileInput();
 			}
-			this.bufferedInputStream = new BufferedInputStream(inputStream);
 			return true;
 		}catch (IOException e) {
 			Log.e(LOGTAG, "_openFile: Error while opening file: " + e.getMessage());
@@ -118,6 +162,29 @@ public class FileIQSource implements IQSourceInterface {
 		}
 	}
 
+	private ParcelFileDescriptor openFileDescriptor() throws IOException {
+		if (uri.getScheme() != null && uri.getScheme().equals("content")) {
+			ParcelFileDescriptor fileDescriptor = contentResolver.openFileDescriptor(uri, "r");
+			if (fileDescriptor == null)
+				throw new IOException("Content provider returned no file descriptor");
+			return fileDescriptor;
+		} else {
+			return ParcelFileDescriptor.open(new File(uri.getPath()), ParcelFileDescriptor.MODE_READ_ONLY);
+		}
+	}
+
+	private InputStream openInputStream() throws IOException {
+		InputStream inputStream;
+		if (uri.getScheme() != null && uri.getScheme().equals("content")) {
+			inputStream = contentResolver.openInputStream(uri); // Use ContentResolver for content URIs
+			if (inputStream == null)
+				throw new IOException("Content provider returned no input stream");
+		} else {
+			inputStream = new FileInputStream(uri.getPath()); // Use FileInputStream for file URIs
+		}
+		return new BufferedInputStream(inputStream, packetSize);
+	}
+
 	@Override
 	public boolean open(Context context, Callback callback) {
 		if(uri == null || contentResolver == null) {
@@ -135,29 +202,18 @@ public class FileIQSource implements IQSourceInterface {
 
 	@Override
 	public boolean isOpen() {
-		if(bufferedInputStream == null)
-			return false;
-		try {
-			if(bufferedInputStream.available() > 0)
-				return true;
-		} catch (IOException e) {
-
-		}
-		return false;
+		return input != null;
 	}
 
 	@Override
 	public boolean close() {
-		// close the file
-		try {
-			if(bufferedInputStream != null)
-				bufferedInputStream.close();
-			return true;
-		} catch (IOException e) {
-			Log.e(LOGTAG, "stopSampling: Error while closing file: " + e.getMessage());
-			reportError("Unexpected error while closing file: " + e.getMessage());
-			return false;
+		// stop the reader thread and close the file
+		stopSampling();
+		if(input != null) {
+			input.close();
+			input = null;
 		}
+		return true;
 	}
 
 	@Override
@@ -252,6 +308,87 @@ public class FileIQSource implements IQSourceInterface {
 		}
 	}
 
+	/**
+	 * @return playback speed as multiple of the sample rate (0 = as fast as possible)
+	 */
+	public float getPlaybackSpeed() {
+		return playbackSpeed;
+	}
+
+	/**
+	 * @param playbackSpeed	multiple of the sample rate at which the file is played back (e.g. 0.25 or 4).
+	 *                      0 (or infinity) plays the file as fast as the processing allows.
+	 */
+	public void setPlaybackSpeed(float playbackSpeed) {
+		if(Float.isInfinite(playbackSpeed) || playbackSpeed < 0)
+			playbackSpeed = 0;
+		if(playbackSpeed != this.playbackSpeed) {
+			this.playbackSpeed = playbackSpeed;
+			resetPacing = true;
+		}
+	}
+
+	public boolean isPaused() {
+		return paused;
+	}
+
+	/**
+	 * Pauses or resumes the playback. While paused, getPacket() blocks until the playback is
+	 * resumed or the sampling is stopped.
+	 */
+	public void setPaused(boolean paused) {
+		synchronized (pauseLock) {
+			this.paused = paused;
+			pauseLock.notifyAll();
+		}
+	}
+
+	/**
+	 * @return number of samples in the file or -1 if unknown (input stream before reaching the end)
+	 */
+	public long getLength() {
+		SampleFileInput input = this.input;
+		int bytesPerSample = getBytesPerSample();
+		if(input == null || bytesPerSample == 0 || input.getSize() < 0)
+			return -1;
+		return input.getSize() / bytesPerSample;
+	}
+
+	/**
+	 * @return index of the sample following the last packet returned by getPacket()
+	 */
+	public long getPlaybackPosition() {
+		int bytesPerSample = getBytesPerSample();
+		return bytesPerSample == 0 ? 0 : playbackPosition / bytesPerSample;
+	}
+
+	/**
+	 * @return true if the end of the file was reached (and repeat is off) and all packets were delivered
+	 */
+	public boolean isEndOfFile() {
+		return endOfFile && (queue == null || queue.isEmpty());
+	}
+
+	/**
+	 * Continues the playback at the given sample. The packets which were already read ahead are
+	 * discarded. Can be called while sampling (or before startSampling()).
+	 *
+	 * @param sampleIndex	index of the sample (sample = I/Q pair) which should be delivered next.
+	 *                      Values beyond the end of the file are clamped.
+	 */
+	public synchronized void seek(long sampleIndex) {
+		long position = Math.max(0, sampleIndex) * getBytesPerSample();
+		long length = getLength();
+		if(length >= 0)
+			position = Math.min(position, length * getBytesPerSample());
+		Log.i(LOGTAG, "seek: Seek to sample " + sampleIndex + " (byte position " + position + ")");
+		pendingSeekPosition = position;
+		seekGeneration++;
+		playbackPosition = position;
+		endOfFile = false;
+		resetPacing = true;
+	}
+
 	@Override
 	public int getSampleRate() {
 		return sampleRate;
@@ -317,71 +454,124 @@ public class FileIQSource implements IQSourceInterface {
 
 	@Override
 	public byte[] getPacket(int timeout) {
-		byte[] retVal = null;
-		if(bufferedInputStream == null)
+		byte[] packet = null;
+		if(input == null || queue == null)
 			return null;
 
 		try {
-			// Read the samples.
-			if(bufferedInputStream.read(buffer, 0 , buffer.length) == buffer.length) {
-				bytesRead += buffer.length;
-				retVal = buffer;
-			} else {
-				if (repeat) {
-					// rewind and try again:
-					Log.i(LOGTAG, "getPacket: End of File. Rewind!");
-					bufferedInputStream.close();
-					if(!_openFile()) {
-						Log.e(LOGTAG, "getPacket: Error while reopening file.");
-						reportError("Error while re-openening file");
-						return retVal;
-					}
-					if (bufferedInputStream.read(buffer, 0, buffer.length) == buffer.length) {
-						bytesRead += buffer.length;
-						retVal = buffer;
-					}
-				} else {
+			// Block while paused (the time spent in pause must not count for the pacing):
+			if(paused) {
+				synchronized (pauseLock) {
+					while (paused && sampling)
+						pauseLock.wait();
+				}
+				if(!sampling)
+					return null;
+				resetPacing = true;
+			}
+
+			// Get the next packet from the reader thread. Drop packets which were read before the last seek:
+			while(true) {
+				if(endOfFile && queue.isEmpty()) {
 					Log.i(LOGTAG, "getPacket: End of File");
 					reportError("End of File");
+					return null;
+				}
+				packet = queue.poll(timeout, TimeUnit.MILLISECONDS);
+				if(packet == null) {
+					if(endOfFile)
+						continue;	// the reader reached the end of the file while we were waiting
+					Log.e(LOGTAG, "getPacket: Reader thread did not deliver a packet within " + timeout + " ms");
+					return null;
+				}
+				PacketInfo packetInfo = getPacketInfo(packet);
+				if(packetInfo.generation == seekGeneration) {
+					playbackPosition = packetInfo.endPosition;
+					break;
 				}
+				returnPacket(packet);
+			}
+			if(resetPacing) {
+				resetPacing = false;
+				startTime = System.nanoTime();
+				bytesRead = 0;
+			}
+			bytesRead += packet.length;
+
+			// Simulate sample rate of real hardware (scaled by the playback speed):
+			float speed = playbackSpeed;
+			if(speed > 0) {
+				double timePerSample = 1_000_000_000.0 / (sampleRate * (double) speed);
+				long expectedTime = startTime + (long) (timePerSample * bytesRead / getBytesPerSample());
+				long sleep = Math.min(expectedTime - System.nanoTime(), timeout * 1_000_000L);
+				if (sleep > 0) {
+					//Log.i(LOGTAG, "getPacket: sleeping " + sleep + " ns");
+					long millis = sleep / 1000000;
+					int nanos = (int) (sleep % 1000000);
+					Thread.sleep(millis, nanos);
+				} else
+					Log.w(LOGTAG, "getPacket: To slow for actual sample rate! sleep=" + sleep + " (bytesRead: " + bytesRead + ")");
 			}
 
-			// Simulate sample rate of real hardware:
-			double timePerSample = 1_000_000_000.0 / sampleRate;
-			long expectedTime = startTime + (long) (timePerSample * bytesRead / getBytesPerSample());
-			long sleep = Math.min(expectedTime - System.nanoTime(), timeout*1_000_000L);
-			if(sleep > 0) {
-				//Log.i(LOGTAG, "getPacket: sleeping " + sleep + " ns");
-				long millis = sleep / 1000000;
-				int nanos = (int)(sleep % 1000000);
-				Thread.sleep(millis, nanos);
-			} else
-				Log.w(LOGTAG, "getPacket: To slow for actual sample rate! sleep=" + sleep + " (bytesRead: " + bytesRead + ")");
-
-		} catch (IOException e) {
-			Log.e(LOGTAG, "getPacket: Error while reading from file: " + e.getMessage());
-			reportError("Unexpected error while reading file: " + e.getMessage());
 		} catch (InterruptedException e) {
 			Log.w(LOGTAG, "getPacket: Interrupted while sleeping!");
 		}
 		lastPacketAccessTime = System.nanoTime();
-		return retVal;
+		return packet;
 	}
 
 	@Override
 	public void returnPacket(byte[] buffer) {
-		// do nothing
+		if(returnQueue == null)
+			return;
+		if(buffer.length == packetSize)
+			returnQueue.offer(buffer);
+		else {
+			// the last (partial) packet of the file is not part of the buffer ring:
+			synchronized (packetInfos) {
+				packetInfos.remove(buffer);
+			}
+		}
+	}
+
+	private PacketInfo getPacketInfo(byte[] packet) {
+		synchronized (packetInfos) {
+			return packetInfos.get(packet);
+		}
 	}
 
 	@Override
 	public void startSampling() {
 		startTime = System.nanoTime();
 		bytesRead = 0;
+		if(readerThread == null && input != null) {
+			endOfFile = false;
+			sampling = true;
+			readerThread = new ReaderThread();
+			readerThread.start();
+		}
 	}
 
 	@Override
 	public void stopSampling() {
-		// nothing to do here...
+		// wake up getPacket() if it is blocked in pause:
+		synchronized (pauseLock) {
+			sampling = false;
+			pauseLock.notifyAll();
+		}
+		if(readerThread != null) {
+			readerThread.stopReading();
+			try {
+				readerThread.join(1000);
+			} catch (InterruptedException e) {
+				Log.w(LOGTAG, "stopSampling: Interrupted while waiting for the reader thread");
+			}
+			readerThread = null;
+		}
+		// return all queued packets to the pool (the shorter last packet of the file is discarded):
+		byte[] packet;
+		while(queue != null && (packet = queue.poll()) != null)
+			returnPacket(packet);
 	}
 
 	@Override
@@ -392,4 +582,292 @@ public class FileIQSource implements IQSourceInterface {
 	public int mixPacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency) {
 		return this.iqConverter.mixPacketIntoSamplePacket(packet, samplePacket, channelFrequency);
 	}
+
+	@Override
+	public int mixAndDecimatePacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency, FirFilter decimationFilter) {
+		return this.iqConverter.mixAndDecimatePacketIntoSamplePacket(packet, samplePacket, channelFrequency, decimationFilter);
+	}
+
+	/**
+	 * Random access to the bytes of the IQ file (memory mapped file or input stream)
+	 */
+	private interface SampleFileInput {
+		/**
+		 * Reads up to length bytes into buffer.
+		 * @return number of bytes read or -1 if the end of the file is reached
+		 */
+		int read(byte[] buffer, int offset, int length) throws IOException;
+
+		/**
+		 * Sets the read position back to the beginning of the file
+		 */
+		void rewind() throws IOException;
+
+		/**
+		 * Sets the read position to the given byte offset
+		 */
+		void seek(long position) throws IOException;
+
+		/**
+		 * @return size of the file in bytes or -1 if unknown
+		 */
+		long getSize();
+
+		void close();
+	}
+
+	/**
+	 * Bookkeeping for a packet buffer (preallocated per buffer, see init())
+	 */
+	private static class PacketInfo {
+		long endPosition = 0;		// file position (in bytes) after the last byte in the buffer
+		int generation = 0;			// seek generation in which the buffer was filled
+	}
+
+	/**
+	 * Memory mapped file. The file is mapped in windows of MAP_WINDOW_SIZE bytes (a single
+	 * mapping is limited to 2 GB and would needlessly occupy address space).
+	 */
+	private static class MappedSampleFileInput implements SampleFileInput {
+		private static final long MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+		private final ParcelFileDescriptor fileDescriptor;
+		private final FileInputStream fileInputStream;
+		private final FileChannel channel;
+		private final long fileSize;
+		private MappedByteBuffer window = null;
+		private long windowStart = 0;		// file position of the first byte in window
+		private long position = 0;			// current read position in the file
+
+		MappedSampleFileInput(ParcelFileDescriptor fileDescriptor) throws IOException {
+			this.fileDescriptor = fileDescriptor;
+			this.fileInputStream = new FileInputStream(fileDescriptor.getFileDescriptor());
+			this.channel = fileInputStream.getChannel();
+			try {
+				this.fileSize = channel.size();
+				if (fileSize <= 0)
+					throw new IOException("File is empty or not seekable");
+				mapWindow(0);
+			} catch (IOException | IllegalArgumentException e) {
+				close();
+				throw e;
+			}
+		}
+
+		private void mapWindow(long start) throws IOException {
+			window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAP_WINDOW_SIZE, fileSize - start));
+			windowStart = start;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (position >= fileSize)
+				return -1;
+			if (position < windowStart || position >= windowStart + window.capacity())
+				mapWindow(position);
+			int count = (int) Math.min(length, windowStart + window.capacity() - position);
+			window.position((int) (position - windowStart));
+			window.get(buffer, offset, count);
+			position += count;
+			return count;
+		}
+
+		@Override
+		public void rewind() {
+			position = 0;
+		}
+
+		@Override
+		public void seek(long position) {
+			this.position = Math.min(position, fileSize);
+		}
+
+		@Override
+		public long getSize() {
+			return fileSize;
+		}
+
+		@Override
+		public void close() {
+			try {
+				channel.close();
+				fileInputStream.close();
+				fileDescriptor.close();
+			} catch (IOException e) {
+				Log.e(LOGTAG, "MappedSampleFileInput.close: Error while closing file: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Input stream (for content URIs which can not be mapped). Rewinding reopens the stream,
+	 * seeking reopens the stream and skips to the position. The size is only known after the end
+	 * of the stream was reached once.
+	 */
+	private class StreamSampleFileInput implements SampleFileInput {
+		private InputStream inputStream;
+		private long position = 0;
+		private volatile long size = -1;
+
+		StreamSampleFileInput() throws IOException {
+			inputStream = openInputStream();
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			int count = inputStream.read(buffer, offset, length);
+			if(count < 0)
+				size = position;
+			else
+				position += count;
+			return count;
+		}
+
+		@Override
+		public void rewind() throws IOException {
+			inputStream.close();
+			inputStream = openInputStream();
+			position = 0;
+		}
+
+		@Override
+		public void seek(long position) throws IOException {
+			if(position < this.position)
+				rewind();
+			while(this.position < position) {
+				long skipped = inputStream.skip(position - this.position);
+				if(skipped <= 0) {
+					// skip() may return 0 before the end of the stream. Check with a read:
+					if(inputStream.read() < 0) {
+						size = this.position;
+						return;
+					}
+					skipped = 1;
+				}
+				this.position += skipped;
+			}
+		}
+
+		@Override
+		public long getSize() {
+			return size;
+		}
+
+		@Override
+		public void close() {
+			try {
+				inputStream.close();
+			} catch (IOException e) {
+				Log.e(LOGTAG, "StreamSampleFileInput.close: Error while closing file: " + e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * This thread reads the file ahead into the packet buffers and puts them in the queue
+	 */
+	private class ReaderThread extends Thread {
+		private volatile boolean stopRequested = false;
+
+		public void stopReading() {
+			this.stopRequested = true;
+		}
+
+		@Override
+		public void run() {
+			byte[] buffer = null;
+			int index = 0;
+			long bytesSinceRewind = 0;
+			long position = 0;			// current read position in the file
+			int generation = seekGeneration;
+			SampleFileInput input = FileIQSource.this.input;	// close() may reset the field while we are still running
+
+			this.setName("Thread-FileIQSource-Reader-" + System.currentTimeMillis());
+			Log.i(LOGTAG, "ReaderThread started (Thread: " + this.getName() + ")");
+
+			while(!stopRequested) {
+				try {
+					// handle seek requests: discard the partially filled buffer and continue at the new position
+					if(pendingSeekPosition >= 0) {
+						synchronized (FileIQSource.this) {
+							position = pendingSeekPosition;
+							generation = seekGeneration;
+							pendingSeekPosition = -1;
+						}
+						input.seek(position);
+						index = 0;
+						bytesSinceRewind = position;
+					}
+
+					// if buffer is null we request a new buffer from the returnQueue:
+					if(buffer == null) {
+						buffer = returnQueue.poll(1000, TimeUnit.MILLISECONDS);
+						index = 0;
+						if(buffer == null)
+							continue;	// all buffers are in use (playback is slower than reading)
+					}
+
+					int count = input.read(buffer, index, buffer.length - index);
+					if(count < 0) {
+						// End of file. Wrap around (in the middle of the packet) or stop:
+						if(repeat && bytesSinceRewind > 0) {
+							Log.i(LOGTAG, "ReaderThread: End of File. Rewind!");
+							input.rewind();
+							position = 0;
+							bytesSinceRewind = 0;
+							continue;
+						}
+						// Deliver the partially filled buffer (the end of the file) as a shorter packet:
+						int partialLength = index - index % getBytesPerSample();
+						if(buffer != null && partialLength > 0 && pendingSeekPosition < 0) {
+							byte[] partial = Arrays.copyOf(buffer, partialLength);
+							PacketInfo packetInfo = new PacketInfo();
+							packetInfo.endPosition = position - (index - partialLength);
+							packetInfo.generation = generation;
+							synchronized (packetInfos) {
+								packetInfos.put(partial, packetInfo);
+							}
+							queue.offer(partial);
+							returnQueue.offer(buffer);
+							buffer = null;
+							index = 0;
+						}
+						// Stay alive: the user may still seek back into the file
+						synchronized (FileIQSource.this) {
+							if(!endOfFile && pendingSeekPosition < 0) {
+								Log.i(LOGTAG, "ReaderThread: End of File.");
+								endOfFile = true;
+							}
+						}
+						Thread.sleep(50);
+						continue;
+					}
+					index += count;
+					position += count;
+					bytesSinceRewind += count;
+					if(index == buffer.length) {
+						// buffer is full. Tag it and send it to the queue:
+						PacketInfo packetInfo = getPacketInfo(buffer);
+						packetInfo.endPosition = position;
+						packetInfo.generation = generation;
+						queue.offer(buffer);
+						buffer = null;
+					}
+				} catch (InterruptedException e) {
+					Log.e(LOGTAG, "ReaderThread: Interrupted while waiting: " + e.getMessage());
+					break;
+				} catch (IOException e) {
+					if(stopRequested)
+						break;		// file was closed while reading
+					Log.e(LOGTAG, "ReaderThread: Error while reading from file: " + e.getMessage());
+					reportError("Unexpected error while reading file: " + e.getMessage());
+					break;
+				}
+			}
+			// check if we still hold a buffer and return it to the returnQueue:
+			if(buffer != null)
+				returnQueue.offer(buffer);
+
+			Log.i(LOGTAG, "ReaderThread stopped (Thread: " + this.getName() + ")");
+		}
+	}
 }
@@ -6,6 +6,7 @@ import android.util.Log;
 import com.mantz_it.hackrf_android.Hackrf;
 import com.mantz_it.hackrf_android.HackrfCallbackInterface;
 import com.mantz_it.hackrf_android.HackrfUsbException;
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
 
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.TimeUnit;
@@ -445,6 +446,11 @@ public class HackrfSource implements IQSourceInterface, HackrfCallbackInterface
 		return this.iqConverter.mixPacketIntoSamplePacket(packet, samplePacket, channelFrequency);
 	}
 
+	@Override
+	public int mixAndDecimatePacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency, FirFilter decimationFilter) {
+		return this.iqConverter.mixAndDecimatePacketIntoSamplePacket(packet, samplePacket, channelFrequency, decimationFilter);
+	}
+
 	/**
 	 * Will empty the queue
 	 */
@@ -1,5 +1,7 @@
 package com.mantz_it.rfanalyzer.source;
 
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
+
 import android.content.Context;
 
 /**
@@ -173,6 +175,20 @@ public interface IQSourceInterface {
 	 */
 	public int mixPacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency);
 
+	/**
+	 * Same as mixPacketIntoSamplePacket() but additionally decimates the mixed signal with the
+	 * given filter in the same pass. The sample rate of the samplePacket will be
+	 * getSampleRate() / decimationFilter.getDecimation().
+	 *
+	 * @param packet			packet that was returned by getPacket() and that should now be 'filled'
+	 *                          into the samplePacket.
+	 * @param samplePacket		SamplePacket that should be filled with the decimated samples.
+	 * @param channelFrequency	frequency to which the spectrum of the signal should be shifted
+	 * @param decimationFilter	low pass filter with decimation (keeps its state between packets)
+	 * @return the number of samples consumed from the packet.
+	 */
+	public int mixAndDecimatePacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency, FirFilter decimationFilter);
+
 	/**
 	 * Callback interface for asynchronous interactions with the source.
 	 */
@@ -3,6 +3,8 @@ package com.mantz_it.rfanalyzer.source;
 import android.content.Context;
 import android.util.Log;
 
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
+
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -110,6 +112,8 @@ public class RtlsdrSource implements IQSourceInterface {
 					297, 328, 338, 364, 372, 386, 402, 421, 434, 439, 445, 480, 483, 496}// R828D
 	};
 	public static final int PACKET_SIZE = 16384;
+	public static final int LOW_LATENCY_PACKET_SIZE = 4096;	// 0.85 ms at 2.4 MSps, 8 ms at 250 kSps
+	private final int packetSize;
 
 	private boolean allowOutOfBoundFrequency = false;
 
@@ -121,14 +125,26 @@ public class RtlsdrSource implements IQSourceInterface {
 		this.allowOutOfBoundFrequency = allowOutOfBoundFrequency;
 	}
 	public RtlsdrSource (String ip, int port) {
+		this(ip, port, PACKET_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 *
+	 * @param ip			address of the rtl_tcp server
+	 * @param port			port of the rtl_tcp server
+	 * @param packetSize	size of the packets in bytes (smaller packets reduce the latency)
+	 */
+	public RtlsdrSource (String ip, int port, int packetSize) {
 		this.ipAddress = ip;
 		this.port = port;
+		this.packetSize = packetSize;
 
 		// Create queues and buffers:
 		queue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
 		returnQueue = new ArrayBlockingQueue<byte[]>(QUEUE_SIZE);
 		for(int i = 0; i < QUEUE_SIZE; i++)
-			returnQueue.offer(new byte[PACKET_SIZE]);
+			returnQueue.offer(new byte[packetSize]);
 
 		this.iqConverter = new Unsigned8BitIQConverter();
 	}
@@ -399,7 +415,7 @@ public class RtlsdrSource implements IQSourceInterface {
 
 	@Override
 	public int getPacketSize() {
-		return PACKET_SIZE;
+		return packetSize;
 	}
 
 	public int getBytesPerSample() {
@@ -475,6 +491,11 @@ public class RtlsdrSource implements IQSourceInterface {
 		return this.iqConverter.mixPacketIntoSamplePacket(packet, samplePacket, channelFrequency);
 	}
 
+	@Override
+	public int mixAndDecimatePacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency, FirFilter decimationFilter) {
+		return this.iqConverter.mixAndDecimatePacketIntoSamplePacket(packet, samplePacket, channelFrequency, decimationFilter);
+	}
+
 	/**
 	 * Will empty the queue
 	 */
@@ -0,0 +1,255 @@
+package com.mantz_it.rfanalyzer.source
+
+import android.content.Context
+import android.util.Log
+import com.mantz_it.rfanalyzer.dsp.FirFilter
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Format
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Signal
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * <h1>RF Analyzer - Synthetic IQ Source</h1>
+ *
+ * Module:      SyntheticIQSource.kt
+ * Description: Source of synthetic IQ samples (see SignalGenerator) in any of the raw formats of
+ *              the hardware sources and at any sample rate. Used to test and stress the processing
+ *              pipeline without hardware.
+ *              A generator thread fills the packet buffers like the USB callbacks of the hardware
+ *              drivers. In real time mode (realTime = true) a packet is due every packetDuration; if
+ *              no free buffer is available at that time, the packet is dropped and counted in
+ *              droppedPackets (this is what happens with real hardware if the processing is too
+ *              slow). Otherwise the packets are generated as fast as the buffers are returned.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class SyntheticIQSource(
+    signals: List<Signal>,
+    val format: Format = Format.UNSIGNED_8BIT,
+    sampleRate: Int = 2000000,
+    private var frequency: Long = 100000000,
+    private val packetSize: Int = 16384 * format.bytesPerSample,
+    var realTime: Boolean = true,
+    seed: Long = 0
+) : IQSourceInterface {
+
+    companion object {
+        private const val LOGTAG = "SyntheticIQSource"
+        private const val QUEUE_SIZE = 16   // number of packet buffers
+        const val MIN_FREQUENCY = 0L
+        const val MAX_FREQUENCY = 10000000000L
+        val SUPPORTED_SAMPLE_RATES = intArrayOf(1000000, 2000000, 2400000, 3000000, 4000000, 5000000, 6000000,
+            8000000, 10000000, 12000000, 15000000, 20000000, 25000000, 30000000, 40000000, 50000000)
+    }
+
+    private val generator = SignalGenerator(sampleRate, signals, seed)
+    private val converter: IQConverter = format.createConverter()
+    private var callback: IQSourceInterface.Callback? = null
+    private var open = false
+    private val queue = ArrayBlockingQueue<ByteArray>(QUEUE_SIZE)          // generated packets
+    private val returnQueue = ArrayBlockingQueue<ByteArray>(QUEUE_SIZE)    // free packet buffers
+    private var generatorThread: GeneratorThread? = null
+
+    @Volatile
+    private var sampleRate: Int = sampleRate
+
+    @Volatile
+    var generatedPackets = 0L   // number of packets delivered into the queue since startSampling()
+        private set
+    @Volatile
+    var droppedPackets = 0L     // number of packets dropped because no buffer was free (only in real time mode)
+        private set
+
+    init {
+        repeat(QUEUE_SIZE) { returnQueue.offer(ByteArray(packetSize)) }
+        converter.setSampleRate(sampleRate)
+        converter.setFrequency(frequency)
+    }
+
+    override fun open(context: Context?, callback: IQSourceInterface.Callback?): Boolean {
+        this.callback = callback
+        open = true
+        callback?.onIQSourceReady(this)
+        return true
+    }
+
+    override fun isOpen(): Boolean = open
+
+    override fun close(): Boolean {
+        stopSampling()
+        open = false
+        return true
+    }
+
+    override fun getName(): String = "Synthetic Signal (${format.name})"
+
+    override fun getSampleRate(): Int = sampleRate
+
+    override fun setSampleRate(newSampleRate: Int) {
+        synchronized(generator) {
+            sampleRate = newSampleRate
+            generator.sampleRate = newSampleRate
+        }
+        converter.setSampleRate(newSampleRate)
+        flushQueue()
+    }
+
+    override fun getFrequency(): Long = frequency
+
+    override fun setFrequency(newFrequency: Long) {
+        // the signals are defined relative to the center frequency, so they move along with it
+        frequency = newFrequency
+        converter.setFrequency(newFrequency)
+        flushQueue()
+    }
+
+    override fun getMaxFrequency(): Long = MAX_FREQUENCY
+
+    override fun getMinFrequency(): Long = MIN_FREQUENCY
+
+    override fun getNextHigherOptimalSampleRate(sampleRate: Int): Int {
+        return SUPPORTED_SAMPLE_RATES.firstOrNull { it > sampleRate } ?: SUPPORTED_SAMPLE_RATES.last()
+    }
+
+    override fun getNextLowerOptimalSampleRate(sampleRate: Int): Int {
+        return SUPPORTED_SAMPLE_RATES.lastOrNull { it < sampleRate } ?: SUPPORTED_SAMPLE_RATES.first()
+    }
+
+    override fun getSupportedSampleRates(): IntArray = SUPPORTED_SAMPLE_RATES
+
+    override fun getPacketSize(): Int = packetSize
+
+    override fun getBytesPerSample(): Int = format.bytesPerSample
+
+    override fun getPacket(timeout: Int): ByteArray? {
+        if (generatorThread == null) {
+            Log.w(LOGTAG, "getPacket: Source is not sampling.")
+            return null
+        }
+        return queue.poll(timeout.toLong(), TimeUnit.MILLISECONDS)
+    }
+
+    override fun returnPacket(buffer: ByteArray?) {
+        if (buffer != null && buffer.size == packetSize)
+            returnQueue.offer(buffer)
+    }
+
+    override fun startSampling() {
+        if (generatorThread != null)
+            return
+        generatedPackets = 0
+        droppedPackets = 0
+        generatorThread = GeneratorThread().also { it.start() }
+    }
+
+    override fun stopSampling() {
+        generatorThread?.let {
+            it.stopRequested = true
+            try {
+                it.join(1000)
+            } catch (e: InterruptedException) {
+                Log.w(LOGTAG, "stopSampling: Interrupted while waiting for the generator thread")
+            }
+        }
+        generatorThread = null
+        flushQueue()
+    }
+
+    /**
+     * Returns all generated (but not yet delivered) packets to the pool
+     */
+    private fun flushQueue() {
+        while (true)
+            returnQueue.offer(queue.poll() ?: break)
+    }
+
+    override fun fillPacketIntoSamplePacket(packet: ByteArray?, samplePacket: SamplePacket?): Int {
+        if (packet == null || samplePacket == null) {
+            Log.w(LOGTAG, "fillPacketIntoSamplePacket: packet or samplePacket is null.")
+            return 0
+        }
+        return converter.fillPacketIntoSamplePacket(packet, samplePacket)
+    }
+
+    override fun mixPacketIntoSamplePacket(packet: ByteArray?, samplePacket: SamplePacket?, channelFrequency: Long): Int {
+        if (packet == null || samplePacket == null) {
+            Log.w(LOGTAG, "mixPacketIntoSamplePacket: packet or samplePacket is null.")
+            return 0
+        }
+        return converter.mixPacketIntoSamplePacket(packet, samplePacket, channelFrequency)
+    }
+
+    override fun mixAndDecimatePacketIntoSamplePacket(packet: ByteArray?, samplePacket: SamplePacket?, channelFrequency: Long, decimationFilter: FirFilter?): Int {
+        if (packet == null || samplePacket == null || decimationFilter == null) {
+            Log.w(LOGTAG, "mixAndDecimatePacketIntoSamplePacket: packet, samplePacket or decimationFilter is null.")
+            return 0
+        }
+        return converter.mixAndDecimatePacketIntoSamplePacket(packet, samplePacket, channelFrequency, decimationFilter)
+    }
+
+    /**
+     * Fills the free packet buffers with generated samples (plays the role of the USB transfer callbacks)
+     */
+    private inner class GeneratorThread : Thread("Thread-SyntheticIQSource") {
+        @Volatile
+        var stopRequested = false
+
+        override fun run() {
+            Log.i(LOGTAG, "GeneratorThread started (realTime=$realTime, sampleRate=$sampleRate)")
+            var startTime = System.nanoTime()
+            var packetCounter = 0L      // packets (delivered or dropped) since startTime
+            var lastSampleRate = sampleRate
+            while (!stopRequested) {
+                if (realTime) {
+                    if (sampleRate != lastSampleRate) {
+                        lastSampleRate = sampleRate
+                        startTime = System.nanoTime()
+                        packetCounter = 0
+                    }
+                    // wait until the next packet is due:
+                    val packetDuration = (packetSize / format.bytesPerSample) * 1_000_000_000.0 / lastSampleRate
+                    val sleep = startTime + (packetCounter * packetDuration).toLong() - System.nanoTime()
+                    if (sleep > 0) {
+                        try {
+                            sleep(sleep / 1000000, (sleep % 1000000).toInt())
+                        } catch (e: InterruptedException) {
+                            Log.w(LOGTAG, "GeneratorThread: Interrupted while sleeping")
+                        }
+                    }
+                    packetCounter++
+                    val buffer = returnQueue.poll()
+                    if (buffer == null) {
+                        droppedPackets++    // the processing is too slow (like a buffer overrun of the hardware)
+                        continue
+                    }
+                    synchronized(generator) { generator.generate(buffer, format) }
+                    queue.offer(buffer)
+                } else {
+                    // as fast as the buffers are returned:
+                    val buffer = returnQueue.poll(100, TimeUnit.MILLISECONDS) ?: continue
+                    synchronized(generator) { generator.generate(buffer, format) }
+                    queue.offer(buffer)
+                }
+                generatedPackets++
+            }
+            Log.i(LOGTAG, "GeneratorThread stopped (generated: $generatedPackets, dropped: $droppedPackets)")
+        }
+    }
+}
@@ -40,6 +40,8 @@ import kotlin.math.min
 import com.mantz_it.rfanalyzer.R
 import com.mantz_it.rfanalyzer.analyzer.FftProcessorData
 import com.mantz_it.rfanalyzer.database.GlobalPerformanceData
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.database.PipelineTracer
 
 /**
  * <h1>RF Analyzer - Analyzer Surface (FFT/Waterfall View)</h1>
@@ -523,6 +525,7 @@ class AnalyzerSurface(context: Context,
 
                 while (running) {
                     val startTimestamp = System.currentTimeMillis()
+                    val frameStartTime = System.nanoTime()
                     frameRateFrameCounter++
                     if (startTimestamp - frameRateTimestamp > 1000) { // only measure every second
                         frameRate =
@@ -580,6 +583,8 @@ class AnalyzerSurface(context: Context,
                     if (doDraw)
                         draw(frameRate)
 
+                    PipelineTracer.record(PipelineTracer.Stage.DRAW, frameStartTime, System.nanoTime())
+
                     // measure current frametime to derive how long we need to sleep to meet the user's preferred framerate
                     val frameDrawingTime = System.currentTimeMillis() - startTimestamp
                     val desiredFrameTimeMs = 1000 / maxFrameRate.value
@@ -1153,13 +1158,54 @@ class AnalyzerSurface(context: Context,
                 c.drawText(text, rightBorder - bounds.width(), yPos + bounds.height(), textSmallPaint)
                 yPos += bounds.height() * 1.1f
 
-                // Draw the load
-                GlobalPerformanceData.getAllLoads().forEach { (metricId, value) ->
+                // Draw the load (stages of the pipeline and other threads)
+                val loads = PipelineMetrics.stages.filter { it.processingTime.getCount() > 0 }.associate { it.name to it.getLoad() } +
+                        GlobalPerformanceData.getAllLoads()
+                loads.forEach { (metricId, value) ->
                     text = String.format("$metricId: %03.1f %%", value * 100)
                     textSmallPaint.getTextBounds(text, 0, text.length, bounds)
                     c.drawText(text, rightBorder - bounds.width(), yPos + bounds.height(), textSmallPaint)
                     yPos += bounds.height() * 1.1f
                 }
+
+                // Draw the latencies
+                GlobalPerformanceData.getAllLatencies().forEach { (metricId, value) ->
+                    text = String.format("$metricId latency: %.0f ms", value)
+                    textSmallPaint.getTextBounds(text, 0, text.length, bounds)
+                    c.drawText(text, rightBorder - bounds.width(), yPos + bounds.height(), textSmallPaint)
+                    yPos += bounds.height() * 1.1f
+                }
+
+                // Draw the per-stage latencies (median / 99th percentile)
+                PipelineMetrics.latencies.forEach { histogram ->
+                    if (histogram.getCount() == 0L)
+                        return@forEach
+                    text = String.format("${histogram.name}: %.1f / %.1f ms", histogram.getPercentileMs(50.0), histogram.getPercentileMs(99.0))
+                    textSmallPaint.getTextBounds(text, 0, text.length, bounds)
+                    c.drawText(text, rightBorder - bounds.width(), yPos + bounds.height(), textSmallPaint)
+                    yPos += bounds.height() * 1.1f
+                }
+
+                // Draw the throughput and queue occupancy (current / max) of the stages
+                PipelineMetrics.stages.forEach { stage ->
+                    if (stage.processingTime.getCount() == 0L)
+                        return@forEach
+                    text = String.format("${stage.name}: %.3f -> %.3f Msps, queue %d / %d",
+                        stage.getInputRate() / 1e6f, stage.getOutputRate() / 1e6f, stage.getQueueSize(), stage.getMaxQueueSize())
+                    textSmallPaint.getTextBounds(text, 0, text.length, bounds)
+                    c.drawText(text, rightBorder - bounds.width(), yPos + bounds.height(), textSmallPaint)
+                    yPos += bounds.height() * 1.1f
+                }
+
+                // Draw the drop counters
+                PipelineMetrics.drops.forEach { counter ->
+                    if (counter.getPackets() == 0L)
+                        return@forEach
+                    text = "${counter.name}: ${counter.getPackets()} packets"
+                    textSmallPaint.getTextBounds(text, 0, text.length, bounds)
+                    c.drawText(text, rightBorder - bounds.width(), yPos + bounds.height(), textSmallPaint)
+                    yPos += bounds.height() * 1.1f
+                }
             }
         }
 
@@ -288,7 +288,7 @@ class MainActivity: ComponentActivity() {
             sourceSampleRate = appStateRepository.sourceSampleRate,
             sourceSignalStartFrequency = appStateRepository.sourceSignalStartFrequency,
             sourceSignalEndFrequency = appStateRepository.sourceSignalEndFrequency,
-            fftAverageLength = appStateRepository.fftAverageLength,
+            fftAverageLength = appStateRepository.effectiveFftAverageLength,
             fftPeakHold = appStateRepository.fftPeakHold,
             maxFrameRate = appStateRepository.maxFrameRate,
             waterfallColorMap = appStateRepository.waterfallColorMap,
@@ -456,6 +456,7 @@ class MainActivity: ComponentActivity() {
                     is UiAction.OnShareLogFileClicked -> shareFile(File(filesDir, LogcatLogger.logfileName), "text/plain", "Share log file via")
                     is UiAction.OnStartRecordingClicked -> if(isBound) analyzerService?.startRecording()
                     is UiAction.OnStopRecordingClicked -> if(isBound) analyzerService?.stopRecording()
+                    is UiAction.OnFilesourceSeek -> if(isBound) analyzerService?.seekFileSource(action.sampleIndex)
                     is UiAction.OnDeleteRecordingClicked -> {
                         val file = File(action.filePath)
                         if(file.exists()) file.delete()
@@ -467,7 +468,15 @@ class MainActivity: ComponentActivity() {
                     }
                     is UiAction.RenameFile -> renameFile(action.file, action.newName)
                     is UiAction.OnSaveRecordingClicked -> saveFileToUserDirectory(this@MainActivity, action.destUri, File(action.filename))
-                    is UiAction.OnShareRecordingClicked -> shareFile(File(action.filename), "application/octet-stream", "Share recording via")
+                    is UiAction.OnShareRecordingClicked -> {
+                        // audio recordings can be opened by any player:
+                        val mimeType = when (File(action.filename).extension) {
+                            "wav" -> "audio/wav"
+                            "aac" -> "audio/aac"
+                            else -> "application/octet-stream"
+                        }
+                        shareFile(File(action.filename), mimeType, "Share recording via")
+                    }
                     is UiAction.OnBuyFullVersionClicked -> mainViewModel.buyFullVersion(this@MainActivity)
                     null -> Log.e(TAG, "mainViewModel.uiActions.collect: action is NULL!")
                 }
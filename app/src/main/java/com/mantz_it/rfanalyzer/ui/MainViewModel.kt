@@ -111,6 +111,7 @@ class MainViewModel @Inject constructor(
         data object OnDeleteLogFileClicked: UiAction()
         data object OnStartRecordingClicked: UiAction()
         data object OnStopRecordingClicked: UiAction()
+        data class OnFilesourceSeek(val sampleIndex: Long): UiAction()
         data class OnDeleteRecordingClicked(val filePath: String): UiAction()
         data object OnDeleteAllRecordingsClicked: UiAction()
         data class OnSaveRecordingClicked(val filename: String, val destUri: Uri): UiAction()
@@ -362,6 +363,9 @@ class MainViewModel @Inject constructor(
         onViewRecordingsClicked = { navigate(AppScreen.RecordingScreen) },
         onFilesourceFileFormatChanged = appStateRepository.filesourceFileFormat::set,
         onFilesourceRepeatChanged = appStateRepository.filesourceRepeatEnabled::set,
+        onFilesourcePlaybackSpeedChanged = appStateRepository.filesourcePlaybackSpeed::set,
+        onFilesourcePausedChanged = appStateRepository.filesourcePaused::set,
+        onFilesourceSeek = { sendActionToUi(UiAction.OnFilesourceSeek(it)) },
     )
 
     val displayTabActions = DisplayTabActions(
@@ -436,8 +440,12 @@ class MainViewModel @Inject constructor(
 
     val recordingTabActions = RecordingTabActions(
         onNameChanged = { appStateRepository.recordingName.set(it.replace('/', '_')) },
+        onRecordingTargetChanged = appStateRepository.recordingTarget::set,
+        onAudioRecordingFormatChanged = appStateRepository.recordingAudioFormat::set,
         onOnlyRecordWhenSquelchIsSatisfiedChanged = appStateRepository.recordOnlyWhenSquelchIsSatisfied::set,
         onSquelchChanged = appStateRepository.squelch::set,
+        onPreRollChanged = appStateRepository.recordingPreRoll::set,
+        onPostRollChanged = appStateRepository.recordingPostRoll::set,
         onStopAfterThresholdChanged = { appStateRepository.recordingStopAfterThreshold.set(it.coerceAtLeast(0)) },
         onStopAfterUnitChanged = appStateRepository.recordingstopAfterUnit::set,
         onStartRecordingClicked = {
@@ -465,7 +473,10 @@ class MainViewModel @Inject constructor(
         onReverseTuningWheelChanged = appStateRepository.reverseTuningWheel::set,
         onControlDrawerSideChanged = appStateRepository.controlDrawerSide::set,
         onRtlsdrAllowOutOfBoundFrequencyChanged = appStateRepository.rtlsdrAllowOutOfBoundFrequency::set,
+        onLowLatencyAudioChanged = appStateRepository.lowLatencyAudio::set,
         onShowDebugInformationChanged = appStateRepository.showDebugInformation::set,
+        onPipelineTracingChanged = appStateRepository.pipelineTracing::set,
+        onLoadGovernorEnabledChanged = appStateRepository.loadGovernorEnabled::set,
         onLoggingEnabledChanged = appStateRepository.loggingEnabled::set,
         onShowLogClicked = { sendActionToUi(UiAction.OnShowLogFileClicked) },
         onSaveLogToFileClicked = { destUri -> sendActionToUi(UiAction.OnSaveLogToFileClicked(destUri)) },
@@ -636,16 +647,11 @@ class MainViewModel @Inject constructor(
                     is AppStateRepository.AnalyzerEvent.RecordingFinished -> {
                         val newRecording = Recording(
                             name = appStateRepository.recordingName.value,
-                            frequency = appStateRepository.sourceFrequency.value,
-                            sampleRate = appStateRepository.sourceSampleRate.value,
+                            frequency = event.frequency,
+                            sampleRate = event.sampleRate,
                             date = appStateRepository.recordingStartedTimestamp.value,
-                            fileFormat = when(appStateRepository.sourceType.value) {
-                                SourceType.HACKRF -> FilesourceFileFormat.HACKRF
-                                SourceType.RTLSDR -> FilesourceFileFormat.RTLSDR
-                                SourceType.AIRSPY -> FilesourceFileFormat.AIRSPY
-                                SourceType.HYDRASDR -> FilesourceFileFormat.HYDRASDR
-                                SourceType.FILESOURCE -> appStateRepository.filesourceFileFormat.value
-                            },
+                            fileFormat = event.fileFormat,
+                            audioFormat = event.audioFormat,
                             sizeInBytes = event.finalSize,
                             filePath = event.recordingFile.absolutePath,
                             favorite = false
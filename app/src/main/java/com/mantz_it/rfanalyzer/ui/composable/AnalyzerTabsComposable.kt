@@ -15,6 +15,7 @@ import androidx.compose.runtime.saveable.rememberSaveable
 import androidx.compose.runtime.setValue
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.unit.dp
+import com.mantz_it.rfanalyzer.analyzer.Demodulator
 import com.mantz_it.rfanalyzer.database.AppStateRepository
 import com.mantz_it.rfanalyzer.database.BillingRepositoryInterface
 import com.mantz_it.rfanalyzer.ui.MainViewModel
@@ -118,6 +119,10 @@ fun AnalyzerTabsComposable(
     val filesourceFilename by appStateRepository.filesourceFilename.stateFlow.collectAsState()
     val filesourceFileFormat by appStateRepository.filesourceFileFormat.stateFlow.collectAsState()
     val filesourceRepeatEnabled by appStateRepository.filesourceRepeatEnabled.stateFlow.collectAsState()
+    val filesourcePlaybackSpeed by appStateRepository.filesourcePlaybackSpeed.stateFlow.collectAsState()
+    val filesourcePaused by appStateRepository.filesourcePaused.stateFlow.collectAsState()
+    val filesourcePlaybackPosition by appStateRepository.filesourcePlaybackPosition.stateFlow.collectAsState()
+    val filesourceLength by appStateRepository.filesourceLength.stateFlow.collectAsState()
     val fftSize by appStateRepository.fftSize.stateFlow.collectAsState()
     val fftAverageLength by appStateRepository.fftAverageLength.stateFlow.collectAsState()
     val fftPeakHold by appStateRepository.fftPeakHold.stateFlow.collectAsState()
@@ -139,6 +144,10 @@ fun AnalyzerTabsComposable(
     val recordingRunning by appStateRepository.recordingRunning.stateFlow.collectAsState()
     val recordingName by appStateRepository.recordingName.stateFlow.collectAsState()
     val recordOnlyWhenSquelchIsSatisfied by appStateRepository.recordOnlyWhenSquelchIsSatisfied.stateFlow.collectAsState()
+    val recordingTarget by appStateRepository.recordingTarget.stateFlow.collectAsState()
+    val recordingAudioFormat by appStateRepository.recordingAudioFormat.stateFlow.collectAsState()
+    val recordingPreRoll by appStateRepository.recordingPreRoll.stateFlow.collectAsState()
+    val recordingPostRoll by appStateRepository.recordingPostRoll.stateFlow.collectAsState()
     val recordingStopAfterThreshold by appStateRepository.recordingStopAfterThreshold.stateFlow.collectAsState()
     val recordingstopAfterUnit by appStateRepository.recordingstopAfterUnit.stateFlow.collectAsState()
     val recordingCurrentFileSize by appStateRepository.recordingCurrentFileSize.stateFlow.collectAsState()
@@ -150,6 +159,9 @@ fun AnalyzerTabsComposable(
     val reverseTuningWheel by appStateRepository.reverseTuningWheel.stateFlow.collectAsState()
     val controlDrawerSide by appStateRepository.controlDrawerSide.stateFlow.collectAsState()
     val showDebugInformation by appStateRepository.showDebugInformation.stateFlow.collectAsState()
+    val pipelineTracing by appStateRepository.pipelineTracing.stateFlow.collectAsState()
+    val lowLatencyAudio by appStateRepository.lowLatencyAudio.stateFlow.collectAsState()
+    val loadGovernorEnabled by appStateRepository.loadGovernorEnabled.stateFlow.collectAsState()
     val loggingEnabled by appStateRepository.loggingEnabled.stateFlow.collectAsState()
     val viewportVerticalScaleMin by appStateRepository.viewportVerticalScaleMin.stateFlow.collectAsState()
     val viewportVerticalScaleMax by appStateRepository.viewportVerticalScaleMax.stateFlow.collectAsState()
@@ -226,6 +238,10 @@ fun AnalyzerTabsComposable(
                         filesourceFilename = filesourceFilename,
                         filesourceFileFormat = filesourceFileFormat,
                         filesourceRepeatEnabled = filesourceRepeatEnabled,
+                        filesourcePlaybackSpeed = filesourcePlaybackSpeed,
+                        filesourcePaused = filesourcePaused,
+                        filesourcePlaybackPosition = filesourcePlaybackPosition,
+                        filesourceLength = filesourceLength,
                         sourceTabActions = sourceTabActions
                     )
                 AnalyzerTabs.DISPLAY
@@ -264,13 +280,24 @@ fun AnalyzerTabsComposable(
                         analyzerRunning = analyzerRunning,
                         recordingRunning = recordingRunning,
                         name = recordingName,
-                        frequency = sourceFrequency,
-                        sampleRate = sourceSampleRate,
+                        // a channel recording contains the output of the channel filter (+/- channel width),
+                        // an audio recording the demodulated audio (mono at the audio rate):
+                        frequency = if (recordingTarget == RecordingTarget.RAW) sourceFrequency else channelFrequency,
+                        sampleRate = when (recordingTarget) {
+                            RecordingTarget.RAW -> sourceSampleRate
+                            RecordingTarget.CHANNEL -> 2L * channelWidth
+                            RecordingTarget.AUDIO -> Demodulator.AUDIO_RATE.toLong()
+                        },
+                        recordingTarget = recordingTarget,
+                        audioRecordingFormat = recordingAudioFormat,
+                        demodulationEnabled = demodulationMode != DemodulationMode.OFF,
                         onlyRecordWhenSquelchIsSatisfied = recordOnlyWhenSquelchIsSatisfied,
                         squelchEnabled = squelchEnabled,
                         squelch = squelch,
                         minSquelch = viewportVerticalScaleMin,
                         maxSquelch = viewportVerticalScaleMax,
+                        preRoll = recordingPreRoll,
+                        postRoll = recordingPostRoll,
                         stopAfterThreshold = recordingStopAfterThreshold,
                         stopAfterUnit = recordingstopAfterUnit,
                         currentRecordingFileSize = recordingCurrentFileSize,
@@ -287,7 +314,10 @@ fun AnalyzerTabsComposable(
                         reverseTuningWheel = reverseTuningWheel,
                         controlDrawerSide = controlDrawerSide,
                         rtlsdrAllowOutOfBoundFrequency = rtlsdrAllowOutOfBoundFrequency,
+                        lowLatencyAudio = lowLatencyAudio,
+                        loadGovernorEnabled = loadGovernorEnabled,
                         showDebugInformation = showDebugInformation,
+                        pipelineTracing = pipelineTracing,
                         loggingEnabled = loggingEnabled,
                         settingsTabActions = settingsTabActions
                     )
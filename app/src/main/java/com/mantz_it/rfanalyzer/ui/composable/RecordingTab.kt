@@ -75,6 +75,23 @@ import kotlinx.coroutines.delay
  */
 
 
+const val MAX_RECORDING_PRE_POST_ROLL = 2f   // seconds
+
+enum class RecordingTarget(val displayName: String) {
+    RAW("Raw IQ (Full Bandwidth)"),
+    CHANNEL("Channel (Demodulator)"),
+    AUDIO("Demodulated Audio")
+}
+
+enum class AudioRecordingFormat(val displayName: String, val fileExtension: String, val headerSize: Int, val bitRate: Int) {
+    WAV("WAV (16-bit PCM)", "wav", 44, 0),          // header: WavFileHeader.SIZE, bit rate depends on the audio rate
+    AAC("AAC (compressed)", "aac", 0, 64000);       // ADTS stream (the headers are part of the frames)
+
+    companion object {
+        const val BYTES_PER_SAMPLE = 2              // 16-bit PCM, mono (data of the WAV file and input of the AAC encoder)
+    }
+}
+
 enum class StopAfterUnit(val displayName: String) {
     NEVER("Disabled"),
     MB("MB"),
@@ -85,8 +102,12 @@ enum class StopAfterUnit(val displayName: String) {
 
 data class RecordingTabActions(
     val onNameChanged: (String) -> Unit,
+    val onRecordingTargetChanged: (RecordingTarget) -> Unit,
+    val onAudioRecordingFormatChanged: (AudioRecordingFormat) -> Unit,
     val onOnlyRecordWhenSquelchIsSatisfiedChanged: (Boolean) -> Unit,
     val onSquelchChanged: (Float) -> Unit,
+    val onPreRollChanged: (Float) -> Unit,
+    val onPostRollChanged: (Float) -> Unit,
     val onStopAfterThresholdChanged: (Int) -> Unit,
     val onStopAfterUnitChanged: (StopAfterUnit) -> Unit,
     val onStartRecordingClicked: () -> Unit,
@@ -101,11 +122,16 @@ fun RecordingTabComposable(
     name: String,
     frequency: Long,
     sampleRate: Long,
+    recordingTarget: RecordingTarget,
+    audioRecordingFormat: AudioRecordingFormat,
+    demodulationEnabled: Boolean,
     onlyRecordWhenSquelchIsSatisfied: Boolean,
     squelchEnabled: Boolean,
     minSquelch: Float,
     maxSquelch: Float,
     squelch: Float,
+    preRoll: Float,
+    postRoll: Float,
     stopAfterThreshold: Int,
     stopAfterUnit: StopAfterUnit,
     currentRecordingFileSize: Long,
@@ -146,7 +172,7 @@ fun RecordingTabComposable(
             modifier = Modifier.fillMaxWidth())
         Row {
             Button(
-                enabled = analyzerRunning,
+                enabled = analyzerRunning && (recordingRunning || recordingTarget == RecordingTarget.RAW || demodulationEnabled),
                 shape = MaterialTheme.shapes.small,
                 onClick = recordingTabActions.onStartRecordingClicked,
                 modifier = Modifier.weight(1f).padding(end=3.dp).height(55.dp).align(Alignment.CenterVertically)
@@ -175,9 +201,31 @@ fun RecordingTabComposable(
                 modifier = Modifier.weight(1.2f).padding(start = 3.dp)
             )
         }
+        OutlinedEnumDropDown(
+            label = if (recordingTarget != RecordingTarget.RAW && !demodulationEnabled) "Recording Target (enable Demodulation)" else "Recording Target",
+            selectedEnum = recordingTarget,
+            enumClass = RecordingTarget::class,
+            getDisplayName = { it.displayName },
+            onSelectionChanged = recordingTabActions.onRecordingTargetChanged,
+            enabled = !recordingRunning,
+            helpSubPath = "recording.html#recording-target",
+            modifier = Modifier.fillMaxWidth()
+        )
+        if (recordingTarget == RecordingTarget.AUDIO) {
+            OutlinedEnumDropDown(
+                label = "Audio Format",
+                selectedEnum = audioRecordingFormat,
+                enumClass = AudioRecordingFormat::class,
+                getDisplayName = { it.displayName },
+                onSelectionChanged = recordingTabActions.onAudioRecordingFormatChanged,
+                enabled = !recordingRunning,
+                helpSubPath = "recording.html#audio-recording",
+                modifier = Modifier.fillMaxWidth()
+            )
+        }
         OutlinedSwitch(
             label = "Record based on Squelch",
-            helpText = "Samples are only recorded when the signal level is above the squelch threshold.",
+            helpText = "Samples are only recorded when the signal level is above the squelch threshold (plus the pre- and post-roll time).",
             isChecked = squelchEnabled && onlyRecordWhenSquelchIsSatisfied,
             onCheckedChange = recordingTabActions.onOnlyRecordWhenSquelchIsSatisfiedChanged,
             enabled = squelchEnabled,
@@ -193,6 +241,24 @@ fun RecordingTabComposable(
                 onValueChanged = { value -> recordingTabActions.onSquelchChanged(value) },
                 showOutline = false
             )
+            OutlinedSlider(
+                label = "Pre-Roll",
+                unit = "s",
+                minValue = 0f,
+                maxValue = MAX_RECORDING_PRE_POST_ROLL,
+                value = preRoll,
+                onValueChanged = recordingTabActions.onPreRollChanged,
+                showOutline = false
+            )
+            OutlinedSlider(
+                label = "Post-Roll",
+                unit = "s",
+                minValue = 0f,
+                maxValue = MAX_RECORDING_PRE_POST_ROLL,
+                value = postRoll,
+                onValueChanged = recordingTabActions.onPostRollChanged,
+                showOutline = false
+            )
         }
         StopAfterDropDown(
             label = if (stopAfterUnit == StopAfterUnit.NEVER) "Automatic Recording Stop" else "Stop Recording after",
@@ -322,11 +388,16 @@ fun RecordingTabPreview() {
                 name = "abc",
                 frequency = 97000000,
                 sampleRate = 1000000,
+                recordingTarget = RecordingTarget.RAW,
+                audioRecordingFormat = AudioRecordingFormat.WAV,
+                demodulationEnabled = false,
                 onlyRecordWhenSquelchIsSatisfied = true,
                 squelchEnabled = true,
                 minSquelch = -100f,
                 maxSquelch = -10f,
                 squelch = -40f,
+                preRoll = 0.5f,
+                postRoll = 0.5f,
                 stopAfterThreshold = 0,
                 stopAfterUnit = StopAfterUnit.SEC,
                 currentRecordingFileSize = 0,
@@ -334,8 +405,12 @@ fun RecordingTabPreview() {
                 recordingStartedTimestamp = 0,
                 recordingTabActions = RecordingTabActions(
                     onNameChanged = { },
+                    onRecordingTargetChanged = { },
+                    onAudioRecordingFormatChanged = { },
                     onOnlyRecordWhenSquelchIsSatisfiedChanged = { },
                     onSquelchChanged = { },
+                    onPreRollChanged = { },
+                    onPostRollChanged = { },
                     onStopAfterThresholdChanged = { },
                     onStopAfterUnitChanged = { },
                     onStartRecordingClicked = { },
@@ -77,7 +77,10 @@ data class SettingsTabActions(
     val onControlDrawerSideChanged: (ControlDrawerSide) -> Unit,
     val onReverseTuningWheelChanged: (Boolean) -> Unit,
     val onRtlsdrAllowOutOfBoundFrequencyChanged: (Boolean) -> Unit,
+    val onLowLatencyAudioChanged: (Boolean) -> Unit,
     val onShowDebugInformationChanged: (Boolean) -> Unit,
+    val onPipelineTracingChanged: (Boolean) -> Unit,
+    val onLoadGovernorEnabledChanged: (Boolean) -> Unit,
     val onLoggingEnabledChanged: (Boolean) -> Unit,
     val onShowLogClicked: () -> Unit,
     val onSaveLogToFileClicked: (Uri) -> Unit,
@@ -95,7 +98,10 @@ fun SettingsTabComposable(
     reverseTuningWheel: Boolean,
     controlDrawerSide: ControlDrawerSide,
     rtlsdrAllowOutOfBoundFrequency: Boolean,
+    lowLatencyAudio: Boolean,
+    loadGovernorEnabled: Boolean,
     showDebugInformation: Boolean,
+    pipelineTracing: Boolean,
     loggingEnabled: Boolean,
     settingsTabActions: SettingsTabActions
 ) {
@@ -158,6 +164,20 @@ fun SettingsTabComposable(
             onCheckedChange = settingsTabActions.onRtlsdrAllowOutOfBoundFrequencyChanged,
             helpSubPath = "settings.html#allow-out-of-bound-frequency-rtl-sdr"
         )
+        OutlinedSwitch(
+            label = "Low Latency Audio",
+            helpText = "Uses smaller buffers and the low latency audio path of the system. Takes effect when the analyzer is restarted",
+            isChecked = lowLatencyAudio,
+            onCheckedChange = settingsTabActions.onLowLatencyAudioChanged,
+            helpSubPath = "settings.html#low-latency-audio"
+        )
+        OutlinedSwitch(
+            label = "Adaptive Quality",
+            helpText = "If the device is too slow, the FFT rate, FFT size, waterfall and filter quality are reduced step by step to keep the audio free of dropouts",
+            isChecked = loadGovernorEnabled,
+            onCheckedChange = settingsTabActions.onLoadGovernorEnabledChanged,
+            helpSubPath = "settings.html#adaptive-quality"
+        )
         OutlinedSwitch(
             label = "Show Debug Information",
             helpText = "Displays additional information in the FFT text area",
@@ -165,6 +185,13 @@ fun SettingsTabComposable(
             onCheckedChange = settingsTabActions.onShowDebugInformationChanged,
             helpSubPath = "settings.html#show-debug-information"
         )
+        OutlinedSwitch(
+            label = "Pipeline Tracing",
+            helpText = "Records the timing of all processing threads and saves it as trace file (Chrome/Perfetto JSON) when the analyzer is stopped. Takes effect when the analyzer is restarted",
+            isChecked = pipelineTracing,
+            onCheckedChange = settingsTabActions.onPipelineTracingChanged,
+            helpSubPath = "settings.html#pipeline-tracing"
+        )
         OutlinedSwitch(
             label = "Logging",
             helpText = "Logs the applications' commandline output (Logcat) to a file",
@@ -232,8 +259,11 @@ fun SettingsTabPreview() {
                 reverseTuningWheel = false,
                 controlDrawerSide = ControlDrawerSide.RIGHT,
                 rtlsdrAllowOutOfBoundFrequency = false,
+                lowLatencyAudio = false,
+                loadGovernorEnabled = true,
                 loggingEnabled = true,
                 showDebugInformation = true,
+                pipelineTracing = false,
                 settingsTabActions = SettingsTabActions(
                     onScreenOrientationChanged = { },
                     onFontSizeChanged = { },
@@ -242,7 +272,10 @@ fun SettingsTabPreview() {
                     onReverseTuningWheelChanged = { },
                     onControlDrawerSideChanged = { },
                     onRtlsdrAllowOutOfBoundFrequencyChanged = { },
+                    onLowLatencyAudioChanged = { },
                     onShowDebugInformationChanged = { },
+                    onPipelineTracingChanged = { },
+                    onLoadGovernorEnabledChanged = { },
                     onLoggingEnabledChanged = { },
                     onShowLogClicked = { },
                     onSaveLogToFileClicked = { },
@@ -8,15 +8,23 @@ import androidx.compose.foundation.layout.padding
 import androidx.compose.foundation.layout.size
 import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.filled.Menu
+import androidx.compose.material.icons.filled.Pause
+import androidx.compose.material.icons.filled.PlayArrow
 import androidx.compose.material3.Button
 import androidx.compose.material3.CircularProgressIndicator
 import androidx.compose.material3.ExperimentalMaterial3Api
 import androidx.compose.material3.Icon
+import androidx.compose.material3.IconButton
 import androidx.compose.material3.MaterialTheme
+import androidx.compose.material3.Slider
 import androidx.compose.material3.Text
 import androidx.compose.material3.TextField
 import androidx.compose.runtime.Composable
 import androidx.compose.runtime.CompositionLocalProvider
+import androidx.compose.runtime.getValue
+import androidx.compose.runtime.mutableStateOf
+import androidx.compose.runtime.remember
+import androidx.compose.runtime.setValue
 import androidx.compose.ui.Alignment
 import androidx.compose.ui.Modifier
 import androidx.compose.ui.graphics.Color
@@ -72,6 +80,16 @@ enum class FilesourceFileFormat(val displayName: String, val description: String
     HYDRASDR("HYDRASDR", "16-bit signed IQ (HYDRASDR)", 4)
 }
 
+enum class FilesourcePlaybackSpeed(val displayName: String, val factor: Float) {
+    X0_25("0.25x", 0.25f),
+    X0_5("0.5x", 0.5f),
+    X1("1x", 1f),
+    X2("2x", 2f),
+    X4("4x", 4f),
+    X8("8x", 8f),
+    MAX("Max", 0f)    // as fast as the processing allows
+}
+
 data class SourceTabActions(
     val onStartStopClicked: () -> Unit,
     val onSourceTypeChanged: (newType: SourceType) -> Unit,
@@ -113,9 +131,20 @@ data class SourceTabActions(
     val onHydraSdrConverterOffsetChanged: (newFrequency: Long) -> Unit,
     val onOpenFileClicked: () -> Unit,
     val onViewRecordingsClicked: () -> Unit,
-    val onFilesourceRepeatChanged: (Boolean) -> Unit
+    val onFilesourceRepeatChanged: (Boolean) -> Unit,
+    val onFilesourcePlaybackSpeedChanged: (FilesourcePlaybackSpeed) -> Unit,
+    val onFilesourcePausedChanged: (Boolean) -> Unit,
+    val onFilesourceSeek: (sampleIndex: Long) -> Unit
 )
 
+/**
+ * Formats a number of samples as playback time (m:ss)
+ */
+private fun formatPlaybackTime(samples: Long, sampleRate: Long): String {
+    val seconds = if (sampleRate > 0) samples / sampleRate else 0
+    return "%d:%02d".format(seconds / 60, seconds % 60)
+}
+
 @OptIn(ExperimentalMaterial3Api::class)
 @Composable
 fun SourceTabComposable(
@@ -169,6 +198,10 @@ fun SourceTabComposable(
     filesourceFilename: String,
     filesourceFileFormat: FilesourceFileFormat,
     filesourceRepeatEnabled: Boolean,
+    filesourcePlaybackSpeed: FilesourcePlaybackSpeed,
+    filesourcePaused: Boolean,
+    filesourcePlaybackPosition: Long,
+    filesourceLength: Long,
     sourceTabActions: SourceTabActions
 ) {
     ScrollableColumnWithFadingEdge {
@@ -756,6 +789,52 @@ fun SourceTabComposable(
                             .padding(start = 3.dp)
                     )
                 }
+                OutlinedEnumDropDown(
+                    label = "Playback Speed",
+                    selectedEnum = filesourcePlaybackSpeed,
+                    enumClass = FilesourcePlaybackSpeed::class,
+                    getDisplayName = { it.displayName },
+                    onSelectionChanged = sourceTabActions.onFilesourcePlaybackSpeedChanged,
+                    helpSubPath = "sdr-source.html#playback-speed"
+                )
+                if (analyzerRunning) {
+                    // position of the slider while the user drags it (null if not dragging)
+                    var seekFraction by remember { mutableStateOf<Float?>(null) }
+                    val positionFraction = if (filesourceLength > 0) (filesourcePlaybackPosition.toFloat() / filesourceLength).coerceIn(0f, 1f) else 0f
+                    val displayedPosition = seekFraction?.let { (it * filesourceLength).toLong() } ?: filesourcePlaybackPosition
+                    OutlinedBox(label = "Playback Position", helpSubPath = "sdr-source.html#playback-position") {
+                        Row {
+                            IconButton(
+                                onClick = { sourceTabActions.onFilesourcePausedChanged(!filesourcePaused) },
+                                modifier = Modifier.align(Alignment.CenterVertically)
+                            ) {
+                                if (filesourcePaused)
+                                    Icon(imageVector = Icons.Default.PlayArrow, contentDescription = "Resume")
+                                else
+                                    Icon(imageVector = Icons.Default.Pause, contentDescription = "Pause")
+                            }
+                            Slider(
+                                value = seekFraction ?: positionFraction,
+                                onValueChange = { seekFraction = it },
+                                onValueChangeFinished = {
+                                    seekFraction?.let { sourceTabActions.onFilesourceSeek((it * filesourceLength).toLong()) }
+                                    seekFraction = null
+                                },
+                                enabled = filesourceLength > 0,
+                                modifier = Modifier.weight(1f).align(Alignment.CenterVertically)
+                            )
+                            Text(
+                                text = formatPlaybackTime(displayedPosition, sampleRate) + " / " +
+                                        (if (filesourceLength > 0) formatPlaybackTime(filesourceLength, sampleRate) else "?"),
+                                fontSize = 14.sp,
+                                maxLines = 1,
+                                modifier = Modifier
+                                    .align(Alignment.CenterVertically)
+                                    .padding(horizontal = 6.dp)
+                            )
+                        }
+                    }
+                }
             }
         }
     }
@@ -793,6 +872,10 @@ fun SourceTabPreview() {
             filesourceFilename = "20250101_test_HACKRF_100MHz_2Msps.iq",
             filesourceFileFormat = FilesourceFileFormat.HACKRF,
             filesourceRepeatEnabled = true,
+            filesourcePlaybackSpeed = FilesourcePlaybackSpeed.X1,
+            filesourcePaused = false,
+            filesourcePlaybackPosition = 1000000,
+            filesourceLength = 60000000,
             rtlsdrExternalServerEnabled = true,
             rtlsdrExternalServerIP = "",
             rtlsdrExternalServerPort = 1234,
@@ -836,6 +919,9 @@ fun SourceTabPreview() {
                 onOpenFileClicked = { },
                 onViewRecordingsClicked = { },
                 onFilesourceRepeatChanged = {},
+                onFilesourcePlaybackSpeedChanged = {},
+                onFilesourcePausedChanged = {},
+                onFilesourceSeek = {},
                 onRtlsdrExternalServerEnabledChanged = { },
                 onRtlsdrExternalServerIPChanged = { },
                 onRtlsdrExternalServerPortChanged = { },
@@ -50,6 +50,7 @@ import androidx.navigation.NavHostController
 import androidx.navigation.compose.rememberNavController
 import com.mantz_it.rfanalyzer.database.Recording
 import com.mantz_it.rfanalyzer.R
+import com.mantz_it.rfanalyzer.database.calculateDurationInSeconds
 import com.mantz_it.rfanalyzer.database.calculateFileName
 import com.mantz_it.rfanalyzer.ui.composable.EditStringDialog
 import com.mantz_it.rfanalyzer.ui.composable.FilesourceFileFormat
@@ -130,7 +131,8 @@ fun RecordingCard(recording: Recording, recordingScreenActions: RecordingScreenA
                 Box(
                     modifier = Modifier
                         .background(
-                            when (recording.fileFormat) {
+                            if (recording.audioFormat != null) Color.Magenta
+                            else when (recording.fileFormat) {
                                 FilesourceFileFormat.RTLSDR -> Color.Blue
                                 FilesourceFileFormat.HACKRF -> Color.Green
                                 FilesourceFileFormat.AIRSPY -> Color(alpha = 1f, red = 1f, green = 0.4f, blue = 0f) // orange
@@ -141,7 +143,7 @@ fun RecordingCard(recording: Recording, recordingScreenActions: RecordingScreenA
                         .padding(horizontal = 8.dp, vertical = 4.dp)
                 ) {
                     Text(
-                        text = recording.fileFormat.displayName,
+                        text = recording.audioFormat?.name ?: recording.fileFormat.displayName,
                         color = Color.White,
                         fontSize = 12.sp,
                         fontWeight = FontWeight.Bold
@@ -158,7 +160,7 @@ fun RecordingCard(recording: Recording, recordingScreenActions: RecordingScreenA
             Row{
                 Text(text = recording.sampleRate.asStringWithUnit("Sps"),
                     fontSize = 16.sp, modifier = Modifier.weight(1f))
-                val recordingDurationInSeconds = recording.sizeInBytes / recording.fileFormat.bytesPerSample / recording.sampleRate
+                val recordingDurationInSeconds = recording.calculateDurationInSeconds()
                 Text(text = "${recording.sizeInBytes.asSizeInBytesToString()} ($recordingDurationInSeconds seconds)", fontSize = 16.sp)
             }
 
@@ -167,8 +169,11 @@ fun RecordingCard(recording: Recording, recordingScreenActions: RecordingScreenA
                     modifier = Modifier.fillMaxWidth(),
                     horizontalArrangement = Arrangement.SpaceBetween
                 ) {
-                    IconButton(onClick = { recordingScreenActions.onPlay(recording) }) {
-                        Icon(Icons.Filled.PlayArrow, contentDescription = "Play", modifier = Modifier.size(40.dp))
+                    // (audio recordings can't be played by the file source. Use share to open them in a player)
+                    if (recording.audioFormat == null) {
+                        IconButton(onClick = { recordingScreenActions.onPlay(recording) }) {
+                            Icon(Icons.Filled.PlayArrow, contentDescription = "Play", modifier = Modifier.size(40.dp))
+                        }
                     }
                     IconButton(onClick = { showEditDialog = true }) {
                         Icon(Icons.Filled.Edit, contentDescription = "Edit", modifier = Modifier.size(30.dp))
@@ -2,8 +2,10 @@
 plugins {
     alias(libs.plugins.android.application) apply false
     alias(libs.plugins.kotlin.android) apply false
+    alias(libs.plugins.kotlin.jvm) apply false
     alias(libs.plugins.kotlin.compose) apply false
     alias(libs.plugins.android.library) apply false
     alias(libs.plugins.android.devtools) apply false
     alias(libs.plugins.dagger.hilt) apply false
+    alias(libs.plugins.jmh) apply false
 }
\ No newline at end of file
@@ -0,0 +1,75 @@
+import org.jetbrains.kotlin.gradle.dsl.JvmTarget
+
+// Pure JVM module with the DSP and pipeline core (filters, resamplers, IQ converters,
+// demodulation maths, spectrum FFT). It has no Android dependencies, so it is used by the app
+// and can be unit tested and benchmarked on a desktop JVM.
+// JMH benchmarks of the DSP kernels are in src/jmh (see BenchmarkSignals.java).
+plugins {
+    `java-library`
+    alias(libs.plugins.kotlin.jvm)
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+kotlin {
+    compilerOptions {
+        jvmTarget.set(JvmTarget.JVM_11)
+    }
+}
+
+dependencies {
+    testImplementation(libs.junit)
+}
+
+// Desktop (host) build of the 'nativedsp' JNI library. Without it, SpectrumFft falls back to
+// the pure JVM implementation (JavaFft). Requires cmake, a C/C++ compiler and a JDK.
+val nativeDspSourceDir = rootProject.file("nativedsp/src/main/cpp")
+val nativeDspBuildDir = layout.buildDirectory.dir("nativedsp")
+
+val configureNativeDsp by tasks.registering(Exec::class) {
+    group = "build"
+    description = "Configures the desktop build of the nativedsp library."
+    inputs.dir(nativeDspSourceDir)
+    outputs.dir(nativeDspBuildDir)
+    commandLine("cmake", "-S", nativeDspSourceDir.absolutePath, "-B", nativeDspBuildDir.get().asFile.absolutePath,
+        "-DCMAKE_BUILD_TYPE=Release")
+}
+
+val buildNativeDsp by tasks.registering(Exec::class) {
+    group = "build"
+    description = "Builds the nativedsp library for the host (libnativedsp.so) to use the native FFT on the desktop JVM."
+    dependsOn(configureNativeDsp)
+    inputs.dir(nativeDspSourceDir)
+    outputs.dir(nativeDspBuildDir)
+    commandLine("cmake", "--build", nativeDspBuildDir.get().asFile.absolutePath)
+}
+
+tasks.test {
+    // Run the tests with the native FFT: ./gradlew :dspcore:test -PnativeDsp
+    if (project.hasProperty("nativeDsp"))
+        dependsOn(buildNativeDsp)
+    systemProperty("java.library.path", nativeDspBuildDir.get().asFile.absolutePath)
+    testLogging {
+        events("failed")
+        showStandardStreams = false
+    }
+}
+
+// Benchmarks: ./gradlew :dspcore:jmh [-PnativeDsp] [-PjmhInclude=<regex>]
+// Results (samples/s and allocation rate of the gc profiler) are written to build/results/jmh/
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    profilers.add("gc")
+    resultFormat.set("JSON")
+    jvmArgsAppend.add("-Djava.library.path=${nativeDspBuildDir.get().asFile.absolutePath}")
+    (project.findProperty("jmhInclude") as String?)?.let { includes.add(it) }
+}
+
+tasks.named("jmh") {
+    if (project.hasProperty("nativeDsp"))
+        dependsOn(buildNativeDsp)
+}
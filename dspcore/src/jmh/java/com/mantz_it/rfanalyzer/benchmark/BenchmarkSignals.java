@@ -0,0 +1,81 @@
+package com.mantz_it.rfanalyzer.benchmark;
+
+import com.mantz_it.rfanalyzer.dsp.Log;
+import com.mantz_it.rfanalyzer.source.SamplePacket;
+
+import java.util.Random;
+
+/**
+ * <h1>RF Analyzer - Benchmark Signals</h1>
+ *
+ * Module:      BenchmarkSignals.java
+ * Description: Test signals for the JMH benchmarks of the DSP kernels. All benchmarks process
+ * packets of PACKET_SIZE samples per invocation and declare this with @OperationsPerInvocation,
+ * so the reported throughput (ops/s) is samples per second. The allocation rate is reported by
+ * the gc profiler (gc.alloc.rate.norm is in bytes per sample and should be 0).
+ *
+ * Run all benchmarks with:   ./gradlew :dspcore:jmh
+ * Use the native FFT with:   ./gradlew :dspcore:jmh -PnativeDsp
+ * Run a subset with:         ./gradlew :dspcore:jmh -PjmhInclude=FirFilterBenchmark
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public final class BenchmarkSignals {
+	public static final int PACKET_SIZE = 16384;		// samples per benchmark invocation
+	public static final int SAMPLE_RATE = 2000000;		// typical source sample rate
+	public static final long FREQUENCY = 100000000;
+
+	private BenchmarkSignals() { }
+
+	/**
+	 * Disables debug logging (filter design messages) during the benchmarks.
+	 */
+	public static void quietLogging() {
+		Log.setMinPriority(Log.WARN);
+	}
+
+	/**
+	 * @return packet of PACKET_SIZE complex samples: a tone at toneFrequency plus some noise
+	 */
+	public static SamplePacket createTone(int sampleRate, float toneFrequency) {
+		SamplePacket packet = new SamplePacket(PACKET_SIZE);
+		Random random = new Random(42);
+		float[] re = packet.re();
+		float[] im = packet.im();
+		for (int i = 0; i < PACKET_SIZE; i++) {
+			double phase = 2 * Math.PI * toneFrequency * i / sampleRate;
+			re[i] = (float) (0.5 * Math.cos(phase) + 0.01 * random.nextGaussian());
+			im[i] = (float) (0.5 * Math.sin(phase) + 0.01 * random.nextGaussian());
+		}
+		packet.setSize(PACKET_SIZE);
+		packet.setSampleRate(sampleRate);
+		packet.setFrequency(FREQUENCY);
+		return packet;
+	}
+
+	/**
+	 * @return raw source packet with PACKET_SIZE samples (random bytes, interleaved IQ)
+	 */
+	public static byte[] createRawPacket(int bytesPerSample) {
+		byte[] packet = new byte[PACKET_SIZE * bytesPerSample];
+		new Random(42).nextBytes(packet);
+		return packet;
+	}
+}
@@ -0,0 +1,124 @@
+package com.mantz_it.rfanalyzer.benchmark;
+
+import com.mantz_it.rfanalyzer.dsp.AnalogDemodulator;
+import com.mantz_it.rfanalyzer.dsp.ComplexFirFilter;
+import com.mantz_it.rfanalyzer.dsp.FmDiscriminator;
+import com.mantz_it.rfanalyzer.source.SamplePacket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>RF Analyzer - Demodulator Benchmark</h1>
+ *
+ * Module:      DemodulatorBenchmark.java
+ * Description: Throughput (samples/s) of the four demodulation functions (AM, FM, SSB,
+ * CW) at their quadrature rates. FM is measured with both modes of the FmDiscriminator (the
+ * parameter lives in FmState, so only demodulateFM runs once per mode).
+ * The band pass filters for SSB and CW are the same as the Demodulator creates.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BenchmarkSignals.PACKET_SIZE)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DemodulatorBenchmark {
+	private static final int QUADRATURE_RATE = 96000;		// AM, NFM, SSB
+	private static final int WFM_QUADRATURE_RATE = 384000;
+	private static final int CW_QUADRATURE_RATE = 48000;
+
+	/**
+	 * Demodulator and input of the FM benchmark (one instance per FmDiscriminator mode)
+	 */
+	@State(Scope.Thread)
+	public static class FmState {
+		@Param({"FAST", "EXACT"})
+		public String fmDiscriminatorMode;
+
+		private AnalogDemodulator demodulator;
+		private SamplePacket wfmInput;
+
+		@Setup
+		public void setup() {
+			BenchmarkSignals.quietLogging();
+			demodulator = new AnalogDemodulator();
+			demodulator.setFmDiscriminatorMode(FmDiscriminator.Mode.valueOf(fmDiscriminatorMode));
+			wfmInput = BenchmarkSignals.createTone(WFM_QUADRATURE_RATE, 50000);
+		}
+	}
+
+	private AnalogDemodulator demodulator;
+	private ComplexFirFilter ssbFilter;
+	private ComplexFirFilter cwFilter;
+	private SamplePacket input;
+	private SamplePacket cwInput;
+	private SamplePacket output;
+
+	@Setup
+	public void setup() {
+		BenchmarkSignals.quietLogging();
+		demodulator = new AnalogDemodulator();
+		ssbFilter = ComplexFirFilter.createBandPass(2, 1, QUADRATURE_RATE, 200, 2800, QUADRATURE_RATE * 0.01f, 40);
+		cwFilter = ComplexFirFilter.createBandPass(1, 1, CW_QUADRATURE_RATE, 500, 1000, CW_QUADRATURE_RATE * 0.01f, 40);
+		input = BenchmarkSignals.createTone(QUADRATURE_RATE, 1000);
+		cwInput = BenchmarkSignals.createTone(CW_QUADRATURE_RATE, 750);
+		output = new SamplePacket(BenchmarkSignals.PACKET_SIZE);
+	}
+
+	@Benchmark
+	public SamplePacket demodulateAM() {
+		demodulator.demodulateAM(input, output);
+		return output;
+	}
+
+	@Benchmark
+	public SamplePacket demodulateFM(FmState fm) {
+		fm.demodulator.demodulateFM(fm.wfmInput, output, 75000);
+		return output;
+	}
+
+	@Benchmark
+	public SamplePacket demodulateSSB() {
+		demodulator.demodulateSSB(input, output, ssbFilter);
+		return output;
+	}
+
+	@Benchmark
+	public SamplePacket demodulateCW() {
+		demodulator.demodulateCW(cwInput, output, cwFilter);
+		return output;
+	}
+}
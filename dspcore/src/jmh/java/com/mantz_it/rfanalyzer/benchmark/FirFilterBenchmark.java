@@ -0,0 +1,97 @@
+package com.mantz_it.rfanalyzer.benchmark;
+
+import com.mantz_it.rfanalyzer.dsp.ComplexFirFilter;
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
+import com.mantz_it.rfanalyzer.source.SamplePacket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>RF Analyzer - FIR Filter Benchmark</h1>
+ *
+ * Module:      FirFilterBenchmark.java
+ * Description: Throughput (samples/s) of FirFilter.filter (complex), FirFilter.filterReal
+ * (audio path) and ComplexFirFilter.filter (SSB/CW band pass) for different decimations. The
+ * cut-off frequency scales with the decimation (like the decimation filters in the pipeline),
+ * so a higher decimation also means more taps.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BenchmarkSignals.PACKET_SIZE)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FirFilterBenchmark {
+	@Param({"1", "4", "16"})
+	public int decimation;
+
+	private FirFilter firFilter;
+	private ComplexFirFilter complexFirFilter;
+	private SamplePacket input;
+	private SamplePacket output;
+
+	@Setup
+	public void setup() {
+		BenchmarkSignals.quietLogging();
+		int sampleRate = BenchmarkSignals.SAMPLE_RATE;
+		float cutOff = 0.4f * sampleRate / decimation;
+		firFilter = FirFilter.createLowPass(decimation, 1, sampleRate, cutOff, cutOff * 0.25f, 60);
+		complexFirFilter = ComplexFirFilter.createBandPass(decimation, 1, sampleRate, cutOff * 0.1f, cutOff, cutOff * 0.25f, 40);
+		input = BenchmarkSignals.createTone(sampleRate, 10000);
+		output = new SamplePacket(BenchmarkSignals.PACKET_SIZE);
+	}
+
+	@Benchmark
+	public SamplePacket firFilter() {
+		output.setSize(0);
+		firFilter.filter(input, output, 0, input.size());
+		return output;
+	}
+
+	@Benchmark
+	public SamplePacket firFilterReal() {
+		output.setSize(0);
+		firFilter.filterReal(input, output, 0, input.size());
+		return output;
+	}
+
+	@Benchmark
+	public SamplePacket complexFirFilter() {
+		output.setSize(0);
+		complexFirFilter.filter(input, output, 0, input.size());
+		return output;
+	}
+}
@@ -0,0 +1,106 @@
+package com.mantz_it.rfanalyzer.benchmark;
+
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
+import com.mantz_it.rfanalyzer.source.IQConverter;
+import com.mantz_it.rfanalyzer.source.SamplePacket;
+import com.mantz_it.rfanalyzer.source.Signed16BitIQConverter;
+import com.mantz_it.rfanalyzer.source.Signed8BitIQConverter;
+import com.mantz_it.rfanalyzer.source.Unsigned8BitIQConverter;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>RF Analyzer - IQ Converter Benchmark</h1>
+ *
+ * Module:      IQConverterBenchmark.java
+ * Description: Throughput (samples/s) of the three paths of all IQConverters (raw bytes
+ * of the source to float samples): fill (FFT path), mix (shift the channel to baseband) and
+ * mixAndDecimate (demodulation path: convert, mix and decimate by 10 in one pass).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BenchmarkSignals.PACKET_SIZE)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IQConverterBenchmark {
+	@Param({"UNSIGNED_8BIT", "SIGNED_8BIT", "SIGNED_16BIT"})
+	public String format;
+
+	private IQConverter converter;
+	private byte[] packet;
+	private SamplePacket output;
+	private FirFilter decimationFilter;
+	private final long channelFrequency = BenchmarkSignals.FREQUENCY + 300000;
+
+	@Setup
+	public void setup() {
+		BenchmarkSignals.quietLogging();
+		int bytesPerSample = 2;
+		switch (format) {
+			case "UNSIGNED_8BIT": converter = new Unsigned8BitIQConverter(); break;
+			case "SIGNED_8BIT": converter = new Signed8BitIQConverter(); break;
+			default: converter = new Signed16BitIQConverter(); bytesPerSample = 4; break;
+		}
+		converter.setSampleRate(BenchmarkSignals.SAMPLE_RATE);
+		converter.setFrequency(BenchmarkSignals.FREQUENCY);
+		packet = BenchmarkSignals.createRawPacket(bytesPerSample);
+		output = new SamplePacket(BenchmarkSignals.PACKET_SIZE);
+		// same filter as the Scheduler creates for NFM (2 Msps -> 200 ksps):
+		decimationFilter = FirFilter.createLowPass(10, 1, BenchmarkSignals.SAMPLE_RATE, 100000, 123200, 60);
+	}
+
+	@Benchmark
+	public SamplePacket fill() {
+		output.setSize(0);
+		converter.fillPacketIntoSamplePacket(packet, output);
+		return output;
+	}
+
+	@Benchmark
+	public SamplePacket mix() {
+		output.setSize(0);
+		converter.mixPacketIntoSamplePacket(packet, output, channelFrequency);
+		return output;
+	}
+
+	@Benchmark
+	public SamplePacket mixAndDecimate() {
+		output.setSize(0);
+		converter.mixAndDecimatePacketIntoSamplePacket(packet, output, channelFrequency, decimationFilter);
+		return output;
+	}
+}
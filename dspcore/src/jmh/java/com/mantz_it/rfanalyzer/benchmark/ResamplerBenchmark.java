@@ -0,0 +1,89 @@
+package com.mantz_it.rfanalyzer.benchmark;
+
+import com.mantz_it.rfanalyzer.dsp.RationalResampler;
+import com.mantz_it.rfanalyzer.source.SamplePacket;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>RF Analyzer - Resampler Benchmark</h1>
+ *
+ * Module:      ResamplerBenchmark.java
+ * Description: Throughput (input samples/s) of RationalResampler.resample at the ratios
+ * which are typical in the pipeline:
+ *  - 24/25:   400 ksps (2 Msps decimated by 5) to the WFM quadrature rate (384 ksps)
+ *  - 12/25:   200 ksps (2 Msps decimated by 10) to the AM/NFM/SSB quadrature rate (96 ksps)
+ *  - 147/160: 48 ksps to 44.1 ksps audio
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BenchmarkSignals.PACKET_SIZE)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResamplerBenchmark {
+	@Param({"24/25", "12/25", "147/160"})
+	public String ratio;
+
+	private RationalResampler resampler;
+	private SamplePacket input;
+	private SamplePacket output;
+
+	@Setup
+	public void setup() {
+		BenchmarkSignals.quietLogging();
+		String[] parts = ratio.split("/");
+		int interpolation = Integer.parseInt(parts[0]);
+		int decimation = Integer.parseInt(parts[1]);
+		resampler = new RationalResampler(interpolation, decimation, null, 0.4f, 0);
+		input = BenchmarkSignals.createTone(BenchmarkSignals.SAMPLE_RATE, 10000);
+		output = new SamplePacket(BenchmarkSignals.PACKET_SIZE);
+	}
+
+	@Benchmark
+	public SamplePacket resample() {
+		// like the Resampler thread: call resample() until the input packet is consumed
+		int offset = 0;
+		while (offset < input.size()) {
+			output.setSize(0);
+			int consumed = resampler.resample(input, output, offset, input.size() - offset);
+			if (consumed == 0)
+				break;
+			offset += consumed;
+		}
+		return output;
+	}
+}
@@ -0,0 +1,98 @@
+package com.mantz_it.rfanalyzer.benchmark;
+
+import com.mantz_it.nativedsp.NativeDsp;
+import com.mantz_it.rfanalyzer.dsp.JavaFft;
+import com.mantz_it.rfanalyzer.dsp.SpectrumFft;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <h1>RF Analyzer - Spectrum FFT Benchmark</h1>
+ *
+ * Module:      SpectrumFftBenchmark.java
+ * Description: Throughput (samples/s) of the windowed FFT with log magnitude of the
+ * native (pffft) and the pure JVM implementation for FFT sizes from 1k to 256k. Each
+ * invocation transforms SAMPLES_PER_INVOCATION samples (multiple FFTs for small sizes), so the
+ * results of all sizes can be compared directly. The native implementation requires the
+ * desktop build of nativedsp (-PnativeDsp). Otherwise its setup fails and only the JavaFft
+ * results are reported.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SpectrumFftBenchmark.SAMPLES_PER_INVOCATION)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SpectrumFftBenchmark {
+	static final int SAMPLES_PER_INVOCATION = 262144;
+
+	@Param({"1024", "4096", "16384", "65536", "262144"})
+	public int fftSize;
+
+	@Param({"native", "java"})
+	public String implementation;
+
+	private SpectrumFft fft;
+	private float[] re;
+	private float[] im;
+	private float[] mag;
+
+	@Setup
+	public void setup() {
+		BenchmarkSignals.quietLogging();
+		if (implementation.equals("native")) {
+			if (!SpectrumFft.Companion.isNativeAvailable())
+				throw new IllegalStateException("nativedsp library not found in java.library.path (run with -PnativeDsp)");
+			fft = new NativeDsp();
+		} else {
+			fft = new JavaFft();
+		}
+		re = new float[fftSize];
+		im = new float[fftSize];
+		mag = new float[fftSize];
+		for (int i = 0; i < fftSize; i++) {
+			re[i] = (float) Math.cos(2 * Math.PI * 0.1 * i);
+			im[i] = (float) Math.sin(2 * Math.PI * 0.1 * i);
+		}
+	}
+
+	@Benchmark
+	public float[] windowedFftAndLogMag() {
+		for (int i = 0; i < SAMPLES_PER_INVOCATION / fftSize; i++)
+			fft.performWindowedFftAndReturnMag(re, im, mag);
+		return mag;
+	}
+}
@@ -0,0 +1,106 @@
+package com.mantz_it.nativedsp
+
+import com.mantz_it.rfanalyzer.dsp.SpectrumFft
+import kotlin.math.cos
+
+class NativeDsp : SpectrumFft {
+
+    var window: FloatArray? = null
+    var inputBuf: FloatArray? = null
+    private var fftStateHandle = 0L     // native FFT setup and buffers of this instance (0: none)
+    private var fftStateLength = 0      // number of floats of the native FFT state
+
+    init {
+        loadLibrary()
+    }
+
+    protected fun makeWindow(size: Int) {
+        // Make a blackman window:
+        // w(n)=0.42-0.5cos{(2*PI*n)/(N-1)}+0.08cos{(4*PI*n)/(N-1)};
+        window = FloatArray(size)
+        for (i in window!!.indices)
+            window!![i] = (0.42 - 0.5 * cos(2 * Math.PI * i / (size - 1))
+                + 0.08 * cos(4 * Math.PI * i / (size - 1))).toFloat()
+    }
+
+    /**
+     * Native methods implemented by the 'nativedsp' native library,
+     * performing a FFT with the pffft library. Each instance has its own native FFT state
+     * (handle), which is created for a given input length (2 * fft size) and must be destroyed.
+     */
+    private external fun createFftState(length: Int): Long
+    private external fun destroyFftState(handle: Long)
+    private external fun performFFT(handle: Long, input: FloatArray?, output: FloatArray?)
+    private external fun performFFTAndLogMag(handle: Long, input: FloatArray?, output: FloatArray?)
+
+    companion object {
+        private var isLibraryLoaded = false
+
+        /**
+         * Loads the 'nativedsp' library (if not yet loaded).
+         * On Android, the library is packaged by the nativedsp module. On the desktop, it must
+         * be built first (see dspcore/build.gradle.kts) and be found in java.library.path.
+         * Throws UnsatisfiedLinkError if it is not available.
+         */
+        @Synchronized
+        fun loadLibrary() {
+            if (!isLibraryLoaded) {
+                System.loadLibrary("nativedsp")
+                isLibraryLoaded = true
+            }
+        }
+    }
+
+    /**
+     * Applies a Blackman Window to the input samples, followed by a FFT operation.
+     * Fills the array magOut with the logarithmic magnitude of the FFT results (centered around the 0-frequency)
+     * The native FFT state belongs to this instance, so different instances (the live
+     * FftProcessor and OfflineProcessors) run in parallel. An instance itself must not be
+     * shared between threads (the lock only guards the native state against release()).
+     */
+    override fun performWindowedFftAndReturnMag(re: FloatArray, im: FloatArray, magOut: FloatArray): Boolean {
+        val N = re.size
+        if(im.size != N || magOut.size != N)
+            return false
+
+        if(window == null || window!!.size != N)
+            makeWindow(re.size)
+
+        if(inputBuf == null || inputBuf!!.size != 2*N)
+            inputBuf = FloatArray(2*N)
+
+        // apply window
+        for(i in 0..<N) {
+            inputBuf!![2*i]   = re[i] * window!![i]
+            inputBuf!![2*i+1] = im[i] * window!![i]
+        }
+
+        synchronized(this) {
+            if (fftStateLength != 2*N) {
+                release()
+                fftStateHandle = createFftState(2*N)
+                if (fftStateHandle == 0L)
+                    return false
+                fftStateLength = 2*N
+            }
+            performFFTAndLogMag(fftStateHandle, inputBuf, magOut)
+        }
+        return true
+    }
+
+    /**
+     * Frees the native FFT state (it is created again on the next FFT)
+     */
+    @Synchronized
+    fun release() {
+        if (fftStateHandle != 0L) {
+            destroyFftState(fftStateHandle)
+            fftStateHandle = 0L
+            fftStateLength = 0
+        }
+    }
+
+    protected fun finalize() {
+        release()
+    }
+}
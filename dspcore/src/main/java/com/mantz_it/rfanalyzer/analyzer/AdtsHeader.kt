@@ -0,0 +1,62 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+/**
+ * <h1>RF Analyzer - ADTS Header</h1>
+ *
+ * Module:      AdtsHeader.kt
+ * Description: 7 byte ADTS header (no CRC) for raw AAC-LC frames as they come out of an
+ * encoder. With a header in front of every frame the frames can be written as a plain .aac
+ * stream file which is playable by common players (no container needed).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+object AdtsHeader {
+    const val SIZE = 7
+    private const val AAC_LC_OBJECT_TYPE = 2
+    private val SAMPLING_FREQUENCIES = intArrayOf(96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350)
+
+    /**
+     * @return the ADTS sampling frequency index of the sample rate
+     * @throws IllegalArgumentException if AAC does not support the sample rate
+     */
+    fun samplingFrequencyIndex(sampleRate: Int): Int {
+        val index = SAMPLING_FREQUENCIES.indexOf(sampleRate)
+        require(index >= 0) { "Sample rate $sampleRate is not supported by AAC" }
+        return index
+    }
+
+    /**
+     * Puts the header of a single AAC frame into the array
+     *
+     * @param header         destination (SIZE bytes starting at offset)
+     * @param payloadLength  size of the raw AAC frame in bytes (without the header)
+     */
+    fun write(header: ByteArray, sampleRate: Int, channelCount: Int, payloadLength: Int, offset: Int = 0) {
+        val frequencyIndex = samplingFrequencyIndex(sampleRate)
+        val frameLength = SIZE + payloadLength
+        header[offset] = 0xFF.toByte()                                     // syncword (12 bit)
+        header[offset + 1] = 0xF1.toByte()                                 // syncword, MPEG-4, layer 0, no CRC
+        header[offset + 2] = (((AAC_LC_OBJECT_TYPE - 1) shl 6) or (frequencyIndex shl 2) or (channelCount shr 2)).toByte()
+        header[offset + 3] = (((channelCount and 3) shl 6) or (frameLength shr 11)).toByte()
+        header[offset + 4] = ((frameLength shr 3) and 0xFF).toByte()
+        header[offset + 5] = (((frameLength and 7) shl 5) or 0x1F).toByte()  // buffer fullness 0x7FF (variable bit rate)
+        header[offset + 6] = 0xFC.toByte()                                 // buffer fullness, one raw data block
+    }
+}
@@ -0,0 +1,91 @@
+package com.mantz_it.rfanalyzer.analyzer;
+
+import com.mantz_it.rfanalyzer.dsp.Log;
+
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
+import com.mantz_it.rfanalyzer.source.SamplePacket;
+
+/**
+ * <h1>RF Analyzer - Audio Decimator</h1>
+ *
+ * Module:      AudioDecimator.java
+ * Description: Decimates demodulated (real) samples from the quadrature rate of the
+ *              demodulator (2x or 8x the audio rate) to the audio rate. Used by the AudioSink
+ *              and by the OfflineProcessor (which writes the audio to a file instead of
+ *              playing it).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class AudioDecimator {
+	private static final String LOGTAG = "AudioDecimator";
+	private final int audioRate;				// sample rate at the output
+	private final FirFilter audioFilter1;		// Filter used to decimate the incoming signal rate
+	private final FirFilter audioFilter2;		// Cascaded filter for high incoming signal rates
+	private final SamplePacket tmpAudioSamples;	// tmp buffer for audio filters.
+
+	/**
+	 * Constructor.
+	 *
+	 * @param packetSize	max. size of the incoming sample packets
+	 * @param audioRate		sample rate at the output
+	 */
+	public AudioDecimator(int packetSize, int audioRate) {
+		this.audioRate = audioRate;
+		this.audioFilter1 = FirFilter.createLowPass(2, 1, 1, 0.1f, 0.15f, 30);
+		Log.d(LOGTAG,"constructor: created audio filter 1 with " + audioFilter1.getNumberOfTaps() + " Taps.");
+		this.audioFilter2 = FirFilter.createLowPass(4, 1, 1, 0.1f, 0.1f, 30);
+		Log.d(LOGTAG,"constructor: created audio filter 2 with " + audioFilter2.getNumberOfTaps() + " Taps.");
+		this.tmpAudioSamples = new SamplePacket(packetSize);
+	}
+
+	public int getAudioRate() {
+		return audioRate;
+	}
+
+	/**
+	 * Will filter the real array contained in input and decimate them to the audio rate.
+	 *
+	 * @param input		incoming (unfiltered) samples at the incoming rate (quadrature rate)
+	 * @param output	outgoing (filtered, decimated) samples at audio rate
+	 */
+	public void decimate(SamplePacket input, SamplePacket output) {
+		// if we need a decimation of 8: apply first and second filter (decimate to input_rate/8)
+		if(input.getSampleRate()/audioRate == 8) {
+			// apply first filter (decimate to input_rate/2)
+			tmpAudioSamples.setSize(0);	// mark buffer as empty
+			if (audioFilter1.filterReal(input, tmpAudioSamples, 0, input.size()) < input.size()) {
+				Log.e(LOGTAG, "decimate: [audioFilter1] could not filter all samples from input packet.");
+			}
+
+			// apply second filter (decimate to input_rate/8)
+			output.setSize(0);
+			if (audioFilter2.filterReal(tmpAudioSamples, output, 0, tmpAudioSamples.size()) < tmpAudioSamples.size()) {
+				Log.e(LOGTAG, "decimate: [audioFilter2] could not filter all samples from input packet.");
+			}
+		} else if (input.getSampleRate()/audioRate == 2){
+			// apply first filter (decimate to input_rate/2 )
+			output.setSize(0);
+			if (audioFilter1.filterReal(input, output, 0, input.size()) < input.size()) {
+				Log.e(LOGTAG, "decimate: [audioFilter1] could not filter all samples from input packet.");
+			}
+		} else
+			Log.e(LOGTAG,"decimate: incoming sample rate is not supported: " + input.getSampleRate());
+	}
+}
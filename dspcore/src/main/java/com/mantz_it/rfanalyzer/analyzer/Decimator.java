@@ -1,6 +1,6 @@
 package com.mantz_it.rfanalyzer.analyzer;
 
-import android.util.Log;
+import com.mantz_it.rfanalyzer.dsp.Log;
 
 import com.mantz_it.rfanalyzer.database.GlobalPerformanceData;
 import com.mantz_it.rfanalyzer.dsp.FirFilter;
@@ -0,0 +1,120 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import com.mantz_it.rfanalyzer.dsp.Log
+
+/**
+ * <h1>RF Analyzer - Load Governor</h1>
+ *
+ * Module:      LoadGovernor.kt
+ * Description: Decides how much the quality of the display (and finally of the filters) has to
+ * be reduced to keep the demodulation path real time capable. It is updated periodically with
+ * the highest load of the stages in the audio path and the number of discarded packets. Under
+ * pressure it steps down one Level at a time (in the order of the enum, each level includes the
+ * previous ones); when there is enough headroom for a while it steps back up. The levels are
+ * applied by the AnalyzerService.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class LoadGovernor(
+    private val highLoad: Float = HIGH_LOAD,
+    private val lowLoad: Float = LOW_LOAD,
+    private val stepDownHoldOff: Int = STEP_DOWN_HOLD_OFF,
+    private val stepUpDelay: Int = STEP_UP_DELAY
+) {
+    enum class Level(val displayName: String) {
+        FULL("Full quality"),
+        FFT_RATE("Reduced FFT rate"),
+        AVERAGING("No FFT averaging"),
+        FFT_SIZE("Reduced FFT size"),
+        WATERFALL_RESOLUTION("Reduced waterfall resolution"),
+        FILTER_QUALITY("Reduced filter quality"),
+    }
+
+    companion object {
+        private const val LOGTAG = "LoadGovernor"
+        const val HIGH_LOAD = 0.9f          // step down if a stage is above this load
+        const val LOW_LOAD = 0.5f           // step up if all stages are below this load ...
+        const val STEP_UP_DELAY = 10        // ... for this number of consecutive updates
+        const val STEP_DOWN_HOLD_OFF = 2    // updates to wait after a change before stepping down again (let the loads settle)
+
+        // Parameters of the levels:
+        const val REDUCED_FFT_RATE = 15             // FFT_RATE: max. FFT frames per second
+        const val REDUCED_FFT_SIZE_DIVIDER = 4      // FFT_SIZE: the FFT size is divided by this ...
+        const val MIN_REDUCED_FFT_SIZE = 1024       // ... but not below this size
+        const val WATERFALL_RESOLUTION_DIVIDER = 2  // WATERFALL_RESOLUTION: the number of waterfall rows is divided by this
+
+        /**
+         * @return the FFT size to use for the given user setting at the given level
+         */
+        fun reducedFftSize(fftSize: Int, level: Level): Int =
+            if (level >= Level.FFT_SIZE) (fftSize / REDUCED_FFT_SIZE_DIVIDER).coerceIn(minOf(fftSize, MIN_REDUCED_FFT_SIZE), fftSize)
+            else fftSize
+    }
+
+    var level = Level.FULL
+        private set
+
+    private var lastDrops = -1L     // -1: unknown
+    private var holdOff = 0
+    private var calmUpdates = 0
+
+    /**
+     * Evaluates the current loads. Should be called periodically (e.g. every second).
+     *
+     * @param maxLoad   highest load of the stages which must stay real time capable
+     * @param drops     total number of discarded packets in these stages (monotonic counter)
+     * @return true if the level changed
+     */
+    fun update(maxLoad: Float, drops: Long): Boolean {
+        val newDrops = lastDrops in 0 until drops
+        lastDrops = drops
+        if (holdOff > 0)
+            holdOff--
+
+        val oldLevel = level
+        if (maxLoad > highLoad || newDrops) {
+            calmUpdates = 0
+            if (holdOff == 0 && level.ordinal < Level.entries.size - 1) {
+                level = Level.entries[level.ordinal + 1]
+                holdOff = stepDownHoldOff
+            }
+        } else if (maxLoad < lowLoad) {
+            calmUpdates++
+            if (calmUpdates >= stepUpDelay && level != Level.FULL) {
+                level = Level.entries[level.ordinal - 1]
+                calmUpdates = 0
+                holdOff = stepDownHoldOff
+            }
+        } else {
+            calmUpdates = 0
+        }
+
+        if (level != oldLevel)
+            Log.i(LOGTAG, "update: maxLoad=$maxLoad newDrops=$newDrops: $oldLevel -> $level")
+        return level != oldLevel
+    }
+
+    fun reset() {
+        level = Level.FULL
+        lastDrops = -1
+        holdOff = 0
+        calmUpdates = 0
+    }
+}
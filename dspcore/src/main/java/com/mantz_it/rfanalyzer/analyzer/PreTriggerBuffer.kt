@@ -0,0 +1,96 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import java.io.OutputStream
+import java.nio.ByteBuffer
+
+/**
+ * <h1>RF Analyzer - Pre-Trigger Buffer</h1>
+ *
+ * Module:      PreTriggerBuffer.kt
+ * Description: Ring buffer for the raw packets of the source which are not recorded while the
+ * squelch is closed. It always holds the newest capacity bytes. When the squelch opens, the
+ * buffer is drained into the recording before the current packet (pre-roll), so that the
+ * beginning of a transmission is not lost.
+ * The bytes are kept in a direct (off-heap) ByteBuffer and drained through a small preallocated
+ * transfer array: write() and drainTo() don't allocate memory. The capacity should be a multiple
+ * of the bytes per sample, so that the oldest sample is never cut in half.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class PreTriggerBuffer(val capacity: Int) {
+    companion object {
+        private const val TRANSFER_SIZE = 64 * 1024
+    }
+
+    private val buffer = ByteBuffer.allocateDirect(capacity)
+    private val transferArray = ByteArray(minOf(TRANSFER_SIZE, capacity))
+    private var writePosition = 0
+
+    var size = 0        // number of bytes in the buffer
+        private set
+
+    /**
+     * Appends the bytes to the buffer. The oldest bytes are overwritten if the buffer is full.
+     */
+    fun write(data: ByteArray, offset: Int = 0, length: Int = data.size - offset) {
+        if (length >= capacity) {
+            // only the newest bytes fit into the buffer:
+            buffer.position(0)
+            buffer.put(data, offset + length - capacity, capacity)
+            writePosition = 0
+            size = capacity
+            return
+        }
+        val firstPart = minOf(length, capacity - writePosition)
+        buffer.position(writePosition)
+        buffer.put(data, offset, firstPart)
+        if (firstPart < length) {
+            buffer.position(0)
+            buffer.put(data, offset + firstPart, length - firstPart)
+        }
+        writePosition = (writePosition + length) % capacity
+        size = minOf(capacity, size + length)
+    }
+
+    /**
+     * Writes the content of the buffer (oldest bytes first) to the stream and empties the buffer
+     *
+     * @return number of written bytes
+     */
+    fun drainTo(outputStream: OutputStream): Int {
+        val drained = size
+        var readPosition = (writePosition - size + capacity) % capacity
+        var remaining = size
+        while (remaining > 0) {
+            val count = minOf(remaining, transferArray.size, capacity - readPosition)
+            buffer.position(readPosition)
+            buffer.get(transferArray, 0, count)
+            outputStream.write(transferArray, 0, count)
+            readPosition = (readPosition + count) % capacity
+            remaining -= count
+        }
+        size = 0
+        return drained
+    }
+
+    fun clear() {
+        size = 0
+    }
+}
@@ -0,0 +1,159 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import com.mantz_it.rfanalyzer.dsp.Log
+import java.io.IOException
+
+/**
+ * <h1>RF Analyzer - Recording Session</h1>
+ *
+ * Module:      RecordingSession.kt
+ * Description: State of one running recording: the RecordingWriter, the squelch gate (with
+ * pre-roll in a PreTriggerBuffer and post-roll), the stop conditions and the callbacks to the
+ * ui. The session is fed by exactly one thread (the producer of the recorded stream): the
+ * Scheduler for raw IQ recordings and the Demodulator for channel recordings. stop() may be
+ * called from any thread; the producer closes the session on its next call of write() or
+ * update(). The byte format of the stream is up to the producer (the session only needs the
+ * sample rate and bytes per sample of the writer).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class RecordingSession(
+    private val recordingWriter: RecordingWriter,
+    private val onlyWhenSquelchIsSatisfied: Boolean,                // only write samples to file when squelch is satisfied
+    preRoll: Float = 0f,                                            // seconds to record before the squelch opens (if onlyWhenSquelchIsSatisfied). The recordingWriter must be created with the same pre-roll
+    postRoll: Float = 0f,                                           // seconds to record after the squelch closed (if onlyWhenSquelchIsSatisfied)
+    private val maxRecordingTime: Long? = null,                     // Maximum time to record (in milliseconds). null -> never stop
+    private val maxRecordingFileSize: Long? = null,                 // Maximum file size for the recording (in bytes). null -> never stop
+    onRecordingStopped: (finalSize: Long) -> Unit,                  // callback when the file is complete (with final file size in bytes). Called by the writer thread
+    private val onFileSizeUpdate: (currentFileSize: Long) -> Unit   // periodical callback during recording to report file size (in bytes) to ui
+) {
+    companion object {
+        private const val FILE_SIZE_UPDATE_INTERVAL = 500_000_000L  // ns between two calls of onFileSizeUpdate
+        private const val LOGTAG = "RecordingSession"
+    }
+
+    private val startTimestamp = System.currentTimeMillis()
+    private val postRollNanos = (postRoll * 1_000_000_000L).toLong()   // time to continue recording after the squelch closed (in ns)
+    private var lastSquelchSatisfiedTimestamp = Long.MIN_VALUE / 2      // reception time of the last packet with satisfied squelch (no post-roll at the start)
+    private var lastFileSizeUpdateTimestamp = 0L
+    private var preTriggerBuffer: PreTriggerBuffer?                     // holds the last packets before the squelch opens (pre-roll). null -> no pre-roll
+
+    @Volatile
+    private var stopRequested = false
+
+    var isFinished = false      // the session is closed (no more writes)
+        private set
+
+    val recordedFileSize: Long  // number of bytes handed to the recording writer
+        get() = recordingWriter.acceptedBytes
+
+    init {
+        // the pre-trigger buffer is allocated once per recording (the recording loop is allocation free):
+        val bytesPerSample = recordingWriter.bytesPerSample
+        val preRollBytes = (preRoll * recordingWriter.sampleRate).toLong() * bytesPerSample
+        preTriggerBuffer = if (onlyWhenSquelchIsSatisfied && preRollBytes > 0)
+            PreTriggerBuffer((preRollBytes.coerceAtMost(RecordingWriter.MAX_PRE_ROLL_BYTES.toLong()) / bytesPerSample * bytesPerSample).toInt())
+        else
+            null
+        recordingWriter.onFinished = onRecordingStopped
+        Log.i(LOGTAG, "Recording started. (pre-roll: ${preTriggerBuffer?.capacity ?: 0} bytes, post-roll: $postRoll s)")
+    }
+
+    /**
+     * Will stop writing samples to the recordingWriter and close it (with the next write() or update())
+     */
+    fun stop() {
+        stopRequested = true
+        Log.i(LOGTAG, "stop")
+    }
+
+    /**
+     * Records the bytes if the squelch gate is open (or keeps them as pre-roll) and checks the
+     * stop conditions. Must only be called by the producer thread.
+     *
+     * @param data              bytes of the stream (format of the RecordingWriter)
+     * @param squelchSatisfied  state of the squelch for these samples
+     * @param timestamp         reception time of the samples (System.nanoTime())
+     */
+    fun write(data: ByteArray, offset: Int, length: Int, squelchSatisfied: Boolean, timestamp: Long) {
+        if (isFinished)
+            return
+        // Squelch gate: keep recording for postRoll after squelch goes from true to false
+        if (squelchSatisfied)
+            lastSquelchSatisfiedTimestamp = timestamp
+        if (!onlyWhenSquelchIsSatisfied || squelchSatisfied || timestamp - lastSquelchSatisfiedTimestamp < postRollNanos) {
+            try {
+                // squelch just opened: write the pre-roll first
+                preTriggerBuffer?.drainTo(recordingWriter)
+                // (never blocks. If the flash can't keep up, the data is dropped and counted in PipelineMetrics.recordingDrop)
+                recordingWriter.write(data, offset, length)
+            } catch (e: IOException) {
+                Log.e(LOGTAG, "write: Error while writing to the recording: " + e.message)
+                stop()
+            }
+        } else {
+            preTriggerBuffer?.write(data, offset, length)
+        }
+        update()
+    }
+
+    /**
+     * Reports the file size and closes the session if a stop condition is met. Must only be
+     * called by the producer thread (also if there is nothing to write).
+     *
+     * @return true if the session is finished
+     */
+    fun update(): Boolean {
+        if (isFinished)
+            return true
+        val now = System.nanoTime()
+        if (now - lastFileSizeUpdateTimestamp > FILE_SIZE_UPDATE_INTERVAL) {
+            lastFileSizeUpdateTimestamp = now
+            onFileSizeUpdate(recordedFileSize)
+        }
+        // check if recording should stop:
+        maxRecordingTime?.let { if (it <= System.currentTimeMillis() - startTimestamp) {
+                Log.i(LOGTAG, "update: Max Recording Time reached!")
+                stopRequested = true
+            }
+        }
+        maxRecordingFileSize?.let { if (it <= recordedFileSize) {
+                Log.i(LOGTAG, "update: Max Recording File Size reached!")
+                stopRequested = true
+            }
+        }
+        if (stopRequested)
+            close()
+        return isFinished
+    }
+
+    /**
+     * Closes the session immediately. Must only be called by the producer thread (e.g. when it
+     * shuts down). The writer thread writes the backlog, closes the file and calls onRecordingStopped.
+     */
+    fun close() {
+        if (isFinished)
+            return
+        isFinished = true
+        recordingWriter.close()
+        preTriggerBuffer = null
+        Log.i(LOGTAG, "close: Recording stopped. (backlog: ${recordingWriter.backlog} bytes)")
+    }
+}
@@ -0,0 +1,238 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.database.PipelineTracer
+import com.mantz_it.rfanalyzer.dsp.Log
+import java.io.IOException
+import java.io.OutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.nio.channels.FileChannel
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * <h1>RF Analyzer - Recording Writer</h1>
+ *
+ * Module:      RecordingWriter.kt
+ * Description: Writes the raw samples of a recording to a file on its own thread, so that slow
+ * flash writes don't stall the Scheduler (and with it the source and all other consumers).
+ * The data is copied into a ring of preallocated direct buffers of BUFFER_SIZE bytes (free
+ * queue -> full queue -> writer thread -> free queue, like the queues of the Scheduler). Only
+ * full buffers are written to the FileChannel, i.e. all writes are large and aligned to
+ * BUFFER_SIZE within the file. write() never blocks: if all buffers are waiting for the flash,
+ * the data is dropped and counted in PipelineMetrics.recordingDrop. The number of buffers
+ * covers MAX_BACKLOG_TIME of the byte rate of the source plus the pre-roll, which the
+ * RecordingSession hands over in one burst when the squelch opens. The writer thread records the
+ * backlog (full buffers) and its load in PipelineMetrics.recording.
+ * An optional FileHeader (e.g. of a WAV file) is written in front of the data when the writer
+ * starts and rewritten with the final data size when the recording is closed.
+ * close() does not block either: the writer thread finishes the backlog, closes the channel
+ * and then calls onFinished with the size of the file.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class RecordingWriter(
+    private val channel: FileChannel,
+    val sampleRate: Int,
+    val bytesPerSample: Int,
+    preRoll: Float = 0f,                                        // seconds of pre-roll which are written in one burst (see RecordingSession)
+    private val bufferSize: Int = BUFFER_SIZE,
+    private val fileHeader: FileHeader? = null                  // written in front of the data. null -> raw data only
+) : OutputStream() {
+    companion object {
+        const val BUFFER_SIZE = 1024 * 1024             // size of a single write to the file (multiple of the flash page size)
+        const val MAX_BACKLOG_TIME = 1f                 // seconds of samples which can wait for the flash
+        const val MAX_PRE_ROLL_BYTES = 64 * 1024 * 1024 // upper limit for the memory of the pre-roll (pre-trigger buffer)
+        private const val MIN_BUFFER_COUNT = 4
+        private const val MAX_BUFFER_COUNT = 64         // upper limit for the memory of the buffers
+        private const val LOGTAG = "RecordingWriter"
+    }
+
+    /**
+     * Header of a file format which is written in front of the data and depends on its size
+     */
+    interface FileHeader {
+        val size: Int       // bytes
+
+        /**
+         * Puts the header (size bytes) into the buffer
+         *
+         * @param buffer    buffer with at least size bytes remaining (little endian)
+         * @param dataSize  number of data bytes behind the header
+         */
+        fun write(buffer: ByteBuffer, dataSize: Long)
+    }
+
+    private class Chunk(val buffer: ByteBuffer) {
+        var enqueueTimestamp: Long = 0
+    }
+
+    @Volatile
+    var onFinished: ((fileSize: Long) -> Unit)? = null  // called by the writer thread after the file was closed
+
+    private val byteRate = sampleRate.toFloat() * bytesPerSample
+    private val preRollBytes = ((preRoll * sampleRate).toLong() * bytesPerSample).coerceIn(0, MAX_PRE_ROLL_BYTES.toLong())
+    private val bufferCount = (byteRate * MAX_BACKLOG_TIME / bufferSize).toInt().coerceIn(MIN_BUFFER_COUNT, MAX_BUFFER_COUNT) +
+            ((preRollBytes + bufferSize - 1) / bufferSize).toInt()
+    private val freeQueue = ArrayBlockingQueue<Chunk>(bufferCount)
+    private val fullQueue = ArrayBlockingQueue<Chunk>(bufferCount)
+    private var currentChunk: Chunk? = null             // chunk which is filled by write() (owned by the producer)
+    private val singleByte = ByteArray(1)               // for write(Int)
+    private val thread = Thread(::run, "RecordingWriter")
+
+    @Volatile
+    private var closing = false
+    @Volatile
+    private var error: IOException? = null
+
+    @Volatile
+    var acceptedBytes: Long = 0         // bytes which were accepted by write() (producer side)
+        private set
+    @Volatile
+    var writtenBytes: Long = 0          // bytes which are written to the file
+        private set
+
+    /**
+     * @return number of bytes which are accepted but not yet written to the file
+     */
+    val backlog: Long
+        get() = acceptedBytes - writtenBytes
+
+    init {
+        for (i in 0 until bufferCount)
+            freeQueue.offer(Chunk(ByteBuffer.allocateDirect(bufferSize)))
+        Log.i(LOGTAG, "init: $bufferCount buffers of $bufferSize bytes (pre-roll: $preRollBytes bytes)")
+        thread.start()
+    }
+
+    /**
+     * Copies a single byte into the buffer ring (see write(ByteArray, Int, Int))
+     */
+    override fun write(b: Int) {
+        singleByte[0] = b.toByte()
+        write(singleByte, 0, 1)
+    }
+
+    /**
+     * Copies the bytes into the buffer ring. Does not block. If there is not enough space in the
+     * ring, the bytes are dropped (as a whole).
+     *
+     * @throws IOException if the writer thread failed to write to the file
+     */
+    override fun write(data: ByteArray, offset: Int, length: Int) {
+        error?.let { throw IOException("Writing the recording failed: ${it.message}", it) }
+        if (closing)
+            throw IOException("RecordingWriter is closed")
+        val available = (currentChunk?.buffer?.remaining() ?: 0) + freeQueue.size.toLong() * bufferSize
+        if (length > available) {
+            PipelineMetrics.recordingDrop.record(length / bytesPerSample)
+            return
+        }
+        var position = offset
+        val end = offset + length
+        while (position < end) {
+            val chunk = currentChunk ?: freeQueue.poll()!!  // only the writer thread adds to the free queue
+            currentChunk = chunk
+            val count = minOf(end - position, chunk.buffer.remaining())
+            chunk.buffer.put(data, position, count)
+            position += count
+            if (!chunk.buffer.hasRemaining())
+                enqueueCurrentChunk()
+        }
+        acceptedBytes += length
+    }
+
+    /**
+     * Hands the remaining bytes to the writer thread, which writes them, truncates and closes the
+     * file and calls onFinished. Does not block.
+     */
+    override fun close() {
+        if (closing)
+            return
+        if ((currentChunk?.buffer?.position() ?: 0) > 0)
+            enqueueCurrentChunk()
+        closing = true
+    }
+
+    private fun enqueueCurrentChunk() {
+        val chunk = currentChunk ?: return
+        chunk.enqueueTimestamp = System.nanoTime()
+        fullQueue.offer(chunk)      // never full: it has room for all chunks
+        currentChunk = null
+    }
+
+    private fun writeFileHeader() {
+        val fileHeader = fileHeader ?: return
+        val buffer = ByteBuffer.allocate(fileHeader.size).order(ByteOrder.LITTLE_ENDIAN)
+        fileHeader.write(buffer, writtenBytes)
+        buffer.flip()
+        while (buffer.hasRemaining())
+            channel.write(buffer, buffer.position().toLong())
+    }
+
+    private fun run() {
+        Log.i(LOGTAG, "Writer thread started. (Thread: ${thread.name})")
+        val headerSize = fileHeader?.size ?: 0
+        try {
+            writeFileHeader()
+        } catch (e: IOException) {
+            Log.w(LOGTAG, "run: Writing the file header failed: ${e.message}")
+        }
+        while (true) {
+            val chunk = fullQueue.poll(100, TimeUnit.MILLISECONDS)
+            if (chunk == null) {
+                if (closing && fullQueue.isEmpty())
+                    break
+                continue
+            }
+            val startTimestamp = System.nanoTime()
+            PipelineMetrics.recording.recordQueue(chunk.enqueueTimestamp, fullQueue.size)
+            val buffer = chunk.buffer
+            buffer.flip()
+            val size = buffer.remaining()
+            if (error == null) {
+                try {
+                    // positional write: the data always follows the header (which is rewritten on close)
+                    while (buffer.hasRemaining())
+                        channel.write(buffer, headerSize + writtenBytes + size - buffer.remaining())
+                    writtenBytes += size
+                } catch (e: IOException) {
+                    Log.e(LOGTAG, "run: Error while writing to the recording: ${e.message}")
+                    error = e   // the next write() throws. Remaining chunks are discarded until close()
+                }
+            }
+            buffer.clear()
+            freeQueue.offer(chunk)
+            val endTimestamp = System.nanoTime()
+            PipelineTracer.record(PipelineTracer.Stage.RECORDING_WRITE, startTimestamp, endTimestamp)
+            PipelineMetrics.recording.recordProcessing(endTimestamp - startTimestamp, size / byteRate * 1e9f, size / bytesPerSample, size / bytesPerSample)
+        }
+        try {
+            writeFileHeader()
+            channel.truncate(headerSize + writtenBytes)
+            channel.close()
+        } catch (e: IOException) {
+            Log.e(LOGTAG, "run: Error while closing the recording: ${e.message}")
+        }
+        Log.i(LOGTAG, "Writer thread stopped. $writtenBytes bytes written. (Thread: ${thread.name})")
+        onFinished?.let { it(headerSize + writtenBytes) }
+    }
+}
@@ -0,0 +1,187 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import com.mantz_it.rfanalyzer.dsp.Log
+import com.mantz_it.rfanalyzer.database.PipelineMetrics
+import com.mantz_it.rfanalyzer.database.PipelineTracer
+import com.mantz_it.rfanalyzer.dsp.AsyncFilterDesigner
+import com.mantz_it.rfanalyzer.dsp.FarrowResampler
+import com.mantz_it.rfanalyzer.dsp.RationalResampler
+import com.mantz_it.rfanalyzer.dsp.ResamplerInterface
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import java.util.concurrent.ArrayBlockingQueue
+import java.util.concurrent.TimeUnit
+
+/**
+ * <h1>RF Analyzer - Resampler</h1>
+ *
+ * Module:      Resampler.kt
+ * Description: Generalized resampler block that downsamples/upsamples the incoming
+ *              signal to the desired output sample rate using a RationalResampler.
+ *              Runs in its own thread like the old Decimator.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ */
+class Resampler(
+    var outputSampleRate: Int,
+    private val packetSize: Int,
+    private val inputQueue: ArrayBlockingQueue<SamplePacket>,
+    private val inputReturnQueue: ArrayBlockingQueue<SamplePacket>
+) : Thread() {
+
+    private var stopRequested = true
+    // The resampler is keyed by (input rate, output rate). Changing the rates designs the new
+    // filter bank in the background (large banks can take several hundred milliseconds).
+    private val resamplerDesigner = AsyncFilterDesigner<Pair<Int, Int>, ResamplerInterface>("Resampler") { (inRate, outRate) ->
+        createResampler(inRate, outRate)
+    }
+    private var rates = Pair(0, 0)  // key of the current rates (only re-allocated if the rates change)
+
+    private val outputQueue = ArrayBlockingQueue<SamplePacket>(OUTPUT_QUEUE_SIZE)
+    private val outputReturnQueue = ArrayBlockingQueue<SamplePacket>(OUTPUT_QUEUE_SIZE)
+
+    init {
+        repeat(OUTPUT_QUEUE_SIZE) {
+            outputReturnQueue.offer(SamplePacket(packetSize))
+        }
+    }
+
+    fun getResampledPacket(timeout: Int): SamplePacket? {
+        return try {
+            outputQueue.poll(timeout.toLong(), TimeUnit.MILLISECONDS)
+        } catch (e: InterruptedException) {
+            Log.e(LOGTAG, "getPacket: Interrupted while waiting on queue")
+            null
+        }
+    }
+
+    /**
+     * @return number of resampled packets waiting to be fetched with getResampledPacket()
+     */
+    val outputQueueSize: Int
+        get() = outputQueue.size
+
+    fun returnResampledPacket(packet: SamplePacket) {
+        outputReturnQueue.offer(packet)
+    }
+
+    @Synchronized
+    override fun start() {
+        stopRequested = false
+        super.start()
+    }
+
+    fun stopResampler() {
+        stopRequested = true
+    }
+
+    override fun run() {
+        this.name = "Thread-Resampler-${System.currentTimeMillis()}"
+        Log.i(LOGTAG, "Resampler started. (Thread: $name)")
+
+        while (!stopRequested) {
+            val inputSamples: SamplePacket = try {
+                inputQueue.poll(1000, TimeUnit.MILLISECONDS) ?: continue
+            } catch (e: InterruptedException) {
+                Log.e(LOGTAG, "run: Interrupted while waiting on input queue! stop.")
+                stopRequested = true
+                break
+            }
+            PipelineMetrics.resampler.recordQueue(inputSamples.enqueueTimestamp, inputQueue.size)
+
+            // Get the resampler for the current rates. While a new filter bank is designed in
+            // the background, the input is dropped (the old resampler has the wrong output rate).
+            if (rates.first != inputSamples.sampleRate || rates.second != outputSampleRate)
+                rates = Pair(inputSamples.sampleRate, outputSampleRate)
+            val resampler = resamplerDesigner.get(rates)
+            if (resampler == null || resamplerDesigner.currentKey != rates) {
+                PipelineMetrics.resamplerSkip.record(inputSamples.size())
+                inputReturnQueue.offer(inputSamples)
+                continue
+            }
+
+            // Resample the input packet. When upsampling, a single input packet can fill multiple
+            // output packets: The unconsumed part of the input is retained and processed into
+            // the next output buffer.
+            var offset = 0
+            var processingTime = 0L
+            var producedSamples = 0
+            while (offset < inputSamples.size() && !stopRequested) {
+                // Grab output buffer
+                val outputSamples: SamplePacket = try {
+                    val packet = outputReturnQueue.poll(1000, TimeUnit.MILLISECONDS)
+                    if (packet == null) {
+                        Log.d(LOGTAG, "run: No packets from outputReturnQueue. Skipping rest of the input packet.")
+                        PipelineMetrics.resamplerSkip.record(inputSamples.size() - offset)
+                        break
+                    } else packet
+                } catch (e: InterruptedException) {
+                    Log.e(LOGTAG, "run: Interrupted while waiting on output return queue! stop.")
+                    stopRequested = true
+                    break
+                }
+                outputSamples.setSize(0) // mark as empty
+
+                // the output packet starts at the first unconsumed input sample:
+                // (the offset is counted in input samples, i.e. after the decimation of the Scheduler)
+                outputSamples.timestamp = inputSamples.timestamp + offset * 1_000_000_000L / inputSamples.sampleRate
+                outputSamples.sampleIndex = inputSamples.sampleIndex + offset
+
+                val startTimestamp = System.nanoTime()
+                val consumed = resampler.resample(inputSamples, outputSamples, offset, inputSamples.size() - offset)
+                val endTimestamp = System.nanoTime()
+                processingTime += endTimestamp - startTimestamp
+                PipelineTracer.record(PipelineTracer.Stage.RESAMPLER, startTimestamp, endTimestamp)
+                if (consumed == 0) {
+                    Log.w(LOGTAG, "run: Resampler did not consume any samples. Skipping rest of the input packet.")
+                    PipelineMetrics.resamplerSkip.record(inputSamples.size() - offset)
+                    outputReturnQueue.offer(outputSamples)
+                    break
+                }
+                offset += consumed
+                producedSamples += outputSamples.size()
+
+                outputSamples.sampleRate = outputSampleRate  // set the desired output sample rate instead of the actual sample rate, to not confuse later stages
+                outputSamples.enqueueTimestamp = System.nanoTime()
+                outputQueue.offer(outputSamples)
+            }
+
+            // performance tracking
+            val nsPerPacket = inputSamples.size() * 1_000_000_000f / inputSamples.sampleRate
+            PipelineMetrics.resampler.recordProcessing(processingTime, nsPerPacket, offset, producedSamples)
+
+            inputReturnQueue.offer(inputSamples)
+        }
+
+        stopRequested = true
+        Log.i(LOGTAG, "Resampler stopped. (Thread: $name)")
+    }
+
+    companion object {
+        private const val LOGTAG = "Resampler"
+        private const val OUTPUT_QUEUE_SIZE = 2 // double buffer
+        private const val MAX_TAPS = 500    // limiting tap count to max. 500 per FirFilter (should only kick in for large difference in sample rates, e.g. 20Msps -> 96000kSps)
+        private const val MAX_FILTER_BANK_SIZE = 65536   // max. total number of taps of a RationalResampler filter bank (256 KB)
+
+        /**
+         * Creates a RationalResampler for the exact ratio if its filter bank stays within
+         * MAX_FILTER_BANK_SIZE. Otherwise (odd ratios would need up to thousands of polyphase sub
+         * filters) a FarrowResampler is used which resamples by the exact ratio with a few hundred taps.
+         */
+        fun createResampler(inRate: Int, outRate: Int): ResamplerInterface {
+            Log.d(LOGTAG, "createResampler: (Re)creating resampler: new rates: inRate=$inRate, outRate=$outRate")
+            val gcd = RationalResampler.gcd(outRate, inRate)
+            val interpolation = outRate / gcd
+            val decimation = inRate / gcd
+            val filterBankSize = RationalResampler.estimateFilterBankSize(interpolation, decimation, 0.4f, MAX_TAPS)
+            if (filterBankSize > MAX_FILTER_BANK_SIZE) {
+                Log.d(LOGTAG, "createResampler: interpolation=$interpolation, decimation=$decimation would need $filterBankSize taps. Using FarrowResampler.")
+                return FarrowResampler(inRate, outRate)
+            }
+            Log.d(LOGTAG, "createResampler: interpolation=$interpolation, decimation=$decimation ($filterBankSize taps)")
+            return RationalResampler(interpolation, decimation, maxTaps = MAX_TAPS)
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import java.nio.ByteBuffer
+
+/**
+ * <h1>RF Analyzer - WAV File Header</h1>
+ *
+ * Module:      WavFileHeader.kt
+ * Description: Canonical 44 byte RIFF/WAVE header for PCM data (used by the RecordingWriter
+ * for audio recordings). The chunk sizes are limited to 32 bit (4 GB).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class WavFileHeader(
+    val sampleRate: Int,
+    val channelCount: Int = 1,
+    val bitsPerSample: Int = 16
+) : RecordingWriter.FileHeader {
+    companion object {
+        const val SIZE = 44
+        private const val WAVE_FORMAT_PCM: Short = 1
+    }
+
+    override val size = SIZE
+
+    override fun write(buffer: ByteBuffer, dataSize: Long) {
+        val blockAlign = channelCount * bitsPerSample / 8
+        val dataChunkSize = dataSize.coerceAtMost(0xFFFFFFFFL - (SIZE - 8))
+        buffer.put("RIFF".toByteArray(Charsets.US_ASCII))
+        buffer.putInt((SIZE - 8 + dataChunkSize).toInt())      // RIFF chunk size (unsigned)
+        buffer.put("WAVE".toByteArray(Charsets.US_ASCII))
+        buffer.put("fmt ".toByteArray(Charsets.US_ASCII))
+        buffer.putInt(16)                                       // fmt chunk size
+        buffer.putShort(WAVE_FORMAT_PCM)
+        buffer.putShort(channelCount.toShort())
+        buffer.putInt(sampleRate)
+        buffer.putInt(sampleRate * blockAlign)                  // byte rate
+        buffer.putShort(blockAlign.toShort())
+        buffer.putShort(bitsPerSample.toShort())
+        buffer.put("data".toByteArray(Charsets.US_ASCII))
+        buffer.putInt(dataChunkSize.toInt())                    // data chunk size (unsigned)
+    }
+}
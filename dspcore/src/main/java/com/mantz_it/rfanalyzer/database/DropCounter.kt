@@ -0,0 +1,52 @@
+package com.mantz_it.rfanalyzer.database
+
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * <h1>RF Analyzer - Drop Counter</h1>
+ *
+ * Module:      DropCounter.kt
+ * Description: Lock free counter for a place in the pipeline at which samples are discarded
+ * (e.g. because the next stage is too slow). Counts packets and samples.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class DropCounter(val name: String) {
+    private val packets = AtomicLong()
+    private val samples = AtomicLong()
+
+    /**
+     * @param samples   number of discarded samples
+     */
+    fun record(samples: Int) {
+        packets.incrementAndGet()
+        this.samples.addAndGet(samples.toLong())
+    }
+
+    fun getPackets(): Long = packets.get()
+    fun getSamples(): Long = samples.get()
+
+    fun reset() {
+        packets.set(0)
+        samples.set(0)
+    }
+
+    override fun toString(): String = "$name: ${getPackets()} packets (${getSamples()} samples)"
+}
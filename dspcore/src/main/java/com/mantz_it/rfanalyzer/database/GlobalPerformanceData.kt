@@ -0,0 +1,85 @@
+package com.mantz_it.rfanalyzer.database
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+
+/**
+ * <h1>RF Analyzer - Global Performance Data</h1>
+ *
+ * Module:      GlobalPerformanceData.kt
+ * Description: A singleton object holding averaged performance data from various Threads.
+ *              The values are updated without a lock. The stages of the processing pipeline
+ *              report to their preregistered PipelineMetrics instead (no map lookup).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+
+
+object GlobalPerformanceData {
+
+    private const val alpha = 0.05f
+
+    // exponential moving average (EMA), stored as float bits to be updated without a lock
+    private class EmaState {
+        val bits = AtomicInteger(java.lang.Float.floatToRawIntBits(Float.NaN))  // NaN: not initialized
+        val value: Float get() = java.lang.Float.intBitsToFloat(bits.get())
+    }
+
+    private val loads = ConcurrentHashMap<String, EmaState>()
+    private val latencies = ConcurrentHashMap<String, EmaState>()   // in milliseconds
+
+    fun updateLoad(id: String, newSample: Float) {
+        update(loads, id, newSample)
+    }
+
+    fun updateLatency(id: String, newSampleMs: Float) {
+        update(latencies, id, newSampleMs)
+    }
+
+    private fun update(map: ConcurrentHashMap<String, EmaState>, id: String, newSample: Float) {
+        if (newSample.isNaN() || newSample.isInfinite())
+            return
+        val state = map[id] ?: map.computeIfAbsent(id) { EmaState() }
+        while (true) {
+            val bits = state.bits.get()
+            val value = java.lang.Float.intBitsToFloat(bits)
+            val newValue = if (value.isNaN()) newSample else value + alpha * (newSample - value)
+            if (state.bits.compareAndSet(bits, java.lang.Float.floatToRawIntBits(newValue)))
+                return
+        }
+    }
+
+    fun getLoad(id: String): Float {
+        return loads[id]?.value?.takeUnless { it.isNaN() } ?: 0f
+    }
+
+    fun getAllLoads(): Map<String, Float> {
+        return loads.mapValues { it.value.value }.filterValues { !it.isNaN() }
+    }
+
+    fun getAllLatencies(): Map<String, Float> {
+        return latencies.mapValues { it.value.value }.filterValues { !it.isNaN() }
+    }
+
+    fun reset() {
+        loads.clear()
+        latencies.clear()
+    }
+}
@@ -0,0 +1,142 @@
+package com.mantz_it.rfanalyzer.database
+
+import java.util.concurrent.atomic.AtomicLong
+import java.util.concurrent.atomic.AtomicLongArray
+
+/**
+ * <h1>RF Analyzer - Latency Histogram</h1>
+ *
+ * Module:      LatencyHistogram.kt
+ * Description: Lock free histogram of durations (in ns) with logarithmic buckets: 4 buckets per
+ * power of two, i.e. the percentiles have a resolution of 25%. Durations below 1 us end up in
+ * the first bucket, durations above ~18 minutes in the last one.
+ * record() can be called from any thread without allocating memory; reading the percentiles
+ * while recording is possible (the snapshot is not atomic, which does not matter for monitoring).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class LatencyHistogram(val name: String) {
+
+    companion object {
+        private const val SUB_BUCKET_BITS = 2                       // 4 buckets per power of two
+        private const val SUB_BUCKETS = 1 shl SUB_BUCKET_BITS
+        private const val MIN_BITS = 10                             // first bucket: 0 .. 1023 ns
+        private const val MAX_BITS = 40                             // last bucket: >= 2^40 ns
+        const val BUCKET_COUNT = (MAX_BITS - MIN_BITS) * SUB_BUCKETS + 2
+
+        /**
+         * @return index of the bucket which contains the given duration
+         */
+        fun bucketIndex(nanos: Long): Int {
+            if (nanos < (1L shl MIN_BITS))
+                return 0
+            val exponent = 63 - java.lang.Long.numberOfLeadingZeros(nanos)
+            if (exponent >= MAX_BITS)
+                return BUCKET_COUNT - 1
+            val subBucket = ((nanos ushr (exponent - SUB_BUCKET_BITS)) and (SUB_BUCKETS - 1).toLong()).toInt()
+            return (exponent - MIN_BITS) * SUB_BUCKETS + subBucket + 1
+        }
+
+        /**
+         * @return the (exclusive) upper bound of the bucket in ns
+         */
+        fun bucketUpperBound(index: Int): Long {
+            if (index <= 0)
+                return 1L shl MIN_BITS
+            if (index >= BUCKET_COUNT - 1)
+                return Long.MAX_VALUE
+            val exponent = (index - 1) / SUB_BUCKETS + MIN_BITS
+            val subBucket = (index - 1) % SUB_BUCKETS
+            return (1L shl exponent) + (subBucket + 1) * (1L shl (exponent - SUB_BUCKET_BITS))
+        }
+    }
+
+    private val buckets = AtomicLongArray(BUCKET_COUNT)
+    private val count = AtomicLong()
+    private val sum = AtomicLong()      // in ns
+    private val max = AtomicLong()      // in ns
+
+    /**
+     * Records a duration. Negative values (e.g. unknown start time) are ignored.
+     *
+     * @param nanos     duration in ns
+     */
+    fun record(nanos: Long) {
+        if (nanos < 0)
+            return
+        buckets.incrementAndGet(bucketIndex(nanos))
+        count.incrementAndGet()
+        sum.addAndGet(nanos)
+        var currentMax = max.get()
+        while (nanos > currentMax && !max.compareAndSet(currentMax, nanos))
+            currentMax = max.get()
+    }
+
+    /**
+     * Records the time between startTimestamp and now. Does nothing if startTimestamp is 0 (unknown).
+     *
+     * @param startTimestamp    System.nanoTime() at the start of the measured interval
+     */
+    fun recordSince(startTimestamp: Long) {
+        if (startTimestamp != 0L)
+            record(System.nanoTime() - startTimestamp)
+    }
+
+    fun getCount(): Long = count.get()
+
+    fun getMeanMs(): Float {
+        val n = count.get()
+        return if (n == 0L) 0f else sum.get() / n / 1_000_000f
+    }
+
+    fun getMaxMs(): Float = max.get() / 1_000_000f
+
+    /**
+     * @param percentile    0..100
+     * @return upper bound of the bucket which contains the given percentile (in ms), 0 if empty
+     */
+    fun getPercentileMs(percentile: Double): Float {
+        var total = 0L
+        for (i in 0 until BUCKET_COUNT)
+            total += buckets.get(i)
+        if (total == 0L)
+            return 0f
+        val rank = Math.ceil(percentile / 100.0 * total).toLong().coerceIn(1, total)
+        var cumulated = 0L
+        for (i in 0 until BUCKET_COUNT) {
+            cumulated += buckets.get(i)
+            if (cumulated >= rank)
+                return minOf(bucketUpperBound(i), max.get()) / 1_000_000f
+        }
+        return getMaxMs()
+    }
+
+    fun reset() {
+        for (i in 0 until BUCKET_COUNT)
+            buckets.set(i, 0)
+        count.set(0)
+        sum.set(0)
+        max.set(0)
+    }
+
+    override fun toString(): String =
+        "$name: n=${getCount()} p50=${"%.2f".format(getPercentileMs(50.0))} p90=${"%.2f".format(getPercentileMs(90.0))} " +
+                "p99=${"%.2f".format(getPercentileMs(99.0))} max=${"%.2f".format(getMaxMs())} ms"
+}
@@ -0,0 +1,78 @@
+package com.mantz_it.rfanalyzer.database
+
+/**
+ * <h1>RF Analyzer - Pipeline Metrics</h1>
+ *
+ * Module:      PipelineMetrics.kt
+ * Description: Metrics of all stages of the processing pipeline. Every SamplePacket carries the
+ * time at which its samples were received from the source (timestamp) and the time at which it
+ * was put into its current queue (enqueueTimestamp). Each stage records how long a packet waited
+ * in its input queue, how long it took to process it, the number of processed samples and the
+ * occupancy of its input queue (StageMetrics). Every place at which samples are discarded has
+ * its own DropCounter. The audio output records the time from the write into the AudioTrack to
+ * the presentation by the audio hardware and endToEnd the whole way from the reception to the
+ * presentation.
+ * All metrics are preregistered fields (no lookup and no lock in the processing loops).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+object PipelineMetrics {
+    // Stages:
+    @JvmField val scheduler = StageMetrics("Scheduler")
+    @JvmField val fft = StageMetrics("FFT")
+    @JvmField val resampler = StageMetrics("Resampler")
+    @JvmField val demodulator = StageMetrics("Demodulator")
+    @JvmField val audio = StageMetrics("Audio")
+    @JvmField val recording = StageMetrics("Recording")         // RecordingWriter (queue: buffers waiting for the flash)
+
+    // Latencies after the last stage:
+    @JvmField val audioOutput = LatencyHistogram("AudioTrack")
+    @JvmField val endToEnd = LatencyHistogram("End to end")
+
+    // Places at which samples are discarded:
+    @JvmField val fftDrop = DropCounter("FFT drop")                     // Scheduler: no free FFT buffer (normal if the FFT rate is limited)
+    @JvmField val demodQueueFlush = DropCounter("Demod flush")          // Scheduler: no free demod buffer, demod queue flushed
+    @JvmField val demodBacklogDrop = DropCounter("Demod backlog")       // Scheduler: low latency mode drops the oldest packets
+    @JvmField val resamplerSkip = DropCounter("Resampler skip")         // Resampler: no filter (yet) or no free output buffer
+    @JvmField val demodulatorSkip = DropCounter("Demod skip")           // Demodulator: no free audio buffer
+    @JvmField val audioQueueFull = DropCounter("Audio queue full")      // AudioSink: input queue full
+    @JvmField val audioOverflow = DropCounter("Audio overflow")         // AudioSink: too much audio buffered in the AudioTrack
+    @JvmField val recordingDrop = DropCounter("Recording drop")         // RecordingWriter: all buffers wait for the flash
+
+    @JvmField
+    val stages = listOf(scheduler, fft, resampler, demodulator, audio, recording)
+
+    @JvmField
+    val latencies = stages.flatMap { listOf(it.queueLatency, it.processingTime) } + listOf(audioOutput, endToEnd)
+
+    @JvmField
+    val drops = listOf(fftDrop, demodQueueFlush, demodBacklogDrop, resamplerSkip, demodulatorSkip, audioQueueFull, audioOverflow, recordingDrop)
+
+    @JvmStatic
+    fun reset() {
+        stages.forEach { it.reset() }
+        audioOutput.reset()
+        endToEnd.reset()
+        drops.forEach { it.reset() }
+    }
+
+    override fun toString(): String =
+        (stages + listOf(audioOutput, endToEnd) + drops).joinToString("\n")
+}
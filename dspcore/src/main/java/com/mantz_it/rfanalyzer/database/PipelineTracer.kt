@@ -0,0 +1,183 @@
+package com.mantz_it.rfanalyzer.database
+
+import com.mantz_it.rfanalyzer.dsp.Log
+import java.io.File
+import java.io.Writer
+import java.util.Locale
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * <h1>RF Analyzer - Pipeline Tracer</h1>
+ *
+ * Module:      PipelineTracer.kt
+ * Description: Opt-in tracing of the processing pipeline. While enabled, every stage records the
+ * start and end of each iteration (Scheduler packet, FFT frame, resample, demodulation, audio
+ * filter, audio write, draw frame) together with its thread into a preallocated ring buffer
+ * (the newest CAPACITY events are kept). The buffer can be written as Chrome trace (JSON) which
+ * is shown by chrome://tracing and ui.perfetto.dev with one track per thread. This makes the
+ * interleaving of the threads visible (e.g. jitter between Scheduler, FftProcessor and the
+ * DrawThread of the AnalyzerSurface).
+ * If tracing is disabled, record() only reads a volatile flag.
+ * Each thread gets a small trace id (tid) on its first event and registers its name once per
+ * start(), so record() neither looks up a map nor uses the (deprecated) Thread.id.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+object PipelineTracer {
+    private const val LOGTAG = "PipelineTracer"
+    const val CAPACITY = 1 shl 16        // ~20 s of a busy pipeline (~2 MB)
+    const val TRACE_DIRECTORY = "traces"
+
+    enum class Stage(val displayName: String) {
+        SCHEDULER("Scheduler packet"),
+        FFT("FFT frame"),
+        RESAMPLER("Resample"),
+        DEMODULATOR("Demodulate"),
+        AUDIO_FILTER("Audio filter"),
+        AUDIO_WRITE("Audio write"),
+        RECORDING_WRITE("Recording write"),
+        DRAW("Draw frame"),
+    }
+
+    @Volatile
+    var isEnabled = false
+        private set
+
+    private var startTimes = LongArray(0)       // allocated on the first start()
+    private var durations = LongArray(0)
+    private var threadIds = IntArray(0)
+    private var stages = ByteArray(0)
+    private val writeIndex = AtomicLong()
+    private val threadNames = ConcurrentHashMap<Int, String>()
+
+    private class TraceThread(val id: Int) {
+        var generation = -1             // generation in which the name of the thread was registered
+    }
+    private val nextThreadId = AtomicInteger()
+    private val traceThread = ThreadLocal.withInitial { TraceThread(nextThreadId.incrementAndGet()) }
+    @Volatile
+    private var generation = 0          // incremented by start() (threadNames is cleared)
+
+    /**
+     * Clears the ring buffer and starts recording
+     */
+    @JvmStatic
+    @Synchronized
+    fun start() {
+        if (startTimes.isEmpty()) {
+            startTimes = LongArray(CAPACITY)
+            durations = LongArray(CAPACITY)
+            threadIds = IntArray(CAPACITY)
+            stages = ByteArray(CAPACITY)
+        }
+        writeIndex.set(0)
+        threadNames.clear()
+        generation++
+        isEnabled = true
+    }
+
+    /**
+     * Stops recording. The recorded events are kept until the next start()
+     */
+    @JvmStatic
+    fun stop() {
+        isEnabled = false
+    }
+
+    /**
+     * Records one iteration of a stage (called by the thread of the stage)
+     *
+     * @param stage         the stage
+     * @param startTime     System.nanoTime() at the begin of the iteration
+     * @param endTime       System.nanoTime() at the end of the iteration
+     */
+    @JvmStatic
+    fun record(stage: Stage, startTime: Long, endTime: Long) {
+        if (!isEnabled)
+            return
+        val thread = traceThread.get()
+        if (thread.generation != generation) {
+            threadNames[thread.id] = Thread.currentThread().name
+            thread.generation = generation
+        }
+        val slot = (writeIndex.getAndIncrement() and (CAPACITY - 1).toLong()).toInt()
+        startTimes[slot] = startTime
+        durations[slot] = endTime - startTime
+        threadIds[slot] = thread.id
+        stages[slot] = stage.ordinal.toByte()
+    }
+
+    /**
+     * @return number of events in the ring buffer
+     */
+    fun getEventCount(): Int = minOf(writeIndex.get(), CAPACITY.toLong()).toInt()
+
+    /**
+     * Writes the recorded events (oldest first) as Chrome trace (JSON object format) with
+     * 'complete' events (begin and duration) and the names of the threads as metadata.
+     * Should be called after stop() (events which are recorded while writing may be torn).
+     */
+    @Synchronized
+    fun writeChromeTrace(writer: Writer) {
+        val count = getEventCount()
+        val first = writeIndex.get() - count
+        writer.write("{\"displayTimeUnit\":\"ms\",\"traceEvents\":[\n")
+        var separator = ""
+        for ((threadId, name) in threadNames) {
+            writer.write("$separator{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":1,\"tid\":$threadId,\"args\":{\"name\":\"${escape(name)}\"}}")
+            separator = ",\n"
+        }
+        val stageValues = Stage.entries
+        for (i in 0 until count) {
+            val slot = ((first + i) and (CAPACITY - 1).toLong()).toInt()
+            // timestamps in microseconds:
+            writer.write("$separator{\"name\":\"${stageValues[stages[slot].toInt()].displayName}\",\"cat\":\"dsp\",\"ph\":\"X\"," +
+                    "\"ts\":${microseconds(startTimes[slot])},\"dur\":${microseconds(durations[slot])}," +
+                    "\"pid\":1,\"tid\":${threadIds[slot]}}")
+            separator = ",\n"
+        }
+        writer.write("\n]}\n")
+    }
+
+    /**
+     * Writes the recorded events as Chrome trace into a new file in the given directory
+     *
+     * @param directory     directory of the trace file (e.g. <files dir>/TRACE_DIRECTORY)
+     * @return the trace file or null on error
+     */
+    fun writeChromeTraceFile(directory: File): File? {
+        return try {
+            directory.mkdirs()
+            val file = File(directory, "pipeline-trace-${System.currentTimeMillis()}.json")
+            file.bufferedWriter().use { writeChromeTrace(it) }
+            Log.i(LOGTAG, "writeChromeTraceFile: ${getEventCount()} events written to ${file.absolutePath}")
+            file
+        } catch (e: Exception) {
+            Log.e(LOGTAG, "writeChromeTraceFile: Error while writing the trace: ${e.message}")
+            null
+        }
+    }
+
+    private fun microseconds(nanos: Long) = String.format(Locale.US, "%.3f", nanos / 1000.0)
+
+    private fun escape(string: String) = string.replace("\\", "\\\\").replace("\"", "\\\"")
+}
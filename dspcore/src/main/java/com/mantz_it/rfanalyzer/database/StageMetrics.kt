@@ -0,0 +1,163 @@
+package com.mantz_it.rfanalyzer.database
+
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * <h1>RF Analyzer - Stage Metrics</h1>
+ *
+ * Module:      StageMetrics.kt
+ * Description: Lock free metrics of a single stage (thread) of the processing pipeline: time the
+ * packets waited in the input queue, processing time per packet, load (EMA of the processing time
+ * relative to the duration of the packet), processed samples (in and out) and the occupancy of
+ * the input queue. Recording is done by the thread of the stage without locks or allocations;
+ * the rates (samples/s) are derived on the reader side over windows of at least RATE_WINDOW_NS.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class StageMetrics(val name: String) {
+
+    companion object {
+        private const val LOAD_ALPHA = 0.05f
+        private const val RATE_WINDOW_NS = 1_000_000_000L
+        private val NO_LOAD = java.lang.Float.floatToRawIntBits(Float.NaN)
+    }
+
+    @JvmField val queueLatency = LatencyHistogram("$name queue")
+    @JvmField val processingTime = LatencyHistogram(name)
+
+    private val load = AtomicInteger(NO_LOAD)      // EMA (float bits), NaN if nothing was processed yet
+    private val samplesIn = AtomicLong()
+    private val samplesOut = AtomicLong()
+    private val queueSize = AtomicInteger()
+    private val maxQueueSize = AtomicInteger()
+
+    // reader side (rateLock is never taken by the stage itself):
+    private val rateLock = Any()
+    private var rateWindowStart = System.nanoTime()
+    private var rateWindowSamplesIn = 0L
+    private var rateWindowSamplesOut = 0L
+    private var inputRate = 0f
+    private var outputRate = 0f
+
+    /**
+     * Records the time a packet waited in the input queue of the stage and the number of
+     * packets that are still waiting in the queue.
+     *
+     * @param enqueueTimestamp  SamplePacket.enqueueTimestamp of the packet (0 if unknown)
+     * @param queueSize         number of packets which are still in the input queue
+     */
+    fun recordQueue(enqueueTimestamp: Long, queueSize: Int) {
+        queueLatency.recordSince(enqueueTimestamp)
+        this.queueSize.set(queueSize)
+        var currentMax = maxQueueSize.get()
+        while (queueSize > currentMax && !maxQueueSize.compareAndSet(currentMax, queueSize))
+            currentMax = maxQueueSize.get()
+    }
+
+    /**
+     * Records the processing of one packet.
+     *
+     * @param processingTime    time spent processing the packet (ns)
+     * @param packetDuration    duration of the signal in the packet (ns). Used to derive the load
+     * @param samplesIn         number of samples consumed
+     * @param samplesOut        number of samples produced
+     */
+    fun recordProcessing(processingTime: Long, packetDuration: Float, samplesIn: Int, samplesOut: Int) {
+        this.processingTime.record(processingTime)
+        this.samplesIn.addAndGet(samplesIn.toLong())
+        this.samplesOut.addAndGet(samplesOut.toLong())
+        val newLoad = processingTime / packetDuration
+        if (newLoad.isNaN() || newLoad.isInfinite())
+            return
+        while (true) {
+            val bits = load.get()
+            val current = java.lang.Float.intBitsToFloat(bits)
+            val updated = if (current.isNaN()) newLoad else current + LOAD_ALPHA * (newLoad - current)
+            if (load.compareAndSet(bits, java.lang.Float.floatToRawIntBits(updated)))
+                return
+        }
+    }
+
+    /**
+     * @return exponential moving average of processing time / packet duration (1.0 means the
+     *         stage is just as fast as real time), 0 if nothing was processed yet
+     */
+    fun getLoad(): Float = java.lang.Float.intBitsToFloat(load.get()).let { if (it.isNaN()) 0f else it }
+
+    fun getSamplesIn(): Long = samplesIn.get()
+    fun getSamplesOut(): Long = samplesOut.get()
+    fun getQueueSize(): Int = queueSize.get()
+    fun getMaxQueueSize(): Int = maxQueueSize.get()
+
+    /**
+     * @return consumed samples per second (averaged over the last rate window)
+     */
+    fun getInputRate(): Float {
+        updateRates()
+        return inputRate
+    }
+
+    /**
+     * @return produced samples per second (averaged over the last rate window)
+     */
+    fun getOutputRate(): Float {
+        updateRates()
+        return outputRate
+    }
+
+    private fun updateRates() {
+        synchronized(rateLock) {
+            val now = System.nanoTime()
+            val elapsed = now - rateWindowStart
+            if (elapsed < RATE_WINDOW_NS)
+                return
+            val currentIn = samplesIn.get()
+            val currentOut = samplesOut.get()
+            inputRate = (currentIn - rateWindowSamplesIn) * 1_000_000_000f / elapsed
+            outputRate = (currentOut - rateWindowSamplesOut) * 1_000_000_000f / elapsed
+            rateWindowStart = now
+            rateWindowSamplesIn = currentIn
+            rateWindowSamplesOut = currentOut
+        }
+    }
+
+    fun reset() {
+        queueLatency.reset()
+        processingTime.reset()
+        load.set(NO_LOAD)
+        samplesIn.set(0)
+        samplesOut.set(0)
+        queueSize.set(0)
+        maxQueueSize.set(0)
+        synchronized(rateLock) {
+            rateWindowStart = System.nanoTime()
+            rateWindowSamplesIn = 0
+            rateWindowSamplesOut = 0
+            inputRate = 0f
+            outputRate = 0f
+        }
+    }
+
+    override fun toString(): String =
+        "$name: load=${"%.1f".format(getLoad() * 100)}% in=${"%.0f".format(getInputRate())}/s " +
+                "out=${"%.0f".format(getOutputRate())}/s queue=${getQueueSize()} (max ${getMaxQueueSize()}) " +
+                "p50=${"%.2f".format(processingTime.getPercentileMs(50.0))} p99=${"%.2f".format(processingTime.getPercentileMs(99.0))} ms"
+}
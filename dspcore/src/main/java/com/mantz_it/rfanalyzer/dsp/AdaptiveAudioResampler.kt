@@ -0,0 +1,120 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+
+/**
+ * <h1>RF Analyzer - Adaptive Audio Resampler</h1>
+ *
+ * Module:      AdaptiveAudioResampler.kt
+ *
+ * Description: Compensates the clock drift between the SDR sample clock and the audio clock.
+ * The audio samples are produced at the nominal audio rate as measured by the SDR clock, but
+ * consumed by the audio hardware at its own (slightly different) rate. Without compensation the
+ * audio buffer either runs empty (dropouts) or the latency grows until the queues overflow.
+ * This class consists of two parts:
+ *  1. A fill level controller (PI controller) which compares the (smoothed) number of frames that
+ *     are buffered in the audio track with the target fill level and derives a resampling
+ *     ratio close to 1 (limited to +-MAX_RATIO_DEVIATION).
+ *  2. A fractional resampler (cubic Lagrange interpolator in Farrow structure, see
+ *     FarrowResampler) which applies this ratio to the real valued audio signal. The ratio can
+ *     change from packet to packet without discontinuities.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class AdaptiveAudioResampler(
+    val sampleRate: Int,
+    var targetFill: Int         // target number of buffered frames (measured right before a write)
+) {
+    var ratio = 1.0             // number of output samples per input sample
+        private set
+    var averageFill = -1.0      // smoothed fill level in frames (-1 until the first update)
+        private set
+    private var integral = 0.0  // integral of the fill error (in seconds * seconds)
+
+    // interpolator state: the last 4 input samples (x0 is the oldest) and the position of the
+    // next output sample relative to x1 (in input samples)
+    private var x0 = 0f; private var x1 = 0f; private var x2 = 0f; private var x3 = 0f
+    private var mu = 0.0
+
+    /**
+     * Resets the controller (e.g. after the audio track was flushed). The interpolator state is kept.
+     */
+    fun reset() {
+        ratio = 1.0
+        averageFill = -1.0
+        integral = 0.0
+    }
+
+    /**
+     * Updates the resampling ratio. Must be called once per written packet.
+     *
+     * @param fill          number of frames that are currently buffered in the audio track
+     * @param packetFrames  number of frames of the packet which will be written next
+     */
+    fun update(fill: Int, packetFrames: Int) {
+        averageFill = if (averageFill < 0) fill.toDouble() else averageFill + SMOOTHING * (fill - averageFill)
+        // positive error: not enough samples buffered -> produce more output samples
+        val error = (targetFill - averageFill) / sampleRate
+        integral = (integral + error * packetFrames / sampleRate).coerceIn(-MAX_INTEGRAL, MAX_INTEGRAL)
+        ratio = (1.0 + KP * error + KI * integral).coerceIn(1.0 - MAX_RATIO_DEVIATION, 1.0 + MAX_RATIO_DEVIATION)
+    }
+
+    /**
+     * @return max. number of output samples for the given number of input samples
+     */
+    fun maxOutputSize(inputSize: Int): Int = (inputSize * (1.0 + MAX_RATIO_DEVIATION)).toInt() + 2
+
+    /**
+     * Resamples the real array of input with the current ratio. The output packet is overwritten
+     * and must have a capacity of at least maxOutputSize(input.size()).
+     *
+     * @param input     incoming audio samples (real array)
+     * @param output    outgoing audio samples (real array)
+     */
+    fun resample(input: SamplePacket, output: SamplePacket) {
+        val reIn = input.re()
+        val reOut = output.re()
+        val step = 1.0 / ratio
+        var indexOut = 0
+        for (i in 0 until input.size()) {
+            x0 = x1; x1 = x2; x2 = x3; x3 = reIn[i]
+            while (mu < 1.0) {
+                val m = mu.toFloat()
+                // Farrow coefficients of the cubic Lagrange polynomial through x0..x3:
+                val c1 = -x0 * (1f/3f) - x1 * 0.5f + x2 - x3 * (1f/6f)
+                val c2 = (x0 + x2) * 0.5f - x1
+                val c3 = (x3 - x0) * (1f/6f) + (x1 - x2) * 0.5f
+                reOut[indexOut++] = ((c3 * m + c2) * m + c1) * m + x1
+                mu += step
+            }
+            mu -= 1.0
+        }
+        output.setSize(indexOut)
+        output.sampleRate = input.sampleRate
+    }
+
+    companion object {
+        const val MAX_RATIO_DEVIATION = 0.005       // +-5000 ppm (0.5% pitch shift is inaudible)
+        private const val SMOOTHING = 0.05          // weight of a new fill measurement
+        private const val KP = 0.5                  // proportional gain (1/s): 10 ms fill error -> 5000 ppm
+        private const val KI = 0.5                  // integral gain (1/s^2)
+        private const val MAX_INTEGRAL = MAX_RATIO_DEVIATION / KI
+    }
+}
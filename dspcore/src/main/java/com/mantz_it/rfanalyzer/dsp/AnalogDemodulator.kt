@@ -0,0 +1,139 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+
+/**
+ * <h1>RF Analyzer - Analog Demodulator</h1>
+ *
+ * Module:      AnalogDemodulator.kt
+ * Description: The demodulation maths for the analog modes (AM, FM, SSB, CW). It holds the
+ * state which has to be kept between packets (FM discriminator, AGC). The Demodulator (thread,
+ * mode handling, channel filter and audio output) uses this class for the actual demodulation.
+ * The band pass filters for SSB and CW are designed by the caller.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class AnalogDemodulator {
+
+    companion object {
+        private const val LOGTAG = "AnalogDemodulator"
+    }
+
+    private val fmDiscriminator = FmDiscriminator() // used for FM demodulation
+    var fmDiscriminatorMode: FmDiscriminator.Mode   // FAST (polynomial atan2) or EXACT (kotlin.math.atan2)
+        get() = fmDiscriminator.mode
+        set(value) { fmDiscriminator.mode = value }
+    private var lastMax = 0f // used for gain control in AM / SSB demodulation
+
+    /**
+     * Will FM demodulate the samples in input. Use ~75000 deviation for wide band FM
+     * and ~3000 deviation for narrow band FM.
+     * Demodulated samples are stored in the real array of output. Note: All samples in output
+     * will always be overwritten!
+     *
+     * @param input        incoming (modulated) samples
+     * @param output       outgoing (demodulated) samples
+     * @param maxDeviation maximum frequency deviation in Hz (maps to an amplitude of 1)
+     */
+    fun demodulateFM(input: SamplePacket, output: SamplePacket, maxDeviation: Float) {
+        val quadratureGain = input.sampleRate / (2 * Math.PI * maxDeviation).toFloat()
+
+        // Quadrature demodulation (conjugate multiplication and atan2 in one pass):
+        fmDiscriminator.demodulate(input, output, quadratureGain)
+        output.sampleRate = input.sampleRate
+    }
+
+    /**
+     * Will AM demodulate the samples in input.
+     * Demodulated samples are stored in the real array of output. Note: All samples in output
+     * will always be overwritten!
+     *
+     * @param input        incoming (modulated) samples
+     * @param output    outgoing (demodulated) samples
+     */
+    fun demodulateAM(input: SamplePacket, output: SamplePacket) {
+        val reIn = input.re()
+        val imIn = input.im()
+        val reOut = output.re()
+        var avg = 0f
+        lastMax *= 0.95.toFloat() // simplest AGC
+
+        // Complex to magnitude
+        for (i in 0..<input.size()) {
+            reOut[i] = (reIn[i] * reIn[i] + imIn[i] * imIn[i])
+            avg += reOut[i]
+            if (reOut[i] > lastMax) lastMax = reOut[i]
+        }
+        avg /= input.size()
+
+        // normalize values:
+        val gain = 0.75f / lastMax
+        for (i in 0..<input.size()) reOut[i] = (reOut[i] - avg) * gain
+
+        output.setSize(input.size())
+        output.sampleRate = input.sampleRate
+    }
+
+    /**
+     * Will SSB demodulate the samples in input.
+     * Demodulated samples are stored in the real array of output. Note: All samples in output
+     * will always be overwritten!
+     *
+     * @param input          incoming (modulated) samples
+     * @param output         outgoing (demodulated) samples
+     * @param bandPassFilter complex band pass which selects the upper (USB) or lower (LSB) side band
+     */
+    fun demodulateSSB(input: SamplePacket, output: SamplePacket, bandPassFilter: ComplexFirFilter) {
+        output.setSize(0) // mark buffer as empty
+        if (bandPassFilter.filter(input, output, 0, input.size()) < input.size()) {
+            Log.e(LOGTAG, "demodulateSSB: could not filter all samples from input packet.")
+        }
+        applyGainControl(output)
+    }
+
+    /**
+     * Will CW demodulate the samples in input. Expects the signal to be at the center of the band pass.
+     * Demodulated samples are stored in the real array of output. Note: All samples in output
+     * will always be overwritten!
+     *
+     * @param input          incoming (modulated) samples
+     * @param output         outgoing (demodulated) samples
+     * @param bandPassFilter complex band pass around the CW tone
+     */
+    fun demodulateCW(input: SamplePacket, output: SamplePacket, bandPassFilter: ComplexFirFilter) {
+        output.setSize(0) // mark buffer as empty
+        if (bandPassFilter.filter(input, output, 0, input.size()) < input.size()) {
+            Log.e(LOGTAG, "demodulateCW: could not filter all samples from input packet.")
+        }
+        applyGainControl(output)
+    }
+
+    private fun applyGainControl(samples: SamplePacket) {
+        val re = samples.re()
+        // gain control: searching for max:
+        lastMax *= 0.95.toFloat() // simplest AGC
+        for (i in 0..<samples.size()) {
+            if (re[i] > lastMax) lastMax = re[i]
+        }
+        // normalize values:
+        val gain = 0.75f / lastMax
+        for (i in 0..<samples.size()) re[i] *= gain
+    }
+}
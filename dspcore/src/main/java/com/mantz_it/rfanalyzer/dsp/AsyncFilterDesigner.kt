@@ -0,0 +1,125 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.atomic.AtomicReference
+
+/**
+ * <h1>RF Analyzer - Async Filter Designer</h1>
+ *
+ * Module:      AsyncFilterDesigner.kt
+ *
+ * Description: Holds the currently active instance of a filter (or resampler) which is
+ * described by a key (e.g. sample rate and channel width). If the requested key changes,
+ * the new instance is designed on a background worker thread while the calling (signal
+ * processing) thread keeps using the old instance. As soon as the design is finished, the
+ * new instance is swapped in on the next call to get().
+ * Outdated requests (e.g. while the user drags the channel width selector) are skipped so
+ * that the worker always catches up to the latest requested key.
+ *
+ * get() must always be called from the same thread.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class AsyncFilterDesigner<K : Any, T : Any>(
+    private val name: String,           // used for logging
+    private val design: (K) -> T?       // creates a new instance for the given key (called on the worker thread)
+) {
+    @Volatile private var latestRequestedKey: K? = null
+    private val finished = AtomicReference<Pair<K, T?>?>(null)  // hand-over slot from the worker thread
+
+    var currentKey: K? = null       // key of the instance that is currently returned by get()
+        private set
+    var current: T? = null          // instance that is currently returned by get()
+        private set
+
+    /**
+     * Returns the instance that should be used for processing. If key differs from the
+     * key of the current instance, a background design is triggered and the old instance
+     * is returned until the new one is ready. Check currentKey to find out if the returned
+     * instance already matches the requested key.
+     *
+     * @param key           key describing the desired instance
+     * @param synchronous   if true, a missing instance is designed immediately on the calling
+     *                      thread (use this if the old instance can not be used at all)
+     * @return instance to use (might be outdated or null if no instance exists yet)
+     */
+    fun get(key: K, synchronous: Boolean = false): T? {
+        // Pick up the result from the worker (only if it is still the latest request):
+        // (taken atomically: a newer result published in the meantime must not be cleared)
+        finished.getAndSet(null)?.let { (finishedKey, instance) ->
+            if (finishedKey == latestRequestedKey && instance != null) {
+                current = instance
+                currentKey = finishedKey
+            }
+        }
+
+        if (key == currentKey) {
+            latestRequestedKey = key    // (a pending design for another key is outdated now)
+            return current
+        }
+
+        if (synchronous || current == null) {
+            latestRequestedKey = key
+            current = designCatching(key)
+            currentKey = key
+            return current
+        }
+
+        if (key != latestRequestedKey) {
+            latestRequestedKey = key
+            designExecutor.execute {
+                // skip this request if there is already a newer one queued
+                if (latestRequestedKey == key)
+                    finished.set(Pair(key, designCatching(key)))
+            }
+        }
+        return current
+    }
+
+    /**
+     * Calls design() and logs the failure
+     *
+     * @return new instance or null if the design failed
+     */
+    private fun designCatching(key: K): T? {
+        val instance = try {
+            design(key)
+        } catch (e: Exception) {    // (must not escape: it would kill the shared worker thread)
+            Log.e(LOGTAG, "[$name] design for $key threw exception: ${e.message}")
+            null
+        }
+        if (instance == null)
+            Log.w(LOGTAG, "[$name] design for $key failed.")
+        return instance
+    }
+
+    companion object {
+        private const val LOGTAG = "AsyncFilterDesigner"
+
+        // A single worker which is shared by all designers. Requests are processed in order.
+        private val designExecutor: ExecutorService = Executors.newSingleThreadExecutor { runnable ->
+            Thread(runnable, "Thread-FilterDesigner").apply {
+                isDaemon = true
+                priority = Thread.MIN_PRIORITY
+            }
+        }
+    }
+}
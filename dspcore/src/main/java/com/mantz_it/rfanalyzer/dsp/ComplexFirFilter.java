@@ -1,9 +1,10 @@
 package com.mantz_it.rfanalyzer.dsp;
 
-import android.util.Log;
-
 import com.mantz_it.rfanalyzer.source.SamplePacket;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * <h1>RF Analyzer - complex FIR Filter</h1>
  *
@@ -211,6 +212,21 @@ public class ComplexFirFilter {
 			return null;
 		}
 
+		// The taps are taken from the FilterDesignCache if the same band pass was designed before:
+		List<Object> key = Arrays.asList("bandpass", gain, sampling_freq, low_cutoff_freq, high_cutoff_freq, transition_width, attenuation_dB);
+		float[][] taps = FilterDesignCache.getOrDesign(key,
+				() -> designBandPassTaps(gain, sampling_freq, low_cutoff_freq, high_cutoff_freq, transition_width, attenuation_dB));
+		return new ComplexFirFilter(taps[0], taps[1], decimation, gain, sampling_freq, low_cutoff_freq, high_cutoff_freq, transition_width, attenuation_dB);
+	}
+
+	/**
+	 * Calculates the taps of a complex band pass filter. Parameters are the same as for createBandPass()
+	 * and must already be checked by the caller.
+	 *
+	 * @return array containing the real taps at index 0 and the imaginary taps at index 1
+	 */
+	private static float[][] designBandPassTaps(float gain, float sampling_freq, float low_cutoff_freq,
+												float high_cutoff_freq, float transition_width, float attenuation_dB) {
 		// Calculate number of tabs
 		// Based on formula from Multirate Signal Processing for
 		// Communications Systems, fredric j harris
@@ -258,7 +274,7 @@ public class ComplexFirFilter {
 			//Log.d(LOGTAG, "createBandPass: Filter Taps [i="+i+"]: " + tapsReal[i] + "   " + tapsImag[i]);
 		}
 
-		return new ComplexFirFilter(tapsReal, tapsImag, decimation, gain, sampling_freq, low_cutoff_freq, high_cutoff_freq, transition_width, attenuation_dB);
+		return new float[][] {tapsReal, tapsImag};
 	}
 
 	/**
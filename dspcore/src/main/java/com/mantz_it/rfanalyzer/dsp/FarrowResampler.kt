@@ -0,0 +1,190 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+
+/**
+ * <h1>RF Analyzer - Farrow Resampler</h1>
+ *
+ * Module:      FarrowResampler.kt
+ *
+ * Description: Resampler for arbitrary (irrational or 'odd') ratios. In contrast to the
+ * RationalResampler it does not need a filter bank with one sub filter per interpolation
+ * phase. Instead it consists of three stages:
+ *  1. An integer decimating low pass (FirFilter) that brings the signal down to an intermediate
+ *     rate between OVERSAMPLING and 2*OVERSAMPLING times the output rate. Its transition band
+ *     is very wide, so it only needs a few taps.
+ *  2. A sharp low pass (FirFilter) at the intermediate rate which defines the pass band
+ *     (fractionalBw * outputRate) and suppresses everything that would alias in the last stage.
+ *  3. A cubic Lagrange interpolator in Farrow structure (4 fixed coefficient polynomials)
+ *     which evaluates the oversampled signal at the exact (fractional) output sample positions.
+ * The ratio is exact (no limitDenominator approximation) and the memory footprint is a few
+ * hundred taps independent of the ratio.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class FarrowResampler(
+    val inputRate: Int,
+    val outputRate: Int,
+    fractionalBw: Float = 0.4f
+) : ResamplerInterface {
+    private val decimation: Int                 // decimation of the first stage
+    private val intermediateRate: Double        // sample rate after the first stage
+    private val decimationFilter: FirFilter?    // stage 1 (null if decimation is 1)
+    private val channelFilter: FirFilter?       // stage 2 (null if upsampling)
+    private val step: Double                    // distance between output samples in intermediate samples
+
+    // intermediate buffers between the stages
+    private val stage1Packet = SamplePacket(CHUNK_SIZE)
+    private val stage2Packet = SamplePacket(CHUNK_SIZE)
+
+    // interpolator state: the last 4 intermediate samples (x0 is the oldest) and the position
+    // of the next output sample relative to x1 (in intermediate samples)
+    private var x0Re = 0f; private var x1Re = 0f; private var x2Re = 0f; private var x3Re = 0f
+    private var x0Im = 0f; private var x1Im = 0f; private var x2Im = 0f; private var x3Im = 0f
+    private var mu = 0.0
+
+    init {
+        require(inputRate > 0) { "Input rate must be > 0" }
+        require(outputRate > 0) { "Output rate must be > 0" }
+        val bw = if (fractionalBw <= 0 || fractionalBw >= 0.5f) 0.4f else fractionalBw
+
+        decimation = (inputRate / (OVERSAMPLING * outputRate)).coerceAtLeast(1)
+        intermediateRate = inputRate.toDouble() / decimation
+        step = intermediateRate / outputRate
+
+        // Stage 1: Everything that folds into [0, (1-bw)*outputRate] during decimation must be
+        // removed. The remaining band up to (1-bw)*outputRate is handled by stage 2.
+        decimationFilter = if (decimation > 1) {
+            val stopBand = intermediateRate - (1 - bw) * outputRate
+            val passBand = bw * outputRate
+            FirFilter.createLowPass(
+                decimation,
+                1f,
+                inputRate.toFloat(),
+                ((stopBand + passBand) / 2).toFloat(),
+                (stopBand - passBand).toFloat(),
+                ATTENUATION
+            )
+        } else null
+
+        // Stage 2: defines the pass band of the output signal (only needed for downsampling,
+        // an upsampled signal is already band limited by its input rate)
+        channelFilter = if (intermediateRate > outputRate) {
+            FirFilter.createLowPass(
+                1,
+                1f,
+                intermediateRate.toFloat(),
+                outputRate * 0.5f,
+                (1 - 2 * bw) * outputRate,
+                ATTENUATION
+            )
+        } else null
+
+        if (intermediateRate < OVERSAMPLING * outputRate && intermediateRate > outputRate)
+            Log.w(LOGTAG, "init: intermediate rate ($intermediateRate) is not oversampled by $OVERSAMPLING. Expect reduced image rejection.")
+        Log.d(LOGTAG, "init: inputRate=$inputRate outputRate=$outputRate decimation=$decimation " +
+                "(${decimationFilter?.numberOfTaps ?: 0} taps) intermediateRate=$intermediateRate " +
+                "channelFilter=${channelFilter?.numberOfTaps ?: 0} taps step=$step")
+    }
+
+    /**
+     * Resample input -> output.
+     * @return number of consumed input samples
+     */
+    override fun resample(inPacket: SamplePacket, outPacket: SamplePacket, offset: Int, length: Int): Int {
+        var consumed = 0
+        while (consumed < length) {
+            // Limit the chunk size so that the output of all stages is guaranteed to fit:
+            val freeOutput = outPacket.capacity() - outPacket.size()
+            val maxIntermediate = minOf(((freeOutput - 1) * step).toInt() - 1, CHUNK_SIZE)
+            val chunk = minOf(length - consumed, maxIntermediate * decimation)
+            if (chunk <= 0)
+                break
+
+            // Stage 1 (decimation):
+            var packet = inPacket
+            var packetOffset = offset + consumed
+            if (decimationFilter != null) {
+                stage1Packet.setSize(0)
+                decimationFilter.filter(packet, stage1Packet, packetOffset, chunk)
+                packet = stage1Packet
+                packetOffset = 0
+            }
+            val intermediateCount = if (decimationFilter != null) stage1Packet.size() else chunk
+
+            // Stage 2 (channel filter):
+            if (channelFilter != null) {
+                stage2Packet.setSize(0)
+                channelFilter.filter(packet, stage2Packet, packetOffset, intermediateCount)
+                packet = stage2Packet
+                packetOffset = 0
+            }
+
+            // Stage 3 (interpolation):
+            interpolate(packet, packetOffset, intermediateCount, outPacket)
+            consumed += chunk
+        }
+
+        outPacket.sampleRate = outputRate
+        outPacket.frequency = inPacket.frequency
+        return consumed
+    }
+
+    /**
+     * Cubic Lagrange interpolation in Farrow structure. Each output sample is located between
+     * x1 and x2 at the fractional position mu (0 <= mu < 1).
+     */
+    private fun interpolate(inPacket: SamplePacket, offset: Int, length: Int, outPacket: SamplePacket) {
+        val reIn = inPacket.re()
+        val imIn = inPacket.im()
+        val reOut = outPacket.re()
+        val imOut = outPacket.im()
+        var indexOut = outPacket.size()
+
+        for (i in offset until offset + length) {
+            x0Re = x1Re; x1Re = x2Re; x2Re = x3Re; x3Re = reIn[i]
+            x0Im = x1Im; x1Im = x2Im; x2Im = x3Im; x3Im = imIn[i]
+
+            while (mu < 1.0) {
+                val m = mu.toFloat()
+                // Farrow coefficients of the cubic Lagrange polynomial through x0..x3:
+                val c1Re = -x0Re * (1f/3f) - x1Re * 0.5f + x2Re - x3Re * (1f/6f)
+                val c2Re = (x0Re + x2Re) * 0.5f - x1Re
+                val c3Re = (x3Re - x0Re) * (1f/6f) + (x1Re - x2Re) * 0.5f
+                val c1Im = -x0Im * (1f/3f) - x1Im * 0.5f + x2Im - x3Im * (1f/6f)
+                val c2Im = (x0Im + x2Im) * 0.5f - x1Im
+                val c3Im = (x3Im - x0Im) * (1f/6f) + (x1Im - x2Im) * 0.5f
+                reOut[indexOut] = ((c3Re * m + c2Re) * m + c1Re) * m + x1Re
+                imOut[indexOut] = ((c3Im * m + c2Im) * m + c1Im) * m + x1Im
+                indexOut++
+                mu += step
+            }
+            mu -= 1.0
+        }
+        outPacket.setSize(indexOut)
+    }
+
+    companion object {
+        private const val LOGTAG = "FarrowResampler"
+        private const val CHUNK_SIZE = 4096         // max. number of intermediate samples per processing step
+        private const val OVERSAMPLING = 4          // min. ratio between intermediate rate and output rate
+        private const val ATTENUATION = 72f         // stop band attenuation of both filter stages (same as the RationalResampler)
+    }
+}
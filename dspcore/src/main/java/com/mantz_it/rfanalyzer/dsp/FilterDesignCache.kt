@@ -0,0 +1,125 @@
+package com.mantz_it.rfanalyzer.dsp
+
+/**
+ * <h1>RF Analyzer - Filter Design Cache</h1>
+ *
+ * Module:      FilterDesignCache.kt
+ *
+ * Description: A process-wide, memory bounded LRU cache for designed filter taps (and
+ * polyphase splits of resampler taps). Designing a filter is expensive (a large resampler
+ * filter bank can take several hundred milliseconds) while the resulting taps are immutable
+ * and can be shared by all filter instances with the same design parameters. Only the taps
+ * are cached, never the filter instances themselves (they hold their own delay lines).
+ *
+ * IMPORTANT: Arrays returned by the cache are shared and must never be modified!
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+object FilterDesignCache {
+    private const val LOGTAG = "FilterDesignCache"
+    const val DEFAULT_MAX_FLOATS = 2 * 1024 * 1024   // 8 MB of taps
+
+    // LinkedHashMap in access-order mode: the eldest entry is always the least recently used one
+    private val entries = LinkedHashMap<Any, Any>(16, 0.75f, true)
+    private val lock = Any()
+    private var usedFloats = 0L
+
+    /** Upper bound for the total number of cached floats. Entries larger than this are never cached. */
+    var maxFloats: Int = DEFAULT_MAX_FLOATS
+        set(value) {
+            synchronized(lock) {
+                field = value
+                evict()
+            }
+        }
+
+    /** Number of floats currently held by the cache */
+    val size: Long
+        get() = synchronized(lock) { usedFloats }
+
+    /** Number of designs currently held by the cache */
+    val count: Int
+        get() = synchronized(lock) { entries.size }
+
+    /**
+     * Returns the cached design for the given key or calls design() and caches the result.
+     * The design function is executed outside of the lock, so multiple threads might design
+     * the same key concurrently (the first result wins, the other is discarded).
+     *
+     * @param key       a value with proper equals()/hashCode() that uniquely describes the design
+     *                  (e.g. a list of all design parameters)
+     * @param design    function that calculates the taps. Must return a FloatArray or an
+     *                  Array<FloatArray> (or null if the design is not possible)
+     * @return the (shared) design or null if design() returned null
+     */
+    @JvmStatic
+    fun <T : Any> getOrDesign(key: Any, design: () -> T?): T? {
+        synchronized(lock) {
+            @Suppress("UNCHECKED_CAST")
+            (entries[key] as T?)?.let { return it }
+        }
+        val startTimestamp = System.nanoTime()
+        val value = design() ?: return null
+        val floats = sizeInFloats(value)
+        Log.d(LOGTAG, "getOrDesign: designed $key ($floats floats) in ${(System.nanoTime() - startTimestamp) / 1000000} ms")
+        synchronized(lock) {
+            @Suppress("UNCHECKED_CAST")
+            (entries[key] as T?)?.let { return it }  // another thread was faster
+            if (floats <= maxFloats) {
+                entries[key] = value
+                usedFloats += floats
+                evict()
+            }
+        }
+        return value
+    }
+
+    /**
+     * @return true if a design for the given key is cached
+     */
+    @JvmStatic
+    fun contains(key: Any): Boolean = synchronized(lock) { entries.containsKey(key) }
+
+    fun clear() {
+        synchronized(lock) {
+            entries.clear()
+            usedFloats = 0
+        }
+    }
+
+    // Must be called while holding the lock
+    private fun evict() {
+        val iterator = entries.entries.iterator()
+        while (usedFloats > maxFloats && iterator.hasNext()) {
+            val eldest = iterator.next()
+            usedFloats -= sizeInFloats(eldest.value)
+            iterator.remove()
+            Log.d(LOGTAG, "evict: removed ${eldest.key} from cache (now $usedFloats floats)")
+        }
+    }
+
+    private fun sizeInFloats(value: Any): Long {
+        return when (value) {
+            is FloatArray -> value.size.toLong()
+            is Array<*> -> value.sumOf { (it as? FloatArray)?.size?.toLong() ?: 0L }
+            else -> throw IllegalArgumentException("FilterDesignCache only supports FloatArray and Array<FloatArray>")
+        }
+    }
+}
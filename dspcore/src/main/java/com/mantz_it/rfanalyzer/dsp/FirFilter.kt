@@ -1,6 +1,5 @@
 package com.mantz_it.rfanalyzer.dsp
 
-import android.util.Log
 import com.mantz_it.rfanalyzer.source.SamplePacket
 import kotlin.math.cos
 import kotlin.math.sin
@@ -240,6 +239,10 @@ class FirFilter(
             return taps
         }
 
+        /**
+         * Creates a new low pass FirFilter instance. The taps are taken from the FilterDesignCache
+         * if a filter with the same parameters was designed before.
+         */
         @JvmStatic
         fun createLowPass(
             decimation: Int,
@@ -250,7 +253,10 @@ class FirFilter(
             attenuationInDecibels: Float,
         ): FirFilter?
         {
-            val taps = createLowPassTaps(decimation, gain, sampleRate, cutoffFrequency, transitionWidth, attenuationInDecibels, BlackmanWindow())
+            val key = listOf("lowpass", gain, sampleRate, cutoffFrequency, transitionWidth, attenuationInDecibels)
+            val taps = FilterDesignCache.getOrDesign(key) {
+                createLowPassTaps(decimation, gain, sampleRate, cutoffFrequency, transitionWidth, attenuationInDecibels, BlackmanWindow())
+            }
             return if(taps == null) null else FirFilter(
                 taps,
                 decimation,
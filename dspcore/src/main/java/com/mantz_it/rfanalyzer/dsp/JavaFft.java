@@ -0,0 +1,115 @@
+package com.mantz_it.rfanalyzer.dsp;
+
+/**
+ * <h1>RF Analyzer - Java FFT</h1>
+ *
+ * Module:      JavaFft.java
+ * Description: Pure JVM implementation of the SpectrumFft (iterative radix-2 complex FFT).
+ * It is the fallback if the native pffft library (NativeDsp) can not be loaded and produces
+ * the same output: Blackman window, FFT, magnitude normalized to the FFT size in dB and the
+ * 0-frequency in the center of the output array.
+ * Window, twiddle factors and bit reversal table are calculated once per FFT size, so that
+ * no memory is allocated in the steady state.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public class JavaFft implements SpectrumFft {
+	private int size = 0;
+	private float[] window;
+	private float[] cosTable;	// twiddle factors: cos(2*PI*k/N) for k < N/2
+	private float[] sinTable;	// twiddle factors: sin(2*PI*k/N) for k < N/2
+	private int[] bitReversed;
+	private float[] re;			// working buffers (in-place FFT)
+	private float[] im;
+
+	private void setup(int n) {
+		size = n;
+		int bits = Integer.numberOfTrailingZeros(n);
+		window = new float[n];
+		for (int i = 0; i < n; i++) {
+			// same calculation as in NativeDsp: w(n)=0.42-0.5cos{(2*PI*n)/(N-1)}+0.08cos{(4*PI*n)/(N-1)};
+			window[i] = (float) (0.42 - 0.5 * Math.cos(2 * Math.PI * i / (n - 1))
+					+ 0.08 * Math.cos(4 * Math.PI * i / (n - 1)));
+		}
+		cosTable = new float[n / 2];
+		sinTable = new float[n / 2];
+		for (int k = 0; k < n / 2; k++) {
+			cosTable[k] = (float) Math.cos(2 * Math.PI * k / n);
+			sinTable[k] = (float) Math.sin(2 * Math.PI * k / n);
+		}
+		bitReversed = new int[n];
+		for (int i = 0; i < n; i++)
+			bitReversed[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+		re = new float[n];
+		im = new float[n];
+	}
+
+	/**
+	 * Forward FFT (exp(-j...)) of the working buffers. The input must already be in bit reversed order.
+	 */
+	private void transform() {
+		for (int len = 2; len <= size; len <<= 1) {
+			int half = len >> 1;
+			int tableStep = size / len;
+			for (int start = 0; start < size; start += len) {
+				for (int k = 0; k < half; k++) {
+					float wr = cosTable[k * tableStep];
+					float wi = -sinTable[k * tableStep];
+					int a = start + k;
+					int b = a + half;
+					float tr = re[b] * wr - im[b] * wi;
+					float ti = re[b] * wi + im[b] * wr;
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean performWindowedFftAndReturnMag(float[] reIn, float[] imIn, float[] magOut) {
+		int n = reIn.length;
+		if (imIn.length != n || magOut.length != n || n < 2 || Integer.bitCount(n) != 1)
+			return false;
+		if (n != size)
+			setup(n);
+
+		// apply window (and sort into bit reversed order):
+		for (int i = 0; i < n; i++) {
+			int j = bitReversed[i];
+			re[j] = reIn[i] * window[i];
+			im[j] = imIn[i] * window[i];
+		}
+
+		transform();
+
+		// Calculate the logarithmic magnitude (like the native implementation):
+		for (int i = 0; i < n; i++) {
+			float realPower = re[i] / n;
+			realPower *= realPower;
+			float imagPower = im[i] / n;
+			imagPower *= imagPower;
+			magOut[(i + n / 2) % n] = (float) (10 * Math.log10(Math.sqrt(realPower + imagPower)));
+		}
+		return true;
+	}
+}
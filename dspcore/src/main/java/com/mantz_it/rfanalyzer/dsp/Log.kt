@@ -0,0 +1,80 @@
+package com.mantz_it.rfanalyzer.dsp
+
+/**
+ * <h1>RF Analyzer - Log</h1>
+ *
+ * Module:      Log.kt
+ * Description: A tiny logging facade for the DSP core module. It has the same call signature
+ * as android.util.Log so that the DSP code runs unchanged on Android and on a plain JVM (unit
+ * tests and benchmarks on the desktop). By default, messages are printed to stdout / stderr.
+ * The app installs a logger which forwards to android.util.Log (see RFAnalyzerApplication).
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+object Log {
+    // Priorities (same values as in android.util.Log):
+    const val DEBUG = 3
+    const val INFO = 4
+    const val WARN = 5
+    const val ERROR = 6
+
+    fun interface Logger {
+        fun log(priority: Int, tag: String, message: String)
+    }
+
+    /** Prints to stdout (DEBUG, INFO) and stderr (WARN, ERROR). Used if no other logger is set. */
+    val CONSOLE_LOGGER = Logger { priority, tag, message ->
+        val level = when (priority) {
+            DEBUG -> "D"
+            INFO -> "I"
+            WARN -> "W"
+            else -> "E"
+        }
+        val stream = if (priority >= WARN) System.err else System.out
+        stream.println("$level/$tag: $message")
+    }
+
+    @Volatile
+    @JvmStatic
+    var logger: Logger = CONSOLE_LOGGER
+
+    /** Messages with a lower priority are dropped (e.g. set to WARN in benchmarks). */
+    @Volatile
+    @JvmStatic
+    var minPriority: Int = DEBUG
+
+    @JvmStatic
+    fun d(tag: String, message: String) = log(DEBUG, tag, message)
+
+    @JvmStatic
+    fun i(tag: String, message: String) = log(INFO, tag, message)
+
+    @JvmStatic
+    fun w(tag: String, message: String) = log(WARN, tag, message)
+
+    @JvmStatic
+    fun e(tag: String, message: String) = log(ERROR, tag, message)
+
+    private fun log(priority: Int, tag: String, message: String): Int {
+        if (priority >= minPriority)
+            logger.log(priority, tag, message)
+        return 0
+    }
+}
@@ -0,0 +1,150 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.roundToLong
+import kotlin.math.sin
+
+/**
+ * <h1>RF Analyzer - NCO</h1>
+ *
+ * Module:      Nco.kt
+ *
+ * Description: Numerically controlled oscillator based on a 32-bit phase accumulator. Used to
+ * mix (frequency shift) complex samples. The frequency resolution is sampleRate / 2^32
+ * (e.g. 0.005 Hz at 20 MSps) and retuning is instant and phase continuous.
+ * The phase is converted to cos/sin with two small tables (coarse: upper 10 bits of the phase,
+ * fine: next 10 bits) which are combined with the angle addition theorem:
+ *   cos(a+b) = cos(a)cos(b) - sin(a)sin(b)
+ *   sin(a+b) = sin(a)cos(b) + cos(a)sin(b)
+ * This gives a phase resolution of 2^-20 turns (spurs below -100 dBc) with only 16 KB of tables
+ * which are shared by all instances.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class Nco {
+    var phase: Int = 0                  // current phase (full 32-bit range equals one turn)
+    var phaseIncrement: Int = 0         // phase step per sample
+        private set
+    var frequency: Long = 0             // frequency of the oscillator in Hz
+        private set
+    var sampleRate: Int = 0
+        private set
+
+    /**
+     * Sets the frequency of the oscillator. Negative frequencies are allowed. The phase is kept,
+     * so retuning does not cause a discontinuity.
+     *
+     * @param frequency     oscillator frequency in Hz
+     * @param sampleRate    sample rate in Sps
+     */
+    fun setFrequency(frequency: Long, sampleRate: Int) {
+        if (frequency == this.frequency && sampleRate == this.sampleRate)
+            return
+        this.frequency = frequency
+        this.sampleRate = sampleRate
+        // conversion to Int keeps the lower 32 bits, i.e. the phase wraps around like the accumulator
+        phaseIncrement = toPhaseIncrement(frequency.toDouble(), sampleRate)
+    }
+
+    /**
+     * @return the actual frequency of the oscillator (differs from frequency by less than sampleRate / 2^33)
+     */
+    fun getExactFrequency(): Double = phaseIncrement.toDouble() * sampleRate / PHASE_RANGE
+
+    /**
+     * Multiplies the samples in place with the oscillator (cos + j*sin) and advances the phase.
+     *
+     * @param re        real parts of the samples
+     * @param im        imaginary parts of the samples
+     * @param offset    index of the first sample
+     * @param length    number of samples
+     */
+    fun mix(re: FloatArray, im: FloatArray, offset: Int, length: Int) {
+        var p = phase
+        val inc = phaseIncrement
+        for (i in offset until offset + length) {
+            val coarse = p ushr (32 - TABLE_BITS)
+            val fine = (p ushr (32 - 2 * TABLE_BITS)) and TABLE_MASK
+            val cosCoarse = COARSE_COS[coarse]
+            val sinCoarse = COARSE_SIN[coarse]
+            val cosFine = FINE_COS[fine]
+            val sinFine = FINE_SIN[fine]
+            val c = cosCoarse * cosFine - sinCoarse * sinFine
+            val s = sinCoarse * cosFine + cosCoarse * sinFine
+            val x = re[i]
+            val y = im[i]
+            re[i] = x * c - y * s
+            im[i] = y * c + x * s
+            p += inc
+        }
+        phase = p
+    }
+
+    /**
+     * Like mix(), but the phase step after each sample is phaseIncrement + phaseIncrementOffsets[i]
+     * (frequency modulation). Used to generate FM test signals.
+     *
+     * @param re                     real parts of the samples
+     * @param im                     imaginary parts of the samples
+     * @param offset                 index of the first sample (also used for phaseIncrementOffsets)
+     * @param length                 number of samples
+     * @param phaseIncrementOffsets  additional phase step per sample (see toPhaseIncrement())
+     */
+    fun mixModulated(re: FloatArray, im: FloatArray, offset: Int, length: Int, phaseIncrementOffsets: IntArray) {
+        var p = phase
+        val inc = phaseIncrement
+        for (i in offset until offset + length) {
+            val coarse = p ushr (32 - TABLE_BITS)
+            val fine = (p ushr (32 - 2 * TABLE_BITS)) and TABLE_MASK
+            val cosCoarse = COARSE_COS[coarse]
+            val sinCoarse = COARSE_SIN[coarse]
+            val cosFine = FINE_COS[fine]
+            val sinFine = FINE_SIN[fine]
+            val c = cosCoarse * cosFine - sinCoarse * sinFine
+            val s = sinCoarse * cosFine + cosCoarse * sinFine
+            val x = re[i]
+            val y = im[i]
+            re[i] = x * c - y * s
+            im[i] = y * c + x * s
+            p += inc + phaseIncrementOffsets[i]
+        }
+        phase = p
+    }
+
+    companion object {
+        private const val TABLE_BITS = 10
+        private const val TABLE_SIZE = 1 shl TABLE_BITS
+        private const val TABLE_MASK = TABLE_SIZE - 1
+        private const val PHASE_RANGE = 4294967296.0   // 2^32
+
+        // coarse tables: angle = 2*PI * i / 2^10;  fine tables: angle = 2*PI * i / 2^20
+        private val COARSE_COS = FloatArray(TABLE_SIZE) { cos(2 * PI * it / TABLE_SIZE).toFloat() }
+        private val COARSE_SIN = FloatArray(TABLE_SIZE) { sin(2 * PI * it / TABLE_SIZE).toFloat() }
+        private val FINE_COS = FloatArray(TABLE_SIZE) { cos(2 * PI * it / (TABLE_SIZE.toDouble() * TABLE_SIZE)).toFloat() }
+        private val FINE_SIN = FloatArray(TABLE_SIZE) { sin(2 * PI * it / (TABLE_SIZE.toDouble() * TABLE_SIZE)).toFloat() }
+
+        /**
+         * @return phase step per sample for the given frequency (wraps around like the accumulator)
+         */
+        fun toPhaseIncrement(frequency: Double, sampleRate: Int): Int =
+            if (sampleRate > 0) (frequency / sampleRate * PHASE_RANGE).roundToLong().toInt() else 0
+    }
+}
@@ -1,6 +1,5 @@
 package com.mantz_it.rfanalyzer.dsp
 
-import android.util.Log
 import com.mantz_it.rfanalyzer.source.SamplePacket
 import kotlin.Int
 import kotlin.math.abs
@@ -39,7 +38,7 @@ class RationalResampler(
     taps: FloatArray? = null,
     private var fractionalBw: Float = 0.4f,
     maxTaps: Int = 0  // Tap count (per FirFilter) will be limited by maxTaps. Value '0' means no limit
-) {
+) : ResamplerInterface {
     private val firTaps: Array<FloatArray>
     private val delayReal: FloatArray
     private val delayImag: FloatArray
@@ -62,23 +61,10 @@ class RationalResampler(
         interpolation /= d
         decimation /= d
 
-        // Design taps if none provided
-        val staps = taps ?: designResamplerTaps(interpolation, decimation, fractionalBw, maxTaps)
-        Log.d(LOGTAG, "designResamplerTaps generated ${staps.size} taps. (interpolation=${interpolation}, decimation=${decimation}, d=$d)")
-
-        // Round taps up to multiple of interpolation
-        val newTaps = staps.toMutableList()
-        var n = newTaps.size % interpolation
-        if (n > 0) {
-            n = interpolation - n
-            repeat(n) { newTaps.add(0f) }
-        }
-
-        // Split taps into polyphase subfilters
-        val nt = newTaps.size / interpolation
-        firTaps = Array(interpolation) { phase ->
-            FloatArray(nt) { i -> newTaps[i * interpolation + phase] }
-        }
+        // Design taps if none provided (designed filter banks are shared via the FilterDesignCache)
+        firTaps = if (taps != null) splitIntoPolyphase(taps, interpolation)
+                  else designPolyphaseTaps(interpolation, decimation, fractionalBw, maxTaps)
+        val nt = firTaps[0].size
         delayReal = FloatArray(nt)
         delayImag = FloatArray(nt)
     }
@@ -87,7 +73,7 @@ class RationalResampler(
      * Resample input -> output.
      * @return number of consumed input samples
      */
-    fun resample(inPacket: SamplePacket, outPacket: SamplePacket, offset: Int, length: Int): Int {
+    override fun resample(inPacket: SamplePacket, outPacket: SamplePacket, offset: Int, length: Int): Int {
         val reIn = inPacket.re()
         val imIn = inPacket.im()
         val reOut = outPacket.re()
@@ -95,6 +81,8 @@ class RationalResampler(
         val outputCapacity = outPacket.capacity()
         var indexOut = outPacket.size()
         var consumed = 0
+        if (length <= 0)
+            return 0
 
         var inIdx = offset
 
@@ -222,6 +210,52 @@ class RationalResampler(
             return if (lowerError < upperError) Pair(lowerNum, lowerDen) else Pair(upperNum, upperDen)
         }
 
+        /**
+         * Returns the polyphase filter bank for the given (reduced) ratio. The bank is taken from
+         * the FilterDesignCache if it was designed before, otherwise it is designed with
+         * designResamplerTaps() and added to the cache.
+         * The returned arrays are shared and must not be modified!
+         */
+        @JvmStatic
+        fun designPolyphaseTaps(interpolation: Int, decimation: Int, fractionalBw: Float, maxTaps: Int): Array<FloatArray> {
+            val key = listOf("resampler", interpolation, decimation, fractionalBw, maxTaps)
+            return FilterDesignCache.getOrDesign(key) {
+                val taps = designResamplerTaps(interpolation, decimation, fractionalBw, maxTaps)
+                Log.d(LOGTAG, "designResamplerTaps generated ${taps.size} taps. (interpolation=${interpolation}, decimation=${decimation})")
+                splitIntoPolyphase(taps, interpolation)
+            }!!
+        }
+
+        /**
+         * Splits the taps into <interpolation> polyphase sub filters. The taps are padded with
+         * zeros to a multiple of interpolation.
+         */
+        @JvmStatic
+        fun splitIntoPolyphase(taps: FloatArray, interpolation: Int): Array<FloatArray> {
+            val nt = (taps.size + interpolation - 1) / interpolation
+            return Array(interpolation) { phase ->
+                FloatArray(nt) { i ->
+                    val index = i * interpolation + phase
+                    if (index < taps.size) taps[index] else 0f
+                }
+            }
+        }
+
+        /**
+         * Estimates the number of floats held by the polyphase filter bank that would be
+         * designed for the given (reduced) ratio. Uses the same tap count formula as
+         * designResamplerTaps() / FirFilter.createLowPassTaps() without designing the taps.
+         */
+        @JvmStatic
+        fun estimateFilterBankSize(interpolation: Int, decimation: Int, fractionalBw: Float, maxTaps: Int): Long {
+            val rate = interpolation.toFloat() / decimation.toFloat()
+            val transWidth = if (rate >= 1.0f) 0.5f - fractionalBw else rate * (0.5f - fractionalBw)
+            var ntaps = (72.22087 * interpolation / (22.0 * transWidth)).toLong()
+            if (maxTaps > 0) ntaps = ntaps.coerceAtMost(maxTaps.toLong() * interpolation)
+            val tapsPerPhase = (ntaps + interpolation) / interpolation  // odd tap count rounded up to a multiple of interpolation
+            return tapsPerPhase * interpolation
+        }
+
         /**
          * Design filter taps for the resampler.
          * Default: low-pass with Kaiser window (beta=7.0).
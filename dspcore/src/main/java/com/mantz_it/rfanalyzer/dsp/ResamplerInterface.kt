@@ -0,0 +1,29 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+
+/**
+ * <h1>RF Analyzer - Resampler Interface</h1>
+ *
+ * Module:      ResamplerInterface.kt
+ * Description: Common interface of the sample rate converters (RationalResampler and
+ *              FarrowResampler) so that the Resampler block can use them interchangeably.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ */
+interface ResamplerInterface {
+    /**
+     * Resamples the samples from the input packet and appends the result to the output packet.
+     * Stops automatically if the output packet is full.
+     *
+     * @param inPacket  input sample packet
+     * @param outPacket output sample packet
+     * @param offset    offset to use as start index for the input packet
+     * @param length    max number of samples processed from the input packet
+     * @return number of samples consumed from the input packet
+     */
+    fun resample(inPacket: SamplePacket, outPacket: SamplePacket, offset: Int, length: Int): Int
+}
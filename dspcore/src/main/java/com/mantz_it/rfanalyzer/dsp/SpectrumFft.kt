@@ -0,0 +1,68 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.nativedsp.NativeDsp
+
+/**
+ * <h1>RF Analyzer - Spectrum FFT</h1>
+ *
+ * Module:      SpectrumFft.kt
+ * Description: Interface of the FFT which calculates the spectrum (FFT plot, waterfall,
+ * spectrogram). There are two implementations which produce the same output:
+ *  - NativeDsp: pffft in the 'nativedsp' JNI library (Android and desktop builds)
+ *  - JavaFft:   pure JVM fallback, used if the native library can not be loaded (e.g. unit
+ *               tests and benchmarks on a machine without the desktop build of nativedsp)
+ * Use create() to get the fastest available implementation.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+interface SpectrumFft {
+
+    /**
+     * Applies a Blackman Window to the input samples, followed by a FFT operation.
+     * Fills the array magOut with the logarithmic magnitude of the FFT results (centered around
+     * the 0-frequency). An instance must not be shared between threads.
+     *
+     * @param re        real part of the input samples (length N must be a power of 2)
+     * @param im        imaginary part of the input samples (length N)
+     * @param magOut    output array for the magnitudes in dB (length N)
+     * @return false if the array sizes are not supported
+     */
+    fun performWindowedFftAndReturnMag(re: FloatArray, im: FloatArray, magOut: FloatArray): Boolean
+
+    companion object {
+        private const val LOGTAG = "SpectrumFft"
+
+        // The native library is only loaded once. If that fails, all instances use the fallback
+        val isNativeAvailable: Boolean by lazy {
+            try {
+                NativeDsp.loadLibrary()
+                true
+            } catch (e: LinkageError) {
+                Log.w(LOGTAG, "Native FFT not available (${e.message}). Using JavaFft.")
+                false
+            }
+        }
+
+        /**
+         * @return a NativeDsp instance if the native library is available, otherwise a JavaFft
+         */
+        fun create(): SpectrumFft = if (isNativeAvailable) NativeDsp() else JavaFft()
+    }
+}
@@ -0,0 +1,198 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import kotlin.math.exp
+import kotlin.math.log10
+import kotlin.math.pow
+
+/**
+ * <h1>RF Analyzer - Squelch</h1>
+ *
+ * Module:      Squelch.kt
+ *
+ * Description: Time domain squelch which works on the channel samples (output of the channel
+ * filter). The power of the samples (|x|^2) is averaged over the attack time (running mean square)
+ * and tracked by an envelope which follows rises immediately and falls with the decay time (so that
+ * short fades within a transmission don't close the gate). The gate opens at the sample at which the envelope crosses the threshold
+ * and closes after the envelope stayed below threshold * HYSTERESIS for the hang time. For every
+ * sample a gain is calculated which ramps between 0 and 1 within RAMP_TIME (no clicks). The gain
+ * is applied to the demodulated audio with applyGain().
+ * The threshold is a linear power. signalStrengthToPower() converts the squelch level of the FFT
+ * plot (mean of the FFT bins within the channel in dB) into this scale.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class Squelch(
+    private val attackTime: Float = ATTACK_TIME,    // seconds
+    private val decayTime: Float = DECAY_TIME,      // seconds
+    private val hangTime: Float = HANG_TIME         // seconds
+) {
+    companion object {
+        const val ATTACK_TIME = 0.002f
+        const val DECAY_TIME = 0.02f
+        const val HANG_TIME = 0.3f
+        const val RAMP_TIME = 0.002f
+        const val HYSTERESIS = 0.5f     // the gate closes 3 dB below the threshold
+
+        private const val BLACKMAN_WINDOW_POWER = 0.3046f  // mean of the squared Blackman window coefficients (window of the FFT)
+        private const val LOG_AVERAGE_NOISE_BIAS = -1.25f  // the FFT averages logarithmic bins: for noise this is 1.25 dB below the logarithm of the mean
+
+        /**
+         * Converts a mean power of channel samples to the scale of the FFT plot (mean of the FFT
+         * bins within the channel, see FftProcessor). A signal of this power which is spread over
+         * the channel results in FFT bins of 10*log10(|X|/N) with
+         * |X|^2/N^2 = power * window power * sampleRate / (bandwidth * N).
+         * The result matches for noise. Signals which do not fill the channel evenly result in
+         * higher values than the FFT average (which is a mean of logarithms).
+         *
+         * @param power         mean of |x|^2 of the channel samples
+         * @param sampleRate    sample rate of the FFT
+         * @param fftSize       size of the FFT
+         * @param bandwidth     bandwidth of the channel (Hz)
+         * @return signal strength in the scale of the FFT plot (-999 if unknown)
+         */
+        fun powerToSignalStrength(power: Float, sampleRate: Int, fftSize: Int, bandwidth: Int): Float {
+            if (power <= 0f || sampleRate <= 0 || fftSize <= 0 || bandwidth <= 0)
+                return -999f
+            val binPower = power * BLACKMAN_WINDOW_POWER * sampleRate / (bandwidth.toFloat() * fftSize)
+            return 5 * log10(binPower) + LOG_AVERAGE_NOISE_BIAS
+        }
+
+        /**
+         * Inverse of powerToSignalStrength()
+         *
+         * @return mean of |x|^2 of the channel samples (0 if unknown)
+         */
+        fun signalStrengthToPower(signalStrength: Float, sampleRate: Int, fftSize: Int, bandwidth: Int): Float {
+            if (sampleRate <= 0 || fftSize <= 0 || bandwidth <= 0)
+                return 0f
+            val binPower = 10f.pow((signalStrength - LOG_AVERAGE_NOISE_BIAS) / 5)
+            return binPower * bandwidth.toFloat() * fftSize / (BLACKMAN_WINDOW_POWER * sampleRate)
+        }
+    }
+
+    @Volatile
+    var threshold = 0f      // linear power (mean of |x|^2). 0 disables the squelch (always open)
+
+    var power = 0f          // current value of the envelope
+        private set
+    var meanPower = 0f      // mean of |x|^2 of the last processed packet
+        private set
+    var isOpen = false      // state of the gate after the last processed sample
+        private set
+
+    private var shortTermPower = 0f     // running mean of |x|^2 over the attack time
+    private var gain = FloatArray(0)
+    private var gainSize = 0
+    private var currentGain = 0f
+    private var hangCounter = 0
+
+    // coefficients for the sample rate of the last packet:
+    private var sampleRate = 0
+    private var attackAlpha = 0f
+    private var decayAlpha = 0f
+    private var hangSamples = 0
+    private var rampStep = 0f
+
+    /**
+     * Updates the envelope and the gate with the samples and calculates the gain of each sample
+     *
+     * @param samples   channel samples (output of the channel filter)
+     * @return true if the gain is not 0 for at least one sample of the packet (i.e. it must be demodulated)
+     */
+    fun process(samples: SamplePacket): Boolean {
+        if (samples.sampleRate != sampleRate) {
+            sampleRate = samples.sampleRate
+            attackAlpha = 1 - exp(-1 / (attackTime * sampleRate))
+            decayAlpha = 1 - exp(-1 / (decayTime * sampleRate))
+            hangSamples = (hangTime * sampleRate).toInt()
+            rampStep = 1 / (RAMP_TIME * sampleRate)
+        }
+        val size = samples.size()
+        if (gain.size < size)
+            gain = FloatArray(size)
+        gainSize = size
+
+        val re = samples.re()
+        val im = samples.im()
+        val threshold = threshold
+        val closeThreshold = threshold * HYSTERESIS
+        var shortTermPower = shortTermPower
+        var power = power
+        var isOpen = isOpen
+        var hangCounter = hangCounter
+        var currentGain = currentGain
+        var sum = 0f
+        var audible = false
+        for (i in 0 until size) {
+            val p = re[i] * re[i] + im[i] * im[i]
+            sum += p
+            shortTermPower += attackAlpha * (p - shortTermPower)
+            power = if (shortTermPower > power) shortTermPower else power + decayAlpha * (shortTermPower - power)
+            if (threshold <= 0f || power > threshold) {
+                isOpen = true
+                hangCounter = hangSamples
+            } else if (isOpen && power < closeThreshold) {
+                if (hangCounter > 0)
+                    hangCounter--
+                else
+                    isOpen = false
+            }
+            currentGain = if (isOpen) minOf(1f, currentGain + rampStep) else maxOf(0f, currentGain - rampStep)
+            gain[i] = currentGain
+            if (currentGain > 0f)
+                audible = true
+        }
+        this.shortTermPower = shortTermPower
+        this.power = power
+        this.isOpen = isOpen
+        this.hangCounter = hangCounter
+        this.currentGain = currentGain
+        meanPower = if (size > 0) sum / size else 0f
+        return audible
+    }
+
+    /**
+     * Multiplies the (demodulated) samples with the gain of the last processed packet. If the
+     * packet has a different size (e.g. decimated), the gain is mapped by the sample position.
+     *
+     * @param samples   demodulated samples (only the real array is used)
+     */
+    fun applyGain(samples: SamplePacket) {
+        val re = samples.re()
+        val size = samples.size()
+        if (size == gainSize) {
+            for (i in 0 until size)
+                re[i] *= gain[i]
+        } else if (gainSize > 0) {
+            for (i in 0 until size)
+                re[i] *= gain[(i.toLong() * gainSize / size).toInt()]
+        }
+    }
+
+    fun reset() {
+        shortTermPower = 0f
+        power = 0f
+        meanPower = 0f
+        isOpen = false
+        currentGain = 0f
+        hangCounter = 0
+    }
+}
@@ -0,0 +1,133 @@
+package com.mantz_it.rfanalyzer.source;
+
+import com.mantz_it.rfanalyzer.dsp.FirFilter;
+import com.mantz_it.rfanalyzer.dsp.Nco;
+
+
+/**
+ * <h1>RF Analyzer - IQ Converter</h1>
+ *
+ * Module:      IQConverter.java
+ * Description: This class implements methods to convert the raw input data of IQ sources (bytes)
+ *              to SamplePackets. It has also methods to do converting and down-mixing at the same
+ *              time.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+public abstract class IQConverter {
+	protected long frequency = 0;						// Baseband frequency of the converted samples (is put into the SamplePacket)
+	protected int sampleRate = 0;						// Sample rate of the converted samples (is put into the SamplePacket)
+	protected float[] lookupTable = null;				// Lookup table to transform IQ bytes into doubles
+	protected final Nco mixer = new Nco();				// Oscillator that is mixed to the signal (frequency shift)
+	private SamplePacket mixChunk = null;				// small (cache resident) buffer for mixAndDecimatePacketIntoSamplePacket()
+	private static final int MIX_CHUNK_SIZE = 2048;		// number of samples that are converted and mixed before they are decimated
+
+	public IQConverter() {
+		generateLookupTable();
+	}
+
+	public long getFrequency() {
+		return frequency;
+	}
+
+	public void setFrequency(long frequency) {
+		this.frequency = frequency;
+	}
+
+	public int getSampleRate() {
+		return sampleRate;
+	}
+
+	public void setSampleRate(int sampleRate) {
+		this.sampleRate = sampleRate;
+	}
+
+	/**
+	 * Updates the mixer so that the signal at channelFrequency is shifted to baseband.
+	 * The oscillator is retuned instantly (no tables have to be regenerated).
+	 *
+	 * @param channelFrequency	frequency that should be shifted to baseband
+	 */
+	protected void updateMixer(long channelFrequency) {
+		mixer.setFrequency(frequency - channelFrequency, sampleRate);
+	}
+
+	/**
+	 * Converts, mixes and decimates the samples in packet in one pass and appends the decimated
+	 * samples to the samplePacket. The samples are processed in small chunks which stay in the
+	 * cache, so the full rate signal is never written to a SamplePacket.
+	 * The output sample rate is sampleRate / decimationFilter.getDecimation().
+	 *
+	 * @param packet			raw samples from the source
+	 * @param samplePacket		SamplePacket that should be filled with the decimated samples
+	 * @param channelFrequency	frequency to which the spectrum of the signal should be shifted
+	 * @param decimationFilter	low pass filter (with decimation) that is applied after mixing.
+	 *                          The filter keeps its state between calls.
+	 * @return the number of samples consumed from packet
+	 */
+	public int mixAndDecimatePacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency, FirFilter decimationFilter) {
+		updateMixer(channelFrequency);	// retunes the oscillator if the channel frequency changed
+		if(mixChunk == null)
+			mixChunk = new SamplePacket(MIX_CHUNK_SIZE);
+
+		int numSamples = packet.length / getBytesPerSample();
+		int decimation = decimationFilter.getDecimation();
+		int sampleIndex = 0;
+		while (sampleIndex < numSamples) {
+			// make sure that the decimated samples of the chunk will fit into the samplePacket:
+			int freeOutput = samplePacket.capacity() - samplePacket.size();
+			int count = Math.min(Math.min(MIX_CHUNK_SIZE, numSamples - sampleIndex), freeOutput * decimation);
+			if(count <= 0)
+				break;
+			convertSamples(packet, sampleIndex, mixChunk.re(), mixChunk.im(), count);
+			mixer.mix(mixChunk.re(), mixChunk.im(), 0, count);
+			mixChunk.setSize(count);
+			mixChunk.setSampleRate(sampleRate);
+			decimationFilter.filter(mixChunk, samplePacket, 0, count);
+			sampleIndex += count;
+		}
+		samplePacket.setFrequency(channelFrequency);		// update the frequency
+		return sampleIndex;
+	}
+
+	public abstract int fillPacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket);
+
+	public abstract int mixPacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency);
+
+	/**
+	 * @return number of bytes per complex sample in the raw packets
+	 */
+	protected abstract int getBytesPerSample();
+
+	/**
+	 * Converts count samples (starting at sample index sampleOffset) of the raw packet into floats.
+	 *
+	 * @param packet		raw samples from the source
+	 * @param sampleOffset	index of the first sample in packet (in samples, not bytes)
+	 * @param re			destination for the real parts (starting at index 0)
+	 * @param im			destination for the imaginary parts (starting at index 0)
+	 * @param count			number of samples to convert
+	 */
+	protected abstract void convertSamples(byte[] packet, int sampleOffset, float[] re, float[] im, int count);
+
+	protected abstract void generateLookupTable();
+
+
+}
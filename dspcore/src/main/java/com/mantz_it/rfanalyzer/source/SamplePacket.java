@@ -31,6 +31,9 @@ public class SamplePacket {
 	private long frequency;		// center frequency
 	private int sampleRate;		// sample rate
 	private int size;			// number of samples in this packet
+	private long timestamp;		// System.nanoTime() when the samples were received from the source (0 if unknown)
+	private long sampleIndex;	// running index (since the start of the source) of the first source sample of this packet
+	private long enqueueTimestamp;	// System.nanoTime() when the packet was put into its current queue (0 if unknown)
 
 	/**
 	 * Constructor. This constructor wraps existing arrays and set the number of
@@ -165,4 +168,53 @@ public class SamplePacket {
 	public void setSampleRate(int sampleRate) {
 		this.sampleRate = sampleRate;
 	}
+
+	/**
+	 * @return System.nanoTime() at which the samples of this packet were received from the
+	 * source (0 if unknown). Used to measure the latency through the processing chain.
+	 */
+	public long getTimestamp() {
+		return timestamp;
+	}
+
+	/**
+	 * Sets the reception timestamp for this sample packet
+	 * @param timestamp		System.nanoTime() at which these samples were received from the source
+	 */
+	public void setTimestamp(long timestamp) {
+		this.timestamp = timestamp;
+	}
+
+	/**
+	 * @return index of the first sample of the source packet from which these samples were
+	 * calculated (counted in source samples since the source was started). Filter delays are
+	 * not compensated.
+	 */
+	public long getSampleIndex() {
+		return sampleIndex;
+	}
+
+	/**
+	 * Sets the sample index for this sample packet
+	 * @param sampleIndex	index of the first source sample from which these samples were calculated
+	 */
+	public void setSampleIndex(long sampleIndex) {
+		this.sampleIndex = sampleIndex;
+	}
+
+	/**
+	 * @return System.nanoTime() at which the packet was put into the queue from which it was
+	 * taken (0 if unknown). Used to measure the time the packet waited in the queue.
+	 */
+	public long getEnqueueTimestamp() {
+		return enqueueTimestamp;
+	}
+
+	/**
+	 * Sets the enqueue timestamp for this sample packet
+	 * @param enqueueTimestamp	System.nanoTime() at which the packet is put into a queue
+	 */
+	public void setEnqueueTimestamp(long enqueueTimestamp) {
+		this.enqueueTimestamp = enqueueTimestamp;
+	}
 }
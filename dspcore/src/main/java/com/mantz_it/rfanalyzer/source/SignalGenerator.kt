@@ -0,0 +1,260 @@
+package com.mantz_it.rfanalyzer.source
+
+import com.mantz_it.rfanalyzer.dsp.Nco
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.ln
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+import kotlin.random.Random
+
+/**
+ * <h1>RF Analyzer - Signal Generator</h1>
+ *
+ * Module:      SignalGenerator.kt
+ * Description: Generates synthetic IQ test signals (tones, noise, FM and AM modulated carriers
+ * and bursts of these) and encodes them into the raw byte formats of the supported sources.
+ * The output is deterministic: the same configuration and seed always produce the same bytes.
+ * The generator keeps its state (phases, sample counter) between calls, so consecutive packets
+ * form a continuous signal. Used by the SyntheticIQSource and by tests / benchmarks.
+ *
+ * @author Dennis Mantz
+ *
+ * Copyright (C) 2025 Dennis Mantz
+ * License: http://www.gnu.org/licenses/gpl.html GPL version 2 or higher
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public
+ * License as published by the Free Software Foundation; either
+ * version 2 of the License, or (at your option) any later version.
+ *
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA 02110-1301 USA
+ */
+class SignalGenerator(
+    sampleRate: Int,
+    val signals: List<Signal>,
+    seed: Long = 0
+) {
+    /**
+     * Raw sample formats (same encodings as the corresponding IQConverters)
+     */
+    enum class Format(val bytesPerSample: Int) {
+        SIGNED_8BIT(2),     // HackRF
+        UNSIGNED_8BIT(2),   // RTL-SDR
+        SIGNED_16BIT(4);    // Airspy, HydraSDR (little endian)
+
+        fun createConverter(): IQConverter = when (this) {
+            SIGNED_8BIT -> Signed8BitIQConverter()
+            UNSIGNED_8BIT -> Unsigned8BitIQConverter()
+            SIGNED_16BIT -> Signed16BitIQConverter()
+        }
+    }
+
+    /**
+     * Signal components. Frequencies are offsets (in Hz) from the center frequency, amplitudes
+     * are relative to full scale (the sum of all components should stay below 1 to avoid clipping).
+     */
+    sealed class Signal {
+        data class Tone(val offset: Float, val amplitude: Float) : Signal()
+        data class Noise(val amplitude: Float) : Signal()  // gaussian noise (amplitude = standard deviation per component)
+        data class Fm(val offset: Float, val amplitude: Float, val toneFrequency: Float, val deviation: Float) : Signal()
+        data class Am(val offset: Float, val amplitude: Float, val toneFrequency: Float, val modulationIndex: Float) : Signal()
+        /** The signal is switched on for 'duration' seconds at the beginning of every 'period' seconds */
+        data class Burst(val signal: Signal, val period: Float, val duration: Float) : Signal()
+    }
+
+    var sampleRate: Int = sampleRate
+        set(value) {
+            field = value
+            sampleCounter = 0    // restart bursts
+            generators.forEach { it.updateSampleRate() }
+        }
+
+    private val random = Random(seed)
+    private val noiseTable = FloatArray(NOISE_TABLE_SIZE) { gaussian() }
+    private val generators = signals.map { createGenerator(it) }
+    private var sampleCounter = 0L
+
+    // scratch buffers (indices are the same as in the output arrays):
+    private var tmpRe = FloatArray(0)
+    private var tmpIm = FloatArray(0)
+    private var modRe = FloatArray(0)
+    private var modIm = FloatArray(0)
+    private var phaseIncrements = IntArray(0)
+    private var packetRe = FloatArray(0)
+    private var packetIm = FloatArray(0)
+
+    companion object {
+        private const val NOISE_TABLE_SIZE = 1 shl 16
+        private const val PHASE_RANGE = 4294967296.0   // 2^32 (phase range of the Nco)
+    }
+
+    /**
+     * Generates count samples and stores them in re and im (overwritten, starting at index 0).
+     */
+    fun generate(re: FloatArray, im: FloatArray, count: Int) {
+        if (tmpRe.size < count) {
+            tmpRe = FloatArray(count)
+            tmpIm = FloatArray(count)
+            modRe = FloatArray(count)
+            modIm = FloatArray(count)
+            phaseIncrements = IntArray(count)
+        }
+        re.fill(0f, 0, count)
+        im.fill(0f, 0, count)
+        for (generator in generators)
+            generator.add(re, im, 0, count)
+        sampleCounter += count
+    }
+
+    /**
+     * Fills the whole packet with samples in the given raw format.
+     */
+    fun generate(packet: ByteArray, format: Format) {
+        val count = packet.size / format.bytesPerSample
+        if (packetRe.size < count) {
+            packetRe = FloatArray(count)
+            packetIm = FloatArray(count)
+        }
+        val re = packetRe
+        val im = packetIm
+        generate(re, im, count)
+        when (format) {
+            Format.SIGNED_8BIT -> for (i in 0 until count) {
+                packet[2 * i] = (re[i] * 128).roundToInt().coerceIn(-128, 127).toByte()
+                packet[2 * i + 1] = (im[i] * 128).roundToInt().coerceIn(-128, 127).toByte()
+            }
+            Format.UNSIGNED_8BIT -> for (i in 0 until count) {
+                packet[2 * i] = (re[i] * 128 + 127.4f).roundToInt().coerceIn(0, 255).toByte()
+                packet[2 * i + 1] = (im[i] * 128 + 127.4f).roundToInt().coerceIn(0, 255).toByte()
+            }
+            Format.SIGNED_16BIT -> for (i in 0 until count) {
+                val iValue = (re[i] * 32768).roundToInt().coerceIn(-32768, 32767)
+                val qValue = (im[i] * 32768).roundToInt().coerceIn(-32768, 32767)
+                packet[4 * i] = iValue.toByte()
+                packet[4 * i + 1] = (iValue shr 8).toByte()
+                packet[4 * i + 2] = qValue.toByte()
+                packet[4 * i + 3] = (qValue shr 8).toByte()
+            }
+        }
+    }
+
+    /**
+     * Generator of one signal component. add() adds the samples [from, to) of the current call
+     * to the output (sample index relative to sampleCounter). The oscillators are Ncos, so
+     * generating is cheap compared to the processing of the samples.
+     */
+    private abstract inner class Generator {
+        abstract fun add(re: FloatArray, im: FloatArray, from: Int, to: Int)
+        open fun updateSampleRate() { }
+    }
+
+    private fun createGenerator(signal: Signal): Generator = when (signal) {
+        is Signal.Tone -> object : Generator() {
+            val carrier = createNco(signal.offset)
+            override fun updateSampleRate() = carrier.setFrequency(signal.offset.toLong(), sampleRate)
+            override fun add(re: FloatArray, im: FloatArray, from: Int, to: Int) {
+                tmpRe.fill(signal.amplitude, from, to)
+                tmpIm.fill(0f, from, to)
+                carrier.mix(tmpRe, tmpIm, from, to - from)
+                addTmp(re, im, from, to)
+            }
+        }
+        is Signal.Noise -> object : Generator() {
+            override fun add(re: FloatArray, im: FloatArray, from: Int, to: Int) {
+                // cycle through the noise table, starting at a random position:
+                var index = random.nextInt(NOISE_TABLE_SIZE)
+                for (i in from until to) {
+                    re[i] += signal.amplitude * noiseTable[index]
+                    im[i] += signal.amplitude * noiseTable[(index + NOISE_TABLE_SIZE / 2) and (NOISE_TABLE_SIZE - 1)]
+                    index = (index + 1) and (NOISE_TABLE_SIZE - 1)
+                }
+            }
+        }
+        is Signal.Fm -> object : Generator() {
+            val carrier = createNco(signal.offset)
+            val modulation = createNco(signal.toneFrequency)
+            override fun updateSampleRate() {
+                carrier.setFrequency(signal.offset.toLong(), sampleRate)
+                modulation.setFrequency(signal.toneFrequency.toLong(), sampleRate)
+            }
+            override fun add(re: FloatArray, im: FloatArray, from: Int, to: Int) {
+                // instantaneous frequency offset: deviation * sin(modulation phase)
+                modRe.fill(1f, from, to)
+                modIm.fill(0f, from, to)
+                modulation.mix(modRe, modIm, from, to - from)
+                val scale = signal.deviation / sampleRate * PHASE_RANGE
+                for (i in from until to)
+                    phaseIncrements[i] = (modIm[i] * scale).toInt()
+                tmpRe.fill(signal.amplitude, from, to)
+                tmpIm.fill(0f, from, to)
+                carrier.mixModulated(tmpRe, tmpIm, from, to - from, phaseIncrements)
+                addTmp(re, im, from, to)
+            }
+        }
+        is Signal.Am -> object : Generator() {
+            val carrier = createNco(signal.offset)
+            val modulation = createNco(signal.toneFrequency)
+            override fun updateSampleRate() {
+                carrier.setFrequency(signal.offset.toLong(), sampleRate)
+                modulation.setFrequency(signal.toneFrequency.toLong(), sampleRate)
+            }
+            override fun add(re: FloatArray, im: FloatArray, from: Int, to: Int) {
+                modRe.fill(1f, from, to)
+                modIm.fill(0f, from, to)
+                modulation.mix(modRe, modIm, from, to - from)
+                // envelope (normalized so that the peak is the amplitude):
+                val scale = signal.amplitude / (1 + signal.modulationIndex)
+                for (i in from until to)
+                    tmpRe[i] = scale * (1 + signal.modulationIndex * modIm[i])
+                tmpIm.fill(0f, from, to)
+                carrier.mix(tmpRe, tmpIm, from, to - from)
+                addTmp(re, im, from, to)
+            }
+        }
+        is Signal.Burst -> object : Generator() {
+            val inner = createGenerator(signal.signal)
+            override fun updateSampleRate() = inner.updateSampleRate()
+            override fun add(re: FloatArray, im: FloatArray, from: Int, to: Int) {
+                val period = (signal.period * sampleRate).toLong().coerceAtLeast(1)
+                val duration = (signal.duration * sampleRate).toLong()
+                // add the inner signal for all sub ranges in which the burst is switched on
+                // (the oscillators of the inner signal only advance while it is switched on):
+                var i = from
+                while (i < to) {
+                    val positionInPeriod = (sampleCounter + i) % period
+                    if (positionInPeriod < duration) {
+                        val end = minOf(to.toLong(), i + duration - positionInPeriod).toInt()
+                        inner.add(re, im, i, end)
+                        i = end
+                    } else {
+                        i = minOf(to.toLong(), i + period - positionInPeriod).toInt()
+                    }
+                }
+            }
+        }
+    }
+
+    private fun createNco(frequency: Float) = Nco().also { it.setFrequency(frequency.toLong(), sampleRate) }
+
+    private fun addTmp(re: FloatArray, im: FloatArray, from: Int, to: Int) {
+        for (i in from until to) {
+            re[i] += tmpRe[i]
+            im[i] += tmpIm[i]
+        }
+    }
+
+    private fun gaussian(): Float {
+        // Box-Muller transform
+        val u1 = random.nextDouble().coerceAtLeast(1e-12)
+        val u2 = random.nextDouble()
+        return (sqrt(-2 * ln(u1)) * cos(2 * PI * u2)).toFloat()
+    }
+}
@@ -39,10 +39,6 @@ class Signed16BitIQConverter : IQConverter() {
     // value is mapped float in ~[-1.0, 1.0)
     private lateinit var lookupTable16: FloatArray
 
-    // Per-time-step oscillator lookup (compact)
-    private var cosLut: FloatArray? = null
-    private var sinLut: FloatArray? = null
-
     override fun generateLookupTable() {
         // Build once; ~256 KB, fine for Android and avoids per-sample math
         val lut = FloatArray(65536)
@@ -56,36 +52,6 @@ class Signed16BitIQConverter : IQConverter() {
         lookupTable16 = lut
     }
 
-    override fun generateMixerLookupTable(mixFrequencyIn: Int) {
-        var mixFrequency = mixFrequencyIn
-        // If mix frequency is too low, just add the sample rate (sampled spectrum is periodic):
-        if (mixFrequency == 0 || (sampleRate / kotlin.math.abs(mixFrequency) > MAX_COSINE_LENGTH)) {
-            mixFrequency += sampleRate
-        }
-
-        // Only regenerate if needed
-        if (cosLut == null || mixFrequency != cosineFrequency) {
-            cosineFrequency = mixFrequency
-            val bestLength = calcOptimalCosineLength()
-
-            val cosArr = FloatArray(bestLength)
-            val sinArr = FloatArray(bestLength)
-            val twoPiFOverFs = (2.0 * Math.PI * cosineFrequency) / sampleRate.toDouble()
-
-            var t = 0
-            while (t < bestLength) {
-                val angle = twoPiFOverFs * t
-                cosArr[t] = kotlin.math.cos(angle).toFloat()
-                sinArr[t] = kotlin.math.sin(angle).toFloat()
-                t++
-            }
-
-            cosLut = cosArr
-            sinLut = sinArr
-            cosineIndex = 0
-        }
-    }
-
     override fun fillPacketIntoSamplePacket(packet: ByteArray, samplePacket: SamplePacket): Int {
         val capacity = samplePacket.capacity()
         val startIndex = samplePacket.size()
@@ -123,59 +89,33 @@ class Signed16BitIQConverter : IQConverter() {
         return count
     }
 
-    override fun mixPacketIntoSamplePacket(packet: ByteArray, samplePacket: SamplePacket, channelFrequency: Long): Int {
-        val mixFrequency = (frequency - channelFrequency).toInt()
-        generateMixerLookupTable(mixFrequency) // only regenerates if needed
+    override fun getBytesPerSample(): Int = 4
 
-        val capacity = samplePacket.capacity()
-        val startIndex = samplePacket.size()
-        if (startIndex >= capacity) return 0
-
-        val cosArr = cosLut!!    // guaranteed non-null after generateMixerLookupTable
-        val sinArr = sinLut!!
+    override fun convertSamples(packet: ByteArray, sampleOffset: Int, re: FloatArray, im: FloatArray, count: Int) {
         val lut = lookupTable16
-        val pkt = packet
-
-        var count = 0
-        var i = 0
-        val pktEnd = pkt.size
-        var outIdx = startIndex
-        var cIdx = cosineIndex
-        val cLen = cosArr.size
+        var i = sampleOffset * 4
+        for (n in 0 until count) {
+            // little-endian 16-bit -> unsigned index 0..65535
+            val iU = (packet[i].toInt() and 0xFF) or (packet[i + 1].toInt() shl 8)
+            val qU = (packet[i + 2].toInt() and 0xFF) or (packet[i + 3].toInt() shl 8)
+            re[n] = lut[iU and 0xFFFF]
+            im[n] = lut[qU and 0xFFFF]
+            i += 4
+        }
+    }
 
-        if (cLen == 0) // Lookup Table is empty/invalid
-            return 0
-        if (cIdx >= cLen) cIdx = 0
+    override fun mixPacketIntoSamplePacket(packet: ByteArray, samplePacket: SamplePacket, channelFrequency: Long): Int {
+        updateMixer(channelFrequency) // retunes the oscillator if the channel frequency changed
 
-        // Mix: (I + jQ) * (cos + j sin)^*  = (I + jQ)(cos - j sin)
+        // Convert into the samplePacket and mix in place:
+        // (I + jQ) * (cos + j sin)
         // re = I*cos - Q*sin
         // im = Q*cos + I*sin
-        while (i + 3 < pktEnd && outIdx < capacity) {
-            val iU = (pkt[i].toInt() and 0xFF) or (pkt[i + 1].toInt() shl 8)
-            val qU = (pkt[i + 2].toInt() and 0xFF) or (pkt[i + 3].toInt() shl 8)
-
-            val iF = lut[iU and 0xFFFF]
-            val qF = lut[qU and 0xFFFF]
-
-            val c = cosArr[cIdx]
-            val s = sinArr[cIdx]
-
-            samplePacket.re()[outIdx] = iF * c - qF * s
-            samplePacket.im()[outIdx] = qF * c + iF * s
-
-            cIdx++
-            if (cIdx == cLen) cIdx = 0
-
-            i += 4
-            outIdx++
-            count++
-        }
-
+        val startIndex = samplePacket.size()
+        val count = fillPacketIntoSamplePacket(packet, samplePacket)
         if (count == 0) return 0
 
-        cosineIndex = cIdx
-        samplePacket.setSize(startIndex + count)
-        samplePacket.sampleRate = sampleRate
+        mixer.mix(samplePacket.re(), samplePacket.im(), startIndex, count)
         samplePacket.frequency = channelFrequency // downmixed center
         return count
     }
@@ -50,32 +50,6 @@ public class Unsigned8BitIQConverter extends IQConverter {
 			lookupTable[i] = (i-127.4f) / 128.0f;
 	}
 
-	@Override
-	protected void generateMixerLookupTable(int mixFrequency) {
-		// If mix frequency is too low, just add the sample rate (sampled spectrum is periodic):
-		if(mixFrequency == 0 || (sampleRate / Math.abs(mixFrequency) > MAX_COSINE_LENGTH))
-			mixFrequency += sampleRate;
-
-		// Only generate lookupTable if null or invalid:
-		if(cosineRealLookupTable == null || mixFrequency != cosineFrequency) {
-			cosineFrequency = mixFrequency;
-			int bestLength = calcOptimalCosineLength();
-			cosineRealLookupTable = new float[bestLength][256];
-			cosineImagLookupTable = new float[bestLength][256];
-			float cosineAtT;
-			float sineAtT;
-			for (int t = 0; t < bestLength; t++) {
-				cosineAtT = (float) Math.cos(2 * Math.PI * cosineFrequency * t / (float) sampleRate);
-				sineAtT = (float) Math.sin(2 * Math.PI * cosineFrequency * t / (float) sampleRate);
-				for (int i = 0; i < 256; i++) {
-					cosineRealLookupTable[t][i] = (i-127.4f)/128.0f * cosineAtT;
-					cosineImagLookupTable[t][i] = (i-127.4f)/128.0f * sineAtT;
-				}
-			}
-			cosineIndex = 0;
-		}
-	}
-
 	@Override
 	public int fillPacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket) {
 		int capacity = samplePacket.capacity();
@@ -99,33 +73,26 @@ public class Unsigned8BitIQConverter extends IQConverter {
 	}
 
 	@Override
-	public int mixPacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency) {
-		int mixFrequency = (int)(frequency - channelFrequency);
+	protected int getBytesPerSample() {
+		return 2;
+	}
 
-		generateMixerLookupTable(mixFrequency);	// will only generate table if really necessary
+	@Override
+	protected void convertSamples(byte[] packet, int sampleOffset, float[] re, float[] im, int count) {
+		for (int n = 0, i = sampleOffset*2; n < count; n++, i+=2) {
+			re[n] = lookupTable[packet[i] & 0xff];
+			im[n] = lookupTable[packet[i+1] & 0xff];
+		}
+	}
 
-		// Mix the samples from packet and store the results in the samplePacket
-		int capacity = samplePacket.capacity();
-		int count = 0;
+	@Override
+	public int mixPacketIntoSamplePacket(byte[] packet, SamplePacket samplePacket, long channelFrequency) {
+		updateMixer(channelFrequency);	// retunes the oscillator if the channel frequency changed
+
+		// Convert the samples from packet into the samplePacket and mix them in place:
 		int startIndex = samplePacket.size();
-		if(startIndex >= capacity)
-			return 0; // SamplePacket is already full
-		if(cosineRealLookupTable.length == 0)
-			return 0; // Lookup Table is empty/invalid
-		if(cosineIndex >= cosineRealLookupTable.length)
-			cosineIndex = 0; // Potentially reset cosine index if table was altered and now is smaller
-		float[] re = samplePacket.re();
-		float[] im = samplePacket.im();
-		for (int i = 0; i < packet.length; i+=2) {
-			re[startIndex+count] = cosineRealLookupTable[cosineIndex][packet[i] & 0xff] - cosineImagLookupTable[cosineIndex][packet[i+1] & 0xff];
-			im[startIndex+count] = cosineRealLookupTable[cosineIndex][packet[i+1] & 0xff] + cosineImagLookupTable[cosineIndex][packet[i] & 0xff];
-			cosineIndex = (cosineIndex + 1) % cosineRealLookupTable.length;
-			count++;
-			if(startIndex+count >= capacity)
-				break;
-		}
-		samplePacket.setSize(samplePacket.size()+count);	// update the size of the sample packet
-		samplePacket.setSampleRate(sampleRate);				// update the sample rate
+		int count = fillPacketIntoSamplePacket(packet, samplePacket);
+		mixer.mix(samplePacket.re(), samplePacket.im(), startIndex, count);
 		samplePacket.setFrequency(channelFrequency);		// update the frequency
 		return count;
 	}
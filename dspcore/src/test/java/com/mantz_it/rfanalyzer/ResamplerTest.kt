@@ -1,18 +1,15 @@
 package com.mantz_it.rfanalyzer
 
-import android.util.Log
-import androidx.test.ext.junit.runners.AndroidJUnit4
 import com.mantz_it.rfanalyzer.analyzer.Decimator
 import com.mantz_it.rfanalyzer.analyzer.Resampler
+import com.mantz_it.rfanalyzer.dsp.Log
 import com.mantz_it.rfanalyzer.source.SamplePacket
 import org.junit.Assert.assertTrue
 import org.junit.Test
-import org.junit.runner.RunWith
 import java.util.concurrent.ArrayBlockingQueue
 import kotlin.math.cos
 import kotlin.math.sin
 
-@RunWith(AndroidJUnit4::class)
 class ResamplerTest {
 
     private val LOGTAG = "ResamplerTest"
@@ -114,4 +111,73 @@ class ResamplerTest {
         // We expect some small difference, but not huge
         assertTrue("MSE too high: $mse", mse < 0.003)
     }
+
+    @Test
+    fun testResamplerUpsampling() {
+        val inputRate = 48000        // e.g. a 48 kSps IQ recording
+        val outputRate = 384000      // WFM quadrature rate (interpolation by 8)
+        val freq = 1000.0            // sine frequency in Hz
+        val packetSize = 1024        // packet size in samples
+        val numPackets = 50
+
+        // Generate packets with an IQ sine wave
+        val inQueue = ArrayBlockingQueue<SamplePacket>(numPackets)
+        val retQueue = ArrayBlockingQueue<SamplePacket>(numPackets)
+        for (p in 0 until numPackets) {
+            val packet = SamplePacket(packetSize)
+            for (n in 0 until packetSize) {
+                val t = (p * packetSize + n).toDouble() / inputRate
+                packet.re()[n] = cos(2.0 * Math.PI * freq * t).toFloat()
+                packet.im()[n] = sin(2.0 * Math.PI * freq * t).toFloat()
+            }
+            packet.setSize(packetSize)
+            packet.sampleRate = inputRate
+            packet.sampleIndex = p.toLong() * packetSize
+            packet.timestamp = p.toLong() * packetSize * 1_000_000_000L / inputRate
+            inQueue.offer(packet)
+        }
+
+        val resampler = Resampler(outputRate, packetSize, inQueue, retQueue)
+        resampler.start()
+
+        // Collect outputs (and return the buffers, so that the resampler can continue)
+        val outRe = mutableListOf<Float>()
+        val outIm = mutableListOf<Float>()
+        var outputPackets = 0
+        var lastSampleIndex = -1L
+        while (true) {
+            val p = resampler.getResampledPacket(2000) ?: break
+            assertTrue("Wrong output sample rate: ${p.sampleRate}", p.sampleRate == outputRate)
+            // each output packet refers to the first input sample it was calculated from:
+            assertTrue("Sample index not increasing: ${p.sampleIndex}", p.sampleIndex > lastSampleIndex)
+            assertTrue("Timestamp doesn't match the sample index: ${p.timestamp}",
+                kotlin.math.abs(p.timestamp - p.sampleIndex * 1_000_000_000L / inputRate) <= 1)
+            lastSampleIndex = p.sampleIndex
+            repeat(p.size()) {
+                outRe.add(p.re(it))
+                outIm.add(p.im(it))
+            }
+            outputPackets++
+            resampler.returnResampledPacket(p)
+        }
+        resampler.stopResampler()
+
+        Log.i(LOGTAG, "Resampler produced ${outRe.size} samples in $outputPackets packets from ${numPackets * packetSize} samples")
+        assertTrue("Not all input packets were returned", retQueue.size == numPackets)
+        assertTrue("Expected multiple output packets per input packet", outputPackets >= numPackets * 8)
+        assertTrue("Wrong number of output samples: ${outRe.size}", kotlin.math.abs(outRe.size - numPackets * packetSize * 8) < 10)
+
+        // Check amplitude and phase increment of the tone (skip the filter transient):
+        val expectedPhaseStep = 2.0 * Math.PI * freq / outputRate
+        var maxError = 0.0
+        for (i in 1000 until outRe.size) {
+            val magnitude = kotlin.math.sqrt((outRe[i] * outRe[i] + outIm[i] * outIm[i]).toDouble())
+            val phaseStep = kotlin.math.atan2(
+                (outIm[i] * outRe[i-1] - outRe[i] * outIm[i-1]).toDouble(),
+                (outRe[i] * outRe[i-1] + outIm[i] * outIm[i-1]).toDouble())
+            maxError = maxOf(maxError, kotlin.math.abs(magnitude - 1.0), kotlin.math.abs(phaseStep - expectedPhaseStep) * outputRate / (2 * Math.PI * freq))
+        }
+        Log.i(LOGTAG, "Max. relative error of the upsampled tone = $maxError")
+        assertTrue("Upsampled tone is distorted: $maxError", maxError < 0.01)
+    }
 }
@@ -0,0 +1,28 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class AdtsHeaderTest {
+
+    @Test
+    fun testHeaderFields() {
+        val header = ByteArray(AdtsHeader.SIZE + 1)
+        AdtsHeader.write(header, 48000, 1, 371, offset = 1)
+        // AAC-LC, 48 kHz (index 3), mono, frame length 378 (header + payload), VBR
+        assertArrayEquals(byteArrayOf(0, 0xFF.toByte(), 0xF1.toByte(), 0x4C, 0x40, 0x2F, 0x5F, 0xFC.toByte()), header)
+
+        // frame length is spread over bytes 3 to 5 (13 bit)
+        AdtsHeader.write(header, 44100, 2, 8184)
+        val frameLength = ((header[3].toInt() and 3) shl 11) or ((header[4].toInt() and 0xFF) shl 3) or ((header[5].toInt() and 0xFF) shr 5)
+        assertEquals(8191, frameLength)
+        assertEquals(4, (header[2].toInt() shr 2) and 0xF)
+        assertEquals(2, ((header[2].toInt() and 1) shl 2) or ((header[3].toInt() and 0xFF) shr 6))
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun testUnsupportedSampleRate() {
+        AdtsHeader.samplingFrequencyIndex(50000)
+    }
+}
@@ -0,0 +1,62 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LoadGovernorTest {
+
+    @Test
+    fun testStepDownWithHoldOff() {
+        val governor = LoadGovernor(stepDownHoldOff = 2, stepUpDelay = 3)
+        assertFalse(governor.update(0.7f, 0))
+        assertEquals(LoadGovernor.Level.FULL, governor.level)
+
+        // overload: one step down, then wait for the hold off before the next step
+        assertTrue(governor.update(0.95f, 0))
+        assertEquals(LoadGovernor.Level.FFT_RATE, governor.level)
+        assertFalse(governor.update(0.95f, 0))
+        assertTrue(governor.update(0.95f, 0))
+        assertEquals(LoadGovernor.Level.AVERAGING, governor.level)
+
+        // new drops count as overload even if the load looks fine
+        governor.update(0.7f, 0)
+        assertTrue(governor.update(0.7f, 5))
+        assertEquals(LoadGovernor.Level.FFT_SIZE, governor.level)
+
+        // never below the lowest level
+        repeat(20) { governor.update(2f, 0) }
+        assertEquals(LoadGovernor.Level.FILTER_QUALITY, governor.level)
+    }
+
+    @Test
+    fun testStepUpAfterCalmPeriod() {
+        val governor = LoadGovernor(stepDownHoldOff = 0, stepUpDelay = 3)
+        governor.update(1f, 0)
+        governor.update(1f, 0)
+        assertEquals(LoadGovernor.Level.AVERAGING, governor.level)
+
+        // a load between the thresholds restarts the calm period
+        governor.update(0.2f, 0)
+        governor.update(0.2f, 0)
+        governor.update(0.7f, 0)
+        governor.update(0.2f, 0)
+        governor.update(0.2f, 0)
+        assertEquals(LoadGovernor.Level.AVERAGING, governor.level)
+        assertTrue(governor.update(0.2f, 0))
+        assertEquals(LoadGovernor.Level.FFT_RATE, governor.level)
+
+        governor.reset()
+        assertEquals(LoadGovernor.Level.FULL, governor.level)
+        assertFalse(governor.update(0.2f, 100))     // first update after reset: drops are unknown
+    }
+
+    @Test
+    fun testReducedFftSize() {
+        assertEquals(16384, LoadGovernor.reducedFftSize(16384, LoadGovernor.Level.AVERAGING))
+        assertEquals(4096, LoadGovernor.reducedFftSize(16384, LoadGovernor.Level.FFT_SIZE))
+        assertEquals(1024, LoadGovernor.reducedFftSize(2048, LoadGovernor.Level.FILTER_QUALITY))
+        assertEquals(512, LoadGovernor.reducedFftSize(512, LoadGovernor.Level.FFT_SIZE))
+    }
+}
@@ -0,0 +1,34 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.ByteArrayOutputStream
+
+class PreTriggerBufferTest {
+
+    private fun bytes(from: Int, count: Int) = ByteArray(count) { (from + it).toByte() }
+
+    @Test
+    fun testKeepsNewestBytes() {
+        val buffer = PreTriggerBuffer(100)
+        buffer.write(bytes(0, 30))
+        assertEquals(30, buffer.size)
+
+        // wrap around: 30 + 40 + 40 = 110 bytes, the oldest 10 are overwritten
+        buffer.write(bytes(30, 40))
+        buffer.write(bytes(70, 40))
+        assertEquals(100, buffer.size)
+        val output = ByteArrayOutputStream()
+        assertEquals(100, buffer.drainTo(output))
+        assertArrayEquals(bytes(10, 100), output.toByteArray())
+        assertEquals(0, buffer.size)
+
+        // empty buffer writes nothing; a packet larger than the buffer keeps its end
+        output.reset()
+        assertEquals(0, buffer.drainTo(output))
+        buffer.write(bytes(0, 250), offset = 10, length = 200)
+        buffer.drainTo(output)
+        assertArrayEquals(bytes(110, 100), output.toByteArray())
+    }
+}
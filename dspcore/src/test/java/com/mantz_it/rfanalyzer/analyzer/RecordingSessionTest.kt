@@ -0,0 +1,75 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.File
+import java.io.FileOutputStream
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class RecordingSessionTest {
+
+    @Test
+    fun testSquelchGateWithPreAndPostRoll() {
+        val file = File.createTempFile("recording", ".iq")
+        file.deleteOnExit()
+        // 1000 samples/s with 1 byte per sample: pre-roll of 20 ms = 20 bytes, post-roll 30 ms
+        val writer = RecordingWriter(FileOutputStream(file).channel, 1000, 1, bufferSize = 64)
+        val finished = CountDownLatch(1)
+        var finalSize = -1L
+        val session = RecordingSession(writer, onlyWhenSquelchIsSatisfied = true, preRoll = 0.02f, postRoll = 0.03f,
+            onRecordingStopped = { finalSize = it; finished.countDown() }, onFileSizeUpdate = { })
+
+        // packets of 10 bytes (10 ms). The value of each byte is the number of its packet:
+        fun write(packet: Int, squelchSatisfied: Boolean) =
+            session.write(ByteArray(10) { packet.toByte() }, 0, 10, squelchSatisfied, packet * 10_000_000L)
+        for (packet in 0 until 5) write(packet, false)     // only the last two packets are kept as pre-roll
+        write(5, true)
+        for (packet in 6 until 12) write(packet, false)    // post-roll: 30 ms after packet 5 (packets 6 and 7)
+        write(12, true)                                     // pre-roll: packets 10 and 11
+        session.stop()
+        assertTrue(session.update())
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS))
+        val expectedPackets = listOf(3, 4, 5, 6, 7, 10, 11, 12)
+        val expected = expectedPackets.flatMap { packet -> List(10) { packet.toByte() } }.toByteArray()
+        assertEquals(expected.size.toLong(), finalSize)
+        assertArrayEquals(expected, file.readBytes())
+    }
+
+    @Test
+    fun testPreRollLargerThanBacklogIsWrittenWithoutGaps() {
+        val file = File.createTempFile("recording", ".iq")
+        file.deleteOnExit()
+        // 100 kSps with 2 bytes per sample: the backlog needs the minimum of 4 buffers of 64 KB (256 KB).
+        // The pre-roll of 2 s (400000 bytes) is larger and must fit into the ring as well:
+        val preRoll = 2f
+        val bufferSize = 65536
+        val writer = RecordingWriter(FileOutputStream(file).channel, 100000, 2, preRoll, bufferSize = bufferSize)
+        val finished = CountDownLatch(1)
+        var finalSize = -1L
+        val session = RecordingSession(writer, onlyWhenSquelchIsSatisfied = true, preRoll = preRoll,
+            onRecordingStopped = { finalSize = it; finished.countDown() }, onFileSizeUpdate = { })
+
+        // 3 s of packets (2000 bytes = 10 ms each) with a running counter; the squelch opens with the last packet:
+        val packetSize = 2000
+        val packetCount = 301
+        val packet = ByteArray(packetSize)
+        for (i in 0 until packetCount) {
+            for (j in 0 until packetSize)
+                packet[j] = ((i * packetSize + j) % 251).toByte()
+            session.write(packet, 0, packetSize, i == packetCount - 1, i * 10_000_000L)
+        }
+        session.stop()
+        assertTrue(session.update())
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS))
+        val preRollBytes = (preRoll * 100000).toInt() * 2
+        val first = packetCount * packetSize - packetSize - preRollBytes    // first byte of the pre-roll in the stream
+        val expected = ByteArray(preRollBytes + packetSize) { ((first + it) % 251).toByte() }
+        assertEquals(expected.size.toLong(), finalSize)
+        assertArrayEquals(expected, file.readBytes())
+    }
+}
@@ -0,0 +1,71 @@
+package com.mantz_it.rfanalyzer.analyzer
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.File
+import java.io.FileOutputStream
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class RecordingWriterTest {
+
+    @Test
+    fun testWritesAllBytes() {
+        val file = File.createTempFile("recording", ".iq")
+        file.deleteOnExit()
+        val bufferSize = 4096
+        // 100 kSps * 2 bytes per sample -> the minimum of 4 buffers
+        val writer = RecordingWriter(FileOutputStream(file).channel, 100000, 2, bufferSize = bufferSize)
+        var finalSize = -1L
+        val finished = CountDownLatch(1)
+        writer.onFinished = { finalSize = it; finished.countDown() }
+
+        // packets which are not aligned to the buffer size; the writer thread frees the buffers in between
+        val expected = ByteArray(50000) { (it * 7).toByte() }
+        var position = 0
+        while (position < expected.size) {
+            val length = minOf(3000, expected.size - position)
+            writer.write(expected, position, length)
+            position += length
+            while (writer.backlog > 2L * bufferSize)
+                Thread.sleep(1)
+        }
+        writer.write(0x5A)      // single bytes go through the same buffer ring
+        assertEquals(expected.size + 1L, writer.acceptedBytes)
+        writer.close()
+
+        assertEquals(true, finished.await(5, TimeUnit.SECONDS))
+        assertEquals(expected.size + 1L, finalSize)
+        assertArrayEquals(expected + 0x5A.toByte(), file.readBytes())
+    }
+
+    @Test
+    fun testWavFileHeaderContainsFinalDataSize() {
+        val file = File.createTempFile("recording", ".wav")
+        file.deleteOnExit()
+        val writer = RecordingWriter(FileOutputStream(file).channel, 48000, 2,
+            bufferSize = 4096, fileHeader = WavFileHeader(48000))
+        var finalSize = -1L
+        val finished = CountDownLatch(1)
+        writer.onFinished = { finalSize = it; finished.countDown() }
+        val samples = ByteArray(10000) { it.toByte() }
+        writer.write(samples, 0, samples.size)
+        writer.close()
+
+        assertEquals(true, finished.await(5, TimeUnit.SECONDS))
+        val bytes = file.readBytes()
+        assertEquals(WavFileHeader.SIZE + samples.size.toLong(), finalSize)
+        assertEquals(finalSize, bytes.size.toLong())
+        val header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN)
+        assertEquals("RIFF", String(bytes, 0, 4, Charsets.US_ASCII))
+        assertEquals(bytes.size - 8, header.getInt(4))
+        assertEquals(48000, header.getInt(24))          // sample rate
+        assertEquals(96000, header.getInt(28))          // byte rate
+        assertEquals("data", String(bytes, 36, 4, Charsets.US_ASCII))
+        assertEquals(samples.size, header.getInt(40))
+        assertArrayEquals(samples, bytes.copyOfRange(WavFileHeader.SIZE, bytes.size))
+    }
+}
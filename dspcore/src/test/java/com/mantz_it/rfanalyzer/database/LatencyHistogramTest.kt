@@ -0,0 +1,47 @@
+package com.mantz_it.rfanalyzer.database
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class LatencyHistogramTest {
+
+    @Test
+    fun testBucketBounds() {
+        // every value must be below the upper bound of its bucket and at or above the bound of the previous bucket
+        var nanos = 1L
+        while (nanos < (1L shl 42)) {
+            for (value in listOf(nanos - 1, nanos, nanos + nanos / 3)) {
+                val index = LatencyHistogram.bucketIndex(value)
+                assertTrue("$value in bucket $index", index in 0 until LatencyHistogram.BUCKET_COUNT)
+                assertTrue("$value >= upper bound of bucket $index", value < LatencyHistogram.bucketUpperBound(index))
+                if (index > 0)
+                    assertTrue("$value < lower bound of bucket $index", value >= LatencyHistogram.bucketUpperBound(index - 1))
+            }
+            nanos *= 2
+        }
+    }
+
+    @Test
+    fun testPercentiles() {
+        val histogram = LatencyHistogram("test")
+        assertEquals(0f, histogram.getPercentileMs(50.0), 0f)
+        // 1 ms .. 100 ms in 1 ms steps:
+        for (i in 1..100)
+            histogram.record(i * 1_000_000L)
+        histogram.record(-5)        // ignored
+        histogram.recordSince(0)    // ignored
+        assertEquals(100, histogram.getCount())
+        assertEquals(50.5f, histogram.getMeanMs(), 0.01f)
+        assertEquals(100f, histogram.getMaxMs(), 0.01f)
+        // resolution of the buckets is 25%:
+        for (percentile in listOf(10.0, 50.0, 90.0, 99.0)) {
+            val value = histogram.getPercentileMs(percentile)
+            assertTrue("p$percentile = $value ms", value >= percentile && value <= percentile * 1.25 + 1)
+        }
+        assertEquals(100f, histogram.getPercentileMs(100.0), 0.01f)
+        histogram.reset()
+        assertEquals(0, histogram.getCount())
+        assertEquals(0f, histogram.getMaxMs(), 0f)
+    }
+}
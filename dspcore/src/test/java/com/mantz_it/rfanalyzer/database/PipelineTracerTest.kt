@@ -0,0 +1,45 @@
+package com.mantz_it.rfanalyzer.database
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.io.StringWriter
+
+class PipelineTracerTest {
+
+    @Test
+    fun testRingBufferAndChromeTrace() {
+        PipelineTracer.stop()
+        PipelineTracer.record(PipelineTracer.Stage.FFT, 0, 1000)   // disabled: not recorded
+        PipelineTracer.start()
+        assertEquals(0, PipelineTracer.getEventCount())
+
+        // overfill the ring buffer by 10 events: the oldest 10 are overwritten
+        val total = PipelineTracer.CAPACITY + 10
+        for (i in 0 until total)
+            PipelineTracer.record(PipelineTracer.Stage.SCHEDULER, i * 2000L, i * 2000L + 1500)
+        PipelineTracer.stop()
+        assertEquals(PipelineTracer.CAPACITY, PipelineTracer.getEventCount())
+
+        val writer = StringWriter()
+        PipelineTracer.writeChromeTrace(writer)
+        val lines = writer.toString().lines()
+        val events = lines.filter { it.contains("\"ph\":\"X\"") }
+        assertEquals(PipelineTracer.CAPACITY, events.size)
+        // oldest remaining event first, timestamps in microseconds:
+        assertTrue(events.first(), events.first().contains("\"name\":\"Scheduler packet\"") && events.first().contains("\"ts\":20.000,\"dur\":1.500"))
+        assertTrue(events.last(), events.last().contains("\"ts\":${(total - 1) * 2}.000"))
+        assertTrue(lines.any { it.contains("\"ph\":\"M\"") && it.contains(Thread.currentThread().name) })
+        assertTrue(lines.first().startsWith("{\"displayTimeUnit\":\"ms\",\"traceEvents\":["))
+        assertFalse(writer.toString().contains(",\n\n]"))
+
+        // a restart clears the thread names: the thread registers its name again
+        PipelineTracer.start()
+        PipelineTracer.record(PipelineTracer.Stage.FFT, 0, 1000)
+        PipelineTracer.stop()
+        val restarted = StringWriter()
+        PipelineTracer.writeChromeTrace(restarted)
+        assertTrue(restarted.toString().lines().any { it.contains("\"ph\":\"M\"") && it.contains(Thread.currentThread().name) })
+    }
+}
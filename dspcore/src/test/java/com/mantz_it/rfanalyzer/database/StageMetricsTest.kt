@@ -0,0 +1,42 @@
+package com.mantz_it.rfanalyzer.database
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import kotlin.concurrent.thread
+
+class StageMetricsTest {
+
+    @Test
+    fun testLoadAndQueue() {
+        val metrics = StageMetrics("test")
+        assertEquals(0f, metrics.getLoad(), 0f)
+        // first sample initializes the EMA, then it converges towards the new value:
+        metrics.recordProcessing(5_000_000, 10_000_000f, 1000, 500)
+        assertEquals(0.5f, metrics.getLoad(), 1e-6f)
+        repeat(500) { metrics.recordProcessing(2_000_000, 10_000_000f, 1000, 500) }
+        assertEquals(0.2f, metrics.getLoad(), 1e-3f)
+        assertEquals(501_000, metrics.getSamplesIn())
+        assertEquals(250_500, metrics.getSamplesOut())
+        assertEquals(501, metrics.processingTime.getCount())
+
+        metrics.recordQueue(0, 3)
+        metrics.recordQueue(0, 1)
+        assertEquals(1, metrics.getQueueSize())
+        assertEquals(3, metrics.getMaxQueueSize())
+        assertEquals(0, metrics.queueLatency.getCount())    // unknown enqueue time is not recorded
+
+        metrics.reset()
+        assertEquals(0f, metrics.getLoad(), 0f)
+        assertEquals(0, metrics.getSamplesIn())
+        assertEquals(0, metrics.getMaxQueueSize())
+    }
+
+    @Test
+    fun testConcurrentDrops() {
+        val counter = DropCounter("test")
+        val threads = List(4) { thread { repeat(10000) { counter.record(16) } } }
+        threads.forEach { it.join() }
+        assertEquals(40000, counter.getPackets())
+        assertEquals(640000, counter.getSamples())
+    }
+}
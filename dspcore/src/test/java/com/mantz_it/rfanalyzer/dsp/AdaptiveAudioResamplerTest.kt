@@ -0,0 +1,101 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.sin
+import kotlin.random.Random
+
+class AdaptiveAudioResamplerTest {
+
+    /**
+     * Simulates one hour of audio playback: packets arrive according to the SDR clock (with up to
+     * 20 ms of scheduling jitter) while the audio hardware consumes the samples according to its
+     * own clock which differs by 'drift'. Returns the min. and max. fill level after the
+     * controller has settled and the number of underruns.
+     */
+    private fun simulate(packetFrames: Int, drift: Double): Triple<Int, Int, Int> {
+        val sampleRate = 48000
+        val targetFill = sampleRate / 20        // 50 ms
+        val resampler = AdaptiveAudioResampler(sampleRate, targetFill)
+        val input = SamplePacket(packetFrames)
+        input.setSize(packetFrames)
+        input.sampleRate = sampleRate
+        val output = SamplePacket(resampler.maxOutputSize(packetFrames))
+        val random = Random(3)
+        val packetDuration = packetFrames.toDouble() / sampleRate
+        val audioRate = sampleRate * (1 + drift)
+
+        var written = targetFill.toLong()       // prefill (see AudioSink)
+        var consumed = 0.0
+        var time = 0.0
+        var nominalArrival = -packetDuration
+        var underruns = 0
+        var minFill = Int.MAX_VALUE
+        var maxFill = 0
+        while (time < 3600) {
+            nominalArrival += packetDuration
+            val arrival = nominalArrival + random.nextDouble(0.0, 0.02)
+            consumed += (arrival - time) * audioRate
+            time = arrival
+            var fill = written - consumed.toLong()
+            if (fill < 0) {
+                underruns++
+                consumed = written.toDouble()
+                fill = 0
+            }
+            if (time > 600) {   // controller has settled
+                minFill = minOf(minFill, fill.toInt())
+                maxFill = maxOf(maxFill, fill.toInt())
+            }
+            resampler.update(fill.toInt(), packetFrames)
+            resampler.resample(input, output)
+            assertTrue("Output overflow", output.size() <= resampler.maxOutputSize(packetFrames))
+            written += output.size()
+        }
+        return Triple(minFill, maxFill, underruns)
+    }
+
+    @Test
+    fun testClockDriftCompensation() {
+        for (packetFrames in listOf(1024, 8192)) {
+            for (drift in listOf(-1000e-6, 0.0, 300e-6, 1000e-6)) {
+                val (minFill, maxFill, underruns) = simulate(packetFrames, drift)
+                println("packet=$packetFrames drift=${drift * 1e6} ppm: fill=[$minFill..$maxFill] frames, underruns=$underruns")
+                assertTrue("Underruns: $underruns", underruns == 0)
+                // latency must stay bounded: 50 ms target + 20 ms jitter + one packet + margin
+                assertTrue("Latency not bounded: $maxFill frames", maxFill < 2400 + 960 + packetFrames + 1000)
+            }
+        }
+    }
+
+    @Test
+    fun testResamplingPreservesTone() {
+        val sampleRate = 48000
+        val frequency = 1000.0
+        val resampler = AdaptiveAudioResampler(sampleRate, 2400)
+        resampler.update(0, 4096)   // empty buffer -> ratio > 1
+        val ratio = resampler.ratio
+        assertTrue("Ratio not increased: $ratio", ratio > 1.0)
+
+        val input = SamplePacket(4096)
+        for (i in 0 until 4096)
+            input.re()[i] = sin(2 * PI * frequency * i / sampleRate).toFloat()
+        input.setSize(4096)
+        input.sampleRate = sampleRate
+        val output = SamplePacket(resampler.maxOutputSize(4096))
+        resampler.resample(input, output)
+        assertTrue("Wrong output size: ${output.size()}", abs(output.size() - 4096 * ratio) < 2)
+
+        // output sample k corresponds to input position k/ratio (delayed by the interpolator by 2 samples)
+        var maxError = 0.0
+        for (k in 100 until output.size() - 100) {
+            val position = k / ratio - 2
+            maxError = maxOf(maxError, abs(output.re()[k] - sin(2 * PI * frequency * position / sampleRate)))
+        }
+        println("ratio=$ratio max. error=$maxError")
+        assertTrue("Interpolation error too large: $maxError", maxError < 1e-3)
+    }
+}
@@ -0,0 +1,64 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class AsyncFilterDesignerTest {
+
+    @Test
+    fun testDesignFailureAndBackgroundSwap() {
+        val designer = AsyncFilterDesigner<Int, String>("Test") { key ->
+            require(key > 0) { "invalid key" }
+            "filter$key"
+        }
+        // synchronous design which throws: no exception on the calling thread
+        assertNull(designer.get(-1, synchronous = true))
+        assertNull(AsyncFilterDesigner<Int, String>("Test") { throw IllegalStateException("broken") }.get(1, synchronous = true))
+
+        assertEquals("filter1", designer.get(1, synchronous = true))
+        // the old instance is used until the background design is finished
+        assertEquals("filter1", designer.get(2))
+        val deadline = System.currentTimeMillis() + 5000
+        while (designer.get(2) != "filter2" && System.currentTimeMillis() < deadline)
+            Thread.sleep(1)
+        assertEquals(2, designer.currentKey)
+        assertEquals("filter2", designer.current)
+    }
+
+    @Test
+    fun testOutdatedDesignIsDiscardedWhenGoingBack() {
+        val designStarted = CountDownLatch(1)
+        val releaseDesign = CountDownLatch(1)
+        val designer = AsyncFilterDesigner<Int, String>("Test") { key ->
+            if (key == 2) {
+                designStarted.countDown()
+                releaseDesign.await(5, TimeUnit.SECONDS)
+            }
+            "filter$key"
+        }
+        assertEquals("filter1", designer.get(1, synchronous = true))
+        assertEquals("filter1", designer.get(2))    // starts the design of 2 in the background
+        assertTrue(designStarted.await(5, TimeUnit.SECONDS))
+        assertEquals("filter1", designer.get(1))    // back to 1 before 2 is finished
+        releaseDesign.countDown()
+
+        // the worker processes the requests in order: once the design of another designer ran,
+        // the (outdated) result for 2 is handed over as well
+        val otherDesigned = CountDownLatch(1)
+        val other = AsyncFilterDesigner<Int, String>("Other") { key ->
+            if (key == 2) otherDesigned.countDown()
+            "other$key"
+        }
+        other.get(1, synchronous = true)
+        other.get(2)
+        assertTrue(otherDesigned.await(5, TimeUnit.SECONDS))
+        Thread.sleep(10)
+
+        assertEquals("filter1", designer.get(1))
+        assertEquals(1, designer.currentKey)
+    }
+}
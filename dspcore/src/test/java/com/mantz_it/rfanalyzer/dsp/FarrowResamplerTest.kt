@@ -0,0 +1,95 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.log10
+import kotlin.math.sin
+
+class FarrowResamplerTest {
+
+    /**
+     * Resamples a complex tone in chunks of 16384 samples and returns the SNR (in dB) of the
+     * output compared to an ideal tone at the output rate. Only the second half of the output is
+     * evaluated to exclude the filter transients.
+     */
+    private fun measureSnr(resampler: ResamplerInterface, inputRate: Int, outputRate: Int, frequency: Double): Double {
+        val numSamples = inputRate / 4
+        val inPacket = SamplePacket(numSamples)
+        for (i in 0 until numSamples) {
+            val phase = 2 * PI * frequency * i / inputRate
+            inPacket.re()[i] = cos(phase).toFloat()
+            inPacket.im()[i] = sin(phase).toFloat()
+        }
+        inPacket.setSize(numSamples)
+        inPacket.sampleRate = inputRate
+
+        val outPacket = SamplePacket((numSamples.toLong() * outputRate / inputRate + 1000).toInt())
+        var offset = 0
+        while (offset < numSamples) {
+            val consumed = resampler.resample(inPacket, outPacket, offset, minOf(16384, numSamples - offset))
+            assertTrue("Resampler did not consume any samples", consumed > 0)
+            offset += consumed
+        }
+
+        // estimate the complex amplitude of the tone in the output:
+        val start = outPacket.size() / 2
+        val end = outPacket.size()
+        var ampRe = 0.0
+        var ampIm = 0.0
+        for (k in start until end) {
+            val phase = 2 * PI * frequency * k / outputRate
+            ampRe += outPacket.re()[k] * cos(phase) + outPacket.im()[k] * sin(phase)
+            ampIm += outPacket.im()[k] * cos(phase) - outPacket.re()[k] * sin(phase)
+        }
+        ampRe /= (end - start)
+        ampIm /= (end - start)
+
+        // compare with the ideal tone:
+        var signal = 0.0
+        var error = 0.0
+        for (k in start until end) {
+            val phase = 2 * PI * frequency * k / outputRate
+            val idealRe = ampRe * cos(phase) - ampIm * sin(phase)
+            val idealIm = ampRe * sin(phase) + ampIm * cos(phase)
+            val dr = outPacket.re()[k] - idealRe
+            val di = outPacket.im()[k] - idealIm
+            signal += idealRe * idealRe + idealIm * idealIm
+            error += dr * dr + di * di
+        }
+        return 10 * log10(signal / error)
+    }
+
+    @Test
+    fun testSnrParityWithRationalResampler() {
+        // Odd input rate: the exact rational representation would need 96000 polyphase sub filters
+        val inputRate = 1234567
+        val outputRate = 96000
+        val (interpolation, decimation) = RationalResampler.limitDenominator(outputRate, inputRate, 10000)
+
+        for (relativeFrequency in listOf(0.05, 0.2, 0.35)) {
+            val frequency = relativeFrequency * outputRate
+            val snrRational = measureSnr(RationalResampler(interpolation, decimation, maxTaps = 500), inputRate, outputRate, frequency)
+            val snrFarrow = measureSnr(FarrowResampler(inputRate, outputRate), inputRate, outputRate, frequency)
+            println("f=$frequency Hz: SNR RationalResampler ($interpolation/$decimation) = $snrRational dB, SNR FarrowResampler = $snrFarrow dB")
+            assertTrue("FarrowResampler SNR too low: $snrFarrow dB", snrFarrow > 60)
+            assertTrue("FarrowResampler SNR ($snrFarrow dB) worse than RationalResampler ($snrRational dB)", snrFarrow >= snrRational)
+        }
+    }
+
+    @Test
+    fun testOutputFitsIntoPacket() {
+        val resampler = FarrowResampler(1000000, 44100)
+        val inPacket = SamplePacket(100000)
+        inPacket.setSize(100000)
+        inPacket.sampleRate = 1000000
+        val outPacket = SamplePacket(1000)
+        val consumed = resampler.resample(inPacket, outPacket, 0, inPacket.size())
+        println("consumed=$consumed out=${outPacket.size()}")
+        assertTrue("Resampler should stop when the output packet is full", consumed < inPacket.size())
+        assertTrue("Output packet overflow", outPacket.size() <= outPacket.capacity())
+        assertTrue("Output packet is not filled", outPacket.size() > outPacket.capacity() - 50)
+    }
+}
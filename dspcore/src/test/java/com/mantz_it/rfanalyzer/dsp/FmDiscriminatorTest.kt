@@ -0,0 +1,88 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.atan2
+import kotlin.math.cos
+import kotlin.math.log10
+import kotlin.math.sin
+import kotlin.random.Random
+
+class FmDiscriminatorTest {
+
+    @Test
+    fun testFastAtan2ErrorBound() {
+        val random = Random(42)
+        var maxError = 0.0
+        for (i in 0 until 1000000) {
+            val angle = -PI + 2 * PI * i / 1000000
+            val magnitude = random.nextDouble(1e-6, 1e3)
+            val x = (magnitude * cos(angle)).toFloat()
+            val y = (magnitude * sin(angle)).toFloat()
+            val error = abs(FmDiscriminator.fastAtan2(y, x) - atan2(y.toDouble(), x.toDouble()))
+            if (error < PI) // the sign of +-PI depends on the sign of y and may flip due to rounding
+                maxError = maxOf(maxError, error)
+        }
+        println("Max. fastAtan2 error: $maxError rad")
+        assertTrue("fastAtan2 error too large: $maxError", maxError < FmDiscriminator.MAX_FAST_ATAN2_ERROR)
+        assertTrue("fastAtan2(0, 0) must be 0", FmDiscriminator.fastAtan2(0f, 0f) == 0f)
+    }
+
+    /**
+     * FM modulates a 1 kHz tone (with noise of the given amplitude), demodulates it in packets
+     * and returns the SNR (in dB) of the audio compared to the ideal tone.
+     */
+    private fun measureAudioSnr(mode: FmDiscriminator.Mode, noiseAmplitude: Double): Double {
+        val sampleRate = 384000
+        val deviation = 75000.0
+        val toneFrequency = 1000.0
+        val packetSize = 16384
+        val numPackets = 10
+        val random = Random(1)
+        val discriminator = FmDiscriminator(mode)
+        val gain = (sampleRate / (2 * PI * deviation)).toFloat()
+        val input = SamplePacket(packetSize)
+        val output = SamplePacket(packetSize)
+        var phase = 0.0
+        var signal = 0.0
+        var error = 0.0
+        for (p in 0 until numPackets) {
+            for (i in 0 until packetSize) {
+                val n = p * packetSize + i
+                phase += 2 * PI * deviation * sin(2 * PI * toneFrequency * n / sampleRate) / sampleRate
+                input.re()[i] = (cos(phase) + noiseAmplitude * random.nextDouble(-1.0, 1.0)).toFloat()
+                input.im()[i] = (sin(phase) + noiseAmplitude * random.nextDouble(-1.0, 1.0)).toFloat()
+            }
+            input.setSize(packetSize)
+            discriminator.demodulate(input, output, gain)
+            assertTrue("Wrong output size", output.size() == packetSize)
+            if (p == 0)
+                continue    // skip the first packet (transient of the first sample)
+            for (i in 0 until packetSize) {
+                val n = p * packetSize + i
+                val ideal = sin(2 * PI * toneFrequency * n / sampleRate)
+                signal += ideal * ideal
+                error += (output.re()[i] - ideal) * (output.re()[i] - ideal)
+            }
+        }
+        return 10 * log10(signal / error)
+    }
+
+    @Test
+    fun testAudioSnr() {
+        // clean signal: the approximation error alone must not limit the audio quality
+        val snrExactClean = measureAudioSnr(FmDiscriminator.Mode.EXACT, 0.0)
+        val snrFastClean = measureAudioSnr(FmDiscriminator.Mode.FAST, 0.0)
+        println("Clean signal: SNR exact = $snrExactClean dB, SNR fast = $snrFastClean dB")
+        assertTrue("Audio SNR of the fast discriminator too low: $snrFastClean dB", snrFastClean > 80)
+
+        // noisy signal: both discriminators must deliver the same audio quality
+        val snrExactNoisy = measureAudioSnr(FmDiscriminator.Mode.EXACT, 0.05)
+        val snrFastNoisy = measureAudioSnr(FmDiscriminator.Mode.FAST, 0.05)
+        println("Noisy signal: SNR exact = $snrExactNoisy dB, SNR fast = $snrFastNoisy dB")
+        assertTrue("Fast discriminator degrades the audio SNR: $snrFastNoisy dB vs. $snrExactNoisy dB", abs(snrExactNoisy - snrFastNoisy) < 0.1)
+    }
+}
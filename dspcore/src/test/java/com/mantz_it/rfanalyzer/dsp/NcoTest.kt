@@ -0,0 +1,116 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import com.mantz_it.rfanalyzer.source.Signed8BitIQConverter
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+class NcoTest {
+
+    @Test
+    fun testFrequencyResolution() {
+        val nco = Nco()
+        for (sampleRate in listOf(250000, 2400000, 20000000)) {
+            for (frequency in listOf(1L, 12345L, -sampleRate / 7L + 3, sampleRate / 3L, -sampleRate / 2L + 1)) {
+                nco.setFrequency(frequency, sampleRate)
+                val error = abs(nco.getExactFrequency() - frequency)
+                println("fs=$sampleRate f=$frequency exact=${nco.getExactFrequency()} error=$error Hz")
+                assertTrue("Frequency error too large: $error Hz", error <= sampleRate / 8589934592.0 + 1e-9)
+                assertTrue("Frequency error not sub-Hz: $error Hz", error < 0.01)
+            }
+        }
+    }
+
+    @Test
+    fun testMixAccuracy() {
+        // Mix a constant (DC) signal over many packets and compare with an ideal oscillator
+        val sampleRate = 2400000
+        val frequency = 123457L
+        val packetSize = 16384
+        val nco = Nco()
+        nco.setFrequency(frequency, sampleRate)
+        val re = FloatArray(packetSize)
+        val im = FloatArray(packetSize)
+        var maxError = 0.0
+        for (p in 0 until 50) {
+            re.fill(1f)
+            im.fill(0f)
+            nco.mix(re, im, 0, packetSize)
+            for (i in 0 until packetSize) {
+                val n = p.toLong() * packetSize + i
+                val phase = 2 * PI * ((nco.phaseIncrement.toLong() and 0xFFFFFFFFL) * n % 4294967296L) / 4294967296.0
+                maxError = maxOf(maxError, abs(re[i] - cos(phase)), abs(im[i] - sin(phase)))
+            }
+        }
+        println("Max. NCO error: $maxError")
+        assertTrue("NCO error too large: $maxError", maxError < 2e-5)
+    }
+
+    @Test
+    fun testConverterMixesChannelToBaseband() {
+        val sampleRate = 1000000
+        val centerFrequency = 100000000L
+        val channelOffset = 123456L
+        val numSamples = 10000
+
+        // signed 8-bit IQ tone at centerFrequency + channelOffset:
+        val bytes = ByteArray(numSamples * 2)
+        for (i in 0 until numSamples) {
+            val phase = 2 * PI * channelOffset * i / sampleRate
+            bytes[2 * i] = (cos(phase) * 100).roundToInt().toByte()
+            bytes[2 * i + 1] = (sin(phase) * 100).roundToInt().toByte()
+        }
+
+        val converter = Signed8BitIQConverter()
+        converter.frequency = centerFrequency
+        converter.sampleRate = sampleRate
+        val packet = SamplePacket(numSamples)
+        val count = converter.mixPacketIntoSamplePacket(bytes, packet, centerFrequency + channelOffset)
+        assertTrue("Not all samples converted", count == numSamples)
+        assertTrue("Wrong frequency in packet", packet.frequency == centerFrequency + channelOffset)
+
+        // the tone must be at DC now: all samples are (almost) identical
+        var maxDeviation = 0f
+        for (i in 1 until numSamples) {
+            maxDeviation = maxOf(maxDeviation, abs(packet.re(i) - packet.re(0)), abs(packet.im(i) - packet.im(0)))
+        }
+        println("Max. deviation from DC: $maxDeviation")
+        assertTrue("Channel was not mixed to baseband: $maxDeviation", maxDeviation < 0.02f)
+    }
+
+    @Test
+    fun testMixAndDecimateMatchesSeparateSteps() {
+        val sampleRate = 2400000
+        val decimation = 6
+        val numSamples = 16384
+        val bytes = ByteArray(numSamples * 2) { ((it * 37) % 251 - 125).toByte() }
+
+        // separate steps: convert + mix into a full rate packet, then decimate
+        val converter1 = Signed8BitIQConverter()
+        converter1.sampleRate = sampleRate
+        val fullRate = SamplePacket(numSamples)
+        converter1.mixPacketIntoSamplePacket(bytes, fullRate, 200000)
+        val filter1 = FirFilter.createLowPass(decimation, 1f, sampleRate.toFloat(), 200000f, 150000f, 60f)!!
+        val expected = SamplePacket(numSamples / decimation + 1)
+        filter1.filter(fullRate, expected, 0, fullRate.size())
+
+        // fused kernel
+        val converter2 = Signed8BitIQConverter()
+        converter2.sampleRate = sampleRate
+        val filter2 = FirFilter.createLowPass(decimation, 1f, sampleRate.toFloat(), 200000f, 150000f, 60f)!!
+        val decimated = SamplePacket(numSamples / decimation + 1)
+        val consumed = converter2.mixAndDecimatePacketIntoSamplePacket(bytes, decimated, 200000, filter2)
+
+        assertTrue("Not all samples consumed: $consumed", consumed == numSamples)
+        assertTrue("Wrong size: ${decimated.size()} != ${expected.size()}", decimated.size() == expected.size())
+        assertTrue("Wrong sample rate: ${decimated.sampleRate}", decimated.sampleRate == sampleRate / decimation)
+        for (i in 0 until expected.size()) {
+            assertTrue("Sample $i differs", abs(decimated.re(i) - expected.re(i)) < 1e-6f && abs(decimated.im(i) - expected.im(i)) < 1e-6f)
+        }
+    }
+}
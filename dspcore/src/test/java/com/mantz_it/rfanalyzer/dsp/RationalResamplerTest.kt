@@ -1,17 +1,14 @@
 package com.mantz_it.rfanalyzer.dsp
 
-import androidx.test.ext.junit.runners.AndroidJUnit4
 import com.mantz_it.rfanalyzer.source.SamplePacket
 import org.junit.Assert.assertTrue
 import org.junit.Test
-import org.junit.runner.RunWith
 import kotlin.math.PI
 import kotlin.math.cos
 import kotlin.math.min
 import kotlin.math.sin
 import kotlin.math.sqrt
 
-@RunWith(AndroidJUnit4::class)
 class RationalResamplerTest {
 
     @Test
@@ -0,0 +1,110 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.nativedsp.NativeDsp
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.log10
+import kotlin.math.sin
+import kotlin.math.sqrt
+import kotlin.random.Random
+
+class SpectrumFftTest {
+
+    private fun createSignal(size: Int): Pair<FloatArray, FloatArray> {
+        val random = Random(42)
+        val re = FloatArray(size) { (0.5 * cos(2 * PI * 0.1 * it) + 0.1 * cos(-2 * PI * 0.3 * it)).toFloat() + random.nextFloat() * 0.01f }
+        val im = FloatArray(size) { (0.5 * sin(2 * PI * 0.1 * it) + 0.1 * sin(-2 * PI * 0.3 * it)).toFloat() + random.nextFloat() * 0.01f }
+        return Pair(re, im)
+    }
+
+    /**
+     * Reference: Blackman window, direct DFT, log magnitude centered around the 0-frequency
+     */
+    private fun referenceMagnitudes(re: FloatArray, im: FloatArray): FloatArray {
+        val n = re.size
+        val mag = FloatArray(n)
+        for (k in 0 until n) {
+            var sumRe = 0.0
+            var sumIm = 0.0
+            for (i in 0 until n) {
+                val w = 0.42 - 0.5 * cos(2 * PI * i / (n - 1)) + 0.08 * cos(4 * PI * i / (n - 1))
+                val angle = -2 * PI * k * i / n
+                sumRe += w * (re[i] * cos(angle) - im[i] * sin(angle))
+                sumIm += w * (re[i] * sin(angle) + im[i] * cos(angle))
+            }
+            mag[(k + n / 2) % n] = (10 * log10(sqrt((sumRe / n) * (sumRe / n) + (sumIm / n) * (sumIm / n)))).toFloat()
+        }
+        return mag
+    }
+
+    private fun maxError(a: FloatArray, b: FloatArray): Float = a.indices.maxOf { abs(a[it] - b[it]) }
+
+    @Test
+    fun testJavaFftMatchesDft() {
+        for (size in listOf(16, 256, 1024)) {
+            val (re, im) = createSignal(size)
+            val mag = FloatArray(size)
+            assertTrue(JavaFft().performWindowedFftAndReturnMag(re, im, mag))
+            val error = maxError(mag, referenceMagnitudes(re, im))
+            println("testJavaFftMatchesDft: size=$size max error=$error dB")
+            assertTrue("JavaFft differs from DFT by $error dB (size=$size)", error < 0.01f)
+        }
+    }
+
+    @Test
+    fun testJavaFftRejectsUnsupportedSizes() {
+        val fft = JavaFft()
+        assertTrue(!fft.performWindowedFftAndReturnMag(FloatArray(100), FloatArray(100), FloatArray(100)))
+        assertTrue(!fft.performWindowedFftAndReturnMag(FloatArray(128), FloatArray(64), FloatArray(128)))
+    }
+
+    @Test
+    fun testNativeFftMatchesJavaFft() {
+        if (!SpectrumFft.isNativeAvailable) {
+            println("testNativeFftMatchesJavaFft: native library not available (build it with -PnativeDsp). skip.")
+            return
+        }
+        for (size in listOf(1024, 16384)) {
+            val (re, im) = createSignal(size)
+            val javaMag = FloatArray(size)
+            val nativeMag = FloatArray(size)
+            JavaFft().performWindowedFftAndReturnMag(re, im, javaMag)
+            NativeDsp().performWindowedFftAndReturnMag(re, im, nativeMag)
+            val error = maxError(javaMag, nativeMag)
+            println("testNativeFftMatchesJavaFft: size=$size max error=$error dB")
+            assertTrue("JavaFft differs from native FFT by $error dB (size=$size)", error < 0.05f)
+        }
+    }
+
+    @Test
+    fun testNativeFftInstancesRunInParallel() {
+        if (!SpectrumFft.isNativeAvailable) {
+            println("testNativeFftInstancesRunInParallel: native library not available (build it with -PnativeDsp). skip.")
+            return
+        }
+        // Two instances with different FFT sizes (like the live FftProcessor and an OfflineProcessor)
+        // must not disturb each other's native state:
+        val errors = FloatArray(2)
+        val threads = listOf(1024, 4096).mapIndexed { t, size ->
+            Thread {
+                val (re, im) = createSignal(size)
+                val javaMag = FloatArray(size)
+                val nativeMag = FloatArray(size)
+                JavaFft().performWindowedFftAndReturnMag(re, im, javaMag)
+                val fft = NativeDsp()
+                for (i in 0 until 200) {
+                    fft.performWindowedFftAndReturnMag(re, im, nativeMag)
+                    errors[t] = maxOf(errors[t], maxError(javaMag, nativeMag))
+                }
+                fft.release()
+            }
+        }
+        threads.forEach { it.start() }
+        threads.forEach { it.join() }
+        println("testNativeFftInstancesRunInParallel: max errors=${errors.toList()} dB")
+        assertTrue("Parallel native FFTs differ from JavaFft by ${errors.toList()} dB", errors.all { it < 0.05f })
+    }
+}
@@ -0,0 +1,79 @@
+package com.mantz_it.rfanalyzer.dsp
+
+import com.mantz_it.rfanalyzer.source.SamplePacket
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.random.Random
+
+class SquelchTest {
+    private val sampleRate = 96000
+    private val packetSize = 1024
+    private val random = Random(1)
+
+    /**
+     * Creates a packet of complex noise (power 2 * noise^2) and a carrier of the given amplitude
+     * (power amplitude^2), which starts at sample carrierStart of the packet
+     */
+    private fun packet(noise: Float, amplitude: Float, carrierStart: Int = 0): SamplePacket {
+        val packet = SamplePacket(packetSize)
+        packet.sampleRate = sampleRate
+        val re = packet.re()
+        val im = packet.im()
+        for (i in 0 until packetSize) {
+            re[i] = noise * random.nextFloat() * 2 - noise + (if (i >= carrierStart) amplitude else 0f)
+            im[i] = noise * random.nextFloat() * 2 - noise
+        }
+        packet.setSize(packetSize)
+        return packet
+    }
+
+    @Test
+    fun testOpenAndClose() {
+        val squelch = Squelch()
+        squelch.threshold = 0.01f       // -20 dB
+        // noise only (power ~ 2/3 * 0.01^2): closed, nothing audible
+        repeat(10) { assertFalse(squelch.process(packet(0.01f, 0f))) }
+        assertFalse(squelch.isOpen)
+
+        // the carrier starts in the middle of the packet (power 0.1): the gate opens within the attack time
+        assertTrue(squelch.process(packet(0.01f, 0.316f, carrierStart = 500)))
+        assertTrue(squelch.isOpen)
+        val audio = SamplePacket(packetSize)
+        audio.setSize(packetSize)
+        audio.re().fill(1f)
+        squelch.applyGain(audio)
+        assertEquals(0f, audio.re()[500], 0f)               // muted before the carrier
+        val firstAudible = audio.re().indexOfFirst { it > 0f }
+        assertTrue("opened at $firstAudible", firstAudible in 500 until 500 + (Squelch.ATTACK_TIME * sampleRate).toInt())
+        assertEquals(1f, audio.re()[packetSize - 1], 0f)    // fully open after the ramp
+
+        // carrier is gone: the gate stays open for the hang time (after the envelope decayed), then closes
+        val hangPackets = (Squelch.HANG_TIME * sampleRate / packetSize).toInt()
+        repeat(hangPackets - 1) {
+            assertTrue(squelch.process(packet(0.01f, 0f)))
+        }
+        repeat(10) { squelch.process(packet(0.01f, 0f)) }
+        assertFalse(squelch.isOpen)
+        assertFalse(squelch.process(packet(0.01f, 0f)))
+    }
+
+    @Test
+    fun testDisabled() {
+        val squelch = Squelch()
+        assertTrue(squelch.process(packet(0.001f, 0f)))
+        assertTrue(squelch.isOpen)
+        assertEquals(2f / 3 * 0.001f * 0.001f, squelch.meanPower, 1e-7f)
+    }
+
+    @Test
+    fun testSignalStrengthConversion() {
+        val power = 0.0123f
+        val signalStrength = Squelch.powerToSignalStrength(power, 2000000, 16384, 200000)
+        assertEquals(power, Squelch.signalStrengthToPower(signalStrength, 2000000, 16384, 200000), power * 1e-4f)
+        // 4 times the FFT size: the noise level of the FFT bins is 6 dB lower (in the 10*log10(|X|) scale: 3 dB)
+        assertEquals(signalStrength - 3.01f, Squelch.powerToSignalStrength(power, 2000000, 4 * 16384, 200000), 0.01f)
+        assertEquals(-999f, Squelch.powerToSignalStrength(0f, 2000000, 16384, 200000), 0f)
+    }
+}
@@ -0,0 +1,107 @@
+package com.mantz_it.rfanalyzer.source
+
+import com.mantz_it.rfanalyzer.dsp.JavaFft
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Format
+import com.mantz_it.rfanalyzer.source.SignalGenerator.Signal
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.abs
+import kotlin.math.atan2
+import kotlin.math.sqrt
+
+class SignalGeneratorTest {
+
+    private val sampleRate = 1000000
+
+    /** @return frequency of the strongest FFT bin */
+    private fun peakFrequency(re: FloatArray, im: FloatArray): Float {
+        val mag = FloatArray(re.size)
+        JavaFft().performWindowedFftAndReturnMag(re, im, mag)
+        val peak = mag.indices.maxBy { mag[it] }
+        return (peak - re.size / 2).toFloat() * sampleRate / re.size
+    }
+
+    @Test
+    fun testToneFrequency() {
+        val size = 4096
+        for (offset in listOf(-200000f, 12345f, 300000f)) {
+            val generator = SignalGenerator(sampleRate, listOf(Signal.Tone(offset, 0.5f)))
+            val re = FloatArray(size)
+            val im = FloatArray(size)
+            generator.generate(re, im, size)
+            val binWidth = sampleRate.toFloat() / size
+            assertEquals(offset, peakFrequency(re, im), binWidth)
+            assertEquals(0.5f, sqrt(re[100] * re[100] + im[100] * im[100]), 0.001f)
+        }
+    }
+
+    @Test
+    fun testFmDeviation() {
+        val size = 100000
+        val generator = SignalGenerator(sampleRate, listOf(Signal.Fm(100000f, 0.5f, 1000f, 5000f)))
+        val re = FloatArray(size)
+        val im = FloatArray(size)
+        generator.generate(re, im, size)
+        // instantaneous frequency must swing between offset - deviation and offset + deviation:
+        var min = Float.MAX_VALUE
+        var max = -Float.MAX_VALUE
+        for (i in 1 until size) {
+            val dPhase = atan2(im[i] * re[i - 1] - re[i] * im[i - 1], re[i] * re[i - 1] + im[i] * im[i - 1])
+            val frequency = dPhase * sampleRate / (2 * Math.PI.toFloat())
+            min = minOf(min, frequency)
+            max = maxOf(max, frequency)
+        }
+        assertEquals(95000f, min, 50f)
+        assertEquals(105000f, max, 50f)
+    }
+
+    @Test
+    fun testBurst() {
+        // 1 ms on, 9 ms off:
+        val generator = SignalGenerator(sampleRate, listOf(Signal.Burst(Signal.Tone(0f, 0.5f), 0.01f, 0.001f)))
+        val size = 2500    // odd packet size, so that the burst boundaries fall into the middle of packets
+        val re = FloatArray(size)
+        val im = FloatArray(size)
+        for (packet in 0 until 20) {
+            generator.generate(re, im, size)
+            for (i in 0 until size) {
+                val on = (packet * size + i) % 10000 < 1000
+                assertEquals("sample ${packet * size + i}", if (on) 0.5f else 0f, abs(re[i]), 0.001f)
+            }
+        }
+    }
+
+    @Test
+    fun testDeterministicOutput() {
+        val signals = listOf(Signal.Noise(0.05f), Signal.Am(-50000f, 0.3f, 1000f, 0.5f))
+        val a = ByteArray(16384)
+        val b = ByteArray(16384)
+        SignalGenerator(sampleRate, signals, seed = 7).generate(a, Format.SIGNED_8BIT)
+        SignalGenerator(sampleRate, signals, seed = 7).generate(b, Format.SIGNED_8BIT)
+        assertArrayEquals(a, b)
+    }
+
+    @Test
+    fun testFormatsMatchConverters() {
+        val count = 1024
+        for (format in Format.entries) {
+            val reference = SignalGenerator(sampleRate, listOf(Signal.Tone(50000f, 0.7f)))
+            val generator = SignalGenerator(sampleRate, listOf(Signal.Tone(50000f, 0.7f)))
+            val re = FloatArray(count)
+            val im = FloatArray(count)
+            reference.generate(re, im, count)
+            val packet = ByteArray(count * format.bytesPerSample)
+            generator.generate(packet, format)
+            val samplePacket = SamplePacket(count)
+            format.createConverter().fillPacketIntoSamplePacket(packet, samplePacket)
+            assertEquals(count, samplePacket.size())
+            val tolerance = if (format == Format.SIGNED_16BIT) 0.0001f else 0.01f
+            for (i in 0 until count) {
+                assertTrue("$format: sample $i", abs(samplePacket.re()[i] - re[i]) < tolerance)
+                assertTrue("$format: sample $i", abs(samplePacket.im()[i] - im[i]) < tolerance)
+            }
+        }
+    }
+}
@@ -1,72 +1,95 @@
 #include <jni.h>
 #include <string>
-#include <android/log.h>
+#include <cmath>
 #include "pffft.h"
 
+#ifdef __ANDROID__
 #include <android/log.h>
 
 #define LOG_TAG "PFFFTCheck"  // Replace with your desired tag
 #define LOGI(...) __android_log_print(ANDROID_LOG_INFO, LOG_TAG, __VA_ARGS__)
 #define LOGE(...) __android_log_print(ANDROID_LOG_ERROR, LOG_TAG, __VA_ARGS__)
+#else
+// desktop build (dspcore unit tests and benchmarks)
+#include <cstdio>
 
-int fftSize = -1;
-PFFFT_Setup* setup = nullptr;
-float* scratch = nullptr;
-float* input = nullptr;
-float* output = nullptr;
-float* outputMag = nullptr;
-
-extern "C" JNIEXPORT void JNICALL
-Java_com_mantz_1it_nativedsp_NativeDsp_performFFT(
-        JNIEnv* env, jobject /* this */, jfloatArray inputArray, jfloatArray outputArray) {
+#define LOGI(...) fprintf(stdout, __VA_ARGS__)
+#define LOGE(...) fprintf(stderr, __VA_ARGS__)
+#endif
 
-    // Get array length
-    jsize length = env->GetArrayLength(inputArray);
+// FFT setup and buffers of one NativeDsp instance (for one fft size). Each instance owns its
+// state, so multiple instances can perform FFTs in parallel.
+struct FftState {
+    int length;             // number of floats (2 * fft size)
+    PFFFT_Setup* setup;
+    float* scratch;
+    float* input;
+    float* output;
+    float* outputMag;
+};
 
-    if (fftSize != length) {
-        fftSize = length;
-        // Create PFFFT setup
-        setup = pffft_new_setup(length / 2, PFFFT_COMPLEX);
-        scratch = (float*) pffft_aligned_malloc(length  * sizeof(float));
-        input = (float*) pffft_aligned_malloc(length  * sizeof(float));
-        output = (float*) pffft_aligned_malloc(length  * sizeof(float));
+extern "C" JNIEXPORT jlong JNICALL
+Java_com_mantz_1it_nativedsp_NativeDsp_createFftState(
+        JNIEnv* env, jobject /* this */, jint length) {
+    PFFFT_Setup* setup = pffft_new_setup(length / 2, PFFFT_COMPLEX);
+    if (setup == nullptr) {
+        LOGE("createFftState: pffft does not support the size %d\n", length / 2);
+        return 0;
     }
+    FftState* state = new FftState;
+    state->length = length;
+    state->setup = setup;
+    state->scratch = (float*) pffft_aligned_malloc(length * sizeof(float));
+    state->input = (float*) pffft_aligned_malloc(length * sizeof(float));
+    state->output = (float*) pffft_aligned_malloc(length * sizeof(float));
+    state->outputMag = (float*) pffft_aligned_malloc(length / 2 * sizeof(float));
+    return (jlong) state;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_mantz_1it_nativedsp_NativeDsp_destroyFftState(
+        JNIEnv* env, jobject /* this */, jlong handle) {
+    FftState* state = (FftState*) handle;
+    if (state == nullptr)
+        return;
+    pffft_destroy_setup(state->setup);
+    pffft_aligned_free(state->scratch);
+    pffft_aligned_free(state->input);
+    pffft_aligned_free(state->output);
+    pffft_aligned_free(state->outputMag);
+    delete state;
+}
+
+extern "C" JNIEXPORT void JNICALL
+Java_com_mantz_1it_nativedsp_NativeDsp_performFFT(
+        JNIEnv* env, jobject /* this */, jlong handle, jfloatArray inputArray, jfloatArray outputArray) {
+    FftState* state = (FftState*) handle;
+    jsize length = state->length;
 
-    env->GetFloatArrayRegion(inputArray, 0, length, input);
+    env->GetFloatArrayRegion(inputArray, 0, length, state->input);
 
     // Perform FFT
-    pffft_transform_ordered(setup, input, output, scratch, PFFFT_FORWARD);
-    //pffft_transform(setup, input, output, scratch, PFFFT_FORWARD);
+    pffft_transform_ordered(state->setup, state->input, state->output, state->scratch, PFFFT_FORWARD);
 
-    env->SetFloatArrayRegion(outputArray, 0, length, output);
+    env->SetFloatArrayRegion(outputArray, 0, length, state->output);
 }
 
 extern "C" JNIEXPORT void JNICALL
 Java_com_mantz_1it_nativedsp_NativeDsp_performFFTAndLogMag(
-        JNIEnv* env, jobject /* this */, jfloatArray inputArray, jfloatArray outputArray) {
+        JNIEnv* env, jobject /* this */, jlong handle, jfloatArray inputArray, jfloatArray outputArray) {
     float realPower;
     float imagPower;
     int targetIndex;
-    int outputLength;
-
-    // Get array length
-    jsize length = env->GetArrayLength(inputArray);
-    outputLength = length / 2;
-
-    if (fftSize != length) {
-        fftSize = length;
-        // Create PFFFT setup
-        setup = pffft_new_setup(length / 2, PFFFT_COMPLEX);
-        scratch = (float*) pffft_aligned_malloc(length  * sizeof(float));
-        input = (float*) pffft_aligned_malloc(length  * sizeof(float));
-        output = (float*) pffft_aligned_malloc(length  * sizeof(float));
-        outputMag = (float*) pffft_aligned_malloc(outputLength  * sizeof(float));
-    }
+    FftState* state = (FftState*) handle;
+    jsize length = state->length;
+    int outputLength = length / 2;
+    float* output = state->output;
+    float* outputMag = state->outputMag;
 
-    env->GetFloatArrayRegion(inputArray, 0, length, input);
+    env->GetFloatArrayRegion(inputArray, 0, length, state->input);
 
     // Perform FFT
-    pffft_transform_ordered(setup, input, output, scratch, PFFFT_FORWARD);
+    pffft_transform_ordered(state->setup, state->input, output, state->scratch, PFFFT_FORWARD);
 
     // Calculate the logarithmic magnitude:
     for(int i = 0; i<outputLength; i++) {
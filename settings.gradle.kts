@@ -22,6 +22,7 @@ dependencyResolutionManagement {
 rootProject.name = "RFAnalyzer"
 include(":app")
 include(":nativedsp")
+include(":dspcore")
 include(":libairspy")
 include(":libusb")
 include(":libhydrasdr")